@@ -0,0 +1,76 @@
+/**
+ * Copyright (c) 2015, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.wso2.carbon.analytics.dataservice.restapi.beans;
+
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlType;
+
+/**
+ * The Class RecordPageBean represents a page of records, and the token to retrieve the next page.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(propOrder = { "records", "continuationToken" })
+@XmlRootElement(name = "recordPage")
+public class RecordPageBean {
+
+	/** The records. */
+	@XmlElement(required = true)
+	private List<RecordBean> records;
+
+	/** The continuation token, null if this is the last page. */
+	@XmlElement(required = false)
+	private String continuationToken;
+
+	/**
+	 * Gets the records.
+	 * @return the records
+	 */
+	public List<RecordBean> getRecords() {
+		return records;
+	}
+
+	/**
+	 * Sets the records.
+	 * @param records
+	 *            the new records
+	 */
+	public void setRecords(List<RecordBean> records) {
+		this.records = records;
+	}
+
+	/**
+	 * Gets the continuation token.
+	 * @return the continuation token
+	 */
+	public String getContinuationToken() {
+		return continuationToken;
+	}
+
+	/**
+	 * Sets the continuation token.
+	 * @param continuationToken
+	 *            the new continuation token
+	 */
+	public void setContinuationToken(String continuationToken) {
+		this.continuationToken = continuationToken;
+	}
+
+}
@@ -33,6 +33,7 @@ import javax.ws.rs.core.Response;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.analytics.dataservice.AnalyticsDSUtils;
 import org.wso2.carbon.analytics.dataservice.AnalyticsDataService;
 import org.wso2.carbon.analytics.dataservice.indexing.IndexType;
 import org.wso2.carbon.analytics.dataservice.indexing.SearchResultEntry;
@@ -41,8 +42,10 @@ import org.wso2.carbon.analytics.dataservice.restapi.Utils;
 import org.wso2.carbon.analytics.dataservice.restapi.beans.IndexTypeBean;
 import org.wso2.carbon.analytics.dataservice.restapi.beans.QueryBean;
 import org.wso2.carbon.analytics.dataservice.restapi.beans.RecordBean;
+import org.wso2.carbon.analytics.dataservice.restapi.beans.RecordPageBean;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
 import org.wso2.carbon.analytics.datasource.core.Record;
+import org.wso2.carbon.analytics.datasource.core.RecordContinuationToken;
 import org.wso2.carbon.analytics.datasource.core.RecordGroup;
 
 /**
@@ -284,6 +287,51 @@ public class AnalyticsResource extends AbstractResource {
 		}
 	}
 	
+	/**
+	 * Gets a page of records, continuing after the record the given continuation token was 
+	 * created for. Unlike offset based pagination, every page costs the same to retrieve.
+	 * @param tableName the table name
+	 * @param timeFrom the time from
+	 * @param timeTo the time to
+	 * @param count the page size
+	 * @param continuationToken the continuation token returned with the previous page, 
+	 *                          not given for the first page
+	 * @return the record page
+	 */
+	@GET
+	@Path("records/{tableName}/{from}/{to}/page/{count}")
+	public Response getRecordPage(@PathParam("tableName") String tableName,
+	                              @PathParam("from") long timeFrom,
+	                              @PathParam("to") long timeTo,
+	                              @PathParam("count") int count,
+	                              @QueryParam("continuationToken") String continuationToken) {
+		int tenantId = -1234;
+		if (logger.isDebugEnabled()) {
+			logger.debug("Invoking getRecordPage for tableName: " + tableName + " tenantId :" +
+			             tenantId);
+		}
+		try {
+			RecordGroup[] recordGroups;
+			recordGroups = analyticsDataService.get(tenantId, tableName, null, timeFrom,
+			                                        timeTo, continuationToken, count);
+			List<Record> records = AnalyticsDSUtils.listRecords(analyticsDataService, recordGroups);
+			RecordPageBean recordPage = new RecordPageBean();
+			recordPage.setRecords(Utils.createRecordBeansFromRecords(records));
+			if (count > 0 && records.size() == count) {
+				recordPage.setContinuationToken(
+				        RecordContinuationToken.generate(records.get(records.size() - 1)));
+			}
+			return Response.ok(recordPage).build();
+		} catch (AnalyticsException e) {
+			String message =
+			                 "Error while retrieving record page for tableName: " + tableName +
+			                         " tenantId: " + tenantId;
+			message = Utils.getCompleteErrorMessage(message, e);
+			logger.error(message, e);
+			return handleResponse(ResponseStatus.FAILED, message);
+		}
+	}
+	
 	/**
 	 * Gets the records.
 	 * @param tableName the table name
@@ -24,10 +24,14 @@ import java.util.Map;
 
 import org.wso2.carbon.analytics.dataservice.indexing.IndexType;
 import org.wso2.carbon.analytics.dataservice.indexing.SearchResultEntry;
+import org.wso2.carbon.analytics.datasource.core.AggregateFunction;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsTableNotAvailableException;
 import org.wso2.carbon.analytics.datasource.core.Record;
+import org.wso2.carbon.analytics.datasource.core.RecordAggregate;
+import org.wso2.carbon.analytics.datasource.core.RecordBatch;
 import org.wso2.carbon.analytics.datasource.core.RecordGroup;
+import org.wso2.carbon.analytics.datasource.core.RecordPredicate;
 
 /**
  * This interface represents the analytics data service operations.
@@ -116,6 +120,25 @@ public interface AnalyticsDataService {
             long timeTo, int recordsFrom, int recordsCount) 
             throws AnalyticsException, AnalyticsTableNotAvailableException;
     
+    /**
+     * Retrieves data from a table in pages, in the order of the record timestamps and ids, where the cost
+     * of reading a page does not depend on its position.
+     * @param tenantId The tenant which this table belongs to
+     * @param tableName The name of the table to search on
+     * @param columns The list of columns to required in results, null if all needs to be returned
+     * @param timeFrom The starting time to get records from, inclusive, -1 for beginning of time
+     * @param timeTo The ending time to get records to, non-inclusive, -1 for infinity
+     * @param continuationToken The continuation token of the last record of the previous page, 
+     * null for the first page
+     * @param recordsCount The page size, -1 for infinity
+     * @return An array of {@link RecordGroup} objects, which contains individual data sets in their local location
+     * @throws AnalyticsException
+     * @throws AnalyticsTableNotAvailableException
+     */
+    RecordGroup[] get(int tenantId, String tableName, List<String> columns, long timeFrom, 
+            long timeTo, String continuationToken, int recordsCount) 
+            throws AnalyticsException, AnalyticsTableNotAvailableException;
+    
     /**
      * Retrieves data from a table with given ids.
      * @param tenantId The tenant which this table belongs to
@@ -136,6 +159,36 @@ public interface AnalyticsDataService {
      * @throws AnalyticsException
      */
     Iterator<Record> readRecords(RecordGroup recordGroup) throws AnalyticsException;
+    
+    /**
+     * Reads in the records from a given record group as record batches, with the values of each column 
+     * kept together, the batches will be streamed in.
+     * @param recordGroup The record group which represents the local data set
+     * @param columns The columns of the record batches, which should be among the columns of the record group
+     * @param batchSize The maximum number of records in a batch
+     * @return An iterator of type {@link RecordBatch} in the local record group
+     * @throws AnalyticsException
+     */
+    Iterator<RecordBatch> readRecordBatches(RecordGroup recordGroup, List<String> columns, 
+            int batchSize) throws AnalyticsException;
+    
+    /**
+     * Computes the aggregates of the records of a table, which match all the given predicates, 
+     * grouped by the values of the given fields.
+     * @param tenantId The tenant which this table belongs to
+     * @param tableName The name of the table
+     * @param timeFrom The starting time of the records, inclusive, -1 for beginning of time
+     * @param timeTo The ending time of the records, non-inclusive, -1 for infinity
+     * @param predicates The predicates the records should match
+     * @param groupByFields The fields to group the records by, an empty list for a single group of all the records
+     * @param functions The aggregate functions to be computed for each group
+     * @return A list of {@link RecordAggregate} objects, one for each group which has at least one record
+     * @throws AnalyticsException
+     * @throws AnalyticsTableNotAvailableException
+     */
+    List<RecordAggregate> getAggregates(int tenantId, String tableName, long timeFrom, long timeTo, 
+            List<RecordPredicate> predicates, List<String> groupByFields, 
+            List<AggregateFunction> functions) throws AnalyticsException, AnalyticsTableNotAvailableException;
 
     /**
      * Deletes a set of records in the table.
@@ -214,6 +267,16 @@ public interface AnalyticsDataService {
     int searchCount(int tenantId, String tableName, String language, 
             String query) throws AnalyticsIndexException;
     
+    /**
+     * Waits until the records of the given table, added or updated before this call, are indexed. 
+     * This is only needed when asynchronous indexing is enabled, to be able to search the latest records.
+     * @param tenantId The tenant id
+     * @param tableName The table name
+     * @param maxWait The maximum time to wait in milliseconds, -1 to wait indefinitely
+     * @throws AnalyticsIndexException If the records are not indexed within the given time
+     */
+    void waitForIndexing(int tenantId, String tableName, long maxWait) throws AnalyticsIndexException;
+    
     /**
      * Destroys and frees any resources taken up by the analytics data service implementation.
      */
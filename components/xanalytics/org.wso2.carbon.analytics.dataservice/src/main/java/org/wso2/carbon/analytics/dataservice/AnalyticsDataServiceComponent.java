@@ -59,8 +59,9 @@ public class AnalyticsDataServiceComponent {
         BundleContext bundleContext = ctx.getBundleContext();
         try {
             AnalyticsDataServiceConfiguration config = this.loadAnalyticsDataServiceConfig();
-            bundleContext.registerService(AnalyticsDataService.class, new AnalyticsDataServiceImpl(config), null);
+            /* Hazelcast is loaded first, since the data service uses it for cache invalidation */
             this.loadHazelcast();
+            bundleContext.registerService(AnalyticsDataService.class, new AnalyticsDataServiceImpl(config), null);
             AnalyticsClusterManager clusterManager = new AnalyticsClusterManagerImpl();
             bundleContext.registerService(AnalyticsClusterManager.class, clusterManager, null);            
             AnalyticsServiceHolder.setAnalyticsClusterManager(clusterManager);
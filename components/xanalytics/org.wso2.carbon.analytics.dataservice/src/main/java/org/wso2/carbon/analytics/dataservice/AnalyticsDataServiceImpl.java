@@ -18,32 +18,56 @@
  */
 package org.wso2.carbon.analytics.dataservice;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import org.wso2.carbon.analytics.dataservice.clustering.AnalyticsFileSystemCacheInvalidator;
+import org.wso2.carbon.analytics.dataservice.clustering.AnalyticsTableCatalogInvalidator;
 import org.wso2.carbon.analytics.dataservice.config.AnalyticsDataServiceConfigProperty;
 import org.wso2.carbon.analytics.dataservice.config.AnalyticsDataServiceConfiguration;
+import org.wso2.carbon.analytics.dataservice.config.AnalyticsRecordIdGeneratorConfiguration;
 import org.wso2.carbon.analytics.dataservice.indexing.AnalyticsDataIndexer;
 import org.wso2.carbon.analytics.dataservice.indexing.IndexType;
 import org.wso2.carbon.analytics.dataservice.indexing.SearchResultEntry;
+import org.wso2.carbon.analytics.datasource.core.AggregateFunction;
+import org.wso2.carbon.analytics.datasource.core.AggregatingRecordStore;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsRecordStore;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsTableNotAvailableException;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsFileSystem;
+import org.wso2.carbon.analytics.datasource.core.CachedAnalyticsFileSystem;
+import org.wso2.carbon.analytics.datasource.core.CachedTableCatalog;
 import org.wso2.carbon.analytics.datasource.core.Record;
+import org.wso2.carbon.analytics.datasource.core.RecordAggregate;
+import org.wso2.carbon.analytics.datasource.core.RecordAggregator;
+import org.wso2.carbon.analytics.datasource.core.RecordBatch;
+import org.wso2.carbon.analytics.datasource.core.RecordBatchIterator;
+import org.wso2.carbon.analytics.datasource.core.RecordBatchReader;
 import org.wso2.carbon.analytics.datasource.core.RecordGroup;
+import org.wso2.carbon.analytics.datasource.core.RecordIdGenerator;
+import org.wso2.carbon.analytics.datasource.core.RecordPredicate;
+import org.wso2.carbon.analytics.datasource.core.TimeOrderedRecordIdGenerator;
+
+import com.hazelcast.core.HazelcastInstance;
 
 /**
  * The implementation of {@link AnalyticsDataService}.
  */
 public class AnalyticsDataServiceImpl implements AnalyticsDataService {
 
+    private static final String RECORD_ID_NODE_COUNTER = "_ANALYTICS_RECORD_ID_NODE_COUNTER_";
+
     private AnalyticsRecordStore analyticsRecordStore;
         
     private AnalyticsDataIndexer indexer;
     
+    private AnalyticsFileSystemCacheInvalidator fileSystemCacheInvalidator;
+    
+    private AnalyticsTableCatalogInvalidator tableCatalogInvalidator;
+    
     public AnalyticsDataServiceImpl(AnalyticsRecordStore analyticsRecordStore,
             AnalyticsFileSystem analyticsFileSystem) throws AnalyticsException {
         this.analyticsRecordStore = analyticsRecordStore;
@@ -60,16 +84,69 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
             afs = (AnalyticsFileSystem) Class.forName(afsClass).newInstance();
             ars.init(this.convertToMap(config.getAnalyticsRecordStoreConfiguration().getProperties()));
             afs.init(this.convertToMap(config.getAnalyticsFileSystemConfiguration().getProperties()));
+            this.initRecordIdGenerator(config.getAnalyticsRecordIdGeneratorConfiguration());
         } catch (Exception e) {
             throw new AnalyticsException("Error in creating analytics data service from configuration: " + 
                     e.getMessage(), e);
         }
         this.analyticsRecordStore = ars;
-        this.indexer = new AnalyticsDataIndexer(afs);
+        if (ars instanceof CachedTableCatalog) {
+            HazelcastInstance hz = AnalyticsServiceHolder.getHazelcastInstance();
+            if (hz != null) {
+                this.tableCatalogInvalidator = new AnalyticsTableCatalogInvalidator(hz, (CachedTableCatalog) ars);
+            }
+        }
+        if (config.getAnalyticsFileSystemConfiguration().isCacheMetadata()) {
+            afs = this.createCachedFileSystem(afs);
+        }
+        Map<String, String> indexingProps;
+        if (config.getAnalyticsIndexingConfiguration() != null) {
+            indexingProps = this.convertToMap(config.getAnalyticsIndexingConfiguration().getProperties());
+        } else {
+            indexingProps = new HashMap<String, String>();
+        }
+        this.indexer = new AnalyticsDataIndexer(afs, indexingProps);
+    }
+    
+    private void initRecordIdGenerator(AnalyticsRecordIdGeneratorConfiguration config) throws Exception {
+        RecordIdGenerator idGenerator;
+        Map<String, String> props;
+        if (config != null) {
+            idGenerator = (RecordIdGenerator) Class.forName(config.getImplementation()).newInstance();
+            props = this.convertToMap(config.getProperties());
+        } else {
+            idGenerator = new TimeOrderedRecordIdGenerator();
+            props = new HashMap<String, String>();
+        }
+        if (idGenerator instanceof TimeOrderedRecordIdGenerator && 
+                !props.containsKey(TimeOrderedRecordIdGenerator.NODE_ID_PROP)) {
+            HazelcastInstance hz = AnalyticsServiceHolder.getHazelcastInstance();
+            if (hz != null) {
+                /* each node takes the next value of a cluster wide counter, so the node ids are unique, 
+                 * unless more than the maximum node id count of nodes join during the lifetime of the cluster */
+                long nodeId = hz.getAtomicLong(RECORD_ID_NODE_COUNTER).getAndIncrement() % 
+                        (TimeOrderedRecordIdGenerator.MAX_NODE_ID + 1);
+                props.put(TimeOrderedRecordIdGenerator.NODE_ID_PROP, Long.toString(nodeId));
+            }
+        }
+        idGenerator.init(props);
+        Record.setIdGenerator(idGenerator);
+    }
+    
+    private AnalyticsFileSystem createCachedFileSystem(AnalyticsFileSystem afs) {
+        CachedAnalyticsFileSystem cachedFileSystem = new CachedAnalyticsFileSystem(afs);
+        HazelcastInstance hz = AnalyticsServiceHolder.getHazelcastInstance();
+        if (hz != null) {
+            this.fileSystemCacheInvalidator = new AnalyticsFileSystemCacheInvalidator(hz, cachedFileSystem);
+        }
+        return cachedFileSystem;
     }
     
     private Map<String, String> convertToMap(AnalyticsDataServiceConfigProperty[] props) {
         Map<String, String> result = new HashMap<String, String>();
+        if (props == null) {
+            return result;
+        }
         for (AnalyticsDataServiceConfigProperty prop : props) {
             result.put(prop.getName(), prop.getValue());
         }
@@ -130,6 +207,14 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
                 timeTo, recordsFrom, recordsCount);
     }
 
+    @Override
+    public RecordGroup[] get(int tenantId, String tableName, List<String> columns, long timeFrom, long timeTo,
+            String continuationToken, int recordsCount) throws AnalyticsException, 
+            AnalyticsTableNotAvailableException {
+        return this.getAnalyticsRecordStore().get(tenantId, tableName, columns, timeFrom, 
+                timeTo, continuationToken, recordsCount);
+    }
+
     @Override
     public RecordGroup[] get(int tenantId, String tableName, List<String> columns, List<String> ids)
             throws AnalyticsException, AnalyticsTableNotAvailableException {
@@ -140,6 +225,29 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
     public Iterator<Record> readRecords(RecordGroup recordGroup) throws AnalyticsException {
         return this.getAnalyticsRecordStore().readRecords(recordGroup);
     }
+    
+    @Override
+    public Iterator<RecordBatch> readRecordBatches(RecordGroup recordGroup, List<String> columns, 
+            int batchSize) throws AnalyticsException {
+        AnalyticsRecordStore ars = this.getAnalyticsRecordStore();
+        if (ars instanceof RecordBatchReader) {
+            return ((RecordBatchReader) ars).readRecordBatches(recordGroup, columns, batchSize);
+        }
+        return new RecordBatchIterator(ars.readRecords(recordGroup), columns, batchSize);
+    }
+    
+    @Override
+    public List<RecordAggregate> getAggregates(int tenantId, String tableName, long timeFrom, long timeTo, 
+            List<RecordPredicate> predicates, List<String> groupByFields, 
+            List<AggregateFunction> functions) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        AnalyticsRecordStore ars = this.getAnalyticsRecordStore();
+        if (ars instanceof AggregatingRecordStore) {
+            return ((AggregatingRecordStore) ars).getAggregates(tenantId, tableName, timeFrom, timeTo, 
+                    predicates, groupByFields, functions);
+        }
+        return RecordAggregator.aggregate(ars, tenantId, tableName, timeFrom, timeTo, predicates, 
+                groupByFields, functions);
+    }
 
     @Override
     public void delete(int tenantId, String tableName, long timeFrom, long timeTo) throws AnalyticsException,
@@ -182,9 +290,35 @@ public class AnalyticsDataServiceImpl implements AnalyticsDataService {
         this.getIndexer().clearIndices(tenantId, tableName);
     }
 
+    @Override
+    public void waitForIndexing(int tenantId, String tableName, long maxWait) throws AnalyticsIndexException {
+        this.getIndexer().waitForIndexing(tenantId, tableName, maxWait);
+    }
+    
+    /**
+     * Migrates the index of the given table to id-hash shard routing, by re-indexing all its records.
+     * @param tenantId The tenant id
+     * @param tableName The table name
+     * @throws AnalyticsException
+     */
+    public void migrateIndexToIdHashRouting(int tenantId, String tableName) throws AnalyticsException {
+        RecordGroup[] recordGroups = this.get(tenantId, tableName, null, -1, -1, 0, -1);
+        List<Iterator<Record>> recordIterators = new ArrayList<Iterator<Record>>(recordGroups.length);
+        for (RecordGroup recordGroup : recordGroups) {
+            recordIterators.add(this.readRecords(recordGroup));
+        }
+        this.getIndexer().migrateToIdHashRouting(tenantId, tableName, recordIterators);
+    }
+
     @Override
     public void destroy() throws AnalyticsException {
         this.indexer.close();
+        if (this.fileSystemCacheInvalidator != null) {
+            this.fileSystemCacheInvalidator.close();
+        }
+        if (this.tableCatalogInvalidator != null) {
+            this.tableCatalogInvalidator.close();
+        }
     }
 
 }
@@ -18,15 +18,16 @@
  */
 package org.wso2.carbon.analytics.dataservice;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.lucene.store.BufferedIndexInput;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
@@ -108,7 +109,7 @@ public class AnalyticsDirectory extends Directory {
     public IndexInput openInput(String name, IOContext ctx) throws IOException {
         String path = this.generateFilePath(name);
         DataInput input = this.analyticsFileSystem.createInput(path);
-        return new AnalyticsIndexInputAdaptor(path, input);
+        return new AnalyticsIndexInput(path, input, BufferedIndexInput.bufferSize(ctx));
     }
 
     @Override
@@ -119,86 +120,109 @@ public class AnalyticsDirectory extends Directory {
     }
     
     /**
-     * Lucene {@link IndexInput} adaptor implementation using Carbon analytics {@link DataInput}.
+     * Lucene {@link IndexInput} implementation using Carbon analytics {@link DataInput}. The reads are buffered,
+     * and since Lucene never closes clones and slices, they do not own a data input, but borrow a copy of the 
+     * source data input for each read from a pool shared with the original input, which closes the pool.
      */
-    private class AnalyticsIndexInputAdaptor extends IndexInput {
+    private class AnalyticsIndexInput extends BufferedIndexInput {
         
         private DataInput dataInput;
         
-        private String path;
+        private long offset;
         
         private long length;
         
-        private long offset;
+        private boolean copy;
         
-        private List<IndexInput> clonedInputs = new ArrayList<IndexInput>();
+        private ConcurrentLinkedDeque<DataInput> idleCopies;
         
-        protected AnalyticsIndexInputAdaptor(String path, DataInput dataInput) throws IOException {
-            this(path, dataInput, 0, analyticsFileSystem.length(path), path);            
-        }
-        
-        protected AnalyticsIndexInputAdaptor(String path, DataInput dataInput, long offset, 
-                long length, String sliceDescription) throws IOException {
-            super(sliceDescription);
-            this.path = path;
+        protected AnalyticsIndexInput(String path, DataInput dataInput, int bufferSize) throws IOException {
+            super(path, bufferSize);
             this.dataInput = dataInput;
-            this.offset = offset;
-            this.length = length;
-            this.seek(0);
+            this.offset = 0;
+            this.length = analyticsFileSystem.length(path);
+            this.idleCopies = new ConcurrentLinkedDeque<DataInput>();
         }
 
         @Override
-        public void close() throws IOException {
-            for (IndexInput in : this.clonedInputs) {
-                in.close();
+        protected void readInternal(byte[] data, int offset, int length) throws IOException {
+            long position = this.getFilePointer();
+            if (position + length > this.length) {
+                throw new EOFException("Read past EOF: " + this);
+            }
+            if (!this.copy) {
+                this.read(this.dataInput, position, data, offset, length);
+                return;
+            }
+            /* the most recently used copy is taken first, so a single reader keeps its data input position */
+            DataInput in = this.idleCopies.pollFirst();
+            if (in == null) {
+                in = this.dataInput.makeCopy();
+            }
+            try {
+                this.read(in, position, data, offset, length);
+            } finally {
+                this.idleCopies.offerFirst(in);
+            }
+        }
+        
+        private void read(DataInput in, long position, byte[] data, int offset, int length) throws IOException {
+            position += this.offset;
+            if (in.getPosition() != position) {
+                in.seek(position);
+            }
+            int count;
+            while (length > 0) {
+                count = in.read(data, offset, length);
+                if (count <= 0) {
+                    throw new EOFException("Read past EOF: " + this);
+                }
+                offset += count;
+                length -= count;
             }
-            this.dataInput.close();
         }
 
         @Override
-        public long getFilePointer() {
-            return this.dataInput.getPosition() - this.offset;
+        protected void seekInternal(long pos) throws IOException {
+            /* the underlying data input is positioned when reading */
         }
-
+        
         @Override
         public long length() {
             return this.length;
         }
 
         @Override
-        public void seek(long pos) throws IOException {
-            this.dataInput.seek(pos + this.offset);            
-        }
-
-        @Override
-        public byte readByte() throws IOException {
-            byte[] buff = new byte[1];
-            this.dataInput.read(buff, 0, buff.length);
-            return buff[0];            
+        public void close() throws IOException {
+            /* as in Lucene, only the original input is closed, and it releases the copies used by its clones */
+            if (this.copy) {
+                return;
+            }
+            DataInput in;
+            while ((in = this.idleCopies.pollFirst()) != null) {
+                in.close();
+            }
+            this.dataInput.close();
         }
-
+        
         @Override
-        public void readBytes(byte[] data, int offset, int length) throws IOException {
-            this.dataInput.read(data, offset, length);
+        public AnalyticsIndexInput clone() {
+            AnalyticsIndexInput in = (AnalyticsIndexInput) super.clone();
+            in.copy = true;
+            return in;
         }
 
         @Override
         public IndexInput slice(String sliceDescription, long offset, long length) throws IOException {
-            return new AnalyticsIndexInputAdaptor(this.path, this.dataInput.makeCopy(), 
-                    this.offset + offset, length, sliceDescription);
-        }
-        
-        @Override
-        public IndexInput clone() {
-            IndexInput in;
-            try {
-                in = new AnalyticsIndexInputAdaptor(this.path, this.dataInput.makeCopy(), 
-                        this.offset, this.length, this.toString());
-                this.clonedInputs.add(in);
-                return in;
-            } catch (IOException e) {
-                throw new RuntimeException(e.getMessage(), e);
-            }            
+            if (offset < 0 || length < 0 || offset + length > this.length) {
+                throw new IllegalArgumentException("Slice out of bounds: offset=" + offset + ", length=" + 
+                        length + ", fileLength=" + this.length + ": " + this);
+            }
+            AnalyticsIndexInput in = this.clone();
+            in.offset = this.offset + offset;
+            in.length = length;
+            in.seek(0);
+            return in;
         }
         
     }
@@ -255,9 +279,13 @@ public class AnalyticsDirectory extends Directory {
             return lock;
         }
         
+        /**
+         * In-memory lock implementation, this lock is not owned by a thread, since long-lived
+         * index writers can be closed by a thread other than the one which opened them.
+         */
         public class InMemoryLock extends Lock {
 
-            private ReentrantLock lock = new ReentrantLock();
+            private AtomicBoolean locked = new AtomicBoolean(false);
             
             private String name;
             
@@ -267,17 +295,17 @@ public class AnalyticsDirectory extends Directory {
             
             @Override
             public void close() throws IOException {
-                this.lock.unlock();
+                this.locked.set(false);
             }
 
             @Override
             public boolean isLocked() throws IOException {
-                return lock.isLocked();
+                return this.locked.get();
             }
 
             @Override
             public boolean obtain() throws IOException {      
-                return lock.tryLock();
+                return this.locked.compareAndSet(false, true);
             }
             
             @Override
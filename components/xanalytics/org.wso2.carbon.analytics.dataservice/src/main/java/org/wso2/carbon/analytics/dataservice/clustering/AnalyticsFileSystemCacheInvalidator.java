@@ -0,0 +1,69 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.clustering;
+
+import org.wso2.carbon.analytics.datasource.core.CachedAnalyticsFileSystem;
+import org.wso2.carbon.analytics.datasource.core.CachedAnalyticsFileSystem.InvalidationPublisher;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+
+/**
+ * This class propagates the path changes of a {@link CachedAnalyticsFileSystem} to the other nodes 
+ * in the cluster using a Hazelcast topic, and invalidates the local cache on changes done by them.
+ */
+public class AnalyticsFileSystemCacheInvalidator implements InvalidationPublisher, MessageListener<String> {
+
+    private static final String ANALYTICS_FS_CACHE_INVALIDATION_TOPIC = "_ANALYTICS_FS_CACHE_INVALIDATION_";
+    
+    private CachedAnalyticsFileSystem cachedFileSystem;
+    
+    private ITopic<String> topic;
+    
+    private String listenerId;
+    
+    public AnalyticsFileSystemCacheInvalidator(HazelcastInstance hz, CachedAnalyticsFileSystem cachedFileSystem) {
+        this.cachedFileSystem = cachedFileSystem;
+        this.topic = hz.getTopic(ANALYTICS_FS_CACHE_INVALIDATION_TOPIC);
+        this.listenerId = this.topic.addMessageListener(this);
+        this.cachedFileSystem.setInvalidationPublisher(this);
+    }
+    
+    @Override
+    public void publish(String path) {
+        this.topic.publish(path);
+    }
+
+    @Override
+    public void onMessage(Message<String> message) {
+        if (message.getPublishingMember() != null && message.getPublishingMember().localMember()) {
+            /* the local cache is already updated */
+            return;
+        }
+        this.cachedFileSystem.invalidate(message.getMessageObject());
+    }
+    
+    public void close() {
+        this.cachedFileSystem.setInvalidationPublisher(null);
+        this.topic.removeMessageListener(this.listenerId);
+    }
+    
+}
@@ -0,0 +1,183 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.clustering;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.analytics.dataservice.AnalyticsIndexException;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Member;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+
+/**
+ * This class makes sure an index shard is only written by a single node in the cluster at a time. A node holds 
+ * the lease of a shard while it has an index writer open for it, so the owner of a shard holds it as long as 
+ * its pooled writer is open. Another node, which has to write to the shard, asks the holder to release it 
+ * through a Hazelcast topic, and the holder then commits and closes its writer, which is opened again, 
+ * after the lease is given back, on its next write. The leases are kept in a Hazelcast map rather than 
+ * with Hazelcast locks, since a pooled writer is opened and closed by different threads.
+ */
+public class AnalyticsIndexWriterLeases implements MessageListener<String> {
+    
+    private static final Log log = LogFactory.getLog(AnalyticsIndexWriterLeases.class);
+    
+    private static final String ANALYTICS_INDEX_WRITER_LEASES_MAP = "_ANALYTICS_INDEX_WRITER_LEASES_";
+    
+    private static final String ANALYTICS_INDEX_WRITER_RELEASE_TOPIC = "_ANALYTICS_INDEX_WRITER_RELEASE_";
+    
+    private static final long LEASE_POLL_INTERVAL = 50;
+    
+    private static final long RELEASE_REQUEST_INTERVAL = 1000;
+    
+    private static final long LEASE_TIMEOUT = 60000;
+    
+    private HazelcastInstance hz;
+    
+    private Map<String, String> leases;
+    
+    private ITopic<String> topic;
+    
+    private String listenerId;
+    
+    private String localMemberId;
+    
+    private LeaseReleaseHandler leaseReleaseHandler;
+    
+    private ExecutorService releaseExecutor;
+    
+    public AnalyticsIndexWriterLeases(HazelcastInstance hz, LeaseReleaseHandler leaseReleaseHandler) {
+        this.hz = hz;
+        this.leaseReleaseHandler = leaseReleaseHandler;
+        this.leases = hz.getMap(ANALYTICS_INDEX_WRITER_LEASES_MAP);
+        this.localMemberId = hz.getCluster().getLocalMember().getUuid();
+        this.releaseExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "analytics-index-writer-release");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.topic = hz.getTopic(ANALYTICS_INDEX_WRITER_RELEASE_TOPIC);
+        this.listenerId = this.topic.addMessageListener(this);
+    }
+    
+    /**
+     * Acquires the lease of the given shard for this node, waiting until the node holding it releases it.
+     * A node must only have a single writer open for a shard, the lease is not counted per writer.
+     * @param shardedTableId The sharded table id
+     * @throws AnalyticsIndexException If the lease is not released by its holder in time
+     */
+    public void acquire(String shardedTableId) throws AnalyticsIndexException {
+        long end = System.currentTimeMillis() + LEASE_TIMEOUT;
+        long lastRequestTime = 0;
+        String holder;
+        while (true) {
+            holder = this.leases.putIfAbsent(shardedTableId, this.localMemberId);
+            if (holder == null || holder.equals(this.localMemberId)) {
+                return;
+            }
+            if (!this.isClusterMember(holder)) {
+                /* the holder has left the cluster without releasing it */
+                if (this.leases.replace(shardedTableId, holder, this.localMemberId)) {
+                    return;
+                }
+                continue;
+            }
+            long now = System.currentTimeMillis();
+            if (now > end) {
+                throw new AnalyticsIndexException("Timed out waiting for the index writer of shard table id: '" + 
+                        shardedTableId + "' to be released by another node");
+            }
+            if (now - lastRequestTime >= RELEASE_REQUEST_INTERVAL) {
+                this.topic.publish(shardedTableId);
+                lastRequestTime = now;
+            }
+            try {
+                Thread.sleep(LEASE_POLL_INTERVAL);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AnalyticsIndexException("Interrupted while waiting for the index writer of " + 
+                        "shard table id: '" + shardedTableId + "': " + e.getMessage(), e);
+            }
+        }
+    }
+    
+    /**
+     * Releases the lease of the given shard, if it is held by this node.
+     * @param shardedTableId The sharded table id
+     */
+    public void release(String shardedTableId) {
+        this.leases.remove(shardedTableId, this.localMemberId);
+    }
+    
+    private boolean isClusterMember(String memberId) {
+        Set<String> memberIds = new HashSet<String>();
+        for (Member member : this.hz.getCluster().getMembers()) {
+            memberIds.add(member.getUuid());
+        }
+        return memberIds.contains(memberId);
+    }
+
+    @Override
+    public void onMessage(Message<String> message) {
+        final String shardedTableId = message.getMessageObject();
+        if (!this.localMemberId.equals(this.leases.get(shardedTableId))) {
+            return;
+        }
+        /* closing the writer waits for the ongoing writes, so it is not done in the topic's event thread */
+        this.releaseExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    leaseReleaseHandler.releaseLease(shardedTableId);
+                } catch (Throwable e) {
+                    log.error("Error in releasing the index writer of shard table id: '" + shardedTableId + 
+                            "': " + e.getMessage(), e);
+                }
+            }
+        });
+    }
+    
+    public void close() {
+        this.topic.removeMessageListener(this.listenerId);
+        this.releaseExecutor.shutdownNow();
+    }
+    
+    /**
+     * This interface represents the closing of the index writer of a shard, when another node asks for 
+     * its lease, the lease is then released through {@link AnalyticsIndexWriterLeases#release(String)}.
+     */
+    public static interface LeaseReleaseHandler {
+        
+        void releaseLease(String shardedTableId) throws AnalyticsIndexException;
+        
+    }
+    
+}
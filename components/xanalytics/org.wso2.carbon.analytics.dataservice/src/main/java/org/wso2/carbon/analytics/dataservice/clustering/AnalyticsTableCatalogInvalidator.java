@@ -0,0 +1,81 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.clustering;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.analytics.datasource.core.CachedTableCatalog;
+import org.wso2.carbon.analytics.datasource.core.CachedTableCatalog.InvalidationPublisher;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ITopic;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+
+/**
+ * This class propagates the table creations and deletions of a {@link CachedTableCatalog} to the other nodes 
+ * in the cluster using a Hazelcast topic, and invalidates the local table catalog on changes done by them.
+ */
+public class AnalyticsTableCatalogInvalidator implements InvalidationPublisher, MessageListener<String> {
+
+    private static final String ANALYTICS_TABLE_CATALOG_INVALIDATION_TOPIC = "_ANALYTICS_TABLE_CATALOG_INVALIDATION_";
+    
+    private static final Log log = LogFactory.getLog(AnalyticsTableCatalogInvalidator.class);
+    
+    private CachedTableCatalog tableCatalog;
+    
+    private ITopic<String> topic;
+    
+    private String listenerId;
+    
+    public AnalyticsTableCatalogInvalidator(HazelcastInstance hz, CachedTableCatalog tableCatalog) {
+        this.tableCatalog = tableCatalog;
+        this.topic = hz.getTopic(ANALYTICS_TABLE_CATALOG_INVALIDATION_TOPIC);
+        this.listenerId = this.topic.addMessageListener(this);
+        this.tableCatalog.setTableCatalogInvalidationPublisher(this);
+    }
+    
+    @Override
+    public void publish(int tenantId, String tableName) {
+        this.topic.publish(tenantId + ":" + tableName);
+    }
+
+    @Override
+    public void onMessage(Message<String> message) {
+        if (message.getPublishingMember() != null && message.getPublishingMember().localMember()) {
+            /* the local catalog is already updated */
+            return;
+        }
+        String value = message.getMessageObject();
+        int index = value.indexOf(':');
+        try {
+            this.tableCatalog.invalidateTable(Integer.parseInt(value.substring(0, index)), 
+                    value.substring(index + 1));
+        } catch (RuntimeException e) {
+            log.warn("Invalid table catalog invalidation message: " + value + ", clearing the table catalog");
+            this.tableCatalog.invalidateTableCatalog();
+        }
+    }
+    
+    public void close() {
+        this.tableCatalog.setTableCatalogInvalidationPublisher(null);
+        this.topic.removeMessageListener(this.listenerId);
+    }
+    
+}
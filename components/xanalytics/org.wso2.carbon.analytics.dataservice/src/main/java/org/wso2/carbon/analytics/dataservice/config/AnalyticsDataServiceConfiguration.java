@@ -31,6 +31,10 @@ public class AnalyticsDataServiceConfiguration {
     
     private AnalyticsFileSystemConfiguration analyticsFileSystem;
     
+    private AnalyticsIndexingConfiguration analyticsIndexingConfiguration;
+    
+    private AnalyticsRecordIdGeneratorConfiguration analyticsRecordIdGeneratorConfiguration;
+    
     @XmlElement (name = "analytics-record-store", nillable = false)
     public AnalyticsRecordStoreConfiguration getAnalyticsRecordStoreConfiguration() {
         return analyticsRecordStoreConfiguration;
@@ -48,5 +52,24 @@ public class AnalyticsDataServiceConfiguration {
     public void setAnalyticsFileSystemConfiguration(AnalyticsFileSystemConfiguration analyticsFileSystem) {
         this.analyticsFileSystem = analyticsFileSystem;
     }
+    
+    @XmlElement (name = "analytics-indexing")
+    public AnalyticsIndexingConfiguration getAnalyticsIndexingConfiguration() {
+        return analyticsIndexingConfiguration;
+    }
+
+    public void setAnalyticsIndexingConfiguration(AnalyticsIndexingConfiguration analyticsIndexingConfiguration) {
+        this.analyticsIndexingConfiguration = analyticsIndexingConfiguration;
+    }
+    
+    @XmlElement (name = "analytics-record-id-generator")
+    public AnalyticsRecordIdGeneratorConfiguration getAnalyticsRecordIdGeneratorConfiguration() {
+        return analyticsRecordIdGeneratorConfiguration;
+    }
+
+    public void setAnalyticsRecordIdGeneratorConfiguration(
+            AnalyticsRecordIdGeneratorConfiguration analyticsRecordIdGeneratorConfiguration) {
+        this.analyticsRecordIdGeneratorConfiguration = analyticsRecordIdGeneratorConfiguration;
+    }
 
 }
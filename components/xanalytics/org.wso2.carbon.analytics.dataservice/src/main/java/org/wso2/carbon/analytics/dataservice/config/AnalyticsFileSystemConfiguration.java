@@ -30,6 +30,8 @@ public class AnalyticsFileSystemConfiguration {
     
     private AnalyticsDataServiceConfigProperty[] properties;
     
+    private boolean cacheMetadata;
+    
     @XmlElement (nillable = false)
     public String getImplementation() {
         return implementation;
@@ -49,4 +51,17 @@ public class AnalyticsFileSystemConfiguration {
         this.properties = properties;
     }
     
+    /**
+     * Returns whether the path metadata, i.e. the existence, length and directory listings, should be 
+     * cached in memory, in which case the changes are propagated to the other nodes in a cluster.
+     */
+    @XmlElement (name = "cache-metadata")
+    public boolean isCacheMetadata() {
+        return cacheMetadata;
+    }
+
+    public void setCacheMetadata(boolean cacheMetadata) {
+        this.cacheMetadata = cacheMetadata;
+    }
+    
 }
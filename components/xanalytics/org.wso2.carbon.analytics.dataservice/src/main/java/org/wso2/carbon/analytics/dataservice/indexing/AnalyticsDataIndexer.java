@@ -22,13 +22,26 @@ import java.io.IOException;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -43,13 +56,13 @@ import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.index.DirectoryReader;
-import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.search.TotalHitCountCollector;
 import org.apache.lucene.store.Directory;
@@ -57,10 +70,14 @@ import org.apache.lucene.util.Version;
 import org.wso2.carbon.analytics.dataservice.AnalyticsDirectory;
 import org.wso2.carbon.analytics.dataservice.AnalyticsIndexException;
 import org.wso2.carbon.analytics.dataservice.AnalyticsQueryParser;
+import org.wso2.carbon.analytics.dataservice.AnalyticsServiceHolder;
+import org.wso2.carbon.analytics.dataservice.clustering.AnalyticsIndexWriterLeases;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsFileSystem;
 import org.wso2.carbon.analytics.datasource.core.Record;
 
+import com.hazelcast.core.HazelcastInstance;
+
 /**
  * This class represents the indexing functionality.
  */
@@ -73,18 +90,26 @@ public class AnalyticsDataIndexer {
     private static final Log log = LogFactory.getLog(AnalyticsDataIndexer.class);
         
     private static final String INDEX_DATA_FS_BASE_PATH = "/_data/index/";
+    
+    private static final String INDEX_QUEUE_FS_BASE_PATH = "/_data/index_queue/";
+    
+    private static final String INDEX_QUEUE_FAILED_FS_BASE_PATH = "/_data/index_queue_failed/";
 
     public static final String INDEX_ID_INTERNAL_FIELD = "_id";
 
     public static final String INDEX_INTERNAL_TIMESTAMP_FIELD = "_timestamp";
     
     private static final String NULL_INDEX_VALUE = "";
+    
+    private static final String ID_HASH_SHARD_PREFIX = "ID_HASH_";
+    
+    private static final int MIGRATION_BATCH_SIZE = 1000;
 
     private AnalyticsIndexDefinitionRepository repository;
     
     private Map<String, Map<String, IndexType>> indexDefs = new HashMap<String, Map<String, IndexType>>();
     
-    private Map<String, Directory> indexDirs = new HashMap<String, Directory>();
+    private Map<String, Directory> indexDirs = new ConcurrentHashMap<String, Directory>();
     
     private Map<String, Integer> indexShardPositions = new HashMap<String, Integer>();
     
@@ -93,10 +118,150 @@ public class AnalyticsDataIndexer {
     private Analyzer DEFAULT_ANALYZER = new StandardAnalyzer();
     
     private AnalyticsFileSystem analyticsFileSystem;
+    
+    private AnalyticsIndexWriterPool writerPool;
+    
+    private AnalyticsIndexSearcherPool searcherPool;
+    
+    private ExecutorService shardSearchExecutor;
+    
+    private boolean idHashRouting;
+    
+    private int idHashShardCount;
+    
+    private AnalyticsIndexingQueue indexingQueue;
+    
+    private AnalyticsIndexWriterLeases writerLeases;
+    
+    private ConcurrentMap<String, Lock> remoteShardWriteLocks = new ConcurrentHashMap<String, Lock>();
+    
+    private String localUniqueId;
         
-    public AnalyticsDataIndexer(AnalyticsFileSystem analyticsFileSystem) {
+    public AnalyticsDataIndexer(AnalyticsFileSystem analyticsFileSystem) throws AnalyticsIndexException {
+        this(analyticsFileSystem, new HashMap<String, String>());
+    }
+    
+    public AnalyticsDataIndexer(AnalyticsFileSystem analyticsFileSystem, 
+            Map<String, String> properties) throws AnalyticsIndexException {
         this.analyticsFileSystem = analyticsFileSystem;
         this.repository = new AnalyticsIndexDefinitionRepository(this.getFileSystem());
+        int maxPendingDocs = (int) this.extractLongProperty(properties, 
+                AnalyticsIndexConstants.INDEX_COMMIT_MAX_PENDING_DOCS, 
+                AnalyticsIndexConstants.DEFAULT_INDEX_COMMIT_MAX_PENDING_DOCS);
+        long commitInterval = this.extractLongProperty(properties, 
+                AnalyticsIndexConstants.INDEX_COMMIT_INTERVAL, 
+                AnalyticsIndexConstants.DEFAULT_INDEX_COMMIT_INTERVAL);
+        long writerMaxIdleTime = this.extractLongProperty(properties, 
+                AnalyticsIndexConstants.INDEX_WRITER_MAX_IDLE, 
+                AnalyticsIndexConstants.DEFAULT_INDEX_WRITER_MAX_IDLE);
+        this.writerPool = new AnalyticsIndexWriterPool(new AnalyticsIndexWriterPool.IndexWriterFactory() {
+            @Override
+            public IndexWriter createIndexWriter(String shardedTableId) throws AnalyticsIndexException {
+                return AnalyticsDataIndexer.this.createLeasedIndexWriter(shardedTableId);
+            }
+            @Override
+            public void indexWriterClosed(String shardedTableId) {
+                AnalyticsDataIndexer.this.releaseWriterLease(shardedTableId);
+            }
+        }, maxPendingDocs, commitInterval, writerMaxIdleTime);
+        HazelcastInstance hz = AnalyticsServiceHolder.getHazelcastInstance();
+        if (hz != null) {
+            this.writerLeases = new AnalyticsIndexWriterLeases(hz, 
+                    new AnalyticsIndexWriterLeases.LeaseReleaseHandler() {
+                @Override
+                public void releaseLease(String shardedTableId) throws AnalyticsIndexException {
+                    /* the pooled writer releases the lease when it is closed */
+                    AnalyticsDataIndexer.this.writerPool.close(shardedTableId);
+                }
+            });
+        }
+        long maxStaleness = this.extractLongProperty(properties, 
+                AnalyticsIndexConstants.INDEX_SEARCHER_MAX_STALENESS, 
+                AnalyticsIndexConstants.DEFAULT_INDEX_SEARCHER_MAX_STALENESS);
+        this.searcherPool = new AnalyticsIndexSearcherPool(new AnalyticsIndexSearcherPool.SearcherManagerFactory() {
+            @Override
+            public SearcherManager createSearcherManager(String shardedTableId) throws AnalyticsIndexException {
+                return AnalyticsDataIndexer.this.createSearcherManager(shardedTableId);
+            }
+        }, maxStaleness);
+        this.writerPool.setIndexCommitListener(new AnalyticsIndexWriterPool.IndexCommitListener() {
+            @Override
+            public void indexCommitted(String shardedTableId) throws AnalyticsIndexException {
+                AnalyticsDataIndexer.this.searcherPool.refresh(shardedTableId);
+            }
+        });
+        int searchThreadCount = (int) this.extractLongProperty(properties, 
+                AnalyticsIndexConstants.INDEX_SEARCH_THREAD_COUNT, 
+                AnalyticsIndexConstants.DEFAULT_INDEX_SEARCH_THREAD_COUNT);
+        if (searchThreadCount <= 0) {
+            throw new AnalyticsIndexException("The indexing property '" + 
+                    AnalyticsIndexConstants.INDEX_SEARCH_THREAD_COUNT + "' must be a positive value");
+        }
+        String shardRouting = properties.get(AnalyticsIndexConstants.INDEX_SHARD_ROUTING);
+        if (shardRouting == null || AnalyticsIndexConstants.INDEX_SHARD_ROUTING_ROUND_ROBIN.equals(shardRouting.trim())) {
+            this.idHashRouting = false;
+        } else if (AnalyticsIndexConstants.INDEX_SHARD_ROUTING_ID_HASH.equals(shardRouting.trim())) {
+            this.idHashRouting = true;
+        } else {
+            throw new AnalyticsIndexException("Invalid value for indexing property '" + 
+                    AnalyticsIndexConstants.INDEX_SHARD_ROUTING + "': " + shardRouting);
+        }
+        this.idHashShardCount = (int) this.extractLongProperty(properties, 
+                AnalyticsIndexConstants.INDEX_SHARD_COUNT, LOCAL_SHARD_COUNT);
+        if (this.idHashShardCount <= 0) {
+            throw new AnalyticsIndexException("The indexing property '" + 
+                    AnalyticsIndexConstants.INDEX_SHARD_COUNT + "' must be a positive value");
+        }
+        this.shardSearchExecutor = Executors.newFixedThreadPool(searchThreadCount, new ThreadFactory() {
+            private AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "analytics-index-search-" + this.count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        if (Boolean.parseBoolean(properties.get(AnalyticsIndexConstants.INDEX_ASYNC))) {
+            int workerCount = (int) this.extractLongProperty(properties, 
+                    AnalyticsIndexConstants.INDEX_ASYNC_WORKER_COUNT, 
+                    AnalyticsIndexConstants.DEFAULT_INDEX_ASYNC_WORKER_COUNT);
+            int queueCapacity = (int) this.extractLongProperty(properties, 
+                    AnalyticsIndexConstants.INDEX_ASYNC_QUEUE_CAPACITY, 
+                    AnalyticsIndexConstants.DEFAULT_INDEX_ASYNC_QUEUE_CAPACITY);
+            if (workerCount <= 0 || queueCapacity <= 0) {
+                throw new AnalyticsIndexException("The indexing properties '" + 
+                        AnalyticsIndexConstants.INDEX_ASYNC_WORKER_COUNT + "' and '" + 
+                        AnalyticsIndexConstants.INDEX_ASYNC_QUEUE_CAPACITY + "' must be positive values");
+            }
+            int maxRetries = (int) this.extractLongProperty(properties, 
+                    AnalyticsIndexConstants.INDEX_ASYNC_MAX_RETRIES, 
+                    AnalyticsIndexConstants.DEFAULT_INDEX_ASYNC_MAX_RETRIES);
+            long retryInterval = this.extractLongProperty(properties, 
+                    AnalyticsIndexConstants.INDEX_ASYNC_RETRY_INTERVAL, 
+                    AnalyticsIndexConstants.DEFAULT_INDEX_ASYNC_RETRY_INTERVAL);
+            if (maxRetries < 0 || retryInterval < 0) {
+                throw new AnalyticsIndexException("The indexing properties '" + 
+                        AnalyticsIndexConstants.INDEX_ASYNC_MAX_RETRIES + "' and '" + 
+                        AnalyticsIndexConstants.INDEX_ASYNC_RETRY_INTERVAL + "' cannot be negative");
+            }
+            /* the queue is node specific, other nodes sharing the file system must not replay it */
+            this.indexingQueue = new AnalyticsIndexingQueue(this, INDEX_QUEUE_FS_BASE_PATH + 
+                    this.getLocalUniqueId(), INDEX_QUEUE_FAILED_FS_BASE_PATH + this.getLocalUniqueId(), 
+                    workerCount, queueCapacity, maxRetries, retryInterval);
+        }
+    }
+    
+    private long extractLongProperty(Map<String, String> properties, String name, 
+            long defaultValue) throws AnalyticsIndexException {
+        String value = properties.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new AnalyticsIndexException("Invalid value for indexing property '" + name + "': " + value);
+        }
     }
     
     public AnalyticsFileSystem getFileSystem() {
@@ -107,6 +272,36 @@ public class AnalyticsDataIndexer {
         return repository;
     }
     
+    public AnalyticsIndexWriterPool getWriterPool() {
+        return writerPool;
+    }
+    
+    public AnalyticsIndexSearcherPool getSearcherPool() {
+        return searcherPool;
+    }
+    
+    /**
+     * Returns the asynchronous indexing queue.
+     * @return The indexing queue, or null if asynchronous indexing is not enabled
+     */
+    public AnalyticsIndexingQueue getIndexingQueue() {
+        return indexingQueue;
+    }
+    
+    /**
+     * Waits until the records of the given table, given to the indexer before this call, are indexed.
+     * This returns immediately if asynchronous indexing is not enabled.
+     * @param tenantId The tenant id
+     * @param tableName The table name
+     * @param maxWait The maximum time to wait in milliseconds, -1 to wait indefinitely
+     * @throws AnalyticsIndexException
+     */
+    public void waitForIndexing(int tenantId, String tableName, long maxWait) throws AnalyticsIndexException {
+        if (this.indexingQueue != null) {
+            this.indexingQueue.waitForIndexing(tenantId, tableName, maxWait);
+        }
+    }
+    
     private int getNextIndexShardPosition(int tenantId, String tableName) {
         String id = this.generateGlobalTableId(tenantId, tableName);
         Integer pos = this.indexShardPositions.get(id);
@@ -128,6 +323,13 @@ public class AnalyticsDataIndexer {
     }
     
     private String getLocalUniqueId() {
+        if (this.localUniqueId == null) {
+            this.localUniqueId = this.lookupLocalUniqueId();
+        }
+        return this.localUniqueId;
+    }
+    
+    private String lookupLocalUniqueId() {
         String id = null;
         Enumeration<NetworkInterface> interfaces;
         NetworkInterface nif;
@@ -180,6 +382,83 @@ public class AnalyticsDataIndexer {
         return shardIds.get(pos % shardIds.size());
     }
     
+    private int getIdHashBucket(String id) {
+        /* String.hashCode() is specified, so the bucket of a record id is the same in every node */
+        return (id.hashCode() & Integer.MAX_VALUE) % this.idHashShardCount;
+    }
+    
+    /**
+     * Returns the local shard of the given id-hash bucket, the shards are node specific like the round-robin 
+     * ones, so a shard is only written by the pooled index writer of the node which owns it.
+     */
+    private String getLocalIdHashShardId(int bucket) {
+        return this.getLocalUniqueId() + "_" + ID_HASH_SHARD_PREFIX + bucket;
+    }
+    
+    private boolean isIdHashShardId(String shardId) {
+        return shardId.contains("_" + ID_HASH_SHARD_PREFIX);
+    }
+    
+    /**
+     * Returns the shards of all the nodes for the given id-hash bucket.
+     */
+    private List<String> lookupIdHashShardIds(List<String> shardIds, int bucket) {
+        String suffix = "_" + ID_HASH_SHARD_PREFIX + bucket;
+        List<String> result = new ArrayList<String>();
+        for (String shardId : shardIds) {
+            if (shardId.endsWith(suffix)) {
+                result.add(shardId);
+            }
+        }
+        return result;
+    }
+    
+    private Map<Integer, List<Record>> generateIdHashRecordBatches(List<Record> records) {
+        Map<Integer, List<Record>> result = new HashMap<Integer, List<Record>>();
+        List<Record> recordBatch;
+        int bucket;
+        for (Record record : records) {
+            bucket = this.getIdHashBucket(record.getId());
+            recordBatch = result.get(bucket);
+            if (recordBatch == null) {
+                recordBatch = new ArrayList<Record>();
+                result.put(bucket, recordBatch);
+            }
+            recordBatch.add(record);
+        }
+        return result;
+    }
+    
+    private Map<Integer, List<String>> generateIdHashIdBatches(List<String> ids) {
+        Map<Integer, List<String>> result = new HashMap<Integer, List<String>>();
+        List<String> idBatch;
+        int bucket;
+        for (String id : ids) {
+            bucket = this.getIdHashBucket(id);
+            idBatch = result.get(bucket);
+            if (idBatch == null) {
+                idBatch = new ArrayList<String>();
+                result.put(bucket, idBatch);
+            }
+            idBatch.add(id);
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the shards which were created with round-robin routing, these are still looked up in the 
+     * id-hash routing mode, until the table is migrated.
+     */
+    private List<String> lookupRoundRobinShardIds(List<String> shardIds) {
+        List<String> result = new ArrayList<String>();
+        for (String shardId : shardIds) {
+            if (!this.isIdHashShardId(shardId)) {
+                result.add(shardId);
+            }
+        }
+        return result;
+    }
+    
     private List<String> lookupGloballyExistingShardIds(int tenantId, String tableName) throws AnalyticsIndexException {
         String globalPath = this.generateDirPath(this.generateGlobalTableId(tenantId, tableName));
         try {
@@ -195,31 +474,95 @@ public class AnalyticsDataIndexer {
         }
     }
     
-    public List<SearchResultEntry> search(int tenantId, String tableName, String language, String query, 
-            int start, int count) throws AnalyticsIndexException {
+    private <T> T getShardSearchResult(Future<T> future) throws AnalyticsIndexException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalyticsIndexException("Interrupted in index search: " + e.getMessage(), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof AnalyticsIndexException) {
+                throw (AnalyticsIndexException) e.getCause();
+            }
+            throw new AnalyticsIndexException("Error in index search: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+    
+    private void cancelShardSearches(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+    
+    public List<SearchResultEntry> search(final int tenantId, final String tableName, final String language, 
+            final String query, int start, int count) throws AnalyticsIndexException {
+        if (count <= 0) {
+            return new ArrayList<SearchResultEntry>();
+        }
+        final int topN = start + count;
         List<String> shardIds = this.lookupGloballyExistingShardIds(tenantId, tableName);
-        List<SearchResultEntry> result = new ArrayList<SearchResultEntry>();
-        for (String shardId : shardIds) {
-            result.addAll(this.search(tenantId, tableName, language, query, 0, count + start, shardId));
+        List<Future<List<SearchResultEntry>>> futures = new ArrayList<Future<List<SearchResultEntry>>>(
+                shardIds.size());
+        for (final String shardId : shardIds) {
+            futures.add(this.shardSearchExecutor.submit(new Callable<List<SearchResultEntry>>() {
+                @Override
+                public List<SearchResultEntry> call() throws Exception {
+                    return search(tenantId, tableName, language, query, 0, topN, shardId);
+                }
+            }));
+        }
+        /* a min-heap of the current top N entries, the lowest score is at the head */
+        PriorityQueue<SearchResultEntry> topEntries = new PriorityQueue<SearchResultEntry>(
+                Math.min(topN, 1024));
+        try {
+            for (Future<List<SearchResultEntry>> future : futures) {
+                for (SearchResultEntry entry : this.getShardSearchResult(future)) {
+                    if (topEntries.size() < topN) {
+                        topEntries.add(entry);
+                    } else if (entry.compareTo(topEntries.peek()) > 0) {
+                        topEntries.poll();
+                        topEntries.add(entry);
+                    } else {
+                        /* the shard results are in descending score order, so the rest cannot qualify */
+                        break;
+                    }
+                }
+            }
+        } finally {
+            this.cancelShardSearches(futures);
         }
-        Collections.sort(result);
-        if (result.size() < start) {
+        int resultCount = topEntries.size() - start;
+        if (resultCount <= 0) {
             return new ArrayList<SearchResultEntry>();
         }
-        if (result.size() >= count + start) {
-            result = result.subList(start, start + count);
-        } else {
-            result = result.subList(start, result.size());
+        SearchResultEntry[] result = new SearchResultEntry[resultCount];
+        /* the requested page is at the bottom of the top N entries, so it comes out of the heap first, 
+         * in ascending score order, and the remaining 'start' entries above it are dropped */
+        for (int i = resultCount - 1; i >= 0; i--) {
+            result[i] = topEntries.poll();
         }
-        return result;
+        return new ArrayList<SearchResultEntry>(Arrays.asList(result));
     }
     
-    public int searchCount(int tenantId, String tableName, String language, 
-            String query) throws AnalyticsIndexException {
+    public int searchCount(final int tenantId, final String tableName, final String language, 
+            final String query) throws AnalyticsIndexException {
         List<String> shardIds = this.lookupGloballyExistingShardIds(tenantId, tableName);
+        List<Future<Integer>> futures = new ArrayList<Future<Integer>>(shardIds.size());
+        for (final String shardId : shardIds) {
+            futures.add(this.shardSearchExecutor.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() throws Exception {
+                    return searchCount(tenantId, tableName, language, query, shardId);
+                }
+            }));
+        }
         int result = 0;
-        for (String shardId : shardIds) {
-            result += this.searchCount(tenantId, tableName, language, query, shardId);
+        try {
+            for (Future<Integer> future : futures) {
+                result += this.getShardSearchResult(future);
+            }
+        } finally {
+            this.cancelShardSearches(futures);
         }
         return result;
     }
@@ -228,10 +571,11 @@ public class AnalyticsDataIndexer {
             int start, int count, String shardId) throws AnalyticsIndexException {
         List<SearchResultEntry> result = new ArrayList<SearchResultEntry>();
         String shardedTableId = this.generateShardedTableId(tenantId, tableName, shardId);
-        IndexReader reader = null;
+        IndexSearcher searcher = this.searcherPool.acquire(shardedTableId);
+        if (searcher == null) {
+            return result;
+        }
         try {
-            reader = DirectoryReader.open(this.lookupIndexDir(shardedTableId));
-            IndexSearcher searcher = new IndexSearcher(reader);
             Map<String, IndexType> indices = this.lookupIndices(tenantId, tableName);
             Query indexQuery = new AnalyticsQueryParser(DEFAULT_ANALYZER, indices).parse(query);
             TopScoreDocCollector collector = TopScoreDocCollector.create(count, true);
@@ -247,23 +591,18 @@ public class AnalyticsDataIndexer {
             throw new AnalyticsIndexException("Error in index search, shard table id: '" + 
                     shardedTableId + "': " + e.getMessage(), e);
         } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e) {
-                    log.error("Error in closing the reader: " + e.getMessage(), e);;
-                }
-            }
+            this.searcherPool.release(shardedTableId, searcher);
         }
     }
     
     private int searchCount(int tenantId, String tableName, String language, String query,
             String shardId) throws AnalyticsIndexException {
         String shardedTableId = this.generateShardedTableId(tenantId, tableName, shardId);
-        IndexReader reader = null;
+        IndexSearcher searcher = this.searcherPool.acquire(shardedTableId);
+        if (searcher == null) {
+            return 0;
+        }
         try {
-            reader = DirectoryReader.open(this.lookupIndexDir(shardedTableId));
-            IndexSearcher searcher = new IndexSearcher(reader);
             Map<String, IndexType> indices = this.lookupIndices(tenantId, tableName);
             Query indexQuery = new AnalyticsQueryParser(DEFAULT_ANALYZER, indices).parse(query);
             TotalHitCountCollector collector = new TotalHitCountCollector();
@@ -273,13 +612,7 @@ public class AnalyticsDataIndexer {
             throw new AnalyticsIndexException("Error in index search count, shard table id: '" + 
                     shardedTableId + "': " + e.getMessage(), e);
         } finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                } catch (IOException e) {
-                    log.error("Error in closing the reader: " + e.getMessage(), e);;
-                }
-            }
+            this.searcherPool.release(shardedTableId, searcher);
         }
     }
     
@@ -305,6 +638,14 @@ public class AnalyticsDataIndexer {
      * @throws AnalyticsException
      */
     public void insert(List<Record> records) throws AnalyticsException {
+        if (this.indexingQueue != null) {
+            this.indexingQueue.insert(records);
+        } else {
+            this.insertToIndex(records);
+        }
+    }
+    
+    void insertToIndex(List<Record> records) throws AnalyticsException {
         Map<String, IndexType> indices;
         Map<String, List<Record>> batches = this.generateRecordBatches(records);
         Record firstRecord;
@@ -323,6 +664,14 @@ public class AnalyticsDataIndexer {
      * @throws AnalyticsException
      */
     public void update(List<Record> records) throws AnalyticsException {
+        if (this.indexingQueue != null) {
+            this.indexingQueue.update(records);
+        } else {
+            this.updateInIndex(records);
+        }
+    }
+    
+    void updateInIndex(List<Record> records) throws AnalyticsException {
         Map<String, IndexType> indices;
         Map<String, List<Record>> batches = this.generateRecordBatches(records);
         Record firstRecord;
@@ -343,7 +692,17 @@ public class AnalyticsDataIndexer {
     * @throws AnalyticsException
     */
    public void delete(int tenantId, String tableName, List<String> ids) throws AnalyticsException {
+       /* queued inserts and updates of the table must not be applied after the delete */
+       this.waitForIndexing(tenantId, tableName, -1);
        List<String> shardIds = this.lookupGloballyExistingShardIds(tenantId, tableName);
+       if (this.idHashRouting) {
+           for (Map.Entry<Integer, List<String>> entry : this.generateIdHashIdBatches(ids).entrySet()) {
+               for (String shardId : this.lookupIdHashShardIds(shardIds, entry.getKey())) {
+                   this.delete(tenantId, tableName, entry.getValue(), shardId);
+               }
+           }
+           shardIds = this.lookupRoundRobinShardIds(shardIds);
+       }
        for (String shardId : shardIds) {
            this.delete(tenantId, tableName, ids, shardId);
        }
@@ -354,22 +713,17 @@ public class AnalyticsDataIndexer {
             return;
         }
         String tableId = this.generateShardedTableId(tenantId, tableName, shardId);
-        IndexWriter indexWriter = this.createIndexWriter(tableId);
         List<Term> terms = new ArrayList<Term>(ids.size());
         for (String id : ids) {
             terms.add(new Term(INDEX_ID_INTERNAL_FIELD, id));
         }
+        IndexWriter indexWriter = this.acquireIndexWriter(shardId, tableId);
         try {
             indexWriter.deleteDocuments(terms.toArray(new Term[terms.size()]));
-            indexWriter.commit();
         } catch (IOException e) {
             throw new AnalyticsException("Error in deleting indices: " + e.getMessage(), e);
         } finally {
-            try {
-                indexWriter.close();
-            } catch (IOException e) {
-                log.error("Error closing index writer: " + e.getMessage(), e);
-            }
+            this.releaseIndexWriter(shardId, tableId, indexWriter, ids.size());
         }
     }
     
@@ -382,6 +736,7 @@ public class AnalyticsDataIndexer {
      * @throws AnalyticsException
      */
     public void delete(int tenantId, String tableName, long timeFrom, long timeTo) throws AnalyticsException {
+        this.waitForIndexing(tenantId, tableName, -1);
         List<String> shardIds = this.lookupGloballyExistingShardIds(tenantId, tableName);
         for (String shardId : shardIds) {
             this.delete(tenantId, tableName, timeFrom, timeTo, shardId);
@@ -394,20 +749,16 @@ public class AnalyticsDataIndexer {
             return;
         }
         String tableId = this.generateShardedTableId(tenantId, tableName, shardId);
-        IndexWriter indexWriter = this.createIndexWriter(tableId);        
+        IndexWriter indexWriter = this.acquireIndexWriter(shardId, tableId);
         try {
             Query query = new AnalyticsQueryParser(DEFAULT_ANALYZER, indices).parse(
                     INDEX_INTERNAL_TIMESTAMP_FIELD + ":[" + timeFrom + " TO " + timeTo + "}");
             indexWriter.deleteDocuments(query);
-            indexWriter.commit();
         } catch (Exception e) {
             throw new AnalyticsException("Error in deleting indices: " + e.getMessage(), e);
         } finally {
-            try {
-                indexWriter.close();
-            } catch (IOException e) {
-                log.error("Error closing index writer: " + e.getMessage(), e);
-            }
+            /* the number of matched documents is not known here, so count it as a single change */
+            this.releaseIndexWriter(shardId, tableId, indexWriter, 1);
         }
     }
     
@@ -415,53 +766,174 @@ public class AnalyticsDataIndexer {
         Record firstRecord = recordBatch.get(0);
         int tenantId = firstRecord.getTenantId();
         String tableName = firstRecord.getTableName();
-        String shardId = this.getNextLocalCandidateIndexShardId(tenantId, tableName);
+        if (this.idHashRouting) {
+            for (Map.Entry<Integer, List<Record>> entry : this.generateIdHashRecordBatches(
+                    recordBatch).entrySet()) {
+                this.addToIndex(tenantId, tableName, entry.getValue(), columns, 
+                        this.getLocalIdHashShardId(entry.getKey()));
+            }
+        } else {
+            this.addToIndex(tenantId, tableName, recordBatch, columns, 
+                    this.getNextLocalCandidateIndexShardId(tenantId, tableName));
+        }
+    }
+    
+    private void addToIndex(int tenantId, String tableName, List<Record> recordBatch, 
+            Map<String, IndexType> columns, String shardId) throws AnalyticsIndexException {
         String shardedTableId = this.generateShardedTableId(tenantId, tableName, shardId);
-        IndexWriter indexWriter = this.createIndexWriter(shardedTableId);
+        IndexWriter indexWriter = this.acquireIndexWriter(shardId, shardedTableId);
         try {
             for (Record record : recordBatch) {
                 indexWriter.addDocument(this.generateIndexDoc(record, columns).getFields());
             }
-            indexWriter.commit();
         } catch (IOException e) {
             throw new AnalyticsIndexException("Error in updating index: " + e.getMessage(), e);
         } finally {
-            try {
-                indexWriter.close();
-                //System.out.println("CLOSE INDEX WRITER: " + shardedTableId);
-            } catch (IOException e) {
-                log.error("Error closing index writer: " + e.getMessage(), e);
-            }
+            this.releaseIndexWriter(shardId, shardedTableId, indexWriter, recordBatch.size());
         }
     }
     
-    private void updateIndex(List<Record> recordBatch, Map<String, IndexType> columns) throws AnalyticsIndexException {
+    private void updateIndex(List<Record> recordBatch, Map<String, IndexType> columns) throws AnalyticsException {
         Record firstRecord = recordBatch.get(0);
         int tenantId = firstRecord.getTenantId();
         String tableName = firstRecord.getTableName();
         List<String> shardIds = this.lookupGloballyExistingShardIds(tenantId, tableName);
-        for (String shardId : shardIds) {
-            this.updateIndex(tenantId, tableName, recordBatch, columns, shardId);
+        if (this.idHashRouting) {
+            this.updateInIdHashShards(tenantId, tableName, recordBatch, columns, shardIds);
+            /* the updated documents now live in their id-hash shards, so any older copies in the 
+             * round-robin shards are removed */
+            List<String> roundRobinShardIds = this.lookupRoundRobinShardIds(shardIds);
+            if (roundRobinShardIds.size() > 0) {
+                List<String> ids = this.getRecordIds(recordBatch);
+                for (String shardId : roundRobinShardIds) {
+                    this.delete(tenantId, tableName, ids, shardId);
+                }
+            }
+        } else {
+            for (String shardId : shardIds) {
+                this.updateIndex(tenantId, tableName, recordBatch, columns, shardId);
+            }
+        }
+    }
+    
+    /**
+     * Updates the given records in the local shards of their id-hash buckets, and removes any older copies 
+     * from the shards of the same buckets of the other nodes.
+     */
+    private void updateInIdHashShards(int tenantId, String tableName, List<Record> recordBatch, 
+            Map<String, IndexType> columns, List<String> shardIds) throws AnalyticsException {
+        String localShardId;
+        for (Map.Entry<Integer, List<Record>> entry : this.generateIdHashRecordBatches(recordBatch).entrySet()) {
+            localShardId = this.getLocalIdHashShardId(entry.getKey());
+            this.updateIndex(tenantId, tableName, entry.getValue(), columns, localShardId);
+            for (String shardId : this.lookupIdHashShardIds(shardIds, entry.getKey())) {
+                if (!shardId.equals(localShardId)) {
+                    this.delete(tenantId, tableName, this.getRecordIds(entry.getValue()), shardId);
+                }
+            }
+        }
+    }
+    
+    private List<String> getRecordIds(List<Record> records) {
+        List<String> ids = new ArrayList<String>(records.size());
+        for (Record record : records) {
+            ids.add(record.getId());
+        }
+        return ids;
+    }
+    
+    /**
+     * Migrates the index of the given table from the round-robin shard layout to the id-hash shard layout.
+     * The given records, which should be all the records of the table, are re-indexed in their id-hash 
+     * shards, and the round-robin shards are removed afterwards. Until a table is migrated, updates
+     * and deletes in the id-hash routing mode also visit its remaining round-robin shards.
+     * @param tenantId The tenant id
+     * @param tableName The table name
+     * @param recordIterators The iterators of the records of the table
+     * @throws AnalyticsException
+     */
+    public void migrateToIdHashRouting(int tenantId, String tableName, 
+            List<Iterator<Record>> recordIterators) throws AnalyticsException {
+        if (!this.idHashRouting) {
+            throw new AnalyticsIndexException("Index shard migration requires the indexing property '" + 
+                    AnalyticsIndexConstants.INDEX_SHARD_ROUTING + "' to be '" + 
+                    AnalyticsIndexConstants.INDEX_SHARD_ROUTING_ID_HASH + "'");
+        }
+        this.waitForIndexing(tenantId, tableName, -1);
+        List<String> shardIds = this.lookupGloballyExistingShardIds(tenantId, tableName);
+        List<String> roundRobinShardIds = this.lookupRoundRobinShardIds(shardIds);
+        if (roundRobinShardIds.size() == 0) {
+            return;
+        }
+        Map<String, IndexType> columns = this.lookupIndices(tenantId, tableName);
+        if (columns.size() > 0) {
+            List<Record> recordBatch = new ArrayList<Record>(MIGRATION_BATCH_SIZE);
+            for (Iterator<Record> recordIterator : recordIterators) {
+                while (recordIterator.hasNext()) {
+                    recordBatch.add(recordIterator.next());
+                    if (recordBatch.size() >= MIGRATION_BATCH_SIZE) {
+                        this.updateInIdHashShards(tenantId, tableName, recordBatch, columns, shardIds);
+                        recordBatch.clear();
+                    }
+                }
+            }
+            this.updateInIdHashShards(tenantId, tableName, recordBatch, columns, shardIds);
+            this.flush();
+        }
+        for (String shardId : roundRobinShardIds) {
+            this.removeIndexShard(tenantId, tableName, shardId);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Migrated index to id-hash shards, tenant: " + tenantId + " table: " + tableName + 
+                    " removed shards: " + roundRobinShardIds);
+        }
+    }
+    
+    private void removeIndexShard(int tenantId, String tableName, String shardId) throws AnalyticsIndexException {
+        String shardedTableId = this.generateShardedTableId(tenantId, tableName, shardId);
+        this.writerPool.close(shardedTableId);
+        this.searcherPool.close(shardedTableId);
+        this.closeAndRemoveIndexDir(shardedTableId);
+        if (this.isLocalShard(shardId)) {
+            this.deleteIndexShardDir(shardedTableId);
+            return;
+        }
+        /* the owner of a shard of another node must not have its writer open, while the shard is removed */
+        Lock lock = this.lookupRemoteShardWriteLock(shardedTableId);
+        lock.lock();
+        try {
+            this.acquireWriterLease(shardedTableId);
+            try {
+                this.deleteIndexShardDir(shardedTableId);
+            } finally {
+                this.releaseWriterLease(shardedTableId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private void deleteIndexShardDir(String shardedTableId) throws AnalyticsIndexException {
+        try {
+            this.getFileSystem().delete(this.generateDirPath(shardedTableId));
+        } catch (IOException e) {
+            throw new AnalyticsIndexException("Error in removing index shard directory, shard table id: '" + 
+                    shardedTableId + "': " + e.getMessage(), e);
         }
     }
     
     private void updateIndex(int tenantId, String tableName, List<Record> recordBatch, Map<String, IndexType> columns, String shardId) throws AnalyticsIndexException {
         String shardedTableId = this.generateShardedTableId(tenantId, tableName, shardId);
-        IndexWriter indexWriter = this.createIndexWriter(shardedTableId);
+        IndexWriter indexWriter = this.acquireIndexWriter(shardId, shardedTableId);
         try {
             for (Record record : recordBatch) {
                 indexWriter.updateDocument(new Term(INDEX_ID_INTERNAL_FIELD, record.getId()), 
                         this.generateIndexDoc(record, columns).getFields());
             }
-            indexWriter.commit();
         } catch (IOException e) {
             throw new AnalyticsIndexException("Error in updating index: " + e.getMessage(), e);
         } finally {
-            try {
-                indexWriter.close();
-            } catch (IOException e) {
-                log.error("Error closing index writer: " + e.getMessage(), e);
-            }
+            this.releaseIndexWriter(shardId, shardedTableId, indexWriter, recordBatch.size());
         }
     }
     
@@ -619,6 +1091,104 @@ public class AnalyticsDataIndexer {
         }
     }
     
+    /**
+     * Creates an index writer for a shard, after acquiring the cluster-wide writer lease of the shard, 
+     * if clustering is enabled. Without clustering, the index writers are only coordinated in this node.
+     */
+    private IndexWriter createLeasedIndexWriter(String shardedTableId) throws AnalyticsIndexException {
+        this.acquireWriterLease(shardedTableId);
+        try {
+            return this.createIndexWriter(shardedTableId);
+        } catch (AnalyticsIndexException e) {
+            this.releaseWriterLease(shardedTableId);
+            throw e;
+        }
+    }
+    
+    private void acquireWriterLease(String shardedTableId) throws AnalyticsIndexException {
+        if (this.writerLeases != null) {
+            this.writerLeases.acquire(shardedTableId);
+        }
+    }
+    
+    private void releaseWriterLease(String shardedTableId) {
+        if (this.writerLeases != null) {
+            this.writerLeases.release(shardedTableId);
+        }
+    }
+    
+    private boolean isLocalShard(String shardId) {
+        return shardId.startsWith(this.getLocalUniqueId() + "_");
+    }
+    
+    private Lock lookupRemoteShardWriteLock(String shardedTableId) {
+        Lock lock = this.remoteShardWriteLocks.get(shardedTableId);
+        if (lock == null) {
+            lock = new ReentrantLock();
+            Lock existingLock = this.remoteShardWriteLocks.putIfAbsent(shardedTableId, lock);
+            if (existingLock != null) {
+                lock = existingLock;
+            }
+        }
+        return lock;
+    }
+    
+    /**
+     * Acquires an index writer for a shard, the writers of the local shards are pooled, and the shards of 
+     * the other nodes, which are only written to for updates and deletes, are written with short-lived writers. 
+     * The writer lease of a shard of another node makes its owner close its pooled writer until the 
+     * short-lived writer is closed.
+     */
+    private IndexWriter acquireIndexWriter(String shardId, String shardedTableId) throws AnalyticsIndexException {
+        if (this.isLocalShard(shardId)) {
+            return this.writerPool.acquire(shardedTableId);
+        }
+        /* a node has only a single writer open for a shard, which holds its lease */
+        Lock lock = this.lookupRemoteShardWriteLock(shardedTableId);
+        lock.lock();
+        try {
+            return this.createLeasedIndexWriter(shardedTableId);
+        } catch (AnalyticsIndexException e) {
+            lock.unlock();
+            throw e;
+        }
+    }
+    
+    /**
+     * Releases an index writer acquired with {@link #acquireIndexWriter(String, String)}, a short-lived writer 
+     * is committed and closed here, and its lease is released.
+     */
+    private void releaseIndexWriter(String shardId, String shardedTableId, IndexWriter indexWriter, 
+            int docCount) throws AnalyticsIndexException {
+        if (this.isLocalShard(shardId)) {
+            this.writerPool.release(shardedTableId, docCount);
+            return;
+        }
+        try {
+            indexWriter.close();
+        } catch (IOException e) {
+            throw new AnalyticsIndexException("Error in closing index writer, shard table id: '" + 
+                    shardedTableId + "': " + e.getMessage(), e);
+        } finally {
+            this.releaseWriterLease(shardedTableId);
+            this.lookupRemoteShardWriteLock(shardedTableId).unlock();
+        }
+        this.searcherPool.refresh(shardedTableId);
+    }
+    
+    private SearcherManager createSearcherManager(String tableId) throws AnalyticsIndexException {
+        Directory indexDir = this.lookupIndexDir(tableId);
+        try {
+            /* a shard directory may exist without a commit yet, which is the same as an empty index */
+            if (!DirectoryReader.indexExists(indexDir)) {
+                return null;
+            }
+            return new SearcherManager(indexDir, null);
+        } catch (IOException e) {
+            throw new AnalyticsIndexException("Error in creating searcher manager: " + e.getMessage(), e);
+        }
+    }
+    
     private void deleteIndexData(int tenantId, String tableName) throws AnalyticsIndexException {
         List<String> shardIds = this.lookupGloballyExistingShardIds(tenantId, tableName);
         for (String shardId : shardIds) {
@@ -628,36 +1198,42 @@ public class AnalyticsDataIndexer {
     
     private void deleteIndexData(int tenantId, String tableName, String shardId) throws AnalyticsIndexException {
         String shardedTableId = this.generateShardedTableId(tenantId, tableName, shardId);
-        IndexWriter writer = this.createIndexWriter(shardedTableId);
+        IndexWriter writer = this.acquireIndexWriter(shardId, shardedTableId);
         try {
             writer.deleteAll();
         } catch (IOException e) {
             throw new AnalyticsIndexException("Error in deleting index data: " + e.getMessage(), e);
         } finally {
-            try {
-                writer.close();
-            } catch (IOException e) {
-                log.error("Error in closing index writer: " + e.getMessage(), e);
-            }
+            this.releaseIndexWriter(shardId, shardedTableId, writer, 1);
         }
+        this.writerPool.commit(shardedTableId);
     }
     
     public void clearIndices(int tenantId, String tableName) throws AnalyticsIndexException {
+        this.waitForIndexing(tenantId, tableName, -1);
         String tableId = this.generateGlobalTableId(tenantId, tableName);
         this.indexDefs.remove(tableId);
         this.getRepository().clearAllIndices(tenantId, tableName);
-        this.closeAndRemoveIndexDirs(tenantId, tableName);
         /* delete all global index data, not only local ones */
         this.deleteIndexData(tenantId, tableName);
+        this.closeAndRemoveIndexDirs(tenantId, tableName);
         this.notifyClusterIndexChange(tenantId, tableName);
     }
     
+    /**
+     * Commits all the pending index changes, irrespective of the index commit policy.
+     * @throws AnalyticsIndexException
+     */
+    public void flush() throws AnalyticsIndexException {
+        this.writerPool.commitAll();
+    }
+    
     private String generateShardedTableId(int tenantId, String tableName, String shardId) {
         /* the table names are not case-sensitive */
         return this.generateGlobalTableId(tenantId, tableName) + "/" + shardId;
     }
     
-    private String generateGlobalTableId(int tenantId, String tableName) {
+    String generateGlobalTableId(int tenantId, String tableName) {
         /* the table names are not case-sensitive */
         return tenantId + "_" + tableName.toLowerCase();
     }
@@ -676,8 +1252,17 @@ public class AnalyticsDataIndexer {
     }
     
     private void closeAndRemoveIndexDirs(int tenantId, String tableName) throws AnalyticsIndexException {
-        List<String> tableIds = this.getLocalCandidateIndexShardIds(tenantId, tableName);
-        this.closeAndRemoveIndexDirs(new HashSet<String>(tableIds));
+        String prefix = this.generateGlobalTableId(tenantId, tableName) + "/";
+        /* the writers and searchers must be closed before their directories */
+        this.writerPool.closeAll(prefix);
+        this.searcherPool.closeAll(prefix);
+        Set<String> tableIds = new HashSet<String>();
+        for (String tableId : new ArrayList<String>(this.indexDirs.keySet())) {
+            if (tableId.startsWith(prefix)) {
+                tableIds.add(tableId);
+            }
+        }
+        this.closeAndRemoveIndexDirs(tableIds);
     }
     
     private void closeAndRemoveIndexDir(String tableId) throws AnalyticsIndexException {
@@ -699,6 +1284,15 @@ public class AnalyticsDataIndexer {
     
     public void close() throws AnalyticsIndexException {
         this.indexDefs.clear();
+        if (this.indexingQueue != null) {
+            this.indexingQueue.close();
+        }
+        this.shardSearchExecutor.shutdownNow();
+        this.writerPool.close();
+        if (this.writerLeases != null) {
+            this.writerLeases.close();
+        }
+        this.searcherPool.close();
         this.closeAndRemoveIndexDirs(new HashSet<String>(this.indexDirs.keySet()));
     }
     
@@ -0,0 +1,93 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.indexing;
+
+/**
+ * Constants related to analytics indexing.
+ */
+public class AnalyticsIndexConstants {
+
+    /** the number of pending index changes in a shard, after which the changes are committed,
+     * a value less than or equal to zero disables document count based commits */
+    public static final String INDEX_COMMIT_MAX_PENDING_DOCS = "indexCommitMaxPendingDocs";
+    
+    /** the interval in milliseconds, in which pending index changes are committed periodically,
+     * a value less than or equal to zero disables periodic commits */
+    public static final String INDEX_COMMIT_INTERVAL = "indexCommitIntervalMillis";
+    
+    /** the time in milliseconds, after which an unused index writer of a local shard is committed and closed,
+     * a value less than or equal to zero keeps the writers open until the indexer is closed */
+    public static final String INDEX_WRITER_MAX_IDLE = "indexWriterMaxIdleMillis";
+    
+    /** the maximum time in milliseconds, index searchers can lag behind the changes committed by
+     * other nodes, local commits are visible immediately, a value less than or equal to zero disables
+     * background refreshes */
+    public static final String INDEX_SEARCHER_MAX_STALENESS = "indexSearcherMaxStalenessMillis";
+    
+    /** the number of threads used to search the index shards in parallel */
+    public static final String INDEX_SEARCH_THREAD_COUNT = "indexSearchThreadCount";
+    
+    /** the strategy used to select the index shard a record is written to */
+    public static final String INDEX_SHARD_ROUTING = "indexShardRouting";
+    
+    /** record batches are spread over the local shards of a node, updates and deletes visit all shards */
+    public static final String INDEX_SHARD_ROUTING_ROUND_ROBIN = "roundRobin";
+    
+    /** the shard is selected from a hash of the record id, updates and deletes visit only the owning shard */
+    public static final String INDEX_SHARD_ROUTING_ID_HASH = "idHash";
+    
+    /** the number of shards used with id-hash routing, changing this requires re-indexing */
+    public static final String INDEX_SHARD_COUNT = "indexShardCount";
+    
+    /** enables asynchronous indexing, where records are indexed by background workers through
+     * a persistent queue, rather than in the caller's thread */
+    public static final String INDEX_ASYNC = "indexAsync";
+    
+    /** the number of asynchronous indexing workers */
+    public static final String INDEX_ASYNC_WORKER_COUNT = "indexAsyncWorkerCount";
+    
+    /** the maximum number of queued record batches, after which the callers are blocked */
+    public static final String INDEX_ASYNC_QUEUE_CAPACITY = "indexAsyncQueueCapacity";
+    
+    /** the number of times a failed asynchronous indexing batch is retried, before it is set aside as a 
+     * failed batch, so the later batches of its table are not held back */
+    public static final String INDEX_ASYNC_MAX_RETRIES = "indexAsyncMaxRetries";
+    
+    /** the time in milliseconds to wait before retrying a failed asynchronous indexing batch */
+    public static final String INDEX_ASYNC_RETRY_INTERVAL = "indexAsyncRetryIntervalMillis";
+    
+    public static final int DEFAULT_INDEX_COMMIT_MAX_PENDING_DOCS = 1;
+    
+    public static final long DEFAULT_INDEX_COMMIT_INTERVAL = 0;
+    
+    public static final long DEFAULT_INDEX_WRITER_MAX_IDLE = 300000;
+    
+    public static final long DEFAULT_INDEX_SEARCHER_MAX_STALENESS = 1000;
+    
+    public static final int DEFAULT_INDEX_SEARCH_THREAD_COUNT = 10;
+    
+    public static final int DEFAULT_INDEX_ASYNC_WORKER_COUNT = 2;
+    
+    public static final int DEFAULT_INDEX_ASYNC_QUEUE_CAPACITY = 1000;
+    
+    public static final int DEFAULT_INDEX_ASYNC_MAX_RETRIES = 5;
+    
+    public static final long DEFAULT_INDEX_ASYNC_RETRY_INTERVAL = 5000;
+    
+}
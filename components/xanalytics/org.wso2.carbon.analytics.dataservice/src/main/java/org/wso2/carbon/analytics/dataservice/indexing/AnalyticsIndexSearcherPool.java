@@ -0,0 +1,253 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.indexing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.wso2.carbon.analytics.dataservice.AnalyticsIndexException;
+
+/**
+ * This class represents a pool of cached, reference counted index searchers, one per sharded table id.
+ * The searchers are refreshed after local index commits, and periodically in the background, so
+ * changes done by other nodes are visible after at most the given maximum staleness.
+ */
+public class AnalyticsIndexSearcherPool {
+    
+    private static final Log log = LogFactory.getLog(AnalyticsIndexSearcherPool.class);
+    
+    private ConcurrentMap<String, SearcherManager> searcherManagers = new ConcurrentHashMap<String, SearcherManager>();
+    
+    /* the shards without an index yet, with the time they were last checked */
+    private ConcurrentMap<String, Long> missingIndexShards = new ConcurrentHashMap<String, Long>();
+    
+    private SearcherManagerFactory searcherManagerFactory;
+    
+    private long maxStaleness;
+    
+    private ScheduledExecutorService refreshScheduler;
+    
+    public AnalyticsIndexSearcherPool(SearcherManagerFactory searcherManagerFactory, long maxStaleness) {
+        this.searcherManagerFactory = searcherManagerFactory;
+        this.maxStaleness = maxStaleness;
+        if (this.maxStaleness > 0) {
+            this.refreshScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "analytics-index-searcher-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            this.refreshScheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    refreshAll();
+                }
+            }, this.maxStaleness, this.maxStaleness, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    public long getMaxStaleness() {
+        return maxStaleness;
+    }
+    
+    private SearcherManager lookupSearcherManager(String shardedTableId) throws AnalyticsIndexException {
+        SearcherManager searcherManager = this.searcherManagers.get(shardedTableId);
+        if (searcherManager == null) {
+            if (this.isKnownMissingIndex(shardedTableId)) {
+                return null;
+            }
+            synchronized (this.searcherManagers) {
+                searcherManager = this.searcherManagers.get(shardedTableId);
+                if (searcherManager == null) {
+                    searcherManager = this.searcherManagerFactory.createSearcherManager(shardedTableId);
+                    if (searcherManager != null) {
+                        this.searcherManagers.put(shardedTableId, searcherManager);
+                        this.missingIndexShards.remove(shardedTableId);
+                    } else {
+                        this.missingIndexShards.put(shardedTableId, System.currentTimeMillis());
+                    }
+                }
+            }
+        }
+        return searcherManager;
+    }
+    
+    /**
+     * Checks if a shard was found without an index recently, local commits clear this state through 
+     * {@link #refresh(String)}, and the commits of other nodes are checked for after the maximum staleness.
+     */
+    private boolean isKnownMissingIndex(String shardedTableId) {
+        Long checkedTime = this.missingIndexShards.get(shardedTableId);
+        if (checkedTime == null) {
+            return false;
+        }
+        return this.maxStaleness <= 0 || System.currentTimeMillis() - checkedTime < this.maxStaleness;
+    }
+    
+    /**
+     * Acquires the current index searcher for the given sharded table id, a non-null searcher returned
+     * from here must always be released using {@link #release(String, IndexSearcher)}.
+     * @param shardedTableId The sharded table id
+     * @return The index searcher, or null if an index does not exist yet for the shard
+     * @throws AnalyticsIndexException
+     */
+    public IndexSearcher acquire(String shardedTableId) throws AnalyticsIndexException {
+        SearcherManager searcherManager;
+        while (true) {
+            searcherManager = this.lookupSearcherManager(shardedTableId);
+            if (searcherManager == null) {
+                return null;
+            }
+            try {
+                return searcherManager.acquire();
+            } catch (AlreadyClosedException e) {
+                /* the searcher manager was closed concurrently, retry with a new one */
+                this.searcherManagers.remove(shardedTableId, searcherManager);
+            } catch (IOException e) {
+                throw new AnalyticsIndexException("Error in acquiring index searcher, shard table id: '" + 
+                        shardedTableId + "': " + e.getMessage(), e);
+            }
+        }
+    }
+    
+    /**
+     * Releases a previously acquired index searcher.
+     * @param shardedTableId The sharded table id
+     * @param searcher The index searcher
+     */
+    public void release(String shardedTableId, IndexSearcher searcher) {
+        try {
+            /* the reader is reference counted by the searcher manager, decrementing it directly makes
+             * sure it is released even if the searcher manager is closed in the meantime */
+            searcher.getIndexReader().decRef();
+        } catch (IOException e) {
+            log.error("Error in releasing index searcher, shard table id: '" + shardedTableId + 
+                    "': " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Refreshes the index searcher of the given sharded table id, if it exists, this call blocks 
+     * until the refresh is done, so the changes committed before this are visible to the searches 
+     * done after it.
+     * @param shardedTableId The sharded table id
+     * @throws AnalyticsIndexException
+     */
+    public void refresh(String shardedTableId) throws AnalyticsIndexException {
+        this.missingIndexShards.remove(shardedTableId);
+        SearcherManager searcherManager = this.searcherManagers.get(shardedTableId);
+        if (searcherManager == null) {
+            return;
+        }
+        try {
+            searcherManager.maybeRefreshBlocking();
+        } catch (AlreadyClosedException ignore) {
+            /* closed concurrently, the next lookup will create a fresh one */
+        } catch (IOException e) {
+            throw new AnalyticsIndexException("Error in refreshing index searcher, shard table id: '" + 
+                    shardedTableId + "': " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Refreshes all the cached index searchers.
+     */
+    public void refreshAll() {
+        for (String shardedTableId : new ArrayList<String>(this.searcherManagers.keySet())) {
+            try {
+                this.refresh(shardedTableId);
+            } catch (Throwable e) {
+                log.error("Error in periodic index searcher refresh: " + e.getMessage(), e);
+            }
+        }
+    }
+    
+    /**
+     * Closes the index searcher of the given sharded table id, and removes it from the pool.
+     * @param shardedTableId The sharded table id
+     */
+    public void close(String shardedTableId) {
+        this.missingIndexShards.remove(shardedTableId);
+        SearcherManager searcherManager = this.searcherManagers.remove(shardedTableId);
+        if (searcherManager != null) {
+            try {
+                searcherManager.close();
+            } catch (IOException e) {
+                log.error("Error in closing index searcher, shard table id: '" + shardedTableId + 
+                        "': " + e.getMessage(), e);
+            }
+        }
+    }
+    
+    /**
+     * Closes all the index searchers whose sharded table ids start with the given prefix.
+     * @param prefix The sharded table id prefix
+     */
+    public void closeAll(String prefix) {
+        for (String shardedTableId : new ArrayList<String>(this.missingIndexShards.keySet())) {
+            if (shardedTableId.startsWith(prefix)) {
+                this.missingIndexShards.remove(shardedTableId);
+            }
+        }
+        for (String shardedTableId : new ArrayList<String>(this.searcherManagers.keySet())) {
+            if (shardedTableId.startsWith(prefix)) {
+                this.close(shardedTableId);
+            }
+        }
+    }
+    
+    /**
+     * Stops the background refreshes, and closes all the index searchers.
+     */
+    public void close() {
+        if (this.refreshScheduler != null) {
+            this.refreshScheduler.shutdown();
+        }
+        this.closeAll("");
+    }
+    
+    /**
+     * This interface represents the creation of searcher managers for the pool.
+     */
+    public static interface SearcherManagerFactory {
+        
+        /**
+         * Creates a new searcher manager for the given sharded table id.
+         * @param shardedTableId The sharded table id
+         * @return The searcher manager, or null if an index does not exist yet for the shard
+         * @throws AnalyticsIndexException
+         */
+        SearcherManager createSearcherManager(String shardedTableId) throws AnalyticsIndexException;
+        
+    }
+    
+}
@@ -0,0 +1,421 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.indexing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.lucene.index.IndexWriter;
+import org.wso2.carbon.analytics.dataservice.AnalyticsIndexException;
+
+/**
+ * This class represents a pool of long-lived index writers, one per sharded table id. The pending
+ * changes of the writers are committed when a shard reaches the maximum pending document count, 
+ * periodically with the given commit interval, or when explicitly flushed. The writers which are not used 
+ * for the given maximum idle time are committed and closed.
+ */
+public class AnalyticsIndexWriterPool {
+    
+    private static final Log log = LogFactory.getLog(AnalyticsIndexWriterPool.class);
+    
+    private Map<String, PooledIndexWriter> writers = new ConcurrentHashMap<String, PooledIndexWriter>();
+    
+    private IndexWriterFactory indexWriterFactory;
+    
+    private IndexCommitListener indexCommitListener;
+    
+    private int maxPendingDocs;
+    
+    private long commitInterval;
+    
+    private long maxIdleTime;
+    
+    private ScheduledExecutorService commitScheduler;
+    
+    private AtomicLong commitCount = new AtomicLong();
+    
+    private AtomicLong totalCommitTime = new AtomicLong();
+    
+    private AtomicLong maxCommitTime = new AtomicLong();
+    
+    private volatile long lastCommitTime;
+    
+    public AnalyticsIndexWriterPool(IndexWriterFactory indexWriterFactory, int maxPendingDocs, 
+            long commitInterval, long maxIdleTime) {
+        this.indexWriterFactory = indexWriterFactory;
+        this.maxPendingDocs = maxPendingDocs;
+        this.commitInterval = commitInterval;
+        this.maxIdleTime = maxIdleTime;
+        if (this.commitInterval > 0 || this.maxIdleTime > 0) {
+            this.commitScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "analytics-index-commit");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        if (this.commitInterval > 0) {
+            this.commitScheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        commitAll();
+                    } catch (Throwable e) {
+                        log.error("Error in periodic index commit: " + e.getMessage(), e);
+                    }
+                }
+            }, this.commitInterval, this.commitInterval, TimeUnit.MILLISECONDS);
+        }
+        if (this.maxIdleTime > 0) {
+            this.commitScheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        closeIdleWriters();
+                    } catch (Throwable e) {
+                        log.error("Error in closing idle index writers: " + e.getMessage(), e);
+                    }
+                }
+            }, this.maxIdleTime, this.maxIdleTime, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    public void setIndexCommitListener(IndexCommitListener indexCommitListener) {
+        this.indexCommitListener = indexCommitListener;
+    }
+    
+    public int getMaxPendingDocs() {
+        return maxPendingDocs;
+    }
+    
+    public long getCommitInterval() {
+        return commitInterval;
+    }
+    
+    public long getMaxIdleTime() {
+        return maxIdleTime;
+    }
+    
+    private PooledIndexWriter lookupPooledWriter(String shardedTableId) throws AnalyticsIndexException {
+        PooledIndexWriter pooledWriter = this.writers.get(shardedTableId);
+        if (pooledWriter == null) {
+            synchronized (this.writers) {
+                pooledWriter = this.writers.get(shardedTableId);
+                if (pooledWriter == null) {
+                    pooledWriter = new PooledIndexWriter(shardedTableId, 
+                            this.indexWriterFactory.createIndexWriter(shardedTableId));
+                    this.writers.put(shardedTableId, pooledWriter);
+                }
+            }
+        }
+        return pooledWriter;
+    }
+    
+    /**
+     * Acquires the index writer for the given sharded table id, a successful call to this 
+     * must always be followed by a call to {@link #release(String, int)}.
+     * @param shardedTableId The sharded table id
+     * @return The index writer
+     * @throws AnalyticsIndexException
+     */
+    public IndexWriter acquire(String shardedTableId) throws AnalyticsIndexException {
+        PooledIndexWriter pooledWriter;
+        while (true) {
+            pooledWriter = this.lookupPooledWriter(shardedTableId);
+            pooledWriter.lock.readLock().lock();
+            if (!pooledWriter.closed) {
+                pooledWriter.lastUsedTime = System.currentTimeMillis();
+                return pooledWriter.writer;
+            }
+            /* the writer was closed while we were waiting, retry with a new one */
+            pooledWriter.lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Releases a previously acquired index writer, and commits the pending changes if
+     * the commit policy requires it.
+     * @param shardedTableId The sharded table id
+     * @param docCount The number of documents changed using the writer
+     * @throws AnalyticsIndexException
+     */
+    public void release(String shardedTableId, int docCount) throws AnalyticsIndexException {
+        PooledIndexWriter pooledWriter = this.writers.get(shardedTableId);
+        /* counted while the writer is still held, so a close, which waits for the write lock, 
+         * sees the changes done with it as pending */
+        int pendingDocs = pooledWriter.pendingDocs.addAndGet(docCount);
+        pooledWriter.lock.readLock().unlock();
+        if (this.maxPendingDocs > 0 && pendingDocs >= this.maxPendingDocs) {
+            this.commit(pooledWriter);
+        }
+    }
+    
+    private void commit(PooledIndexWriter pooledWriter) throws AnalyticsIndexException {
+        pooledWriter.lock.readLock().lock();
+        try {
+            if (!pooledWriter.closed) {
+                this.commitWriter(pooledWriter);
+            }
+        } finally {
+            pooledWriter.lock.readLock().unlock();
+        }
+    }
+    
+    private void commitWriter(PooledIndexWriter pooledWriter) throws AnalyticsIndexException {
+        int pendingDocs = pooledWriter.pendingDocs.getAndSet(0);
+        if (pendingDocs == 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            pooledWriter.writer.commit();
+        } catch (IOException e) {
+            pooledWriter.pendingDocs.addAndGet(pendingDocs);
+            throw new AnalyticsIndexException("Error in committing index writer, shard table id: '" + 
+                    pooledWriter.shardedTableId + "': " + e.getMessage(), e);
+        }
+        long time = (System.nanoTime() - start) / 1000000;
+        this.commitCount.incrementAndGet();
+        this.totalCommitTime.addAndGet(time);
+        this.lastCommitTime = time;
+        long max;
+        do {
+            max = this.maxCommitTime.get();
+        } while (time > max && !this.maxCommitTime.compareAndSet(max, time));
+        if (log.isDebugEnabled()) {
+            log.debug("Index commit, shard table id: '" + pooledWriter.shardedTableId + "', documents: " + 
+                    pendingDocs + ", time: " + time + " ms");
+        }
+        if (this.indexCommitListener != null) {
+            this.indexCommitListener.indexCommitted(pooledWriter.shardedTableId);
+        }
+    }
+    
+    /**
+     * Commits the pending changes of the index writer of the given sharded table id, if it exists.
+     * @param shardedTableId The sharded table id
+     * @throws AnalyticsIndexException
+     */
+    public void commit(String shardedTableId) throws AnalyticsIndexException {
+        PooledIndexWriter pooledWriter = this.writers.get(shardedTableId);
+        if (pooledWriter != null) {
+            this.commit(pooledWriter);
+        }
+    }
+    
+    /**
+     * Commits the pending changes of all the pooled index writers.
+     * @throws AnalyticsIndexException
+     */
+    public void commitAll() throws AnalyticsIndexException {
+        for (PooledIndexWriter pooledWriter : new ArrayList<PooledIndexWriter>(this.writers.values())) {
+            this.commit(pooledWriter);
+        }
+    }
+    
+    /**
+     * Commits and closes the index writer of the given sharded table id, and removes it from the pool.
+     * @param shardedTableId The sharded table id
+     * @throws AnalyticsIndexException
+     */
+    public void close(String shardedTableId) throws AnalyticsIndexException {
+        PooledIndexWriter pooledWriter = this.writers.get(shardedTableId);
+        if (pooledWriter == null) {
+            return;
+        }
+        pooledWriter.lock.writeLock().lock();
+        try {
+            if (pooledWriter.closed) {
+                return;
+            }
+            pooledWriter.closed = true;
+            try {
+                this.commitWriter(pooledWriter);
+            } finally {
+                try {
+                    pooledWriter.writer.close();
+                } catch (IOException e) {
+                    log.error("Error closing index writer: " + e.getMessage(), e);
+                }
+                /* the writer is removed only after it is closed, so a new writer for the same shard
+                 * cannot be created while the old one still holds the index lock */
+                this.writers.remove(shardedTableId);
+                this.indexWriterFactory.indexWriterClosed(shardedTableId);
+            }
+        } finally {
+            pooledWriter.lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Commits and closes the index writers, which are not used for the maximum idle time.
+     * @throws AnalyticsIndexException
+     */
+    public void closeIdleWriters() throws AnalyticsIndexException {
+        long idleSince = System.currentTimeMillis() - this.maxIdleTime;
+        for (PooledIndexWriter pooledWriter : new ArrayList<PooledIndexWriter>(this.writers.values())) {
+            if (pooledWriter.lastUsedTime < idleSince) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Closing idle index writer, shard table id: '" + pooledWriter.shardedTableId + "'");
+                }
+                this.close(pooledWriter.shardedTableId);
+            }
+        }
+    }
+    
+    /**
+     * Closes all the pooled index writers whose sharded table ids start with the given prefix.
+     * @param prefix The sharded table id prefix
+     * @throws AnalyticsIndexException
+     */
+    public void closeAll(String prefix) throws AnalyticsIndexException {
+        for (String shardedTableId : new ArrayList<String>(this.writers.keySet())) {
+            if (shardedTableId.startsWith(prefix)) {
+                this.close(shardedTableId);
+            }
+        }
+    }
+    
+    /**
+     * Stops the periodic commits, and commits and closes all the pooled index writers.
+     * @throws AnalyticsIndexException
+     */
+    public void close() throws AnalyticsIndexException {
+        if (this.commitScheduler != null) {
+            this.commitScheduler.shutdown();
+        }
+        AnalyticsIndexException error = null;
+        for (String shardedTableId : new ArrayList<String>(this.writers.keySet())) {
+            try {
+                this.close(shardedTableId);
+            } catch (AnalyticsIndexException e) {
+                log.error(e.getMessage(), e);
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+    
+    public List<String> getPooledShardedTableIds() {
+        return new ArrayList<String>(this.writers.keySet());
+    }
+    
+    public int getPendingDocCount(String shardedTableId) {
+        PooledIndexWriter pooledWriter = this.writers.get(shardedTableId);
+        if (pooledWriter == null) {
+            return 0;
+        }
+        return pooledWriter.pendingDocs.get();
+    }
+    
+    public long getPendingDocCount() {
+        long result = 0;
+        for (PooledIndexWriter pooledWriter : this.writers.values()) {
+            result += pooledWriter.pendingDocs.get();
+        }
+        return result;
+    }
+    
+    public long getCommitCount() {
+        return this.commitCount.get();
+    }
+    
+    public long getTotalCommitTime() {
+        return this.totalCommitTime.get();
+    }
+    
+    public double getAverageCommitTime() {
+        long count = this.commitCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        return this.totalCommitTime.get() / (double) count;
+    }
+    
+    public long getMaxCommitTime() {
+        return this.maxCommitTime.get();
+    }
+    
+    public long getLastCommitTime() {
+        return lastCommitTime;
+    }
+    
+    /**
+     * This interface represents the creation of index writers for the pool, and it is notified after 
+     * a pooled writer is closed.
+     */
+    public static interface IndexWriterFactory {
+        
+        IndexWriter createIndexWriter(String shardedTableId) throws AnalyticsIndexException;
+        
+        void indexWriterClosed(String shardedTableId);
+        
+    }
+    
+    /**
+     * This interface represents a listener which is notified after index changes are committed.
+     */
+    public static interface IndexCommitListener {
+        
+        void indexCommitted(String shardedTableId) throws AnalyticsIndexException;
+        
+    }
+    
+    /**
+     * This class represents a pooled index writer along with its pending document count.
+     */
+    private class PooledIndexWriter {
+        
+        private String shardedTableId;
+        
+        private IndexWriter writer;
+        
+        private AtomicInteger pendingDocs = new AtomicInteger();
+        
+        private ReadWriteLock lock = new ReentrantReadWriteLock();
+        
+        private volatile boolean closed;
+        
+        private volatile long lastUsedTime = System.currentTimeMillis();
+        
+        public PooledIndexWriter(String shardedTableId, IndexWriter writer) {
+            this.shardedTableId = shardedTableId;
+            this.writer = writer;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,588 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.dataservice.indexing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.analytics.dataservice.AnalyticsIndexException;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsFileSystem;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsFileSystem.DataInput;
+import org.wso2.carbon.analytics.datasource.core.Record;
+import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+
+/**
+ * This class represents a bounded, persistent work queue for asynchronous indexing. Each queued batch of
+ * records is first written to the analytics file system, and removed from there after it is indexed,
+ * so batches which are not indexed yet are replayed on the next start. Batches of the same table are
+ * always processed in order by the same worker. A batch which still fails after the maximum number of 
+ * retries is moved to the failed batches path, where it is kept for inspection, and can be replayed by 
+ * moving it back to the queue path.
+ */
+public class AnalyticsIndexingQueue {
+    
+    private static final Log log = LogFactory.getLog(AnalyticsIndexingQueue.class);
+    
+    private static final byte OPERATION_INSERT = 0;
+    
+    private static final byte OPERATION_UPDATE = 1;
+    
+    private static final long WORKER_POLL_INTERVAL = 500;
+    
+    private AnalyticsDataIndexer indexer;
+    
+    private String basePath;
+    
+    private String failedPath;
+    
+    private int maxRetries;
+    
+    private long retryInterval;
+    
+    private List<BlockingQueue<IndexingTask>> workerQueues;
+    
+    private List<Thread> workers;
+    
+    private AtomicLong sequence = new AtomicLong();
+    
+    private Map<String, TableIndexingState> tableStates = new ConcurrentHashMap<String, TableIndexingState>();
+    
+    private volatile boolean closed;
+    
+    public AnalyticsIndexingQueue(AnalyticsDataIndexer indexer, String basePath, String failedPath, 
+            int workerCount, int capacity, int maxRetries, long retryInterval) throws AnalyticsIndexException {
+        this.indexer = indexer;
+        this.basePath = basePath;
+        this.failedPath = failedPath;
+        this.maxRetries = maxRetries;
+        this.retryInterval = retryInterval;
+        List<IndexingTask> persistedTasks = this.loadPersistedTasks();
+        int workerCapacity = Math.max(1, capacity / workerCount);
+        this.workerQueues = new ArrayList<BlockingQueue<IndexingTask>>(workerCount);
+        this.workers = new ArrayList<Thread>(workerCount);
+        Thread worker;
+        for (int i = 0; i < workerCount; i++) {
+            BlockingQueue<IndexingTask> workerQueue = new ArrayBlockingQueue<IndexingTask>(workerCapacity);
+            this.workerQueues.add(workerQueue);
+            worker = new Thread(new IndexingWorker(workerQueue), "analytics-indexing-worker-" + i);
+            worker.setDaemon(true);
+            this.workers.add(worker);
+            worker.start();
+        }
+        if (persistedTasks.size() > 0) {
+            log.info("Replaying " + persistedTasks.size() + " pending asynchronous indexing batches");
+        }
+        for (IndexingTask task : persistedTasks) {
+            this.enqueue(task);
+        }
+    }
+    
+    /**
+     * Queues the given records to be added to the index, this blocks if the queue is full.
+     * @param records The records to be indexed
+     * @throws AnalyticsException
+     */
+    public void insert(List<Record> records) throws AnalyticsException {
+        this.enqueue(OPERATION_INSERT, records);
+    }
+    
+    /**
+     * Queues the given records to be updated in the index, this blocks if the queue is full.
+     * @param records The records to be indexed
+     * @throws AnalyticsException
+     */
+    public void update(List<Record> records) throws AnalyticsException {
+        this.enqueue(OPERATION_UPDATE, records);
+    }
+    
+    private void enqueue(byte operation, List<Record> records) throws AnalyticsException {
+        if (this.closed) {
+            throw new AnalyticsIndexException("The asynchronous indexing queue is closed");
+        }
+        Map<String, List<Record>> batches = new HashMap<String, List<Record>>();
+        List<Record> batch;
+        String tableId;
+        for (Record record : records) {
+            tableId = this.indexer.generateGlobalTableId(record.getTenantId(), record.getTableName());
+            batch = batches.get(tableId);
+            if (batch == null) {
+                batch = new ArrayList<Record>();
+                batches.put(tableId, batch);
+            }
+            batch.add(record);
+        }
+        Record firstRecord;
+        TableIndexingState state;
+        IndexingTask task;
+        for (Map.Entry<String, List<Record>> entry : batches.entrySet()) {
+            firstRecord = entry.getValue().get(0);
+            /* tables without indices do not need to go through the queue at all */
+            if (this.indexer.lookupIndices(firstRecord.getTenantId(), firstRecord.getTableName()).size() == 0) {
+                continue;
+            }
+            state = this.lookupTableState(entry.getKey());
+            /* the sequence allocation, persisting and queueing of a table's batches is a single step, 
+             * so the batches reach the worker in sequence order */
+            synchronized (state.enqueueLock) {
+                if (this.closed) {
+                    throw new AnalyticsIndexException("The asynchronous indexing queue is closed");
+                }
+                task = new IndexingTask(this.sequence.incrementAndGet(), operation, entry.getKey(), 
+                        entry.getValue());
+                this.persistTask(task);
+                this.enqueue(state, task);
+            }
+        }
+    }
+    
+    private void enqueue(IndexingTask task) throws AnalyticsIndexException {
+        TableIndexingState state = this.lookupTableState(task.tableId);
+        synchronized (state.enqueueLock) {
+            this.enqueue(state, task);
+        }
+    }
+    
+    private void enqueue(TableIndexingState state, IndexingTask task) throws AnalyticsIndexException {
+        state.add(task);
+        BlockingQueue<IndexingTask> workerQueue = this.workerQueues.get(
+                (task.tableId.hashCode() & Integer.MAX_VALUE) % this.workerQueues.size());
+        try {
+            /* offered with a timeout rather than put, so producers blocked on a full queue see a close */
+            while (!workerQueue.offer(task, WORKER_POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+                if (this.closed) {
+                    state.done(task);
+                    throw new AnalyticsIndexException("The asynchronous indexing queue is closed, " +
+                            "the records will be indexed on the next start");
+                }
+            }
+        } catch (InterruptedException e) {
+            state.done(task);
+            Thread.currentThread().interrupt();
+            throw new AnalyticsIndexException("Interrupted while queueing records for indexing, " +
+                    "they will be indexed on the next start: " + e.getMessage(), e);
+        }
+    }
+    
+    private TableIndexingState lookupTableState(String tableId) {
+        TableIndexingState state = this.tableStates.get(tableId);
+        if (state == null) {
+            synchronized (this.tableStates) {
+                state = this.tableStates.get(tableId);
+                if (state == null) {
+                    state = new TableIndexingState();
+                    this.tableStates.put(tableId, state);
+                }
+            }
+        }
+        return state;
+    }
+    
+    /**
+     * Waits until all the batches of the given table, queued before this call, are processed. A batch which 
+     * fails is retried up to the maximum number of retries, and is then moved to the failed batches path.
+     * @param tenantId The tenant id
+     * @param tableName The table name
+     * @param maxWait The maximum time to wait in milliseconds, -1 to wait indefinitely
+     * @throws AnalyticsIndexException If the batches are not processed within the given time
+     */
+    public void waitForIndexing(int tenantId, String tableName, long maxWait) throws AnalyticsIndexException {
+        TableIndexingState state = this.tableStates.get(this.indexer.generateGlobalTableId(tenantId, tableName));
+        if (state == null) {
+            return;
+        }
+        try {
+            if (!state.waitFor(tenantId, tableName, this.sequence.get(), maxWait)) {
+                throw new AnalyticsIndexException("Timed out waiting for indexing, tenant: " + tenantId + 
+                        " table: " + tableName);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AnalyticsIndexException("Interrupted while waiting for indexing: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Returns the indexing lag of the given table, which is the time the oldest queued batch of the table 
+     * has been waiting to be indexed.
+     * @param tenantId The tenant id
+     * @param tableName The table name
+     * @return The indexing lag in milliseconds, 0 if there are no queued records
+     */
+    public long getIndexingLag(int tenantId, String tableName) {
+        TableIndexingState state = this.tableStates.get(this.indexer.generateGlobalTableId(tenantId, tableName));
+        if (state == null) {
+            return 0;
+        }
+        return state.getLag();
+    }
+    
+    /**
+     * Returns the number of records of the given table, which are queued but not indexed yet.
+     * @param tenantId The tenant id
+     * @param tableName The table name
+     * @return The queued record count
+     */
+    public long getPendingRecordCount(int tenantId, String tableName) {
+        TableIndexingState state = this.tableStates.get(this.indexer.generateGlobalTableId(tenantId, tableName));
+        if (state == null) {
+            return 0;
+        }
+        return state.getPendingRecordCount();
+    }
+    
+    private String generateTaskPath(long seq) {
+        return this.generateTaskPath(this.basePath, seq);
+    }
+    
+    private String generateTaskPath(String path, long seq) {
+        /* zero padded, so the lexical order of the paths is the queue order */
+        return path + "/" + String.format("%019d", seq);
+    }
+    
+    private void persistTask(IndexingTask task) throws AnalyticsIndexException {
+        this.persistTask(task, this.generateTaskPath(task.seq));
+    }
+    
+    private void persistTask(IndexingTask task, String path) throws AnalyticsIndexException {
+        OutputStream out = null;
+        try {
+            byte[] data = this.encodeTask(task);
+            out = this.indexer.getFileSystem().createOutput(path);
+            out.write(data, 0, data.length);
+        } catch (Exception e) {
+            throw new AnalyticsIndexException("Error in persisting indexing batch: " + e.getMessage(), e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    log.error("Error in closing data output: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+    
+    private void removePersistedTask(IndexingTask task) {
+        try {
+            this.indexer.getFileSystem().delete(this.generateTaskPath(task.seq));
+        } catch (IOException e) {
+            log.error("Error in removing indexed batch, it will be indexed again on the next start: " + 
+                    e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Moves a batch, which could not be indexed, to the failed batches path. If this fails, the batch is left 
+     * in the queue path, and is retried on the next start.
+     */
+    private void moveToFailedPath(IndexingTask task) {
+        String path = this.generateTaskPath(this.failedPath, task.seq);
+        try {
+            this.persistTask(task, path);
+        } catch (AnalyticsIndexException e) {
+            log.error("Error in moving failed indexing batch of table '" + task.tableId + 
+                    "', it will be retried on the next start: " + e.getMessage(), e);
+            return;
+        }
+        this.removePersistedTask(task);
+        log.error("Asynchronous indexing of table '" + task.tableId + "' failed after " + (this.maxRetries + 1) + 
+                " attempts, the batch of " + task.records.size() + " records is moved to '" + path + "', " + 
+                "it can be replayed by moving it back to '" + this.basePath + "' before a restart");
+    }
+    
+    private List<IndexingTask> loadPersistedTasks() throws AnalyticsIndexException {
+        AnalyticsFileSystem fs = this.indexer.getFileSystem();
+        List<IndexingTask> result = new ArrayList<IndexingTask>();
+        try {
+            if (!fs.exists(this.basePath)) {
+                return result;
+            }
+            List<String> names = new ArrayList<String>(fs.list(this.basePath));
+            Collections.sort(names);
+            long seq;
+            for (String name : names) {
+                seq = Long.parseLong(name);
+                result.add(this.decodeTask(seq, this.readFile(fs, this.generateTaskPath(seq))));
+                this.sequence.set(seq);
+            }
+            return result;
+        } catch (Exception e) {
+            throw new AnalyticsIndexException("Error in loading persisted indexing batches: " + 
+                    e.getMessage(), e);
+        }
+    }
+    
+    private byte[] readFile(AnalyticsFileSystem fs, String path) throws IOException {
+        DataInput in = fs.createInput(path);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buff = new byte[1024];
+            int i;
+            while ((i = in.read(buff, 0, buff.length)) > 0) {
+                out.write(buff, 0, i);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+    
+    private byte[] encodeTask(IndexingTask task) throws IOException, AnalyticsException {
+        ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(byteOut);
+        out.writeByte(task.operation);
+        out.writeUTF(task.tableId);
+        out.writeInt(task.records.size());
+        byte[] values;
+        for (Record record : task.records) {
+            out.writeUTF(record.getId());
+            out.writeInt(record.getTenantId());
+            out.writeUTF(record.getTableName());
+            out.writeLong(record.getTimestamp());
+            values = GenericUtils.encodeRecordValues(record.getValues());
+            out.writeInt(values.length);
+            out.write(values);
+        }
+        out.close();
+        return byteOut.toByteArray();
+    }
+    
+    private IndexingTask decodeTask(long seq, byte[] data) throws IOException, AnalyticsException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        byte operation = in.readByte();
+        String tableId = in.readUTF();
+        int count = in.readInt();
+        List<Record> records = new ArrayList<Record>(count);
+        String id, tableName;
+        int tenantId;
+        long timestamp;
+        byte[] values;
+        for (int i = 0; i < count; i++) {
+            id = in.readUTF();
+            tenantId = in.readInt();
+            tableName = in.readUTF();
+            timestamp = in.readLong();
+            values = new byte[in.readInt()];
+            in.readFully(values);
+            records.add(new Record(id, tenantId, tableName, GenericUtils.decodeRecordValues(values, null), 
+                    timestamp));
+        }
+        return new IndexingTask(seq, operation, tableId, records);
+    }
+    
+    /**
+     * Stops the indexing workers, the batches which are not indexed yet remain persisted, and are 
+     * indexed on the next start.
+     */
+    public void close() {
+        this.closed = true;
+        for (TableIndexingState state : this.tableStates.values()) {
+            state.wakeUp();
+        }
+        for (Thread worker : this.workers) {
+            try {
+                worker.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+    }
+    
+    /**
+     * This class represents a queued batch of records of a single table.
+     */
+    private class IndexingTask {
+        
+        private long seq;
+        
+        private byte operation;
+        
+        private String tableId;
+        
+        private List<Record> records;
+        
+        private long queuedTime;
+        
+        public IndexingTask(long seq, byte operation, String tableId, List<Record> records) {
+            this.seq = seq;
+            this.operation = operation;
+            this.tableId = tableId;
+            this.records = records;
+            this.queuedTime = System.currentTimeMillis();
+        }
+        
+    }
+    
+    /**
+     * This class keeps track of the queued batches of a table.
+     */
+    private class TableIndexingState {
+        
+        private final Object enqueueLock = new Object();
+        
+        private LinkedList<IndexingTask> pendingTasks = new LinkedList<IndexingTask>();
+        
+        private long pendingRecordCount;
+        
+        public synchronized void add(IndexingTask task) {
+            this.pendingTasks.add(task);
+            this.pendingRecordCount += task.records.size();
+        }
+        
+        public synchronized void done(IndexingTask task) {
+            if (this.pendingTasks.remove(task)) {
+                this.pendingRecordCount -= task.records.size();
+            }
+            this.notifyAll();
+        }
+        
+        public synchronized void wakeUp() {
+            this.notifyAll();
+        }
+        
+        public synchronized boolean waitFor(int tenantId, String tableName, long seq, 
+                long maxWait) throws InterruptedException, AnalyticsIndexException {
+            long end = System.currentTimeMillis() + maxWait;
+            long remaining;
+            while (this.pendingTasks.size() > 0 && this.pendingTasks.getFirst().seq <= seq) {
+                if (closed) {
+                    throw new AnalyticsIndexException("The asynchronous indexing queue is closed, tenant: " + 
+                            tenantId + " table: " + tableName);
+                }
+                if (maxWait < 0) {
+                    this.wait();
+                } else {
+                    remaining = end - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    this.wait(remaining);
+                }
+            }
+            return true;
+        }
+        
+        public synchronized long getLag() {
+            if (this.pendingTasks.size() == 0) {
+                return 0;
+            }
+            return System.currentTimeMillis() - this.pendingTasks.getFirst().queuedTime;
+        }
+        
+        public synchronized long getPendingRecordCount() {
+            return pendingRecordCount;
+        }
+        
+    }
+    
+    /**
+     * This class represents an indexing worker, which processes the batches of its queue in order.
+     */
+    private class IndexingWorker implements Runnable {
+        
+        private BlockingQueue<IndexingTask> workerQueue;
+        
+        public IndexingWorker(BlockingQueue<IndexingTask> workerQueue) {
+            this.workerQueue = workerQueue;
+        }
+        
+        @Override
+        public void run() {
+            IndexingTask task;
+            while (!closed) {
+                try {
+                    /* the workers are not interrupted to stop them, since an interrupt while writing 
+                     * to an index fails the index writer */
+                    task = this.workerQueue.poll(WORKER_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (task == null) {
+                    continue;
+                }
+                if (!this.process(task)) {
+                    break;
+                }
+            }
+        }
+        
+        /**
+         * Indexes the given batch, retrying it up to the maximum number of retries before the later batches 
+         * of the table are indexed, after which it is moved to the failed batches path. A batch which is 
+         * not indexed when the queue is closed remains persisted.
+         * @return false if the worker should stop
+         */
+        private boolean process(IndexingTask task) {
+            TableIndexingState state = lookupTableState(task.tableId);
+            int attempt = 0;
+            while (!closed) {
+                try {
+                    if (task.operation == OPERATION_INSERT) {
+                        indexer.insertToIndex(task.records);
+                    } else {
+                        indexer.updateInIndex(task.records);
+                    }
+                    removePersistedTask(task);
+                    state.done(task);
+                    return true;
+                } catch (Throwable e) {
+                    if (attempt >= maxRetries) {
+                        log.error("Error in asynchronous indexing of table '" + task.tableId + "': " + 
+                                e.getMessage(), e);
+                        moveToFailedPath(task);
+                        state.done(task);
+                        return true;
+                    }
+                    log.error("Error in asynchronous indexing of table '" + task.tableId + 
+                            "', retrying in " + retryInterval + " ms: " + e.getMessage(), e);
+                }
+                attempt++;
+                try {
+                    for (long i = 0; i < retryInterval && !closed; i += WORKER_POLL_INTERVAL) {
+                        Thread.sleep(Math.min(WORKER_POLL_INTERVAL, retryInterval - i));
+                    }
+                } catch (InterruptedException e) {
+                    return false;
+                }
+            }
+            return false;
+        }
+        
+    }
+    
+}
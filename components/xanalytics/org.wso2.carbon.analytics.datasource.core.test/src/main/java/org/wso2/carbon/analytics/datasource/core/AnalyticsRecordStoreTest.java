@@ -18,11 +18,15 @@
  */
 package org.wso2.carbon.analytics.datasource.core;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.naming.Context;
 
@@ -31,7 +35,11 @@ import org.testng.Assert;
 import org.testng.annotations.AfterTest;
 import org.testng.annotations.Test;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.ColumnVector;
 import org.wso2.carbon.analytics.datasource.core.Record;
+import org.wso2.carbon.analytics.datasource.core.RecordBatch;
+import org.wso2.carbon.analytics.datasource.core.RecordBatchIterator;
+import org.wso2.carbon.analytics.datasource.core.RecordBatchReader;
 import org.wso2.carbon.analytics.datasource.core.RecordGroup;
 import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
 
@@ -58,6 +66,30 @@ public class AnalyticsRecordStoreTest {
     public String getImplementationName() {
         return implementationName;
     }
+    
+    /**
+     * Checks if the record store compresses the tables "T1_LZ4" and "T1_DEFLATE", the record compression 
+     * tests are only run for such stores.
+     */
+    protected boolean isRecordCompressionSupported() {
+        return false;
+    }
+    
+    /**
+     * Returns the number of bytes the record store actually uses to keep the record values of the given table, 
+     * to be overridden by the stores which support record compression.
+     */
+    protected long getStoredRecordValuesSize(int tenantId, String tableName) throws AnalyticsException {
+        return -1;
+    }
+    
+    /**
+     * Returns the number of record groups the record store splits full range reads into, the record group 
+     * splitting tests are only run for stores which split them into more than one.
+     */
+    protected int getRecordGroupSplitCount() {
+        return 1;
+    }
 
     private Record createRecord(int tenantId, String tableName, String serverName, String ip, int tenant, String log) {
         Map<String, Object> values = new HashMap<String, Object>();
@@ -380,6 +412,150 @@ public class AnalyticsRecordStoreTest {
         this.cleanupT1();
     }
     
+    private List<Record> readRecordsWithContinuation(long timeFrom, long timeTo, int pageSize) throws AnalyticsException {
+        List<Record> result = new ArrayList<Record>();
+        String token = null;
+        List<Record> page;
+        do {
+            page = GenericUtils.listRecords(this.analyticsRS, this.analyticsRS.get(7, "T1", null, timeFrom, timeTo, token, pageSize));
+            Assert.assertTrue(page.size() <= pageSize);
+            if (page.size() > 0) {
+                token = RecordContinuationToken.generate(page.get(page.size() - 1));
+            }
+            result.addAll(page);
+        } while (page.size() == pageSize);
+        return result;
+    }
+    
+    @Test
+    public void testReadRecordBatches() throws AnalyticsException {
+        this.cleanupT1();
+        this.analyticsRS.createTable(7, "T1");
+        List<Record> records = generateRecords(7, "T1", 1, 250, -1, -1);
+        this.analyticsRS.insert(records);
+        List<String> columns = Arrays.asList("server_name", "tenant", "spam_index", "sequence", "important", 
+                "summary2");
+        RecordGroup[] rgs = this.analyticsRS.get(7, "T1", columns, -1, -1, 0, -1);
+        Map<String, Record> recordsById = new HashMap<String, Record>();
+        for (Record record : records) {
+            recordsById.put(record.getId(), record);
+        }
+        int count = 0;
+        for (RecordGroup rg : rgs) {
+            Iterator<RecordBatch> batchItr;
+            if (this.analyticsRS instanceof RecordBatchReader) {
+                batchItr = ((RecordBatchReader) this.analyticsRS).readRecordBatches(rg, columns, 100);
+            } else {
+                batchItr = new RecordBatchIterator(this.analyticsRS.readRecords(rg), columns, 100);
+            }
+            while (batchItr.hasNext()) {
+                RecordBatch batch = batchItr.next();
+                Assert.assertTrue(batch.size() <= 100);
+                Assert.assertTrue(batch.getColumnVector("server_name") instanceof ColumnVector.StringVector);
+                Assert.assertTrue(batch.getColumnVector("sequence") instanceof ColumnVector.LongVector);
+                Assert.assertTrue(batch.getColumnVector("spam_index") instanceof ColumnVector.DoubleVector);
+                for (int i = 0; i < batch.size(); i++) {
+                    Record record = recordsById.get(batch.getIds()[i]);
+                    Assert.assertEquals(batch.getTimestamps()[i], record.getTimestamp());
+                    for (String column : columns) {
+                        Assert.assertEquals(batch.getColumnVector(column).getObject(i), record.getValue(column));
+                    }
+                    Assert.assertTrue(batch.getColumnVector("summary2").isNull(i));
+                }
+                count += batch.size();
+            }
+        }
+        Assert.assertEquals(count, records.size());
+        this.cleanupT1();
+    }
+    
+    @Test
+    public void testMultipleDataRecordAddRetieveWithContinuation() throws AnalyticsException {
+        this.cleanupT1();
+        this.analyticsRS.createTable(7, "T1");
+        long time = System.currentTimeMillis();
+        int timeOffset = 10;
+        List<Record> records = generateRecords(7, "T1", 2, 150, time, timeOffset);
+        /* records with the same timestamp should be paged by their ids */
+        records.addAll(generateRecords(7, "T1", 3, 50, time + timeOffset * 20, 0));
+        this.analyticsRS.insert(records);
+        List<Record> recordsIn = this.readRecordsWithContinuation(-1, -1, 17);
+        Assert.assertEquals(recordsIn.size(), 200);
+        Assert.assertEquals(new HashSet<Record>(recordsIn), new HashSet<Record>(records));
+        for (int i = 1; i < recordsIn.size(); i++) {
+            Assert.assertTrue(recordsIn.get(i - 1).getTimestamp() <= recordsIn.get(i).getTimestamp());
+        }
+        recordsIn = this.readRecordsWithContinuation(time + timeOffset * 20, time + timeOffset * 21, 7);
+        Assert.assertEquals(recordsIn.size(), 51);
+        Assert.assertEquals(new HashSet<Record>(recordsIn).size(), 51);
+        recordsIn = this.readRecordsWithContinuation(time + 55, time + timeOffset * 198 - 5, 20);
+        Assert.assertEquals(recordsIn.size(), 194);
+        recordsIn = GenericUtils.listRecords(this.analyticsRS, this.analyticsRS.get(7, "T1", null, -1, -1, null, -1));
+        Assert.assertEquals(recordsIn.size(), 200);
+        Assert.assertEquals(new HashSet<Record>(recordsIn), new HashSet<Record>(records));
+        recordsIn = GenericUtils.listRecords(this.analyticsRS, this.analyticsRS.get(7, "T1", null, -1, -1, null, 120));
+        Assert.assertEquals(recordsIn.size(), 120);
+        this.cleanupT1();
+    }
+    
+    @Test
+    public void testRecordGroupSplitting() throws AnalyticsException {
+        if (this.getRecordGroupSplitCount() <= 1) {
+            return;
+        }
+        this.cleanupT1();
+        checkRecordGroupSplitting(this.analyticsRS, 7, "T1", this.getRecordGroupSplitCount());
+        this.cleanupT1();
+    }
+    
+    /**
+     * Checks that a full range read of the given table, with evenly spread records, is split into the given 
+     * number of record groups, which are disjoint and roughly balanced, and for {@link DirectRecordGroup}s, 
+     * also contiguous in time, covering the whole range.
+     */
+    public static void checkRecordGroupSplitting(AnalyticsRecordStore rs, int tenantId, String tableName, 
+            int splitCount) throws AnalyticsException {
+        rs.deleteTable(tenantId, tableName);
+        rs.createTable(tenantId, tableName);
+        try {
+            List<Record> records = generateRecords(tenantId, tableName, 1, 400, System.currentTimeMillis(), 10);
+            rs.insert(records);
+            RecordGroup[] rgs = rs.get(tenantId, tableName, null, -1, -1, null, -1);
+            Assert.assertEquals(rgs.length, splitCount);
+            Set<String> ids = new HashSet<String>();
+            List<Record> groupRecords;
+            long timeFrom = -1;
+            for (int i = 0; i < rgs.length; i++) {
+                groupRecords = GenericUtils.listRecords(rs, new RecordGroup[] { rgs[i] });
+                Assert.assertTrue(groupRecords.size() > records.size() / splitCount / 2, 
+                        "Record group " + i + " has only " + groupRecords.size() + " records");
+                Assert.assertTrue(groupRecords.size() < records.size() / splitCount * 2, 
+                        "Record group " + i + " has " + groupRecords.size() + " records");
+                for (Record record : groupRecords) {
+                    Assert.assertTrue(ids.add(record.getId()), "Record " + record.getId() + " is in more than " +
+                            "one record group");
+                }
+                if (rgs[i] instanceof DirectRecordGroup) {
+                    DirectRecordGroup drg = (DirectRecordGroup) rgs[i];
+                    Assert.assertEquals(drg.getTimeFrom(), timeFrom);
+                    if (i == rgs.length - 1) {
+                        Assert.assertEquals(drg.getTimeTo(), -1);
+                    } else {
+                        Assert.assertTrue(drg.getTimeTo() > timeFrom);
+                    }
+                    for (Record record : groupRecords) {
+                        Assert.assertTrue(record.getTimestamp() >= drg.getTimeFrom() || drg.getTimeFrom() == -1);
+                        Assert.assertTrue(record.getTimestamp() < drg.getTimeTo() || drg.getTimeTo() == -1);
+                    }
+                    timeFrom = drg.getTimeTo();
+                }
+            }
+            Assert.assertEquals(ids.size(), records.size());
+        } finally {
+            rs.deleteTable(tenantId, tableName);
+        }
+    }
+    
     @Test
     public void testDataRecordDeleteWithIds() throws AnalyticsException {
         this.cleanupT1();
@@ -403,6 +579,27 @@ public class AnalyticsRecordStoreTest {
         this.cleanupT1();
     }
     
+    @Test
+    public void testDataRecordRetrieveDeleteWithManyIds() throws AnalyticsException {
+        this.cleanupT1();
+        this.analyticsRS.createTable(7, "T1");
+        List<Record> records = generateRecords(7, "T1", 1, 1100, -1, -1);
+        this.analyticsRS.insert(records);
+        List<String> ids = new ArrayList<String>();
+        for (Record record : records) {
+            ids.add(record.getId());
+        }
+        List<Record> recordsIn = GenericUtils.listRecords(this.analyticsRS, this.analyticsRS.get(7, "T1", null, ids));
+        Assert.assertEquals(new HashSet<Record>(recordsIn), new HashSet<Record>(records));
+        recordsIn = GenericUtils.listRecords(this.analyticsRS, this.analyticsRS.get(7, "T1", null, ids.subList(0, 20)));
+        Assert.assertEquals(new HashSet<Record>(recordsIn), new HashSet<Record>(records.subList(0, 20)));
+        this.analyticsRS.delete(7, "T1", ids.subList(0, 600));
+        Assert.assertEquals(this.analyticsRS.getRecordCount(7, "T1"), 500);
+        recordsIn = GenericUtils.listRecords(this.analyticsRS, this.analyticsRS.get(7, "T1", null, ids));
+        Assert.assertEquals(new HashSet<Record>(recordsIn), new HashSet<Record>(records.subList(600, 1100)));
+        this.cleanupT1();
+    }
+    
     @Test
     public void testDataRecordDeleteWithTimestamps() throws AnalyticsException {
         this.cleanupT1();
@@ -433,6 +630,326 @@ public class AnalyticsRecordStoreTest {
         this.cleanupT1();
     }
     
+    @Test
+    public void testDataRecordDeleteWithTimestampsAcrossDays() throws AnalyticsException {
+        this.cleanupT1();
+        this.analyticsRS.createTable(7, "T1");
+        /* 2015-03-01 00:00:00 UTC, with a record for each hour of three days */
+        long time = 1425168000000L;
+        int timeOffset = 3600000;
+        List<Record> records = generateRecords(7, "T1", 1, 72, time, timeOffset);
+        this.analyticsRS.insert(records);
+        Assert.assertEquals(this.analyticsRS.getRecordCount(7, "T1"), 72);
+        Assert.assertEquals(GenericUtils.listRecords(this.analyticsRS, this.analyticsRS.get(7, "T1", null, 
+                time + timeOffset * 20, time + timeOffset * 30, 0, -1)).size(), 10);
+        Assert.assertEquals(GenericUtils.listRecords(this.analyticsRS, this.analyticsRS.get(7, "T1", null, 
+                -1, -1, 30, 20)).size(), 20);
+        this.analyticsRS.delete(7, "T1", time + timeOffset * 24, time + timeOffset * 48);
+        Assert.assertEquals(this.analyticsRS.getRecordCount(7, "T1"), 48);
+        List<Record> recordsIn = GenericUtils.listRecords(this.analyticsRS, this.analyticsRS.get(7, "T1", null, -1, -1, 0, -1));
+        List<Record> expected = new ArrayList<Record>(records.subList(0, 24));
+        expected.addAll(records.subList(48, 72));
+        Assert.assertEquals(new HashSet<Record>(recordsIn), new HashSet<Record>(expected));
+        this.analyticsRS.delete(7, "T1", time + timeOffset * 12, time + timeOffset * 72);
+        recordsIn = GenericUtils.listRecords(this.analyticsRS, this.analyticsRS.get(7, "T1", null, -1, -1, 0, -1));
+        Assert.assertEquals(new HashSet<Record>(recordsIn), new HashSet<Record>(records.subList(0, 12)));
+        this.cleanupT1();
+    }
+    
+    private List<Record> readFilteredRecords(String tableName, List<String> columns, 
+            List<RecordPredicate> predicates, int recordsCount) throws AnalyticsException {
+        Iterator<Record> itr;
+        if (this.analyticsRS instanceof FilteringRecordStore) {
+            itr = ((FilteringRecordStore) this.analyticsRS).getRecords(7, tableName, columns, -1, -1, 
+                    predicates, recordsCount);
+        } else {
+            itr = new RecordFilterIterator(GenericUtils.listRecords(this.analyticsRS, this.analyticsRS.get(7, 
+                    tableName, null, -1, -1, 0, -1)).iterator(), predicates, columns, recordsCount);
+        }
+        List<Record> result = new ArrayList<Record>();
+        while (itr.hasNext()) {
+            result.add(itr.next());
+        }
+        return result;
+    }
+    
+    /**
+     * The record store implementations may evaluate the predicates on the fields "server_name" and "sequence" 
+     * of the table "T1_FILTER" in the backing store.
+     */
+    @Test
+    public void testFilteredRecordRetrieval() throws AnalyticsException {
+        this.analyticsRS.deleteTable(7, "T1_FILTER");
+        this.analyticsRS.createTable(7, "T1_FILTER");
+        List<Record> records = new ArrayList<Record>();
+        for (int i = 0; i < 10; i++) {
+            records.addAll(generateRecords(7, "T1_FILTER", i, 20, 1425168000000L + i * 43200000L, 1000));
+        }
+        this.analyticsRS.insert(records);
+        List<RecordPredicate> predicates = Arrays.asList(new RecordPredicate("server_name", 
+                RecordPredicate.Operator.EQUAL, "ESB-3"));
+        List<Record> recordsIn = this.readFilteredRecords("T1_FILTER", null, predicates, -1);
+        Assert.assertEquals(new HashSet<Record>(recordsIn), new HashSet<Record>(records.subList(60, 80)));
+        predicates = Arrays.asList(new RecordPredicate("sequence", RecordPredicate.Operator.GREATER_THAN_OR_EQUAL, 
+                104050005L), new RecordPredicate("tenant", RecordPredicate.Operator.LESS_THAN, 8));
+        recordsIn = this.readFilteredRecords("T1_FILTER", null, predicates, -1);
+        Assert.assertEquals(new HashSet<Record>(recordsIn), new HashSet<Record>(records.subList(100, 160)));
+        recordsIn = this.readFilteredRecords("T1_FILTER", Arrays.asList("log"), predicates, 10);
+        Assert.assertEquals(recordsIn.size(), 10);
+        for (Record record : recordsIn) {
+            Assert.assertEquals(record.getValues().keySet(), new HashSet<String>(Arrays.asList("log")));
+            Assert.assertTrue(((String) record.getValue("log")).startsWith("Exception in Sequence[5,") || 
+                    ((String) record.getValue("log")).startsWith("Exception in Sequence[6,") ||
+                    ((String) record.getValue("log")).startsWith("Exception in Sequence[7,"));
+        }
+        predicates = Arrays.asList(new RecordPredicate("server_name", RecordPredicate.Operator.EQUAL, "ESB-3"),
+                new RecordPredicate("sequence", RecordPredicate.Operator.LESS_THAN, 104050003));
+        Assert.assertEquals(this.readFilteredRecords("T1_FILTER", null, predicates, -1).size(), 0);
+        /* the filtered values are also updated */
+        List<Record> updatedRecords = new ArrayList<Record>();
+        Map<String, Object> values;
+        for (Record record : records.subList(60, 70)) {
+            values = new HashMap<String, Object>(record.getValues());
+            values.put("server_name", "ESB-X");
+            updatedRecords.add(new Record(record.getId(), 7, "T1_FILTER", values, record.getTimestamp()));
+        }
+        this.analyticsRS.update(updatedRecords);
+        predicates = Arrays.asList(new RecordPredicate("server_name", RecordPredicate.Operator.EQUAL, "ESB-3"));
+        Assert.assertEquals(new HashSet<Record>(this.readFilteredRecords("T1_FILTER", null, predicates, -1)), 
+                new HashSet<Record>(records.subList(70, 80)));
+        predicates = Arrays.asList(new RecordPredicate("server_name", RecordPredicate.Operator.EQUAL, "ESB-X"));
+        Assert.assertEquals(new HashSet<Record>(this.readFilteredRecords("T1_FILTER", null, predicates, -1)), 
+                new HashSet<Record>(updatedRecords));
+        this.analyticsRS.deleteTable(7, "T1_FILTER");
+    }
+
+    private List<Record> generateMixedTypeRecords(int tenantId, String tableName, long time) {
+        StringBuilder longName = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            longName.append((char) ('a' + i % 26));
+        }
+        Object[] serverNames = { "ESB-1", "ESB-2", 5L, longName.toString(), true, null };
+        Object[] sequences = { 3, 3L, 3.0, 2.5, 7.0f, "7", 1L << 60, (1L << 60) + 1, 1e300, -0.0, 0L, Double.NaN,
+                Long.MIN_VALUE, Integer.MAX_VALUE + 1L, false, null };
+        List<Record> result = new ArrayList<Record>();
+        Map<String, Object> values;
+        for (int i = 0; i < serverNames.length * sequences.length; i++) {
+            values = new HashMap<String, Object>();
+            values.put("server_name", serverNames[i % serverNames.length]);
+            values.put("sequence", sequences[i % sequences.length]);
+            values.put("index", i);
+            result.add(new Record(tenantId, tableName, values, time + i * 3600000L));
+        }
+        return result;
+    }
+
+    private void checkFilteredRecords(List<Record> records, String tableName,
+            RecordPredicate... predicates) throws AnalyticsException {
+        List<Record> expected = new ArrayList<Record>();
+        Iterator<Record> itr = new RecordFilterIterator(records.iterator(), Arrays.asList(predicates), null, -1);
+        while (itr.hasNext()) {
+            expected.add(itr.next());
+        }
+        Assert.assertEquals(new HashSet<Record>(this.readFilteredRecords(tableName, null,
+                Arrays.asList(predicates), -1)), new HashSet<Record>(expected), Arrays.asList(predicates).toString());
+    }
+
+    /**
+     * The filtered fields of the table "T1_FILTER" have values of different types, which should match the same
+     * way as with {@link RecordPredicate#matches(Record)}, wherever the predicates are evaluated.
+     */
+    @Test
+    public void testFilteredRecordRetrievalWithMixedTypes() throws AnalyticsException {
+        this.analyticsRS.deleteTable(7, "T1_FILTER");
+        this.analyticsRS.createTable(7, "T1_FILTER");
+        List<Record> records = this.generateMixedTypeRecords(7, "T1_FILTER", 1425168000000L);
+        this.analyticsRS.insert(records);
+        this.checkFilteredRecords(records, "T1_FILTER", new RecordPredicate("sequence",
+                RecordPredicate.Operator.EQUAL, 3L));
+        this.checkFilteredRecords(records, "T1_FILTER", new RecordPredicate("sequence",
+                RecordPredicate.Operator.GREATER_THAN, 2));
+        this.checkFilteredRecords(records, "T1_FILTER", new RecordPredicate("sequence",
+                RecordPredicate.Operator.LESS_THAN, 2.5));
+        this.checkFilteredRecords(records, "T1_FILTER", new RecordPredicate("sequence",
+                RecordPredicate.Operator.LESS_THAN_OR_EQUAL, 0L));
+        this.checkFilteredRecords(records, "T1_FILTER", new RecordPredicate("sequence",
+                RecordPredicate.Operator.GREATER_THAN_OR_EQUAL, 1L << 60));
+        this.checkFilteredRecords(records, "T1_FILTER", new RecordPredicate("sequence",
+                RecordPredicate.Operator.EQUAL, "7"));
+        this.checkFilteredRecords(records, "T1_FILTER", new RecordPredicate("server_name",
+                RecordPredicate.Operator.EQUAL, "ESB-1"), new RecordPredicate("sequence",
+                        RecordPredicate.Operator.LESS_THAN, 10L));
+        this.checkFilteredRecords(records, "T1_FILTER", new RecordPredicate("server_name",
+                RecordPredicate.Operator.EQUAL, records.get(3).getValue("server_name")));
+        this.checkFilteredRecords(records, "T1_FILTER", new RecordPredicate("server_name",
+                RecordPredicate.Operator.GREATER_THAN_OR_EQUAL, 5));
+        /* the values of the updated records change their types */
+        List<Record> updatedRecords = new ArrayList<Record>(records);
+        Map<String, Object> values;
+        Record record;
+        for (int i = 0; i < 20; i++) {
+            record = records.get(i);
+            values = new HashMap<String, Object>(record.getValues());
+            values.put("sequence", i % 2 == 0 ? (Object) Integer.valueOf(3) : (Object) "3");
+            values.put("server_name", "ESB-1");
+            updatedRecords.set(i, new Record(record.getId(), 7, "T1_FILTER", values, record.getTimestamp()));
+        }
+        this.analyticsRS.update(updatedRecords.subList(0, 20));
+        this.checkFilteredRecords(updatedRecords, "T1_FILTER", new RecordPredicate("sequence",
+                RecordPredicate.Operator.EQUAL, 3L));
+        this.checkFilteredRecords(updatedRecords, "T1_FILTER", new RecordPredicate("server_name",
+                RecordPredicate.Operator.EQUAL, "ESB-1"), new RecordPredicate("sequence",
+                        RecordPredicate.Operator.GREATER_THAN, 2.0));
+        this.analyticsRS.deleteTable(7, "T1_FILTER");
+    }
+
+    private Set<RecordAggregate> readAggregates(String tableName, long timeFrom, long timeTo, 
+            List<RecordPredicate> predicates, List<String> groupByFields, 
+            List<AggregateFunction> functions) throws AnalyticsException {
+        List<RecordAggregate> result;
+        if (this.analyticsRS instanceof AggregatingRecordStore) {
+            result = ((AggregatingRecordStore) this.analyticsRS).getAggregates(7, tableName, timeFrom, timeTo, 
+                    predicates, groupByFields, functions);
+        } else {
+            result = RecordAggregator.aggregate(this.analyticsRS, 7, tableName, timeFrom, timeTo, predicates, 
+                    groupByFields, functions);
+        }
+        return new HashSet<RecordAggregate>(result);
+    }
+    
+    private RecordAggregate createAggregate(String groupField, Object groupValue, Object... values) {
+        Map<String, Object> groupValues = new HashMap<String, Object>();
+        if (groupField != null) {
+            groupValues.put(groupField, groupValue);
+        }
+        Map<String, Object> aggregateValues = new HashMap<String, Object>();
+        for (int i = 0; i < values.length; i += 2) {
+            aggregateValues.put(((AggregateFunction) values[i]).getName(), values[i + 1]);
+        }
+        return new RecordAggregate(groupValues, aggregateValues);
+    }
+    
+    /**
+     * The record store implementations may compute the aggregates on the fields "server_name" and "sequence" 
+     * of the table "T1_FILTER" in the backing store.
+     */
+    @Test
+    public void testRecordAggregation() throws AnalyticsException {
+        this.analyticsRS.deleteTable(7, "T1_FILTER");
+        this.analyticsRS.createTable(7, "T1_FILTER");
+        List<Record> records = new ArrayList<Record>();
+        long time = 1425168000000L;
+        for (int i = 0; i < 10; i++) {
+            records.addAll(generateRecords(7, "T1_FILTER", i, 20, time + i * 43200000L, 1000));
+        }
+        this.analyticsRS.insert(records);
+        AggregateFunction count = new AggregateFunction(AggregateFunction.Type.COUNT, null);
+        AggregateFunction sum = new AggregateFunction(AggregateFunction.Type.SUM, "sequence");
+        AggregateFunction min = new AggregateFunction(AggregateFunction.Type.MIN, "sequence");
+        AggregateFunction max = new AggregateFunction(AggregateFunction.Type.MAX, "sequence");
+        AggregateFunction avg = new AggregateFunction(AggregateFunction.Type.AVG, "sequence");
+        List<RecordPredicate> predicates = Arrays.asList(new RecordPredicate("sequence", 
+                RecordPredicate.Operator.GREATER_THAN_OR_EQUAL, 104050005L));
+        Set<RecordAggregate> expected = new HashSet<RecordAggregate>();
+        for (int i = 5; i < 10; i++) {
+            expected.add(this.createAggregate("server_name", "ESB-" + i, count, 20L, sum, 
+                    20 * (i + 104050000L), min, i + 104050000L, max, i + 104050000L, avg, i + 104050000.0));
+        }
+        Assert.assertEquals(this.readAggregates("T1_FILTER", -1, -1, predicates, Arrays.asList("server_name"), 
+                Arrays.asList(count, sum, min, max, avg)), expected);
+        /* the aggregates on the other fields */
+        AggregateFunction tenantSum = new AggregateFunction(AggregateFunction.Type.SUM, "tenant");
+        AggregateFunction spamIndexMax = new AggregateFunction(AggregateFunction.Type.MAX, "spam_index");
+        Assert.assertEquals(this.readAggregates("T1_FILTER", time + 2 * 43200000L, time + 4 * 43200000L, 
+                new ArrayList<RecordPredicate>(), new ArrayList<String>(), Arrays.asList(count, tenantSum, 
+                        spamIndexMax)), new HashSet<RecordAggregate>(Arrays.asList(this.createAggregate(null, 
+                                null, count, 40L, tenantSum, 100L, spamIndexMax, 3 + 0.3454452))));
+        AggregateFunction logCount = new AggregateFunction(AggregateFunction.Type.COUNT, "log");
+        predicates = Arrays.asList(new RecordPredicate("server_name", RecordPredicate.Operator.EQUAL, "ESB-3"));
+        Assert.assertEquals(this.readAggregates("T1_FILTER", -1, -1, predicates, Arrays.asList("important"), 
+                Arrays.asList(logCount)), new HashSet<RecordAggregate>(Arrays.asList(this.createAggregate(
+                        "important", false, logCount, 20L))));
+        predicates = Arrays.asList(new RecordPredicate("server_name", RecordPredicate.Operator.EQUAL, "ESB-X"));
+        Assert.assertEquals(this.readAggregates("T1_FILTER", -1, -1, predicates, new ArrayList<String>(), 
+                Arrays.asList(count, sum)).size(), 0);
+        this.analyticsRS.deleteTable(7, "T1_FILTER");
+    }
+
+    /**
+     * Checks two aggregate values, the numbers may be of different types, depending on where they are
+     * computed, and the decimal sums may differ in their rounding.
+     */
+    private void checkAggregateValue(Object actual, Object expected, String message) {
+        if (!(actual instanceof Number && expected instanceof Number)) {
+            Assert.assertEquals(actual, expected, message);
+        } else if (actual instanceof Double || actual instanceof Float || expected instanceof Double ||
+                expected instanceof Float) {
+            double lhs = ((Number) actual).doubleValue(), rhs = ((Number) expected).doubleValue();
+            Assert.assertTrue(Double.compare(lhs, rhs) == 0 || Math.abs(lhs - rhs) <=
+                    Math.max(Math.abs(lhs), Math.abs(rhs)) * 1e-12, message + ": " + actual + " != " + expected);
+        } else {
+            Assert.assertEquals(new BigInteger(actual.toString()), new BigInteger(expected.toString()), message);
+        }
+    }
+
+    private void checkAggregates(List<Record> records, String tableName, List<RecordPredicate> predicates,
+            List<String> groupByFields, List<AggregateFunction> functions) throws AnalyticsException {
+        Map<Map<String, Object>, Map<String, Object>> expected = new HashMap<Map<String, Object>,
+                Map<String, Object>>();
+        for (RecordAggregate aggregate : RecordAggregator.aggregate(new RecordFilterIterator(records.iterator(),
+                predicates, null, -1), groupByFields, functions)) {
+            expected.put(aggregate.getGroupValues(), aggregate.getValues());
+        }
+        Set<RecordAggregate> actual = this.readAggregates(tableName, -1, -1, predicates, groupByFields, functions);
+        Assert.assertEquals(actual.size(), expected.size());
+        Map<String, Object> expectedValues;
+        for (RecordAggregate aggregate : actual) {
+            expectedValues = expected.get(aggregate.getGroupValues());
+            Assert.assertTrue(expectedValues != null, "Unexpected group: " + aggregate.getGroupValues());
+            for (AggregateFunction function : functions) {
+                this.checkAggregateValue(aggregate.getValue(function), expectedValues.get(function.getName()),
+                        aggregate.getGroupValues() + " " + predicates + " " + function.getName());
+            }
+        }
+    }
+
+    /**
+     * The aggregated fields of the table "T1_FILTER" have values of different types, and sums which do not
+     * fit in to a long, the aggregates should be the same as the ones computed on the records in memory,
+     * wherever they are computed.
+     */
+    @Test
+    public void testRecordAggregationWithMixedTypes() throws AnalyticsException {
+        this.analyticsRS.deleteTable(7, "T1_FILTER");
+        this.analyticsRS.createTable(7, "T1_FILTER");
+        List<Record> records = this.generateMixedTypeRecords(7, "T1_FILTER", 1425168000000L);
+        Map<String, Object> values;
+        for (int i = 0; i < 40; i++) {
+            values = new HashMap<String, Object>();
+            values.put("server_name", "ESB-BIG");
+            values.put("sequence", i % 2 == 0 ? Long.MAX_VALUE - i : (Object) Integer.valueOf(i));
+            records.add(new Record(7, "T1_FILTER", values, 1425168000000L + i * 3600000L));
+        }
+        this.analyticsRS.insert(records);
+        List<AggregateFunction> functions = Arrays.asList(new AggregateFunction(AggregateFunction.Type.COUNT,
+                null), new AggregateFunction(AggregateFunction.Type.COUNT, "sequence"),
+                new AggregateFunction(AggregateFunction.Type.SUM, "sequence"),
+                new AggregateFunction(AggregateFunction.Type.MIN, "sequence"),
+                new AggregateFunction(AggregateFunction.Type.MAX, "sequence"),
+                new AggregateFunction(AggregateFunction.Type.AVG, "sequence"));
+        List<String> groupByFields = Arrays.asList("server_name");
+        this.checkAggregates(records, "T1_FILTER", new ArrayList<RecordPredicate>(), groupByFields, functions);
+        this.checkAggregates(records, "T1_FILTER", new ArrayList<RecordPredicate>(), new ArrayList<String>(),
+                functions);
+        this.checkAggregates(records, "T1_FILTER", Arrays.asList(new RecordPredicate("sequence",
+                RecordPredicate.Operator.GREATER_THAN_OR_EQUAL, 0L)), groupByFields, functions);
+        this.checkAggregates(records, "T1_FILTER", Arrays.asList(new RecordPredicate("server_name",
+                RecordPredicate.Operator.EQUAL, "ESB-BIG")), new ArrayList<String>(), functions);
+        this.checkAggregates(records, "T1_FILTER", Arrays.asList(new RecordPredicate("sequence",
+                RecordPredicate.Operator.LESS_THAN, 1L << 60)), groupByFields, functions);
+        this.analyticsRS.deleteTable(7, "T1_FILTER");
+    }
+
     @Test
     public void testDataRecordAddReadPerformance() throws AnalyticsException {
         System.out.println("\n************** START RECORD PERF TEST [" + this.getImplementationName() + "] **************");
@@ -477,4 +994,132 @@ public class AnalyticsRecordStoreTest {
         this.cleanupT1();
     }
     
+    private static List<Record> generateRecordsWithPayload(int tenantId, String tableName, int i, int c) {
+        List<Record> result = new ArrayList<Record>();
+        Map<String, Object> values;
+        StringBuilder payload;
+        for (int j = 0; j < c; j++) {
+            values = new HashMap<String, Object>();
+            values.put("server_name", "ESB-" + i);
+            values.put("message_id", "urn:uuid:" + i + "-" + j);
+            values.put("status", j % 10 == 0 ? "fault" : "success");
+            payload = new StringBuilder();
+            payload.append("<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\">");
+            payload.append("<soapenv:Body><m:getQuoteResponse xmlns:m=\"http://services.samples\">");
+            for (int k = 0; k < 20; k++) {
+                payload.append("<m:return><m:symbol>IBM" + k + "</m:symbol><m:last>" + (i * j + k) + 
+                        ".25</m:last><m:volume>" + (j + k * 1000) + "</m:volume></m:return>");
+            }
+            payload.append("</m:getQuoteResponse></soapenv:Body></soapenv:Envelope>");
+            values.put("payload", payload.toString());
+            result.add(new Record(tenantId, tableName, values, System.currentTimeMillis()));
+        }
+        return result;
+    }
+    
+    private void recordCompressionPerf(String tableName, RecordCompression compression) throws AnalyticsException {
+        this.analyticsRS.deleteTable(7, tableName);
+        this.analyticsRS.createTable(7, tableName);
+        List<Record> records;
+        long hash1 = 0;
+        int n = 50, batch = 200;
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            records = generateRecordsWithPayload(7, tableName, i, batch);
+            this.analyticsRS.insert(records);
+            for (Record record : records) {
+                hash1 += record.hashCode();
+            }
+        }
+        long end = System.currentTimeMillis();
+        System.out.println("* [" + compression + "] Stored Record Value Bytes: " + 
+                this.getStoredRecordValuesSize(7, tableName));
+        System.out.println("* [" + compression + "] Write Throughput (TPS): " + 
+                (n * batch) / (double) (end - start) * 1000.0);
+        start = System.currentTimeMillis();
+        List<Record> recordsIn = GenericUtils.listRecords(this.analyticsRS, 
+                this.analyticsRS.get(7, tableName, null, -1, -1, 0, -1));
+        end = System.currentTimeMillis();
+        Assert.assertEquals(recordsIn.size(), (n * batch));
+        long hash2 = 0;
+        for (Record record : recordsIn) {
+            hash2 += record.hashCode();
+        }
+        Assert.assertEquals(hash1, hash2);
+        System.out.println("* [" + compression + "] Read Throughput (TPS): " + 
+                (n * batch) / (double) (end - start) * 1000.0);
+        this.analyticsRS.deleteTable(7, tableName);
+    }
+    
+    /**
+     * Compares the record store performance with and without record compression, the record store 
+     * implementations are expected to compress the tables "T1_LZ4" and "T1_DEFLATE" with LZ4 and deflate.
+     */
+    @Test
+    public void testDataRecordCompressionPerformance() throws AnalyticsException {
+        if (!this.isRecordCompressionSupported()) {
+            return;
+        }
+        System.out.println("\n************** START RECORD COMPRESSION PERF TEST [" + 
+                this.getImplementationName() + "] **************");
+        /* warm-up */
+        this.recordCompressionPerf("T1", RecordCompression.NONE);
+        this.recordCompressionPerf("T1", RecordCompression.NONE);
+        this.recordCompressionPerf("T1_LZ4", RecordCompression.LZ4);
+        this.recordCompressionPerf("T1_DEFLATE", RecordCompression.DEFLATE);
+        System.out.println("************** END RECORD COMPRESSION PERF TEST [" + 
+                this.getImplementationName() + "] **************\n");
+    }
+    
+    /**
+     * Measures the table catalog operations and small inserts with a large number of tables, 
+     * as seen with many tenants. The table count is kept small for the regular test runs, and can be 
+     * raised with the "tableCatalogPerfTableCount" system property, e.g. to 10000.
+     */
+    @Test
+    public void testTableCatalogPerformance() throws AnalyticsException {
+        System.out.println("\n************** START TABLE CATALOG PERF TEST [" + 
+                this.getImplementationName() + "] **************");
+        int tenantId = 12, n = Integer.getInteger("tableCatalogPerfTableCount", 300);
+        for (String table : this.analyticsRS.listTables(tenantId)) {
+            this.analyticsRS.deleteTable(tenantId, table);
+        }
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            this.analyticsRS.createTable(tenantId, "TX" + i);
+        }
+        long end = System.currentTimeMillis();
+        System.out.println("* Tables: " + n);
+        System.out.println("* Create Table Time: " + (end - start) + " ms.");
+        start = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            Assert.assertTrue(this.analyticsRS.tableExists(tenantId, "TX" + i));
+        }
+        Assert.assertFalse(this.analyticsRS.tableExists(tenantId, "TX" + n));
+        end = System.currentTimeMillis();
+        System.out.println("* Table Exists Throughput (TPS): " + n / (double) (end - start) * 1000.0);
+        start = System.currentTimeMillis();
+        for (int i = 0; i < 100; i++) {
+            Assert.assertEquals(this.analyticsRS.listTables(tenantId).size(), n);
+        }
+        end = System.currentTimeMillis();
+        System.out.println("* List Tables Time: " + (end - start) / 100.0 + " ms.");
+        start = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            this.analyticsRS.insert(generateRecords(tenantId, "TX" + i, i, 1, -1, -1));
+        }
+        end = System.currentTimeMillis();
+        System.out.println("* Insert Throughput (TPS): " + n / (double) (end - start) * 1000.0);
+        Assert.assertEquals(this.analyticsRS.getRecordCount(tenantId, "TX" + (n - 1)), 1);
+        start = System.currentTimeMillis();
+        for (int i = 0; i < n; i++) {
+            this.analyticsRS.deleteTable(tenantId, "TX" + i);
+        }
+        end = System.currentTimeMillis();
+        System.out.println("* Delete Table Time: " + (end - start) + " ms.");
+        Assert.assertEquals(this.analyticsRS.listTables(tenantId).size(), 0);
+        System.out.println("************** END TABLE CATALOG PERF TEST [" + 
+                this.getImplementationName() + "] **************\n");
+    }
+    
 }
@@ -0,0 +1,94 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.io.Serializable;
+
+/**
+ * This class represents an aggregate function on a field of the records. COUNT counts the records which have 
+ * a value for the field, or all the records if the field is null. SUM and AVG work on the numeric values of 
+ * the field, and MIN and MAX on its numeric values, or on its string values if the field has no numeric values. 
+ * The other values of the field are ignored. The SUM of integral values is a long, or a 
+ * {@link java.math.BigInteger} if it does not fit in to a long.
+ */
+public class AggregateFunction implements Serializable {
+
+    private static final long serialVersionUID = 6329837463208491733L;
+
+    private Type type;
+    
+    private String field;
+    
+    public AggregateFunction(Type type, String field) {
+        if (type == null) {
+            throw new IllegalArgumentException("The type of an aggregate function cannot be null");
+        }
+        if (field == null && type != Type.COUNT) {
+            throw new IllegalArgumentException("The field of a " + type + " aggregate function cannot be null");
+        }
+        this.type = type;
+        this.field = field;
+    }
+    
+    public Type getType() {
+        return type;
+    }
+    
+    public String getField() {
+        return field;
+    }
+    
+    /**
+     * Returns the name of this function, e.g. "SUM(amount)", which is used as the name of its value in 
+     * a {@link RecordAggregate}.
+     */
+    public String getName() {
+        return this.getType() + "(" + (this.getField() == null ? "*" : this.getField()) + ")";
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof AggregateFunction)) {
+            return false;
+        }
+        return this.getName().equals(((AggregateFunction) obj).getName());
+    }
+    
+    @Override
+    public int hashCode() {
+        return this.getName().hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        return this.getName();
+    }
+    
+    /**
+     * The types of the aggregate functions.
+     */
+    public static enum Type {
+        COUNT,
+        SUM,
+        MIN,
+        MAX,
+        AVG
+    }
+    
+}
@@ -0,0 +1,48 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.util.List;
+
+/**
+ * This interface represents an {@link AnalyticsRecordStore}, which can compute the aggregates of the records 
+ * in the backing store itself, so the records are not read in. The aggregates of other record stores can be 
+ * computed with a {@link RecordAggregator}.
+ */
+public interface AggregatingRecordStore {
+
+    /**
+     * Computes the aggregates of the records of a table, which match all the given predicates, 
+     * grouped by the values of the given fields.
+     * @param tenantId The tenant which this table belongs to
+     * @param tableName The name of the table
+     * @param timeFrom The starting time of the records, inclusive, -1 for beginning of time
+     * @param timeTo The ending time of the records, non-inclusive, -1 for infinity
+     * @param predicates The predicates the records should match
+     * @param groupByFields The fields to group the records by, an empty list for a single group of all the records
+     * @param functions The aggregate functions to be computed for each group
+     * @return The aggregates of the groups, which have at least one record
+     * @throws AnalyticsException
+     * @throws AnalyticsTableNotAvailableException
+     */
+    List<RecordAggregate> getAggregates(int tenantId, String tableName, long timeFrom, long timeTo, 
+            List<RecordPredicate> predicates, List<String> groupByFields, 
+            List<AggregateFunction> functions) throws AnalyticsException, AnalyticsTableNotAvailableException;
+    
+}
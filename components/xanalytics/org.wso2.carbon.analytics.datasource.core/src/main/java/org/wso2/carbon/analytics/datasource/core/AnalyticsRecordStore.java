@@ -116,6 +116,25 @@ public interface AnalyticsRecordStore {
             long timeTo, int recordsFrom, int recordsCount) 
             throws AnalyticsException, AnalyticsTableNotAvailableException;
     
+    /**
+     * Retrieves data from a table in pages, in the order of the record timestamps and ids. Unlike offset based
+     * pagination, the cost of retrieving a page does not depend on the number of records before it.
+     * @param tenantId The tenant which this table belongs to
+     * @param tableName The name of the table to search on
+     * @param columns The list of columns to required in results, null if all needs to be returned
+     * @param timeFrom The starting time to get records from, inclusive, -1 for beginning of time
+     * @param timeTo The ending time to get records to, non-inclusive, -1 for infinity
+     * @param continuationToken The token generated with {@link RecordContinuationToken#generate(Record)} from the
+     * last record of the previous page, null to start from the first record
+     * @param recordsCount The page size, -1 for infinity
+     * @return An array of {@link RecordGroup} objects, which represents individual data sets in their local location
+     * @throws AnalyticsException
+     * @throws AnalyticsTableNotAvailableException
+     */
+    RecordGroup[] get(int tenantId, String tableName, List<String> columns, long timeFrom, 
+            long timeTo, String continuationToken, int recordsCount) 
+            throws AnalyticsException, AnalyticsTableNotAvailableException;
+    
     /**
      * Retrieves data from a table with given ids.
      * @param tenantId The tenant which this table belongs to
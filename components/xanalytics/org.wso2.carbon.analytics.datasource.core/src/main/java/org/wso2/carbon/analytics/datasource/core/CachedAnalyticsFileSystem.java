@@ -0,0 +1,343 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+
+/**
+ * This class represents an {@link AnalyticsFileSystem} decorator, which keeps the path metadata, i.e. the existence,
+ * the length and the directory listings, in memory. The cached metadata is updated as changes are done through this
+ * file system, and if the backing file system is shared with other nodes, an {@link InvalidationPublisher} should be
+ * set, so the changes are propagated to them.
+ */
+public class CachedAnalyticsFileSystem implements AnalyticsFileSystem {
+
+    private static final long UNKNOWN_LENGTH = -1;
+    
+    private AnalyticsFileSystem analyticsFileSystem;
+    
+    private Map<String, PathMetadata> pathMetadata = new ConcurrentHashMap<String, PathMetadata>();
+    
+    private Map<String, List<String>> listings = new ConcurrentHashMap<String, List<String>>();
+    
+    /* incremented with each change, values looked up concurrently with a change are not cached */
+    private long modificationCount;
+    
+    private InvalidationPublisher invalidationPublisher;
+    
+    public CachedAnalyticsFileSystem(AnalyticsFileSystem analyticsFileSystem) {
+        this.analyticsFileSystem = analyticsFileSystem;
+    }
+    
+    public AnalyticsFileSystem getAnalyticsFileSystem() {
+        return analyticsFileSystem;
+    }
+    
+    public InvalidationPublisher getInvalidationPublisher() {
+        return invalidationPublisher;
+    }
+    
+    public void setInvalidationPublisher(InvalidationPublisher invalidationPublisher) {
+        this.invalidationPublisher = invalidationPublisher;
+    }
+    
+    @Override
+    public void init(Map<String, String> properties) throws AnalyticsException {
+        this.getAnalyticsFileSystem().init(properties);
+    }
+    
+    private synchronized long getModificationCount() {
+        return modificationCount;
+    }
+    
+    private PathMetadata getPathMetadata(String path) {
+        PathMetadata metadata = this.pathMetadata.get(path);
+        if (metadata == null) {
+            metadata = new PathMetadata();
+            this.pathMetadata.put(path, metadata);
+        }
+        return metadata;
+    }
+    
+    @Override
+    public boolean exists(String path) throws IOException {
+        path = GenericUtils.normalizePath(path);
+        PathMetadata metadata = this.pathMetadata.get(path);
+        if (metadata != null && metadata.exists != null) {
+            return metadata.exists;
+        }
+        long modCount = this.getModificationCount();
+        boolean exists = this.getAnalyticsFileSystem().exists(path);
+        synchronized (this) {
+            if (modCount == this.modificationCount) {
+                this.getPathMetadata(path).exists = exists;
+            }
+        }
+        return exists;
+    }
+
+    @Override
+    public long length(String path) throws IOException {
+        path = GenericUtils.normalizePath(path);
+        PathMetadata metadata = this.pathMetadata.get(path);
+        if (metadata != null && metadata.length != UNKNOWN_LENGTH) {
+            return metadata.length;
+        }
+        long modCount = this.getModificationCount();
+        long length = this.getAnalyticsFileSystem().length(path);
+        synchronized (this) {
+            if (modCount == this.modificationCount) {
+                this.getPathMetadata(path).length = length;
+            }
+        }
+        return length;
+    }
+    
+    @Override
+    public List<String> list(String path) throws IOException {
+        path = GenericUtils.normalizePath(path);
+        List<String> listing = this.listings.get(path);
+        if (listing != null) {
+            return new ArrayList<String>(listing);
+        }
+        long modCount = this.getModificationCount();
+        listing = this.getAnalyticsFileSystem().list(path);
+        synchronized (this) {
+            if (modCount == this.modificationCount) {
+                this.listings.put(path, Collections.synchronizedList(new ArrayList<String>(listing)));
+            }
+        }
+        return listing;
+    }
+    
+    /**
+     * Updates the cached metadata of a newly created path, and its parent directories, which are created as needed.
+     */
+    private synchronized void pathCreated(String path, long length) {
+        this.modificationCount++;
+        PathMetadata metadata = this.getPathMetadata(path);
+        boolean existed = Boolean.TRUE.equals(metadata.exists);
+        metadata.exists = true;
+        metadata.length = length;
+        String parentPath, name;
+        List<String> listing;
+        while (!existed && (parentPath = GenericUtils.getParentPath(path)) != null) {
+            listing = this.listings.get(parentPath);
+            name = this.getName(parentPath, path);
+            if (listing != null && !listing.contains(name)) {
+                listing.add(name);
+            }
+            metadata = this.getPathMetadata(parentPath);
+            existed = Boolean.TRUE.equals(metadata.exists);
+            metadata.exists = true;
+            path = parentPath;
+        }
+    }
+    
+    private String getName(String parentPath, String path) {
+        return path.substring(parentPath.equals("/") ? 1 : parentPath.length() + 1);
+    }
+    
+    private synchronized void lengthChanged(String path, long length) {
+        this.modificationCount++;
+        this.getPathMetadata(path).length = length;
+    }
+    
+    private synchronized void pathDeleted(String path) {
+        this.invalidateLocally(path);
+        String parentPath = GenericUtils.getParentPath(path);
+        if (parentPath != null) {
+            List<String> listing = this.listings.get(parentPath);
+            if (listing != null) {
+                listing.remove(this.getName(parentPath, path));
+            }
+        }
+        this.getPathMetadata(path).exists = false;
+    }
+    
+    private void publishInvalidation(String path) {
+        if (this.invalidationPublisher != null) {
+            this.invalidationPublisher.publish(path);
+        }
+    }
+    
+    private synchronized void invalidateLocally(String path) {
+        this.modificationCount++;
+        String prefix = path.equals("/") ? path : path + "/";
+        for (String cachedPath : new ArrayList<String>(this.pathMetadata.keySet())) {
+            if (cachedPath.equals(path) || cachedPath.startsWith(prefix)) {
+                this.pathMetadata.remove(cachedPath);
+            }
+        }
+        for (String cachedPath : new ArrayList<String>(this.listings.keySet())) {
+            if (cachedPath.equals(path) || cachedPath.startsWith(prefix)) {
+                this.listings.remove(cachedPath);
+            }
+        }
+    }
+    
+    /**
+     * Removes the cached metadata of the given path, the paths under it, and its parent directories. 
+     * This is called when the path is changed by another node.
+     * @param path The changed path
+     */
+    public synchronized void invalidate(String path) {
+        path = GenericUtils.normalizePath(path);
+        this.invalidateLocally(path);
+        while ((path = GenericUtils.getParentPath(path)) != null) {
+            this.pathMetadata.remove(path);
+            this.listings.remove(path);
+        }
+    }
+    
+    /**
+     * Removes all the cached metadata.
+     */
+    public synchronized void invalidateAll() {
+        this.modificationCount++;
+        this.pathMetadata.clear();
+        this.listings.clear();
+    }
+
+    @Override
+    public void delete(String path) throws IOException {
+        path = GenericUtils.normalizePath(path);
+        try {
+            this.getAnalyticsFileSystem().delete(path);
+        } finally {
+            this.pathDeleted(path);
+            this.publishInvalidation(path);
+        }
+    }
+
+    @Override
+    public void mkdir(String path) throws IOException {
+        path = GenericUtils.normalizePath(path);
+        this.getAnalyticsFileSystem().mkdir(path);
+        this.pathCreated(path, UNKNOWN_LENGTH);
+        this.publishInvalidation(path);
+    }
+
+    @Override
+    public DataInput createInput(String path) throws IOException {
+        return this.getAnalyticsFileSystem().createInput(path);
+    }
+
+    @Override
+    public OutputStream createOutput(String path) throws IOException {
+        path = GenericUtils.normalizePath(path);
+        OutputStream out = this.getAnalyticsFileSystem().createOutput(path);
+        this.pathCreated(path, UNKNOWN_LENGTH);
+        this.publishInvalidation(path);
+        return new CachedOutputStream(path, out);
+    }
+
+    @Override
+    public void sync(String path) throws IOException {
+        path = GenericUtils.normalizePath(path);
+        this.getAnalyticsFileSystem().sync(path);
+        this.publishInvalidation(path);
+    }
+    
+    /**
+     * The cached metadata of a path, a null existence flag, or an unknown length, means it is not looked up yet.
+     */
+    private static class PathMetadata {
+        
+        private volatile Boolean exists;
+        
+        private volatile long length = UNKNOWN_LENGTH;
+        
+    }
+    
+    /**
+     * {@link OutputStream} wrapper, which updates the cached length of the file as it is written. The other 
+     * nodes are only notified when the stream is closed, or the file is synced, and not on every flush.
+     */
+    private class CachedOutputStream extends OutputStream {
+        
+        private String path;
+        
+        private OutputStream out;
+        
+        private long count;
+        
+        private boolean dirty;
+        
+        public CachedOutputStream(String path, OutputStream out) {
+            this.path = path;
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.count++;
+            this.dirty = true;
+        }
+        
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+            this.count += len;
+            this.dirty = true;
+        }
+        
+        @Override
+        public void flush() throws IOException {
+            this.out.flush();
+            if (this.dirty) {
+                /* the backing file system may not make the length visible until the stream is closed */
+                lengthChanged(this.path, UNKNOWN_LENGTH);
+                this.dirty = false;
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            this.out.close();
+            lengthChanged(this.path, this.count);
+            publishInvalidation(this.path);
+        }
+        
+    }
+    
+    /**
+     * This interface represents a publisher of path changes, to be used by the other nodes which 
+     * share the same backing file system, to invalidate their cached metadata.
+     */
+    public static interface InvalidationPublisher {
+        
+        /**
+         * Publishes the change of the given path.
+         * @param path The changed path
+         */
+        void publish(String path);
+        
+    }
+
+}
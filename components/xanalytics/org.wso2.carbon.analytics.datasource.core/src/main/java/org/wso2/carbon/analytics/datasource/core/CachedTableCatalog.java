@@ -0,0 +1,61 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+/**
+ * This interface represents an {@link AnalyticsRecordStore}, which keeps its table catalog in memory. The catalog 
+ * is updated as tables are created and deleted through the record store, and if the backing store is shared with 
+ * other nodes, an {@link InvalidationPublisher} should be set, so the changes are propagated to them.
+ */
+public interface CachedTableCatalog {
+
+    /**
+     * Refreshes the cached state of the given table.
+     * @param tenantId The tenant which this table belongs to
+     * @param tableName The name of the table
+     */
+    void invalidateTable(int tenantId, String tableName);
+    
+    /**
+     * Clears the whole table catalog, so it will be loaded again on the next use.
+     */
+    void invalidateTableCatalog();
+    
+    /**
+     * Sets the publisher, which is notified of the table changes done through this record store.
+     * @param invalidationPublisher The invalidation publisher, or null to remove the current one
+     */
+    void setTableCatalogInvalidationPublisher(InvalidationPublisher invalidationPublisher);
+    
+    /**
+     * This interface represents a publisher of table changes, to be used by the other nodes which 
+     * share the same backing store, to invalidate their table catalogs.
+     */
+    public static interface InvalidationPublisher {
+        
+        /**
+         * Publishes the creation or the deletion of the given table.
+         * @param tenantId The tenant which this table belongs to
+         * @param tableName The name of the table
+         */
+        void publish(int tenantId, String tableName);
+        
+    }
+    
+}
@@ -0,0 +1,269 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class represents a bounded LRU cache of file data chunks, shared by the inputs of a file system, 
+ * and keyed by the file path and the chunk number. The cache is bounded by the total size of the cached 
+ * chunk data, which can optionally be kept off-heap.
+ */
+public class ChunkCache {
+    
+    private static final int GENERATION_STRIPES = 64;
+    
+    private long maxSize;
+    
+    private boolean offHeap;
+    
+    private long size;
+    
+    private LinkedHashMap<ChunkKey, CacheEntry> entries = new LinkedHashMap<ChunkKey, CacheEntry>(16, 0.75f, true);
+    
+    private Map<String, Set<Long>> pathChunks = new HashMap<String, Set<Long>>();
+    
+    /* incremented when a path is invalidated, chunks read before an invalidation are not cached */
+    private AtomicLongArray generations = new AtomicLongArray(GENERATION_STRIPES);
+    
+    private long hitCount;
+    
+    private long missCount;
+    
+    private long evictionCount;
+    
+    public ChunkCache(long maxSize, boolean offHeap) {
+        this.maxSize = maxSize;
+        this.offHeap = offHeap;
+    }
+    
+    public long getMaxSize() {
+        return maxSize;
+    }
+    
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+    
+    private int getGenerationStripe(String path) {
+        return (path.hashCode() & Integer.MAX_VALUE) % GENERATION_STRIPES;
+    }
+    
+    /**
+     * Returns the current generation of the given path, this must be looked up before reading a chunk 
+     * from the backing store, and given when the chunk is put to the cache.
+     * @param path The file path
+     * @return The generation
+     */
+    public long getGeneration(String path) {
+        return this.generations.get(this.getGenerationStripe(path));
+    }
+    
+    /**
+     * Looks up a cached chunk.
+     * @param path The file path
+     * @param chunkNumber The chunk number
+     * @return The chunk data, or null if it is not cached
+     */
+    public synchronized byte[] get(String path, long chunkNumber) {
+        CacheEntry entry = this.entries.get(new ChunkKey(path, chunkNumber));
+        if (entry == null) {
+            this.missCount++;
+            return null;
+        }
+        this.hitCount++;
+        return entry.getData();
+    }
+    
+    /**
+     * Adds a chunk to the cache, the given data must not be modified afterwards.
+     * @param path The file path
+     * @param chunkNumber The chunk number
+     * @param data The chunk data
+     * @param generation The generation of the path, looked up before the chunk was read
+     */
+    public synchronized void put(String path, long chunkNumber, byte[] data, long generation) {
+        if (data.length > this.maxSize || this.getGeneration(path) != generation) {
+            return;
+        }
+        ChunkKey key = new ChunkKey(path, chunkNumber);
+        CacheEntry entry = new CacheEntry(data, this.offHeap);
+        CacheEntry oldEntry = this.entries.put(key, entry);
+        if (oldEntry != null) {
+            this.size -= oldEntry.size;
+        } else {
+            Set<Long> chunks = this.pathChunks.get(path);
+            if (chunks == null) {
+                chunks = new HashSet<Long>();
+                this.pathChunks.put(path, chunks);
+            }
+            chunks.add(chunkNumber);
+        }
+        this.size += entry.size;
+        Iterator<Map.Entry<ChunkKey, CacheEntry>> itr = this.entries.entrySet().iterator();
+        Map.Entry<ChunkKey, CacheEntry> eldest;
+        while (this.size > this.maxSize && itr.hasNext()) {
+            eldest = itr.next();
+            itr.remove();
+            this.size -= eldest.getValue().size;
+            this.removePathChunk(eldest.getKey());
+            this.evictionCount++;
+        }
+    }
+    
+    private void removePathChunk(ChunkKey key) {
+        Set<Long> chunks = this.pathChunks.get(key.path);
+        if (chunks != null) {
+            chunks.remove(key.chunkNumber);
+            if (chunks.isEmpty()) {
+                this.pathChunks.remove(key.path);
+            }
+        }
+    }
+    
+    private void invalidatePath(String path) {
+        this.generations.incrementAndGet(this.getGenerationStripe(path));
+        Set<Long> chunks = this.pathChunks.remove(path);
+        if (chunks != null) {
+            CacheEntry entry;
+            for (Long chunkNumber : chunks) {
+                entry = this.entries.remove(new ChunkKey(path, chunkNumber));
+                if (entry != null) {
+                    this.size -= entry.size;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Removes all the cached chunks of the given path.
+     * @param path The file path
+     * @param recursive If true, the chunks of all the paths under the given path are also removed
+     */
+    public synchronized void invalidate(String path, boolean recursive) {
+        this.invalidatePath(path);
+        if (recursive) {
+            String prefix = path.endsWith("/") ? path : path + "/";
+            List<String> childPaths = new ArrayList<String>();
+            for (String cachedPath : this.pathChunks.keySet()) {
+                if (cachedPath.startsWith(prefix)) {
+                    childPaths.add(cachedPath);
+                }
+            }
+            for (String childPath : childPaths) {
+                this.invalidatePath(childPath);
+            }
+        }
+    }
+    
+    public synchronized long getSize() {
+        return size;
+    }
+    
+    public synchronized int getChunkCount() {
+        return this.entries.size();
+    }
+    
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+    
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+    
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+    
+    /**
+     * The key of a cached chunk.
+     */
+    private static class ChunkKey {
+        
+        private String path;
+        
+        private long chunkNumber;
+        
+        public ChunkKey(String path, long chunkNumber) {
+            this.path = path;
+            this.chunkNumber = chunkNumber;
+        }
+        
+        @Override
+        public int hashCode() {
+            return this.path.hashCode() * 31 + (int) (this.chunkNumber ^ (this.chunkNumber >>> 32));
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ChunkKey)) {
+                return false;
+            }
+            ChunkKey rhs = (ChunkKey) obj;
+            return this.chunkNumber == rhs.chunkNumber && this.path.equals(rhs.path);
+        }
+        
+    }
+    
+    /**
+     * A cached chunk, the data is kept either in a heap byte array, or in a direct byte buffer.
+     */
+    private static class CacheEntry {
+        
+        private byte[] data;
+        
+        private ByteBuffer offHeapData;
+        
+        private int size;
+        
+        public CacheEntry(byte[] data, boolean offHeap) {
+            this.size = data.length;
+            if (offHeap) {
+                this.offHeapData = ByteBuffer.allocateDirect(data.length);
+                this.offHeapData.put(data);
+            } else {
+                this.data = data;
+            }
+        }
+        
+        public byte[] getData() {
+            if (this.data != null) {
+                return this.data;
+            }
+            byte[] result = new byte[this.size];
+            /* a duplicate has its own position, so concurrent readers do not interfere */
+            ByteBuffer buffer = this.offHeapData.duplicate();
+            buffer.clear();
+            buffer.get(result);
+            return result;
+        }
+        
+    }
+    
+}
@@ -19,6 +19,8 @@
 package org.wso2.carbon.analytics.datasource.core;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import org.wso2.carbon.analytics.datasource.core.ChunkedStream.DataChunk;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsFileSystem.DataInput;
@@ -36,9 +38,16 @@ public class ChunkedDataInput implements DataInput {
     
     private long length;
     
+    private List<DataChunk> prefetchedChunks = Collections.emptyList();
+    
     public ChunkedDataInput(ChunkedStream stream) throws IOException {
+        this(stream, stream.length(), null);
+    }
+    
+    private ChunkedDataInput(ChunkedStream stream, long length, DataChunk currentChunk) {
         this.stream = stream;
-        this.length = this.stream.length();
+        this.length = length;
+        this.currentChunk = currentChunk;
     }
 
     public ChunkedStream getStream() {
@@ -47,8 +56,29 @@ public class ChunkedDataInput implements DataInput {
     
     private void checkCurrentChunk() throws IOException {
         if (this.currentChunk == null || !this.currentChunk.containsPosition(this.getPosition())) {
-            this.currentChunk = this.getStream().readChunkForPosition(this.getPosition());
+            this.currentChunk = this.lookupChunk(this.getPosition());
+        }
+    }
+    
+    private DataChunk lookupChunk(long position) throws IOException {
+        long n = this.getStream().getChunkNumber(position);
+        for (DataChunk chunk : this.prefetchedChunks) {
+            if (chunk.getChunkNumber() == n) {
+                return chunk;
+            }
+        }
+        this.prefetchedChunks = Collections.emptyList();
+        int readAheadCount = this.getStream().getReadAheadChunkCount();
+        /* a read of the chunk after the current one is taken as sequential access */
+        if (readAheadCount > 1 && this.currentChunk != null && this.currentChunk.getChunkNumber() + 1 == n) {
+            long lastChunk = this.getStream().getChunkNumber(Math.max(this.length - 1, 0));
+            readAheadCount = (int) Math.max(Math.min(readAheadCount, lastChunk - n + 1), 1);
+            if (readAheadCount > 1) {
+                this.prefetchedChunks = this.getStream().readChunksForPosition(position, readAheadCount);
+                return this.prefetchedChunks.get(0);
+            }
         }
+        return this.getStream().readChunkForPosition(position);
     }
     
     private int getIndexInCurrentChunk(long position) {
@@ -98,7 +128,8 @@ public class ChunkedDataInput implements DataInput {
 
     @Override
     public DataInput makeCopy() throws IOException {
-        ChunkedDataInput in = new ChunkedDataInput(this.stream);
+        /* the copy shares the length and the current chunk, which avoids looking them up again */
+        ChunkedDataInput in = new ChunkedDataInput(this.stream, this.length, this.currentChunk);
         in.seek(this.position);
         return in;
     }
@@ -98,6 +98,7 @@ public class ChunkedDataOutput extends OutputStream {
         }
         this.getStream().setLength(this.position);
         this.getStream().writeChunks(this.dataChunks);
+        this.getStream().invalidateCachedChunks();
         this.dataChunks.clear();
         if (activeChunk != null) {
             this.dataChunks.add(activeChunk);
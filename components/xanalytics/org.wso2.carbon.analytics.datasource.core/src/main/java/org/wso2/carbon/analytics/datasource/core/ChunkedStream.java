@@ -19,6 +19,7 @@
 package org.wso2.carbon.analytics.datasource.core;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -28,8 +29,24 @@ public abstract class ChunkedStream {
 
     private int chunkSize;
     
+    private String path;
+    
+    private ChunkCache chunkCache;
+    
     public ChunkedStream(int chunkSize) {
+        this(chunkSize, null, null);
+    }
+    
+    /**
+     * Creates a chunked stream, where the chunks read are looked up in, and added to, the given chunk cache.
+     * @param chunkSize The chunk size
+     * @param path The path of the stream, which is used as the cache key
+     * @param chunkCache The chunk cache, or null, if the chunks should not be cached
+     */
+    public ChunkedStream(int chunkSize, String path, ChunkCache chunkCache) {
         this.chunkSize = chunkSize;
+        this.path = path;
+        this.chunkCache = chunkCache;
     }
     
     public int getChunkSize() {
@@ -55,7 +72,84 @@ public abstract class ChunkedStream {
     public abstract DataChunk readChunk(long n) throws IOException;
     
     public DataChunk readChunkForPosition(long position) throws IOException {
-        return this.readChunk(this.getChunkNumber(position));
+        long n = this.getChunkNumber(position);
+        if (this.chunkCache == null) {
+            return this.readChunk(n);
+        }
+        byte[] data = this.chunkCache.get(this.path, n);
+        if (data != null) {
+            return new DataChunk(n, data);
+        }
+        long generation = this.chunkCache.getGeneration(this.path);
+        DataChunk chunk = this.readChunk(n);
+        this.chunkCache.put(this.path, n, chunk.getData(), generation);
+        return chunk;
+    }
+    
+    /**
+     * Reads in the chunks in the given range, the default implementation reads them one by one, 
+     * and implementations which can read a range of chunks at once should override this.
+     * @param from The 0 based index of the first chunk, inclusive
+     * @param to The 0 based index of the last chunk, inclusive
+     * @return The data chunks that were read, in order
+     * @throws IOException
+     */
+    public List<DataChunk> readChunks(long from, long to) throws IOException {
+        List<DataChunk> result = new ArrayList<DataChunk>((int) (to - from + 1));
+        for (long i = from; i <= to; i++) {
+            result.add(this.readChunk(i));
+        }
+        return result;
+    }
+    
+    /**
+     * Reads in the chunk for the given position, and the chunks following it, looking them up in
+     * the chunk cache first, if there is one.
+     * @param position The 0 based byte position
+     * @param count The number of chunks to read
+     * @return The data chunks that were read, in order
+     * @throws IOException
+     */
+    public List<DataChunk> readChunksForPosition(long position, int count) throws IOException {
+        long from = this.getChunkNumber(position);
+        long to = from + count - 1;
+        if (this.chunkCache == null) {
+            return this.readChunks(from, to);
+        }
+        List<DataChunk> result = new ArrayList<DataChunk>(count);
+        byte[] data;
+        for (long i = from; i <= to; i++) {
+            data = this.chunkCache.get(this.path, i);
+            if (data == null) {
+                break;
+            }
+            result.add(new DataChunk(i, data));
+        }
+        if (result.size() < count) {
+            long generation = this.chunkCache.getGeneration(this.path);
+            for (DataChunk chunk : this.readChunks(from + result.size(), to)) {
+                this.chunkCache.put(this.path, chunk.getChunkNumber(), chunk.getData(), generation);
+                result.add(chunk);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the number of chunks to be read at once, when the stream is read sequentially.
+     * @return The read-ahead chunk count, 1 if there should not be any read-ahead
+     */
+    public int getReadAheadChunkCount() {
+        return 1;
+    }
+    
+    /**
+     * Removes the cached chunks of this stream, this must be called after the stream data is changed.
+     */
+    public void invalidateCachedChunks() {
+        if (this.chunkCache != null) {
+            this.chunkCache.invalidate(this.path, false);
+        }
     }
     
     public DataChunk createEmptyChunk(long n) {
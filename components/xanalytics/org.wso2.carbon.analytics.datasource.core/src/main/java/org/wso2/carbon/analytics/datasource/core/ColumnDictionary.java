@@ -0,0 +1,166 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class represents the column name dictionary of a table, which maps the column names to small integer ids,
+ * so the encoded records can refer to the columns by their ids, rather than by their full names. The dictionary 
+ * is append-only, the ids once assigned are never changed or reused, and it is persisted through a {@link Store},
+ * which may be shared by many nodes.
+ */
+public class ColumnDictionary {
+
+    /** the maximum number of columns in a dictionary, the columns after that are encoded with their names */
+    public static final int MAX_SIZE = 1024;
+    
+    /** the maximum length of a column name in a dictionary */
+    public static final int MAX_NAME_LENGTH = 256;
+    
+    private Store store;
+    
+    private volatile Map<String, Integer> ids;
+    
+    private volatile Map<Integer, String> names;
+    
+    public ColumnDictionary(Store store) throws AnalyticsException {
+        this.store = store;
+        this.reload();
+    }
+    
+    private synchronized void reload() throws AnalyticsException {
+        Map<Integer, String> names = new HashMap<Integer, String>(this.store.load());
+        Map<String, Integer> ids = new HashMap<String, Integer>(names.size());
+        for (Map.Entry<Integer, String> entry : names.entrySet()) {
+            ids.put(entry.getValue(), entry.getKey());
+        }
+        this.names = names;
+        this.ids = ids;
+    }
+    
+    /**
+     * Returns the id of the given column.
+     * @param name The column name
+     * @return The column id, or null if the column is not in the dictionary
+     */
+    public Integer getId(String name) {
+        return this.ids.get(name);
+    }
+    
+    /**
+     * Returns the name of the column with the given id. If the id is not known, the dictionary is reloaded, 
+     * since the column may have been added by another node.
+     * @param id The column id
+     * @return The column name
+     * @throws AnalyticsException If the id is not in the dictionary
+     */
+    public String getName(int id) throws AnalyticsException {
+        String name = this.names.get(id);
+        if (name == null) {
+            this.reload();
+            name = this.names.get(id);
+            if (name == null) {
+                throw new AnalyticsException("Unknown column id in the column dictionary: " + id);
+            }
+        }
+        return name;
+    }
+    
+    public int size() {
+        return this.names.size();
+    }
+    
+    /**
+     * Returns a read-only view of the current entries of the dictionary.
+     * @return The column id -> name map
+     */
+    public Map<Integer, String> getNames() {
+        return Collections.unmodifiableMap(this.names);
+    }
+    
+    /**
+     * Adds the given columns to the dictionary, if they are not already there. The columns which do not fit in
+     * the dictionary are left out.
+     * @param columns The column names
+     * @throws AnalyticsException
+     */
+    public void register(Collection<String> columns) throws AnalyticsException {
+        for (String column : columns) {
+            if (!this.ids.containsKey(column)) {
+                this.register(column);
+            }
+        }
+    }
+    
+    private synchronized void register(String column) throws AnalyticsException {
+        if (column.length() > MAX_NAME_LENGTH) {
+            return;
+        }
+        int id;
+        while (!this.ids.containsKey(column)) {
+            if (this.names.size() >= MAX_SIZE) {
+                return;
+            }
+            /* the ids are allocated sequentially, so a stale view always conflicts with the store */
+            id = this.names.size();
+            if (this.store.add(id, column)) {
+                Map<Integer, String> names = new HashMap<Integer, String>(this.names);
+                Map<String, Integer> ids = new HashMap<String, Integer>(this.ids);
+                names.put(id, column);
+                ids.put(column, id);
+                this.names = names;
+                this.ids = ids;
+            } else {
+                this.reload();
+                if (this.names.size() <= id) {
+                    throw new AnalyticsException("Column id " + id + " is taken, but it is not in the "
+                            + "column dictionary store");
+                }
+            }
+        }
+    }
+    
+    /**
+     * This interface represents the persistent storage of a column dictionary.
+     */
+    public static interface Store {
+        
+        /**
+         * Loads all the entries of the dictionary.
+         * @return The column id -> name map
+         * @throws AnalyticsException
+         */
+        Map<Integer, String> load() throws AnalyticsException;
+        
+        /**
+         * Adds a new entry to the dictionary.
+         * @param id The column id
+         * @param name The column name
+         * @return true if the entry was added, or false if the id is already taken
+         * @throws AnalyticsException
+         */
+        boolean add(int id, String name) throws AnalyticsException;
+        
+    }
+    
+}
@@ -0,0 +1,262 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class represents the values of a column in a {@link RecordBatch}. The values are kept in an array of 
+ * the column's type, along with a bitmap of the null values. A column which has values of different types 
+ * is represented by an {@link ObjectVector}.
+ */
+public abstract class ColumnVector {
+
+    /* a set bit marks a null value */
+    private long[] nulls;
+    
+    ColumnVector(int capacity) {
+        this.nulls = new long[(capacity + Long.SIZE - 1) / Long.SIZE];
+        Arrays.fill(this.nulls, -1L);
+    }
+    
+    public boolean isNull(int row) {
+        return (this.nulls[row / Long.SIZE] & (1L << row)) != 0;
+    }
+    
+    void setNotNull(int row) {
+        this.nulls[row / Long.SIZE] &= ~(1L << row);
+    }
+    
+    /**
+     * Returns the null bitmap of the column, where the bit of a row is set, if its value is null.
+     * @return The null bitmap, which is not copied, so it should not be modified
+     */
+    public long[] getNulls() {
+        return nulls;
+    }
+    
+    /**
+     * Returns the value of the given row as an object.
+     * @param row The row index
+     * @return The value, or null if the value of the row is null
+     */
+    public Object getObject(int row) {
+        if (this.isNull(row)) {
+            return null;
+        }
+        return this.getValue(row);
+    }
+    
+    protected abstract Object getValue(int row);
+    
+    /**
+     * This class represents a column of long values.
+     */
+    public static class LongVector extends ColumnVector {
+        
+        private long[] values;
+        
+        LongVector(int capacity) {
+            super(capacity);
+            this.values = new long[capacity];
+        }
+        
+        void set(int row, long value) {
+            this.values[row] = value;
+            this.setNotNull(row);
+        }
+        
+        public long getLong(int row) {
+            return this.values[row];
+        }
+        
+        public long[] getValues() {
+            return values;
+        }
+        
+        @Override
+        protected Object getValue(int row) {
+            return this.values[row];
+        }
+        
+    }
+    
+    /**
+     * This class represents a column of int values.
+     */
+    public static class IntVector extends ColumnVector {
+        
+        private int[] values;
+        
+        IntVector(int capacity) {
+            super(capacity);
+            this.values = new int[capacity];
+        }
+        
+        void set(int row, int value) {
+            this.values[row] = value;
+            this.setNotNull(row);
+        }
+        
+        public int getInt(int row) {
+            return this.values[row];
+        }
+        
+        public int[] getValues() {
+            return values;
+        }
+        
+        @Override
+        protected Object getValue(int row) {
+            return this.values[row];
+        }
+        
+    }
+    
+    /**
+     * This class represents a column of double values.
+     */
+    public static class DoubleVector extends ColumnVector {
+        
+        private double[] values;
+        
+        DoubleVector(int capacity) {
+            super(capacity);
+            this.values = new double[capacity];
+        }
+        
+        void set(int row, double value) {
+            this.values[row] = value;
+            this.setNotNull(row);
+        }
+        
+        public double getDouble(int row) {
+            return this.values[row];
+        }
+        
+        public double[] getValues() {
+            return values;
+        }
+        
+        @Override
+        protected Object getValue(int row) {
+            return this.values[row];
+        }
+        
+    }
+    
+    /**
+     * This class represents a dictionary encoded column of string values, where each row has the code of 
+     * its value in the dictionary of the column.
+     */
+    public static class StringVector extends ColumnVector {
+        
+        private int[] codes;
+        
+        private List<String> dictionary = new ArrayList<String>();
+        
+        private Map<String, Integer> dictionaryCodes = new HashMap<String, Integer>();
+        
+        StringVector(int capacity) {
+            super(capacity);
+            this.codes = new int[capacity];
+        }
+        
+        void set(int row, String value) {
+            Integer code = this.dictionaryCodes.get(value);
+            if (code == null) {
+                code = this.dictionary.size();
+                this.dictionary.add(value);
+                this.dictionaryCodes.put(value, code);
+            }
+            this.codes[row] = code;
+            this.setNotNull(row);
+        }
+        
+        public int getCode(int row) {
+            return this.codes[row];
+        }
+        
+        public int[] getCodes() {
+            return codes;
+        }
+        
+        public List<String> getDictionary() {
+            return dictionary;
+        }
+        
+        public String getString(int row) {
+            if (this.isNull(row)) {
+                return null;
+            }
+            return this.dictionary.get(this.codes[row]);
+        }
+        
+        @Override
+        protected Object getValue(int row) {
+            return this.dictionary.get(this.codes[row]);
+        }
+        
+    }
+    
+    /**
+     * This class represents a column of values of any type.
+     */
+    public static class ObjectVector extends ColumnVector {
+        
+        private Object[] values;
+        
+        ObjectVector(int capacity) {
+            super(capacity);
+            this.values = new Object[capacity];
+        }
+        
+        /**
+         * Creates an object vector with the first values of the given vector.
+         */
+        ObjectVector(ColumnVector vector, int capacity, int size) {
+            this(capacity);
+            for (int i = 0; i < size; i++) {
+                this.set(i, vector.getObject(i));
+            }
+        }
+        
+        void set(int row, Object value) {
+            this.values[row] = value;
+            if (value != null) {
+                this.setNotNull(row);
+            }
+        }
+        
+        public Object[] getValues() {
+            return values;
+        }
+        
+        @Override
+        protected Object getValue(int row) {
+            return this.values[row];
+        }
+        
+    }
+    
+}
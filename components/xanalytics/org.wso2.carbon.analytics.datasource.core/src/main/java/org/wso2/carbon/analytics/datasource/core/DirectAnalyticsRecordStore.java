@@ -31,6 +31,12 @@ public abstract class DirectAnalyticsRecordStore implements AnalyticsRecordStore
         return new DirectRecordGroup[] { new DirectRecordGroup(tenantId, tableName, columns, timeFrom, timeTo, recordsFrom, recordsCount) };
     }
     
+    public RecordGroup[] get(int tenantId, String tableName, List<String> columns, long timeFrom, long timeTo, 
+            String continuationToken, int recordsCount) throws AnalyticsException {
+        return new DirectRecordGroup[] { new DirectRecordGroup(tenantId, tableName, columns, timeFrom, timeTo, 
+                continuationToken, recordsCount) };
+    }
+    
     public RecordGroup[] get(int tenantId, String tableName, List<String> columns, List<String> ids) throws AnalyticsException {
         return new DirectRecordGroup[] { new DirectRecordGroup(tenantId, tableName, columns, ids) };        
     }
@@ -43,6 +49,9 @@ public abstract class DirectAnalyticsRecordStore implements AnalyticsRecordStore
         DirectRecordGroup drg = (DirectRecordGroup) recordGroup;
         if (drg.isWithIds()) {
             return this.getRecords(drg.getTenantId(), drg.getTableName(), drg.getColumns(), drg.getIds());
+        } else if (drg.isWithContinuation()) {
+            return this.getRecords(drg.getTenantId(), drg.getTableName(), drg.getColumns(), drg.getTimeFrom(), 
+                    drg.getTimeTo(), drg.getContinuationToken(), drg.getRecordsCount());
         } else {
             return this.getRecords(drg.getTenantId(), drg.getTableName(), drg.getColumns(), drg.getTimeFrom(), 
                     drg.getTimeTo(), drg.getRecordsFrom(), drg.getRecordsCount());
@@ -52,6 +61,9 @@ public abstract class DirectAnalyticsRecordStore implements AnalyticsRecordStore
     public abstract Iterator<Record> getRecords(int tenantId, String tableName, List<String> columns, long timeFrom, long timeTo, 
             int recordsFrom, int recordsCount) throws AnalyticsException;
     
+    public abstract Iterator<Record> getRecords(int tenantId, String tableName, List<String> columns, long timeFrom, long timeTo, 
+            String continuationToken, int recordsCount) throws AnalyticsException;
+    
     public abstract Iterator<Record> getRecords(int tenantId, String tableName, List<String> columns, List<String> ids) throws AnalyticsException;
 
 }
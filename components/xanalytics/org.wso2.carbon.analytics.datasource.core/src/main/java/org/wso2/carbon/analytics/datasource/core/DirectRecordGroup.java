@@ -47,6 +47,10 @@ public class DirectRecordGroup implements RecordGroup {
     
     private List<String> ids;
     
+    private boolean withContinuation;
+    
+    private String continuationToken;
+    
     public DirectRecordGroup(int tenantId, String tableName, List<String> columns, List<String> ids) {
         this.withIds = true;
         this.tenantId = tenantId;
@@ -67,6 +71,18 @@ public class DirectRecordGroup implements RecordGroup {
         this.recordsCount = recordsCount;
     }
     
+    public DirectRecordGroup(int tenantId, String tableName, List<String> columns, long timeFrom, 
+            long timeTo, String continuationToken, int recordsCount) {
+        this.withContinuation = true;
+        this.tenantId = tenantId;
+        this.tableName = tableName;
+        this.columns = columns;
+        this.timeFrom = timeFrom;
+        this.timeTo = timeTo;
+        this.continuationToken = continuationToken;
+        this.recordsCount = recordsCount;
+    }
+    
     @Override
     public String[] getLocations() throws AnalyticsException {
         return new String[] { LOCALHOST };
@@ -108,4 +124,12 @@ public class DirectRecordGroup implements RecordGroup {
         return ids;
     }
     
+    public boolean isWithContinuation() {
+        return withContinuation;
+    }
+    
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+    
 }
\ No newline at end of file
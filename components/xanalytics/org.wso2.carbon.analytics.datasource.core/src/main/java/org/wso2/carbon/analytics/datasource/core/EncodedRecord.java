@@ -0,0 +1,142 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+import org.wso2.carbon.analytics.datasource.core.util.RecordValuesDecoder;
+
+/**
+ * This class represents a {@link Record}, which is backed by its encoded values. The individual values are
+ * decoded when they are first looked up, and all the values are decoded only when the values map is requested.
+ * The equality of the record is the same as of a {@link Record} with the decoded values.
+ */
+public class EncodedRecord extends Record {
+
+    /** the number of the individually decoded values, after which all the values are decoded */
+    private static final int MAX_DECODED_VALUES = 4;
+    
+    private byte[] data;
+    
+    private boolean decompressed;
+    
+    private RecordValuesDecoder decoder;
+    
+    private Map<String, Object> decodedValues;
+    
+    private volatile Map<String, Object> values;
+    
+    /**
+     * Creates an encoded record.
+     * @param id The record id
+     * @param tenantId The tenant id
+     * @param tableName The table name
+     * @param data The encoded record values
+     * @param timestamp The record timestamp
+     * @param decoder The decoder of the record values, which can be shared with other records, 
+     * it is locked while decoding the values of this record
+     */
+    public EncodedRecord(String id, int tenantId, String tableName, byte[] data, long timestamp, 
+            RecordValuesDecoder decoder) {
+        super(id, tenantId, tableName, null, timestamp);
+        this.data = data;
+        this.decoder = decoder;
+    }
+    
+    @Override
+    public Map<String, Object> getValues() {
+        Map<String, Object> values = this.values;
+        if (values == null) {
+            values = this.decodeValues();
+        }
+        return values;
+    }
+    
+    @Override
+    public Object getValue(String name) {
+        Map<String, Object> values = this.values;
+        if (values != null) {
+            return values.get(name);
+        }
+        synchronized (this) {
+            if (this.values != null) {
+                return this.values.get(name);
+            }
+            if (this.decodedValues == null) {
+                this.decodedValues = new HashMap<String, Object>();
+            } else if (this.decodedValues.containsKey(name)) {
+                return this.decodedValues.get(name);
+            } else if (this.decodedValues.size() >= MAX_DECODED_VALUES) {
+                /* many values are being looked up, so decoding them all at once is cheaper */
+                return this.decodeValues().get(name);
+            }
+            if (!this.decompressed) {
+                /* the values are decompressed once, rather than for each lookup */
+                this.data = this.decompress(this.data);
+                this.decompressed = true;
+            }
+            Object value;
+            try {
+                synchronized (this.decoder) {
+                    value = this.decoder.decodeValue(this.data, name);
+                }
+            } catch (AnalyticsException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+            this.decodedValues.put(name, value);
+            return value;
+        }
+    }
+    
+    /**
+     * Returns the encoded values of the record, which may be compressed.
+     * @return The encoded values, or null if the values are already decoded
+     */
+    public synchronized byte[] getEncodedValues() {
+        return data;
+    }
+    
+    private synchronized Map<String, Object> decodeValues() {
+        if (this.values == null) {
+            try {
+                synchronized (this.decoder) {
+                    this.values = this.decoder.decode(this.data);
+                }
+            } catch (AnalyticsException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+            /* the encoded data is not needed anymore */
+            this.data = null;
+            this.decoder = null;
+            this.decodedValues = null;
+        }
+        return this.values;
+    }
+    
+    private byte[] decompress(byte[] data) {
+        try {
+            return GenericUtils.decompressRecordValues(data);
+        } catch (AnalyticsException e) {
+            throw new RuntimeException(e.getMessage(), e);
+        }
+    }
+    
+}
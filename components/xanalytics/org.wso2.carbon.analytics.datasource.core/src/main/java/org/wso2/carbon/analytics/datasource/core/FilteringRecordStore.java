@@ -0,0 +1,48 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This interface represents an {@link AnalyticsRecordStore}, which can evaluate simple field predicates 
+ * in the backing store itself, so only the matching records are read in. The records of other record stores 
+ * can be filtered with a {@link RecordFilterIterator}.
+ */
+public interface FilteringRecordStore {
+
+    /**
+     * Retrieves the records of a table, which match all the given predicates.
+     * @param tenantId The tenant which this table belongs to
+     * @param tableName The name of the table to search on
+     * @param columns The list of columns to required in results, null if all needs to be returned
+     * @param timeFrom The starting time to get records from, inclusive, -1 for beginning of time
+     * @param timeTo The ending time to get records to, non-inclusive, -1 for infinity
+     * @param predicates The predicates the records should match
+     * @param recordsCount The maximum number of records to be read, -1 for infinity
+     * @return An iterator of the matching records
+     * @throws AnalyticsException
+     * @throws AnalyticsTableNotAvailableException
+     */
+    Iterator<Record> getRecords(int tenantId, String tableName, List<String> columns, long timeFrom, 
+            long timeTo, List<RecordPredicate> predicates, int recordsCount) 
+            throws AnalyticsException, AnalyticsTableNotAvailableException;
+    
+}
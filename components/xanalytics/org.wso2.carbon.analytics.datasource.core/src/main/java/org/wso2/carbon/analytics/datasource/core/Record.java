@@ -28,6 +28,8 @@ import java.util.Map;
  */
 public class Record {
 
+    private static volatile RecordIdGenerator idGenerator = new TimeOrderedRecordIdGenerator();
+    
     private int tenantId;
     
     private String tableName;
@@ -60,10 +62,19 @@ public class Record {
     }
     
     private String generateID() {
-        StringBuilder builder = new StringBuilder();
-        builder.append(System.currentTimeMillis());
-        builder.append(Math.random());
-        return builder.toString();
+        return idGenerator.generateId();
+    }
+    
+    public static RecordIdGenerator getIdGenerator() {
+        return idGenerator;
+    }
+    
+    /**
+     * Sets the generator of the ids of the records created without an id.
+     * @param idGenerator The record id generator
+     */
+    public static void setIdGenerator(RecordIdGenerator idGenerator) {
+        Record.idGenerator = idGenerator;
     }
     
     public int getTenantId() {
@@ -0,0 +1,82 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.io.Serializable;
+import java.util.Map;
+
+/**
+ * This class represents the aggregate values of a group of records, which have the same values for 
+ * the group by fields.
+ */
+public class RecordAggregate implements Serializable {
+
+    private static final long serialVersionUID = -1759483920175532816L;
+
+    private Map<String, Object> groupValues;
+    
+    private Map<String, Object> values;
+    
+    public RecordAggregate(Map<String, Object> groupValues, Map<String, Object> values) {
+        this.groupValues = groupValues;
+        this.values = values;
+    }
+    
+    /**
+     * Returns the values of the group by fields of this group, a missing field has a null value.
+     */
+    public Map<String, Object> getGroupValues() {
+        return groupValues;
+    }
+    
+    public Object getGroupValue(String field) {
+        return this.getGroupValues().get(field);
+    }
+    
+    /**
+     * Returns the aggregate values of this group, by the names of their aggregate functions.
+     */
+    public Map<String, Object> getValues() {
+        return values;
+    }
+    
+    public Object getValue(AggregateFunction function) {
+        return this.getValues().get(function.getName());
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof RecordAggregate)) {
+            return false;
+        }
+        RecordAggregate rhs = (RecordAggregate) obj;
+        return this.getGroupValues().equals(rhs.getGroupValues()) && this.getValues().equals(rhs.getValues());
+    }
+    
+    @Override
+    public int hashCode() {
+        return this.getGroupValues().hashCode() + (this.getValues().hashCode() >> 4);
+    }
+    
+    @Override
+    public String toString() {
+        return this.getGroupValues() + " -> " + this.getValues();
+    }
+    
+}
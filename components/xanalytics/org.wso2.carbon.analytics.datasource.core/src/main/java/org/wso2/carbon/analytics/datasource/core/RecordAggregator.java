@@ -0,0 +1,302 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class computes the aggregates of a set of records in a single pass, keeping only the running aggregate 
+ * values of each group in memory. It can also combine partial aggregates, which are computed elsewhere for 
+ * subsets of the records, e.g. in a database.
+ */
+public class RecordAggregator {
+
+    private List<String> groupByFields;
+    
+    private List<AggregateFunction> functions;
+    
+    private Map<List<Object>, AggregateValue[]> groups = new LinkedHashMap<List<Object>, AggregateValue[]>();
+    
+    public RecordAggregator(List<String> groupByFields, List<AggregateFunction> functions) {
+        this.groupByFields = groupByFields;
+        this.functions = functions;
+    }
+    
+    /**
+     * Adds a record to its group.
+     * @param record The record
+     */
+    public void add(Record record) {
+        List<Object> groupValues = new ArrayList<Object>(this.groupByFields.size());
+        for (String field : this.groupByFields) {
+            groupValues.add(record.getValue(field));
+        }
+        AggregateValue[] values = this.lookupGroup(groupValues);
+        AggregateFunction function;
+        for (int i = 0; i < values.length; i++) {
+            function = this.functions.get(i);
+            if (function.getField() == null) {
+                values[i].addCount(1);
+            } else {
+                values[i].add(record.getValue(function.getField()));
+            }
+        }
+    }
+    
+    /**
+     * Adds the partial aggregates of a subset of the records of a group.
+     * @param groupValues The values of the group by fields of the group, in the order of the group by fields
+     * @param counts The number of the values each aggregate function is computed on, which is the value 
+     * itself for COUNT
+     * @param values The partial value of each aggregate function, i.e. the sum for SUM and AVG, the minimum 
+     * for MIN and the maximum for MAX, null for COUNT, or if there are no values. The integral sums which 
+     * do not fit in to a long are given as {@link BigInteger}s
+     */
+    public void addPartialAggregates(List<Object> groupValues, long[] counts, Object[] values) {
+        AggregateValue[] aggregates = this.lookupGroup(groupValues);
+        for (int i = 0; i < aggregates.length; i++) {
+            if (this.functions.get(i).getType() == AggregateFunction.Type.COUNT) {
+                aggregates[i].addCount(counts[i]);
+            } else if (values[i] != null) {
+                aggregates[i].add(values[i], counts[i]);
+            }
+        }
+    }
+    
+    private AggregateValue[] lookupGroup(List<Object> groupValues) {
+        AggregateValue[] values = this.groups.get(groupValues);
+        if (values == null) {
+            values = new AggregateValue[this.functions.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = new AggregateValue(this.functions.get(i).getType());
+            }
+            this.groups.put(groupValues, values);
+        }
+        return values;
+    }
+    
+    /**
+     * Returns the aggregates of the groups added so far.
+     */
+    public List<RecordAggregate> getAggregates() {
+        List<RecordAggregate> result = new ArrayList<RecordAggregate>(this.groups.size());
+        Map<String, Object> groupValues, values;
+        for (Map.Entry<List<Object>, AggregateValue[]> entry : this.groups.entrySet()) {
+            groupValues = new LinkedHashMap<String, Object>(this.groupByFields.size());
+            for (int i = 0; i < this.groupByFields.size(); i++) {
+                groupValues.put(this.groupByFields.get(i), entry.getKey().get(i));
+            }
+            values = new LinkedHashMap<String, Object>(this.functions.size());
+            for (int i = 0; i < this.functions.size(); i++) {
+                values.put(this.functions.get(i).getName(), entry.getValue()[i].getValue());
+            }
+            result.add(new RecordAggregate(groupValues, values));
+        }
+        return result;
+    }
+    
+    /**
+     * Computes the aggregates of the given records.
+     * @param recordItr The records
+     * @param groupByFields The fields to group the records by
+     * @param functions The aggregate functions to be computed for each group
+     * @return The aggregates of the groups
+     */
+    public static List<RecordAggregate> aggregate(Iterator<Record> recordItr, List<String> groupByFields, 
+            List<AggregateFunction> functions) {
+        RecordAggregator aggregator = new RecordAggregator(groupByFields, functions);
+        while (recordItr.hasNext()) {
+            aggregator.add(recordItr.next());
+        }
+        return aggregator.getAggregates();
+    }
+    
+    /**
+     * Computes the aggregates of the records of a table in the given record store, which match all the 
+     * given predicates, streaming in the records of each of its record groups.
+     * @see AggregatingRecordStore#getAggregates(int, String, long, long, List, List, List)
+     */
+    public static List<RecordAggregate> aggregate(AnalyticsRecordStore rs, int tenantId, String tableName, 
+            long timeFrom, long timeTo, List<RecordPredicate> predicates, List<String> groupByFields, 
+            List<AggregateFunction> functions) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        List<String> columns = new ArrayList<String>(groupByFields);
+        for (RecordPredicate predicate : predicates) {
+            columns.add(predicate.getField());
+        }
+        for (AggregateFunction function : functions) {
+            if (function.getField() != null) {
+                columns.add(function.getField());
+            }
+        }
+        RecordAggregator aggregator = new RecordAggregator(groupByFields, functions);
+        Iterator<Record> recordItr;
+        for (RecordGroup rg : rs.get(tenantId, tableName, columns, timeFrom, timeTo, 0, -1)) {
+            recordItr = new RecordFilterIterator(rs.readRecords(rg), predicates, null, -1);
+            while (recordItr.hasNext()) {
+                aggregator.add(recordItr.next());
+            }
+        }
+        return aggregator.getAggregates();
+    }
+    
+    /**
+     * This class represents the running value of an aggregate function for a group. The integral values 
+     * are summed up exactly, and the sum moves to a {@link BigInteger} once it does not fit in to a long.
+     */
+    private static class AggregateValue {
+        
+        private AggregateFunction.Type type;
+        
+        private long count;
+        
+        private boolean integral = true;
+        
+        private long longSum;
+        
+        private BigInteger bigSum;
+        
+        private double doubleSum;
+        
+        private Object value;
+        
+        public AggregateValue(AggregateFunction.Type type) {
+            this.type = type;
+        }
+        
+        public void addCount(long count) {
+            this.count += count;
+        }
+        
+        public void add(Object fieldValue) {
+            if (fieldValue == null) {
+                return;
+            }
+            if (this.type == AggregateFunction.Type.COUNT) {
+                this.count++;
+            } else {
+                this.add(fieldValue, 1);
+            }
+        }
+        
+        public void add(Object value, long count) {
+            switch (this.type) {
+            case SUM:
+            case AVG:
+                if (value instanceof Number) {
+                    this.addSum((Number) value, count);
+                }
+                break;
+            case MIN:
+                this.addExtreme(value, count, -1);
+                break;
+            case MAX:
+                this.addExtreme(value, count, 1);
+                break;
+            default:
+                this.count += count;
+            }
+        }
+        
+        private void addSum(Number value, long count) {
+            this.count += count;
+            if (RecordPredicate.isIntegral(value)) {
+                this.addIntegralSum(value.longValue());
+            } else if (value instanceof BigInteger) {
+                this.bigSum = this.getIntegralSum().add((BigInteger) value);
+            } else {
+                this.integral = false;
+                this.doubleSum += value.doubleValue();
+            }
+        }
+        
+        private void addIntegralSum(long value) {
+            if (this.bigSum != null) {
+                this.bigSum = this.bigSum.add(BigInteger.valueOf(value));
+                return;
+            }
+            long sum = this.longSum + value;
+            /* the sum overflows if its sign differs from the signs of both the operands */
+            if (((this.longSum ^ sum) & (value ^ sum)) < 0) {
+                this.bigSum = BigInteger.valueOf(this.longSum).add(BigInteger.valueOf(value));
+            } else {
+                this.longSum = sum;
+            }
+        }
+        
+        private BigInteger getIntegralSum() {
+            return this.bigSum != null ? this.bigSum : BigInteger.valueOf(this.longSum);
+        }
+        
+        /**
+         * Returns the integral sum as a long, or as a {@link BigInteger} if it does not fit in to a long.
+         */
+        private Number getIntegralSumValue() {
+            if (this.bigSum == null) {
+                return this.longSum;
+            }
+            return this.bigSum.bitLength() < Long.SIZE ? (Number) this.bigSum.longValue() : this.bigSum;
+        }
+        
+        /**
+         * Keeps the given value, if it is to be ordered before the current value in the given direction. 
+         * Numbers are ordered before strings, and the other values are ignored.
+         */
+        private void addExtreme(Object value, long count, int direction) {
+            if (!(value instanceof Number || value instanceof String)) {
+                return;
+            }
+            this.count += count;
+            if (this.value == null || (value instanceof Number && this.value instanceof String)) {
+                this.value = value;
+                return;
+            }
+            Integer comparison = RecordPredicate.compare(value, this.value);
+            if (comparison != null && comparison * direction > 0) {
+                this.value = value;
+            }
+        }
+        
+        public Object getValue() {
+            switch (this.type) {
+            case COUNT:
+                return this.count;
+            case SUM:
+                if (this.count == 0) {
+                    return null;
+                }
+                if (this.integral) {
+                    return this.getIntegralSumValue();
+                }
+                return this.getIntegralSumValue().doubleValue() + this.doubleSum;
+            case AVG:
+                return this.count == 0 ? null : (this.getIntegralSumValue().doubleValue() + 
+                        this.doubleSum) / this.count;
+            default:
+                return this.value;
+            }
+        }
+        
+    }
+    
+}
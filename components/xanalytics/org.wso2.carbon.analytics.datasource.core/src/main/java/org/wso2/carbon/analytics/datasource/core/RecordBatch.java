@@ -0,0 +1,89 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.util.List;
+
+/**
+ * This class represents a batch of records of a table in the columnar form, where the values of each of the 
+ * requested columns are kept in a {@link ColumnVector}.
+ */
+public class RecordBatch {
+
+    private List<String> columns;
+    
+    private int size;
+    
+    private String[] ids;
+    
+    private long[] timestamps;
+    
+    private ColumnVector[] columnVectors;
+    
+    public RecordBatch(List<String> columns, int size, String[] ids, long[] timestamps, 
+            ColumnVector[] columnVectors) {
+        this.columns = columns;
+        this.size = size;
+        this.ids = ids;
+        this.timestamps = timestamps;
+        this.columnVectors = columnVectors;
+    }
+    
+    public List<String> getColumns() {
+        return columns;
+    }
+    
+    /**
+     * Returns the number of records in the batch, the arrays of the batch may be larger than this.
+     * @return The record count
+     */
+    public int size() {
+        return size;
+    }
+    
+    public String[] getIds() {
+        return ids;
+    }
+    
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+    
+    public ColumnVector[] getColumnVectors() {
+        return columnVectors;
+    }
+    
+    public ColumnVector getColumnVector(int index) {
+        return this.columnVectors[index];
+    }
+    
+    /**
+     * Returns the column vector of the given column.
+     * @param column The column name
+     * @return The column vector, or null if the column is not in the batch
+     */
+    public ColumnVector getColumnVector(String column) {
+        int index = this.columns.indexOf(column);
+        if (index == -1) {
+            return null;
+        }
+        return this.columnVectors[index];
+    }
+    
+}
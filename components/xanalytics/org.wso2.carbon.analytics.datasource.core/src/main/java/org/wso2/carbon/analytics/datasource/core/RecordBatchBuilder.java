@@ -0,0 +1,226 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.wso2.carbon.analytics.datasource.core.ColumnVector.DoubleVector;
+import org.wso2.carbon.analytics.datasource.core.ColumnVector.IntVector;
+import org.wso2.carbon.analytics.datasource.core.ColumnVector.LongVector;
+import org.wso2.carbon.analytics.datasource.core.ColumnVector.ObjectVector;
+import org.wso2.carbon.analytics.datasource.core.ColumnVector.StringVector;
+
+/**
+ * This class builds {@link RecordBatch} objects, a record is added with {@link #addRecord(String, long)}, and its
+ * values are set with the set methods. The type of a column vector is decided by the first value of the column, 
+ * and the column is changed to an {@link ObjectVector}, if a value of another type is set later.
+ */
+public class RecordBatchBuilder {
+
+    private List<String> columns;
+    
+    private Map<String, Integer> columnIndices;
+    
+    private int capacity;
+    
+    private int size;
+    
+    private String[] ids;
+    
+    private long[] timestamps;
+    
+    private ColumnVector[] columnVectors;
+    
+    /**
+     * Creates a record batch builder.
+     * @param columns The columns of the record batches
+     * @param capacity The maximum number of records in a batch
+     */
+    public RecordBatchBuilder(List<String> columns, int capacity) {
+        this.columns = columns;
+        this.capacity = capacity;
+        this.columnIndices = new HashMap<String, Integer>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            this.columnIndices.put(columns.get(i), i);
+        }
+        this.reset();
+    }
+    
+    private void reset() {
+        this.size = 0;
+        this.ids = new String[this.capacity];
+        this.timestamps = new long[this.capacity];
+        this.columnVectors = new ColumnVector[this.columns.size()];
+    }
+    
+    public List<String> getColumns() {
+        return columns;
+    }
+    
+    /**
+     * Returns the index of the given column.
+     * @param column The column name
+     * @return The column index, or -1 if the column is not in the batch
+     */
+    public int getColumnIndex(String column) {
+        Integer index = this.columnIndices.get(column);
+        return index == null ? -1 : index;
+    }
+    
+    public int size() {
+        return size;
+    }
+    
+    public boolean isFull() {
+        return this.size == this.capacity;
+    }
+    
+    /**
+     * Adds a new record to the batch, the values set after this go to this record.
+     * @param id The record id
+     * @param timestamp The record timestamp
+     */
+    public void addRecord(String id, long timestamp) {
+        if (this.isFull()) {
+            throw new IllegalStateException("The record batch is full: " + this.capacity);
+        }
+        this.ids[this.size] = id;
+        this.timestamps[this.size] = timestamp;
+        this.size++;
+    }
+    
+    /**
+     * Adds the given record to the batch, with the values of the batch columns.
+     * @param record The record
+     */
+    public void add(Record record) {
+        this.addRecord(record.getId(), record.getTimestamp());
+        for (int i = 0; i < this.columnVectors.length; i++) {
+            this.setValue(i, record.getValue(this.columns.get(i)));
+        }
+    }
+    
+    public void setLong(int column, long value) {
+        ColumnVector vector = this.columnVectors[column];
+        if (vector == null) {
+            vector = new LongVector(this.capacity);
+            this.columnVectors[column] = vector;
+        }
+        if (vector instanceof LongVector) {
+            ((LongVector) vector).set(this.size - 1, value);
+        } else {
+            this.setObject(column, value);
+        }
+    }
+    
+    public void setInt(int column, int value) {
+        ColumnVector vector = this.columnVectors[column];
+        if (vector == null) {
+            vector = new IntVector(this.capacity);
+            this.columnVectors[column] = vector;
+        }
+        if (vector instanceof IntVector) {
+            ((IntVector) vector).set(this.size - 1, value);
+        } else {
+            this.setObject(column, value);
+        }
+    }
+    
+    public void setDouble(int column, double value) {
+        ColumnVector vector = this.columnVectors[column];
+        if (vector == null) {
+            vector = new DoubleVector(this.capacity);
+            this.columnVectors[column] = vector;
+        }
+        if (vector instanceof DoubleVector) {
+            ((DoubleVector) vector).set(this.size - 1, value);
+        } else {
+            this.setObject(column, value);
+        }
+    }
+    
+    public void setString(int column, String value) {
+        ColumnVector vector = this.columnVectors[column];
+        if (vector == null) {
+            vector = new StringVector(this.capacity);
+            this.columnVectors[column] = vector;
+        }
+        if (vector instanceof StringVector) {
+            ((StringVector) vector).set(this.size - 1, value);
+        } else {
+            this.setObject(column, value);
+        }
+    }
+    
+    /**
+     * Sets a value of any type, to the current record.
+     * @param column The column index
+     * @param value The value, which may be null
+     */
+    public void setValue(int column, Object value) {
+        if (value == null) {
+            /* the values are null unless set */
+            return;
+        } else if (value instanceof Long) {
+            this.setLong(column, (Long) value);
+        } else if (value instanceof Integer) {
+            this.setInt(column, (Integer) value);
+        } else if (value instanceof Double) {
+            this.setDouble(column, (Double) value);
+        } else if (value instanceof String) {
+            this.setString(column, (String) value);
+        } else {
+            this.setObject(column, value);
+        }
+    }
+    
+    private void setObject(int column, Object value) {
+        ColumnVector vector = this.columnVectors[column];
+        if (!(vector instanceof ObjectVector)) {
+            if (vector == null) {
+                vector = new ObjectVector(this.capacity);
+            } else {
+                /* the values of the column are of different types */
+                vector = new ObjectVector(vector, this.capacity, this.size - 1);
+            }
+            this.columnVectors[column] = vector;
+        }
+        ((ObjectVector) vector).set(this.size - 1, value);
+    }
+    
+    /**
+     * Creates a record batch with the records added so far, and clears the builder for the next batch.
+     * @return The record batch
+     */
+    public RecordBatch build() {
+        for (int i = 0; i < this.columnVectors.length; i++) {
+            if (this.columnVectors[i] == null) {
+                /* a column without any values */
+                this.columnVectors[i] = new ObjectVector(this.capacity);
+            }
+        }
+        RecordBatch batch = new RecordBatch(this.columns, this.size, this.ids, this.timestamps, 
+                this.columnVectors);
+        this.reset();
+        return batch;
+    }
+    
+}
@@ -0,0 +1,69 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * This class groups the records of a record iterator into {@link RecordBatch} objects.
+ */
+public class RecordBatchIterator implements Iterator<RecordBatch> {
+
+    private Iterator<Record> recordItr;
+    
+    private RecordBatchBuilder builder;
+    
+    public RecordBatchIterator(Iterator<Record> recordItr, List<String> columns, int batchSize) {
+        this.recordItr = recordItr;
+        this.builder = new RecordBatchBuilder(columns, batchSize);
+    }
+    
+    @Override
+    public boolean hasNext() {
+        return this.recordItr.hasNext();
+    }
+
+    @Override
+    public RecordBatch next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        while (!this.builder.isFull() && this.recordItr.hasNext()) {
+            this.add(this.builder, this.recordItr.next());
+        }
+        return this.builder.build();
+    }
+    
+    /**
+     * Adds the given record to the current batch.
+     * @param builder The builder of the current batch
+     * @param record The record
+     */
+    protected void add(RecordBatchBuilder builder, Record record) {
+        builder.add(record);
+    }
+
+    @Override
+    public void remove() {
+        /* this is a read-only iterator, nothing will be removed */
+    }
+    
+}
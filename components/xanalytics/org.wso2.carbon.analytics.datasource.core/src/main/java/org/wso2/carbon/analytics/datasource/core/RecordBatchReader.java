@@ -0,0 +1,42 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * This interface represents an {@link AnalyticsRecordStore}, which can read its records directly in the 
+ * columnar form, without creating a {@link Record} for each of them. The records of other record stores can be
+ * read in batches with a {@link RecordBatchIterator}.
+ */
+public interface RecordBatchReader {
+
+    /**
+     * Reads in the records from a given record group as record batches, the batches will be streamed in.
+     * @param recordGroup The record group which represents the local data set
+     * @param columns The columns of the record batches, which should be among the columns of the record group
+     * @param batchSize The maximum number of records in a batch
+     * @return An iterator of type {@link RecordBatch} in the local record group
+     * @throws AnalyticsException
+     */
+    Iterator<RecordBatch> readRecordBatches(RecordGroup recordGroup, List<String> columns, 
+            int batchSize) throws AnalyticsException;
+    
+}
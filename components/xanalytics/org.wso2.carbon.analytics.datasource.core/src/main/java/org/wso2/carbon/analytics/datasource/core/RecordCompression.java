@@ -0,0 +1,62 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+/**
+ * This enum represents the compression types of the encoded record values.
+ */
+public enum RecordCompression {
+    
+    NONE((byte) 0),
+    
+    /** deflate compression, better compression ratios */
+    DEFLATE((byte) 1),
+    
+    /** LZ4 block compression, faster compression and decompression */
+    LZ4((byte) 2);
+    
+    private byte id;
+    
+    private RecordCompression(byte id) {
+        this.id = id;
+    }
+    
+    /**
+     * Returns the id of this compression type, which is stored with the compressed data.
+     */
+    public byte getId() {
+        return id;
+    }
+    
+    /**
+     * Returns the compression type with the given id.
+     * @param id The compression type id
+     * @return The compression type
+     * @throws AnalyticsException If the id is unknown
+     */
+    public static RecordCompression fromId(byte id) throws AnalyticsException {
+        for (RecordCompression compression : values()) {
+            if (compression.id == id) {
+                return compression;
+            }
+        }
+        throw new AnalyticsException("Unknown record compression type id: " + id);
+    }
+    
+}
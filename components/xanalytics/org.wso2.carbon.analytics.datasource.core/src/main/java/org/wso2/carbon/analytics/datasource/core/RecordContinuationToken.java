@@ -0,0 +1,80 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+/**
+ * This class represents the position of a record in the (timestamp, id) ordering of a table, which is used 
+ * in cursor based record retrieval. The string form of the token is opaque to the users, and is only to be 
+ * passed back to continue the retrieval after the record it was generated from.
+ */
+public class RecordContinuationToken {
+    
+    private static final char SEPARATOR = ':';
+
+    private long timestamp;
+    
+    private String id;
+    
+    public RecordContinuationToken(long timestamp, String id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+    
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    public String getId() {
+        return id;
+    }
+    
+    /**
+     * Generates the continuation token to retrieve the records after the given record.
+     * @param record The last record that was read
+     * @return The continuation token
+     */
+    public static String generate(Record record) {
+        return new RecordContinuationToken(record.getTimestamp(), record.getId()).toString();
+    }
+    
+    /**
+     * Parses a continuation token.
+     * @param token The string form of the token
+     * @return The parsed token
+     * @throws AnalyticsException If the token is invalid
+     */
+    public static RecordContinuationToken parse(String token) throws AnalyticsException {
+        int index = token.indexOf(SEPARATOR);
+        if (index <= 0) {
+            throw new AnalyticsException("Invalid record continuation token: " + token);
+        }
+        try {
+            return new RecordContinuationToken(Long.parseLong(token.substring(0, index), Character.MAX_RADIX), 
+                    token.substring(index + 1));
+        } catch (NumberFormatException e) {
+            throw new AnalyticsException("Invalid record continuation token: " + token);
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return Long.toString(this.timestamp, Character.MAX_RADIX) + SEPARATOR + this.id;
+    }
+    
+}
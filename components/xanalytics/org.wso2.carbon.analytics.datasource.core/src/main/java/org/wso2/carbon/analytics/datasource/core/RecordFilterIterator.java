@@ -0,0 +1,132 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * This class filters the records of a record iterator with a set of {@link RecordPredicate}s, which all 
+ * should match. If the records have more fields than the requested columns, for the predicates to be 
+ * evaluated, the matching records are projected to the requested columns.
+ */
+public class RecordFilterIterator implements Iterator<Record> {
+
+    private Iterator<Record> recordItr;
+    
+    private List<RecordPredicate> predicates;
+    
+    private List<String> columns;
+    
+    private int remainingCount;
+    
+    private Record nextRecord;
+    
+    /**
+     * Creates a record filter iterator.
+     * @param recordItr The records to be filtered
+     * @param predicates The predicates the returned records should match
+     * @param columns The columns of the returned records, null if the records are to be returned as they are
+     * @param recordsCount The maximum number of records to be returned, -1 for infinity
+     */
+    public RecordFilterIterator(Iterator<Record> recordItr, List<RecordPredicate> predicates, 
+            List<String> columns, int recordsCount) {
+        this.recordItr = recordItr;
+        this.predicates = predicates;
+        this.columns = columns;
+        this.remainingCount = recordsCount == -1 ? Integer.MAX_VALUE : recordsCount;
+    }
+    
+    @Override
+    public boolean hasNext() {
+        while (this.nextRecord == null && this.remainingCount > 0 && this.recordItr.hasNext()) {
+            Record record = this.recordItr.next();
+            if (this.matches(record)) {
+                this.nextRecord = this.project(record);
+                this.remainingCount--;
+                if (this.remainingCount == 0) {
+                    this.close();
+                }
+            }
+        }
+        return this.nextRecord != null;
+    }
+    
+    /**
+     * Called when the maximum number of records are found, before the underlying iterator reaches its end, 
+     * so its resources can be released.
+     */
+    protected void close() {
+        /* nothing to release by default */
+    }
+    
+    private boolean matches(Record record) {
+        for (RecordPredicate predicate : this.predicates) {
+            if (!predicate.matches(record)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private Record project(Record record) {
+        if (this.columns == null || this.columns.isEmpty()) {
+            return record;
+        }
+        boolean extraFields = false;
+        for (RecordPredicate predicate : this.predicates) {
+            if (!this.columns.contains(predicate.getField())) {
+                extraFields = true;
+                break;
+            }
+        }
+        if (!extraFields) {
+            return record;
+        }
+        Map<String, Object> values = new HashMap<String, Object>(this.columns.size());
+        Object value;
+        for (String column : this.columns) {
+            value = record.getValue(column);
+            if (value != null) {
+                values.put(column, value);
+            }
+        }
+        return new Record(record.getId(), record.getTenantId(), record.getTableName(), values, 
+                record.getTimestamp());
+    }
+
+    @Override
+    public Record next() {
+        if (!this.hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Record result = this.nextRecord;
+        this.nextRecord = null;
+        return result;
+    }
+
+    @Override
+    public void remove() {
+        /* this is a read-only iterator, nothing will be removed */
+    }
+    
+}
@@ -0,0 +1,42 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.util.Map;
+
+/**
+ * This interface represents the generator of the ids of the records, which are created without an id.
+ * The generator used by the records is set with {@link Record#setIdGenerator(RecordIdGenerator)}.
+ */
+public interface RecordIdGenerator {
+
+    /**
+     * Initializes the generator, and is called once before generating any ids.
+     * @param properties The properties of the generator
+     * @throws AnalyticsException
+     */
+    void init(Map<String, String> properties) throws AnalyticsException;
+    
+    /**
+     * Generates a new record id, this is called concurrently, and must not return the same id twice.
+     * @return The record id
+     */
+    String generateId();
+    
+}
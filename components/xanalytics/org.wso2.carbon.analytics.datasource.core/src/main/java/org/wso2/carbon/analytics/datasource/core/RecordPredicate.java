@@ -0,0 +1,140 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.io.Serializable;
+
+/**
+ * This class represents a simple condition on a field of a record, which compares the field value with 
+ * a constant value. Numbers are compared by their numeric values, strings lexicographically, and booleans 
+ * only for equality. A record with a missing field, or a field value which cannot be compared with the 
+ * constant value, does not match the predicate.
+ */
+public class RecordPredicate implements Serializable {
+    
+    private static final long serialVersionUID = -3484627407591046431L;
+
+    private String field;
+    
+    private Operator operator;
+    
+    private Object value;
+    
+    public RecordPredicate(String field, Operator operator, Object value) {
+        if (field == null || operator == null || value == null) {
+            throw new IllegalArgumentException("The field, the operator and the value of a record "
+                    + "predicate cannot be null");
+        }
+        this.field = field;
+        this.operator = operator;
+        this.value = value;
+    }
+    
+    public String getField() {
+        return field;
+    }
+    
+    public Operator getOperator() {
+        return operator;
+    }
+    
+    public Object getValue() {
+        return value;
+    }
+    
+    /**
+     * Checks if the given record matches this predicate.
+     * @param record The record
+     * @return true if the record matches
+     */
+    public boolean matches(Record record) {
+        return this.matches(record.getValue(this.getField()));
+    }
+    
+    /**
+     * Checks if the given field value matches this predicate.
+     * @param fieldValue The field value, or null if the field is not there
+     * @return true if the value matches
+     */
+    public boolean matches(Object fieldValue) {
+        Integer comparison = compare(fieldValue, this.getValue());
+        if (comparison == null) {
+            return false;
+        }
+        switch (this.getOperator()) {
+        case EQUAL:
+            return comparison == 0;
+        case LESS_THAN:
+            return comparison < 0;
+        case LESS_THAN_OR_EQUAL:
+            return comparison <= 0;
+        case GREATER_THAN:
+            return comparison > 0;
+        case GREATER_THAN_OR_EQUAL:
+            return comparison >= 0;
+        default:
+            return false;
+        }
+    }
+    
+    /**
+     * Compares two field values.
+     * @return The comparison result, or null if the values cannot be compared
+     */
+    static Integer compare(Object lhs, Object rhs) {
+        if (lhs == null || rhs == null) {
+            return null;
+        }
+        if (lhs instanceof Number && rhs instanceof Number) {
+            if (isIntegral(lhs) && isIntegral(rhs)) {
+                long l1 = ((Number) lhs).longValue(), l2 = ((Number) rhs).longValue();
+                return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+            }
+            return Double.compare(((Number) lhs).doubleValue(), ((Number) rhs).doubleValue());
+        }
+        if (lhs instanceof String && rhs instanceof String) {
+            return ((String) lhs).compareTo((String) rhs);
+        }
+        if (lhs instanceof Boolean && rhs instanceof Boolean) {
+            return lhs.equals(rhs) ? 0 : null;
+        }
+        return null;
+    }
+    
+    static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+    }
+    
+    @Override
+    public String toString() {
+        return this.getField() + " " + this.getOperator() + " " + this.getValue();
+    }
+    
+    /**
+     * The comparison operators of a record predicate.
+     */
+    public static enum Operator {
+        EQUAL,
+        LESS_THAN,
+        LESS_THAN_OR_EQUAL,
+        GREATER_THAN,
+        GREATER_THAN_OR_EQUAL
+    }
+    
+}
@@ -0,0 +1,118 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+/**
+ * The default {@link RecordIdGenerator}, which generates 16 character ids, from a millisecond timestamp, 
+ * a node id and a sequence number. The ids are encoded with an alphabet in the ASCII order, so the ids 
+ * generated later by a node are greater than the earlier ones, and the records are added to the end of 
+ * the id indexes. The alphabet has no upper case letters, so the ids stay unique with case insensitive 
+ * collations. The node id is set with the "nodeId" property, which the data service assigns from the cluster 
+ * if it is not configured, or else, a random one is used, with a warning, since the ids may then conflict.
+ */
+public class TimeOrderedRecordIdGenerator implements RecordIdGenerator {
+
+    private static final Log log = LogFactory.getLog(TimeOrderedRecordIdGenerator.class);
+
+    public static final String NODE_ID_PROP = "nodeId";
+    
+    public static final int ID_LENGTH = 16;
+    
+    private static final int NODE_ID_BITS = 16;
+    
+    private static final int SEQUENCE_BITS = 16;
+    
+    public static final int MAX_NODE_ID = (1 << NODE_ID_BITS) - 1;
+    
+    private static final char[] ALPHABET = "0123456789abcdefghijklmnopqrstuv".toCharArray();
+    
+    private int nodeId;
+    
+    /* the last timestamp and sequence number, the timestamp moves ahead of the clock if the sequence overflows, 
+     * or the clock goes back, so the ids never repeat */
+    private AtomicLong lastTimeSequence = new AtomicLong();
+    
+    public TimeOrderedRecordIdGenerator() {
+        this(new Random().nextInt(MAX_NODE_ID + 1));
+    }
+    
+    public TimeOrderedRecordIdGenerator(int nodeId) {
+        this.setNodeId(nodeId);
+    }
+    
+    private void setNodeId(int nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("The record id generator node id must be between 0 and " + 
+                    MAX_NODE_ID + ": " + nodeId);
+        }
+        this.nodeId = nodeId;
+    }
+    
+    public int getNodeId() {
+        return nodeId;
+    }
+    
+    @Override
+    public void init(Map<String, String> properties) throws AnalyticsException {
+        String nodeIdProp = properties.get(NODE_ID_PROP);
+        if (nodeIdProp != null) {
+            try {
+                this.setNodeId(Integer.parseInt(nodeIdProp.trim()));
+            } catch (IllegalArgumentException e) {
+                throw new AnalyticsException("Invalid record id generator node id: " + nodeIdProp);
+            }
+        } else {
+            log.warn("The record id generator node id is not set, using the random node id " + this.nodeId + 
+                    ", the '" + NODE_ID_PROP + "' property should be set to a unique value for each node, " +
+                    "to avoid record id conflicts");
+        }
+    }
+    
+    @Override
+    public String generateId() {
+        long timeSequence = this.nextTimeSequence();
+        long high = ((timeSequence >>> SEQUENCE_BITS) << NODE_ID_BITS) | this.nodeId;
+        int low = (int) timeSequence & ((1 << SEQUENCE_BITS) - 1);
+        char[] id = new char[ID_LENGTH];
+        /* the 80 bits are written from the end, 5 bits per character */
+        for (int i = ID_LENGTH - 1; i >= 0; i--) {
+            id[i] = ALPHABET[low & 0x1F];
+            low = (low >>> 5) | ((int) (high & 0x1F) << (SEQUENCE_BITS - 5));
+            high >>>= 5;
+        }
+        return new String(id);
+    }
+    
+    private long nextTimeSequence() {
+        long last, next;
+        do {
+            last = this.lastTimeSequence.get();
+            next = Math.max(last + 1, System.currentTimeMillis() << SEQUENCE_BITS);
+        } while (!this.lastTimeSequence.compareAndSet(last, next));
+        return next;
+    }
+    
+}
@@ -18,18 +18,22 @@
  */
 package org.wso2.carbon.analytics.datasource.core.util;
 
-import java.io.UnsupportedEncodingException;
-import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 import org.apache.commons.collections.IteratorUtils;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsRecordStore;
+import org.wso2.carbon.analytics.datasource.core.ColumnDictionary;
 import org.wso2.carbon.analytics.datasource.core.Record;
+import org.wso2.carbon.analytics.datasource.core.RecordCompression;
 import org.wso2.carbon.analytics.datasource.core.RecordGroup;
 
 /**
@@ -37,27 +41,37 @@ import org.wso2.carbon.analytics.datasource.core.RecordGroup;
  */
 public class GenericUtils {
     
-    private static final byte BOOLEAN_TRUE = 1;
+    static final byte BOOLEAN_TRUE = 1;
 
-    private static final byte BOOLEAN_FALSE = 0;
+    static final byte BOOLEAN_FALSE = 0;
 
-    private static final byte DATA_TYPE_NULL = 0x00;
+    static final byte DATA_TYPE_NULL = 0x00;
     
-    private static final byte DATA_TYPE_STRING = 0x01;
+    static final byte DATA_TYPE_STRING = 0x01;
     
-    private static final byte DATA_TYPE_INTEGER = 0x02;
+    static final byte DATA_TYPE_INTEGER = 0x02;
     
-    private static final byte DATA_TYPE_LONG = 0x03;
+    static final byte DATA_TYPE_LONG = 0x03;
     
-    private static final byte DATA_TYPE_FLOAT = 0x04;
+    static final byte DATA_TYPE_FLOAT = 0x04;
     
-    private static final byte DATA_TYPE_DOUBLE = 0x05;
+    static final byte DATA_TYPE_DOUBLE = 0x05;
     
-    private static final byte DATA_TYPE_BOOLEAN = 0x06;
+    static final byte DATA_TYPE_BOOLEAN = 0x06;
     
-    private static final byte DATA_TYPE_BINARY = 0x07;
+    static final byte DATA_TYPE_BINARY = 0x07;
     
     private static final String DEFAULT_CHARSET = "UTF8";
+    
+    static final Charset UTF8_CHARSET = Charset.forName(DEFAULT_CHARSET);
+    
+    /* the first byte of the records in the current encoding format, the records in the original format are empty, 
+     * or start with the most significant byte of the first column name's length */
+    static final byte ENCODING_VERSION_1 = (byte) 0x81;
+    
+    /* the first byte of compressed record values, which is followed by the compression type id, 
+     * the length of the uncompressed data and the compressed data */
+    static final byte COMPRESSED_RECORD_VALUES = (byte) 0x82;
 
     public static String getParentPath(String path) {
         if (path.equals("/")) {
@@ -85,164 +99,329 @@ public class GenericUtils {
         return path;
     }
     
-    private static int calculateRecordValuesBufferSize(Map<String, Object> values) throws AnalyticsException {
-        int count = 0;
+    /**
+     * Calculates the exact encoded size of the given record values, the UTF-8 encoded column names and
+     * string values are put to "encodedStrings", at [2 * column index] and [2 * column index + 1] respectively.
+     */
+    private static int calculateRecordValuesBufferSize(Map<String, Object> values, 
+            ColumnDictionary dictionary, byte[][] encodedStrings) throws AnalyticsException {
+        /* the version marker */
+        int count = 1;
+        int index = 0;
         String name;
         Object value;
+        Integer id;
+        int length;
         for (Map.Entry<String, Object> entry : values.entrySet()) {
             name = entry.getKey();
             value = entry.getValue();
-            /* column name length value + data type (including null) */
-            count += Integer.SIZE / 8 + 1;
-            /* column name */
-            count += name.length();
+            id = lookupColumnId(name, dictionary);
+            /* column header + data type (including null) */
+            if (id != null) {
+                count += varIntSize(id << 1);
+            } else {
+                encodedStrings[index] = name.getBytes(UTF8_CHARSET);
+                length = encodedStrings[index].length;
+                count += varIntSize((length << 1) | 1) + length;
+            }
+            count++;
             if (value instanceof String) {
                 /* string length + value */
-                count += Integer.SIZE / 8;
-                count += ((String) value).length();
+                encodedStrings[index + 1] = ((String) value).getBytes(UTF8_CHARSET);
+                length = encodedStrings[index + 1].length;
+                count += varIntSize(length) + length;
             } else if (value instanceof Long) {
-                count += Long.SIZE / 8;
+                count += varLongSize(zigZagEncode((Long) value));
             } else if (value instanceof Double) {
                 count += Double.SIZE / 8;
             } else if (value instanceof Boolean) {
                 count += Byte.SIZE / 8;
             } else if (value instanceof Integer) {
-                count += Integer.SIZE / 8;
+                count += varIntSize(zigZagEncode((Integer) value));
             } else if (value instanceof Float) {
                 count += Float.SIZE / 8;
             } else if (value instanceof byte[]) {
-                count += Integer.SIZE / 8;
-                count += ((byte[]) value).length;
+                length = ((byte[]) value).length;
+                count += varIntSize(length) + length;
             } else if (value != null) {
                 throw new AnalyticsException("Invalid column value type in calculating column "
                         + "values length: " + value.getClass());
             }
+            index += 2;
         }
         return count;
     }
     
+    private static Integer lookupColumnId(String name, ColumnDictionary dictionary) {
+        if (dictionary == null) {
+            return null;
+        }
+        return dictionary.getId(name);
+    }
+    
     public static byte[] encodeRecordValues(Map<String, Object> values) throws AnalyticsException {
-        ByteBuffer buffer = ByteBuffer.allocate(calculateRecordValuesBufferSize(values));
-        String name, strVal;
-        boolean boolVal;
+        return encodeRecordValues(values, null);
+    }
+    
+    /**
+     * Encodes the given record values. The columns which are in the given dictionary are referred to by their ids,
+     * and the others by their names.
+     * @param values The record values
+     * @param dictionary The column dictionary of the table, or null to encode all the column names
+     * @return The encoded record values
+     * @throws AnalyticsException
+     */
+    public static byte[] encodeRecordValues(Map<String, Object> values, 
+            ColumnDictionary dictionary) throws AnalyticsException {
+        byte[][] encodedStrings = new byte[values.size() * 2][];
+        byte[] data = new byte[calculateRecordValuesBufferSize(values, dictionary, encodedStrings)];
+        data[0] = ENCODING_VERSION_1;
+        int position = 1;
+        int index = 0;
+        String name;
         Object value;
+        Integer id;
         byte[] binData;
         for (Map.Entry<String, Object> entry : values.entrySet()) {
-            try {
-                name = entry.getKey();
-                value = entry.getValue();
-                buffer.putInt(name.length());
-                buffer.put(name.getBytes(DEFAULT_CHARSET));
-                if (value instanceof String) {
-                    buffer.put(DATA_TYPE_STRING);
-                    strVal = (String) value;
-                    buffer.putInt(strVal.length());
-                    buffer.put(strVal.getBytes(DEFAULT_CHARSET));
-                } else if (value instanceof Long) {
-                    buffer.put(DATA_TYPE_LONG);
-                    buffer.putLong((Long) value);
-                } else if (value instanceof Double) {
-                    buffer.put(DATA_TYPE_DOUBLE);
-                    buffer.putDouble((Double) value);
-                } else if (value instanceof Boolean) {
-                    buffer.put(DATA_TYPE_BOOLEAN);
-                    boolVal = (Boolean) value;
-                    if (boolVal) {
-                        buffer.put(BOOLEAN_TRUE);
-                    } else {
-                        buffer.put(BOOLEAN_FALSE);
-                    }
-                } else if (value instanceof Integer) {
-                    buffer.put(DATA_TYPE_INTEGER);
-                    buffer.putInt((Integer) value);
-                } else if (value instanceof Float) {
-                    buffer.put(DATA_TYPE_FLOAT);
-                    buffer.putFloat((Float) value);
-                } else if (value instanceof byte[]) {
-                    buffer.put(DATA_TYPE_BINARY);
-                    binData = (byte[]) value;
-                    buffer.putInt(binData.length);
-                    buffer.put(binData);
-                } else if (value == null) {
-                    buffer.put(DATA_TYPE_NULL);
-                } else {
-                    throw new AnalyticsException("Invalid column value type in encoding "
-                            + "column value: " + value.getClass());
-                }
-            } catch (UnsupportedEncodingException e) {
-                throw new AnalyticsException("Error in encoding record values: " + e.getMessage());
+            name = entry.getKey();
+            value = entry.getValue();
+            id = lookupColumnId(name, dictionary);
+            if (id != null) {
+                position = writeVarInt(data, position, id << 1);
+            } else {
+                binData = encodedStrings[index];
+                position = writeVarInt(data, position, (binData.length << 1) | 1);
+                position = writeBytes(data, position, binData);
             }
+            if (value instanceof String) {
+                data[position++] = DATA_TYPE_STRING;
+                binData = encodedStrings[index + 1];
+                position = writeVarInt(data, position, binData.length);
+                position = writeBytes(data, position, binData);
+            } else if (value instanceof Long) {
+                data[position++] = DATA_TYPE_LONG;
+                position = writeVarLong(data, position, zigZagEncode((Long) value));
+            } else if (value instanceof Double) {
+                data[position++] = DATA_TYPE_DOUBLE;
+                position = writeLong(data, position, Double.doubleToRawLongBits((Double) value));
+            } else if (value instanceof Boolean) {
+                data[position++] = DATA_TYPE_BOOLEAN;
+                data[position++] = ((Boolean) value) ? BOOLEAN_TRUE : BOOLEAN_FALSE;
+            } else if (value instanceof Integer) {
+                data[position++] = DATA_TYPE_INTEGER;
+                position = writeVarInt(data, position, zigZagEncode((Integer) value));
+            } else if (value instanceof Float) {
+                data[position++] = DATA_TYPE_FLOAT;
+                position = writeInt(data, position, Float.floatToRawIntBits((Float) value));
+            } else if (value instanceof byte[]) {
+                data[position++] = DATA_TYPE_BINARY;
+                binData = (byte[]) value;
+                position = writeVarInt(data, position, binData.length);
+                position = writeBytes(data, position, binData);
+            } else if (value == null) {
+                data[position++] = DATA_TYPE_NULL;
+            } else {
+                throw new AnalyticsException("Invalid column value type in encoding "
+                        + "column value: " + value.getClass());
+            }
+            index += 2;
         }
-        return buffer.array();
+        return data;
     }
     
     public static Map<String, Object> decodeRecordValues(byte[] data, 
             Set<String> columns) throws AnalyticsException {
-        /* using LinkedHashMap to retain the column order */
-        Map<String, Object> result = new LinkedHashMap<String, Object>();
-        ByteBuffer buffer = ByteBuffer.wrap(data);
-        int type, size;
-        String colName;
-        Object value;
-        byte[] buff;
-        byte boolVal;
-        byte[] binData;
-        while (buffer.remaining() > 0) {
-            try {
-                size = buffer.getInt();
-                buff = new byte[size];
-                buffer.get(buff, 0, size);
-                colName = new String(buff, DEFAULT_CHARSET);
-                type = buffer.get();
-                switch (type) {
-                case DATA_TYPE_STRING:
-                    size = buffer.getInt();
-                    buff = new byte[size];
-                    buffer.get(buff, 0, size);
-                    value = new String(buff, DEFAULT_CHARSET);
-                    break;
-                case DATA_TYPE_LONG:
-                    value = buffer.getLong();
-                    break;
-                case DATA_TYPE_DOUBLE:
-                    value = buffer.getDouble();
-                    break;
-                case DATA_TYPE_BOOLEAN:
-                    boolVal = buffer.get();
-                    if (boolVal == BOOLEAN_TRUE) {
-                        value = true;
-                    } else if (boolVal == BOOLEAN_FALSE) {
-                        value = false;
-                    } else {
-                        throw new AnalyticsException("Invalid encoded boolean value: " + boolVal);
-                    }
-                    break;
-                case DATA_TYPE_INTEGER:
-                    value = buffer.getInt();
-                    break;
-                case DATA_TYPE_FLOAT:
-                    value = buffer.getFloat();
-                    break;
-                case DATA_TYPE_BINARY:
-                    size = buffer.getInt();
-                    binData = new byte[size];
-                    buffer.get(binData);
-                    value = binData;
-                    break;
-                case DATA_TYPE_NULL:
-                    value = null;
+        return decodeRecordValues(data, columns, null);
+    }
+    
+    /**
+     * Decodes the given record values, which may be in the current, or in the original encoding format, 
+     * and may be compressed.
+     * @param data The encoded record values
+     * @param columns The columns to be decoded, or null for all the columns
+     * @param dictionary The column dictionary of the table, used in encoding the values
+     * @return The record values
+     * @throws AnalyticsException
+     */
+    public static Map<String, Object> decodeRecordValues(byte[] data, Set<String> columns, 
+            ColumnDictionary dictionary) throws AnalyticsException {
+        return new RecordValuesDecoder(columns, dictionary, false).decode(data);
+    }
+    
+    /**
+     * Compresses the given encoded record values. If the data does not get smaller, it is returned as it is.
+     * @param data The encoded record values
+     * @param compression The compression type
+     * @return The compressed record values, which can be given to the decode methods directly
+     * @throws AnalyticsException
+     */
+    public static byte[] compressRecordValues(byte[] data, RecordCompression compression) throws AnalyticsException {
+        int headerLength = 2 + varIntSize(data.length);
+        byte[] result;
+        int end;
+        switch (compression) {
+        case NONE:
+            return data;
+        case DEFLATE:
+            result = new byte[headerLength + data.length];
+            end = deflate(data, result, headerLength);
+            break;
+        case LZ4:
+            result = new byte[headerLength + LZ4BlockCodec.maxCompressedLength(data.length)];
+            end = LZ4BlockCodec.compress(data, result, headerLength);
+            break;
+        default:
+            throw new AnalyticsException("Unsupported record compression type: " + compression);
+        }
+        if (end == -1 || end >= data.length) {
+            return data;
+        }
+        result[0] = COMPRESSED_RECORD_VALUES;
+        result[1] = compression.getId();
+        writeVarInt(result, 2, data.length);
+        return Arrays.copyOf(result, end);
+    }
+    
+    /**
+     * Decompresses the given record values, if they are compressed.
+     * @param data The record values, which may or may not be compressed
+     * @return The uncompressed record values
+     * @throws AnalyticsException
+     */
+    public static byte[] decompressRecordValues(byte[] data) throws AnalyticsException {
+        if (data.length == 0 || data[0] != COMPRESSED_RECORD_VALUES) {
+            return data;
+        }
+        return new RecordValuesDecoder(null, null, false).decompress(data);
+    }
+    
+    /**
+     * Decompresses the given compressed block into the start of the destination array.
+     */
+    static void decompress(RecordCompression compression, byte[] src, int offset, int length, 
+            byte[] dest, int destLength) throws AnalyticsException {
+        switch (compression) {
+        case DEFLATE:
+            inflate(src, offset, length, dest, destLength);
+            break;
+        case LZ4:
+            LZ4BlockCodec.decompress(src, offset, length, dest, destLength);
+            break;
+        default:
+            throw new AnalyticsException("Unsupported record compression type: " + compression);
+        }
+    }
+    
+    /**
+     * Deflates the data to the given array.
+     * @return The end position of the compressed data, or -1 if it does not fit in the array
+     */
+    private static int deflate(byte[] data, byte[] dest, int offset) {
+        Deflater deflater = new Deflater();
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            int position = offset;
+            while (!deflater.finished() && position < dest.length) {
+                position += deflater.deflate(dest, position, dest.length - position);
+            }
+            return deflater.finished() ? position : -1;
+        } finally {
+            deflater.end();
+        }
+    }
+    
+    private static void inflate(byte[] data, int offset, int length, byte[] dest, 
+            int destLength) throws AnalyticsException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, length);
+            int position = 0, count;
+            while (position < destLength) {
+                count = inflater.inflate(dest, position, destLength - position);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
                     break;
-                default:
-                    throw new AnalyticsException("Unknown encoded data source type : " + type);
-                }
-                if (columns == null || columns.contains(colName)) {
-                    result.put(colName, value);
                 }
-            } catch (Exception e) {
-                throw new AnalyticsException("Error in decoding record values: " + e.getMessage());
+                position += count;
+            }
+            if (position != destLength) {
+                throw new AnalyticsException("The inflated record values length is " + position + 
+                        ", but expected " + destLength);
             }
+        } catch (DataFormatException e) {
+            throw new AnalyticsException("Error in decompressing record values: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
         }
-        return result;
+    }
+    
+    private static int zigZagEncode(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+    
+    private static long zigZagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+    
+    static int zigZagDecode(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    static long zigZagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+    
+    private static int varIntSize(int value) {
+        return (Integer.SIZE - Integer.numberOfLeadingZeros(value | 1) + 6) / 7;
+    }
+    
+    private static int varLongSize(long value) {
+        return (Long.SIZE - Long.numberOfLeadingZeros(value | 1) + 6) / 7;
+    }
+    
+    private static int writeVarInt(byte[] data, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            data[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[position++] = (byte) value;
+        return position;
+    }
+    
+    private static int writeVarLong(byte[] data, int position, long value) {
+        while ((value & ~0x7FL) != 0) {
+            data[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[position++] = (byte) value;
+        return position;
+    }
+    
+    private static int writeInt(byte[] data, int position, int value) {
+        data[position++] = (byte) (value >>> 24);
+        data[position++] = (byte) (value >>> 16);
+        data[position++] = (byte) (value >>> 8);
+        data[position++] = (byte) value;
+        return position;
+    }
+    
+    private static int writeLong(byte[] data, int position, long value) {
+        position = writeInt(data, position, (int) (value >>> 32));
+        return writeInt(data, position, (int) value);
+    }
+    
+    private static int writeBytes(byte[] data, int position, byte[] value) {
+        System.arraycopy(value, 0, data, position, value.length);
+        return position + value.length;
+    }
+    
+    static int readInt(byte[] data, int position) {
+        return ((data[position] & 0xFF) << 24) | ((data[position + 1] & 0xFF) << 16) | 
+                ((data[position + 2] & 0xFF) << 8) | (data[position + 3] & 0xFF);
+    }
+    
+    static long readLong(byte[] data, int position) {
+        return ((long) readInt(data, position) << 32) | (readInt(data, position + 4) & 0xFFFFFFFFL);
     }
     
     @SuppressWarnings("unchecked")
@@ -0,0 +1,208 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core.util;
+
+import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
+
+/**
+ * A pure Java implementation of the LZ4 block format, the compressed data is compatible with other 
+ * LZ4 block decoders. The compressor is a simple single pass one, which favours speed over compression ratio.
+ */
+public class LZ4BlockCodec {
+    
+    private static final int MIN_MATCH = 4;
+    
+    /* the last literals of a block, and the minimum distance of the last match start from the end */
+    private static final int LAST_LITERALS = 5;
+    
+    private static final int MF_LIMIT = 12;
+    
+    private static final int MAX_DISTANCE = 65535;
+    
+    private static final int HASH_LOG = 12;
+    
+    private static final int RUN_MASK = 0x0F;
+    
+    /**
+     * Returns the maximum compressed length of the data of the given length.
+     */
+    public static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+    
+    /**
+     * Compresses the given data into the destination array, which should have at least 
+     * {@link #maxCompressedLength(int)} bytes after the given offset.
+     * @param src The source data
+     * @param dest The destination array
+     * @param destOffset The offset in the destination array
+     * @return The end position of the compressed data in the destination array
+     */
+    public static int compress(byte[] src, byte[] dest, int destOffset) {
+        int length = src.length;
+        int op = destOffset;
+        int anchor = 0;
+        if (length >= MF_LIMIT + 1) {
+            /* positions + 1 of the last occurrences of the 4 byte sequences, 0 being empty */
+            int[] table = new int[1 << HASH_LOG];
+            int matchLimit = length - LAST_LITERALS;
+            int ipLimit = length - MF_LIMIT;
+            int ip = 0, ref, seq, hash, matchLength;
+            while (ip < ipLimit) {
+                seq = readInt(src, ip);
+                hash = hash(seq);
+                ref = table[hash] - 1;
+                table[hash] = ip + 1;
+                if (ref < 0 || ip - ref > MAX_DISTANCE || readInt(src, ref) != seq) {
+                    ip++;
+                    continue;
+                }
+                matchLength = MIN_MATCH;
+                while (ip + matchLength < matchLimit && src[ref + matchLength] == src[ip + matchLength]) {
+                    matchLength++;
+                }
+                op = writeSequence(src, anchor, ip - anchor, ip - ref, matchLength, dest, op);
+                ip += matchLength;
+                anchor = ip;
+                if (ip - 2 < ipLimit) {
+                    table[hash(readInt(src, ip - 2))] = ip - 1;
+                }
+            }
+        }
+        /* the last literals */
+        int literalLength = length - anchor;
+        int tokenPos = op++;
+        dest[tokenPos] = 0;
+        op = writeLength(literalLength, dest, tokenPos, 4, op);
+        System.arraycopy(src, anchor, dest, op, literalLength);
+        return op + literalLength;
+    }
+    
+    private static int writeSequence(byte[] src, int literalOffset, int literalLength, int matchOffset, 
+            int matchLength, byte[] dest, int op) {
+        int tokenPos = op++;
+        dest[tokenPos] = 0;
+        op = writeLength(literalLength, dest, tokenPos, 4, op);
+        System.arraycopy(src, literalOffset, dest, op, literalLength);
+        op += literalLength;
+        dest[op++] = (byte) matchOffset;
+        dest[op++] = (byte) (matchOffset >>> 8);
+        return writeLength(matchLength - MIN_MATCH, dest, tokenPos, 0, op);
+    }
+    
+    /**
+     * Writes a literal or a match length to the given token nibble, and the extra length bytes if required.
+     */
+    private static int writeLength(int length, byte[] dest, int tokenPos, int shift, int op) {
+        if (length >= RUN_MASK) {
+            dest[tokenPos] |= (byte) (RUN_MASK << shift);
+            length -= RUN_MASK;
+            while (length >= 255) {
+                dest[op++] = (byte) 255;
+                length -= 255;
+            }
+            dest[op++] = (byte) length;
+        } else {
+            dest[tokenPos] |= (byte) (length << shift);
+        }
+        return op;
+    }
+    
+    /**
+     * Decompresses the given LZ4 block.
+     * @param src The source array
+     * @param offset The offset of the compressed block in the source array
+     * @param length The length of the compressed block
+     * @param originalLength The length of the decompressed data
+     * @return The decompressed data
+     * @throws AnalyticsException If the compressed data is invalid
+     */
+    public static byte[] decompress(byte[] src, int offset, int length, 
+            int originalLength) throws AnalyticsException {
+        byte[] dest = new byte[originalLength];
+        decompress(src, offset, length, dest, originalLength);
+        return dest;
+    }
+    
+    /**
+     * Decompresses the given LZ4 block into the start of the destination array.
+     * @param src The source array
+     * @param offset The offset of the compressed block in the source array
+     * @param length The length of the compressed block
+     * @param dest The destination array, which should have at least originalLength bytes
+     * @param originalLength The length of the decompressed data
+     * @throws AnalyticsException If the compressed data is invalid
+     */
+    public static void decompress(byte[] src, int offset, int length, byte[] dest, 
+            int originalLength) throws AnalyticsException {
+        int ip = offset, end = offset + length, op = 0;
+        int token, literalLength, matchLength, matchOffset, ref, b;
+        try {
+            while (true) {
+                token = src[ip++] & 0xFF;
+                literalLength = token >>> 4;
+                if (literalLength == RUN_MASK) {
+                    do {
+                        b = src[ip++] & 0xFF;
+                        literalLength += b;
+                    } while (b == 255);
+                }
+                System.arraycopy(src, ip, dest, op, literalLength);
+                ip += literalLength;
+                op += literalLength;
+                if (ip >= end) {
+                    break;
+                }
+                matchOffset = (src[ip++] & 0xFF) | ((src[ip++] & 0xFF) << 8);
+                matchLength = token & RUN_MASK;
+                if (matchLength == RUN_MASK) {
+                    do {
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    } while (b == 255);
+                }
+                matchLength += MIN_MATCH;
+                ref = op - matchOffset;
+                if (matchOffset == 0 || ref < 0) {
+                    throw new AnalyticsException("Invalid match offset: " + matchOffset);
+                }
+                /* the match may overlap with the bytes being written */
+                for (int i = 0; i < matchLength; i++) {
+                    dest[op++] = dest[ref++];
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new AnalyticsException("Invalid LZ4 compressed data: " + e.getMessage());
+        }
+        if (ip != end || op != originalLength) {
+            throw new AnalyticsException("Invalid LZ4 compressed data, the decompressed length is " + op + 
+                    ", but expected " + originalLength);
+        }
+    }
+    
+    private static int readInt(byte[] data, int position) {
+        return (data[position] & 0xFF) | ((data[position + 1] & 0xFF) << 8) | 
+                ((data[position + 2] & 0xFF) << 16) | ((data[position + 3] & 0xFF) << 24);
+    }
+    
+    private static int hash(int seq) {
+        return (seq * -1640531535) >>> (Integer.SIZE - HASH_LOG);
+    }
+    
+}
@@ -0,0 +1,652 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.ColumnDictionary;
+import org.wso2.carbon.analytics.datasource.core.RecordBatchBuilder;
+import org.wso2.carbon.analytics.datasource.core.RecordCompression;
+
+/**
+ * This class decodes the record values encoded by {@link GenericUtils#encodeRecordValues(Map, ColumnDictionary)}, 
+ * and the ones in the original encoding format, for a given set of columns. The encoded column names are 
+ * compared with the requested ones without creating strings, and the values of the other columns are skipped
+ * without being read. A decoder is meant to be reused for many records of the same table, and it keeps its 
+ * lookups and buffers in between, so it is not thread-safe.
+ */
+public class RecordValuesDecoder {
+    
+    private static final int NAME_CACHE_SIZE = 64;
+    
+    private static final int NOT_REQUESTED = -1;
+    
+    /* the requested columns, or null for all the columns */
+    private String[] columns;
+    
+    private byte[][] encodedColumns;
+    
+    private Map<String, Integer> columnIndices;
+    
+    private ColumnDictionary dictionary;
+    
+    private boolean cacheNames;
+    
+    /* column dictionary id -> column name */
+    private String[] dictionaryNames = new String[0];
+    
+    /* column dictionary id -> requested column index + 1, NOT_REQUESTED, or 0 if not looked up yet */
+    private int[] dictionaryIndices = new int[0];
+    
+    /* the recently seen column names, when all the columns are decoded */
+    private byte[][] nameCacheKeys;
+    
+    private String[] nameCacheValues;
+    
+    private byte[] buffer;
+    
+    private byte[] data;
+    
+    private int position;
+    
+    private int end;
+    
+    /**
+     * Creates a record values decoder.
+     * @param columns The columns to be decoded, or null for all the columns
+     * @param dictionary The column dictionary of the table, or null if it does not have one
+     */
+    public RecordValuesDecoder(Collection<String> columns, ColumnDictionary dictionary) {
+        this(columns, dictionary, true);
+    }
+    
+    /**
+     * Creates a record values decoder, the column names are not cached if it is used only once.
+     */
+    RecordValuesDecoder(Collection<String> columns, ColumnDictionary dictionary, boolean cacheNames) {
+        this.dictionary = dictionary;
+        this.cacheNames = cacheNames;
+        if (columns != null) {
+            this.columns = new LinkedHashSet<String>(columns).toArray(new String[0]);
+            this.encodedColumns = new byte[this.columns.length][];
+            this.columnIndices = new HashMap<String, Integer>(this.columns.length);
+            for (int i = 0; i < this.columns.length; i++) {
+                this.encodedColumns[i] = this.columns[i].getBytes(GenericUtils.UTF8_CHARSET);
+                this.columnIndices.put(this.columns[i], i);
+            }
+        }
+    }
+    
+    /**
+     * Returns the columns decoded by this decoder.
+     * @return The columns, or null for all the columns
+     */
+    public List<String> getColumns() {
+        if (this.columns == null) {
+            return null;
+        }
+        return Collections.unmodifiableList(Arrays.asList(this.columns));
+    }
+    
+    public Map<String, Object> decode(byte[] data) throws AnalyticsException {
+        return this.decode(data, 0, data.length);
+    }
+    
+    /**
+     * Decodes the record values to the current record of the given record batch builder, the numbers and 
+     * strings are given to the builder without boxing them.
+     * @param data The encoded record values
+     * @param builder The record batch builder, which has the columns of this decoder, in the same order
+     * @throws AnalyticsException
+     */
+    public void decode(byte[] data, RecordBatchBuilder builder) throws AnalyticsException {
+        if (this.columns == null) {
+            throw new AnalyticsException("The columns are required to decode record values to a record batch");
+        }
+        try {
+            this.data = data;
+            this.position = 0;
+            this.end = data.length;
+            if (this.end > 0 && data[0] == GenericUtils.COMPRESSED_RECORD_VALUES) {
+                this.decompress();
+            }
+            if (this.position < this.end && this.data[this.position] == GenericUtils.ENCODING_VERSION_1) {
+                this.position++;
+                this.decodeV1(builder);
+            } else {
+                Map<String, Object> values = new HashMap<String, Object>();
+                this.decodeV0(values);
+                for (int i = 0; i < this.columns.length; i++) {
+                    builder.setValue(i, values.get(this.columns[i]));
+                }
+            }
+        } catch (AnalyticsException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new AnalyticsException("Error in decoding record values: " + e.getMessage());
+        } finally {
+            this.data = null;
+        }
+    }
+    
+    private void decodeV1(RecordBatchBuilder builder) throws AnalyticsException {
+        int header, size, index;
+        byte type;
+        while (this.position < this.end) {
+            header = this.readVarInt();
+            size = header >>> 1;
+            if ((header & 1) == 0) {
+                index = this.lookupDictionaryColumn(size);
+            } else {
+                this.checkLength(size);
+                index = this.lookupColumn(size);
+            }
+            type = this.data[this.position++];
+            if (index == NOT_REQUESTED) {
+                this.skipValueV1(type);
+                continue;
+            }
+            switch (type) {
+            case GenericUtils.DATA_TYPE_STRING:
+                builder.setString(index, this.readString(this.readVarInt()));
+                break;
+            case GenericUtils.DATA_TYPE_LONG:
+                builder.setLong(index, GenericUtils.zigZagDecode(this.readVarLong()));
+                break;
+            case GenericUtils.DATA_TYPE_DOUBLE:
+                builder.setDouble(index, Double.longBitsToDouble(this.readLong()));
+                break;
+            case GenericUtils.DATA_TYPE_INTEGER:
+                builder.setInt(index, GenericUtils.zigZagDecode(this.readVarInt()));
+                break;
+            default:
+                builder.setValue(index, this.readValueV1(type));
+            }
+        }
+    }
+    
+    /**
+     * Decodes the value of a single column, without decoding the other values.
+     * @param data The encoded record values
+     * @param column The column name
+     * @return The column value, or null if the column is not there, or it is not one of the requested columns
+     * @throws AnalyticsException
+     */
+    public Object decodeValue(byte[] data, String column) throws AnalyticsException {
+        byte[] encodedColumn;
+        if (this.columns == null) {
+            encodedColumn = column.getBytes(GenericUtils.UTF8_CHARSET);
+        } else {
+            Integer index = this.columnIndices.get(column);
+            if (index == null) {
+                return null;
+            }
+            encodedColumn = this.encodedColumns[index];
+        }
+        try {
+            this.data = data;
+            this.position = 0;
+            this.end = data.length;
+            if (this.end > 0 && data[0] == GenericUtils.COMPRESSED_RECORD_VALUES) {
+                this.decompress();
+            }
+            if (this.position < this.end && this.data[this.position] == GenericUtils.ENCODING_VERSION_1) {
+                this.position++;
+                return this.findValueV1(column, encodedColumn);
+            } else {
+                return this.findValueV0(encodedColumn);
+            }
+        } catch (AnalyticsException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new AnalyticsException("Error in decoding record values: " + e.getMessage());
+        } finally {
+            this.data = null;
+        }
+    }
+    
+    private Object findValueV1(String column, byte[] encodedColumn) throws AnalyticsException {
+        int header, size, start;
+        boolean found;
+        while (this.position < this.end) {
+            header = this.readVarInt();
+            size = header >>> 1;
+            if ((header & 1) == 0) {
+                this.lookupDictionaryColumn(size);
+                found = column.equals(this.dictionaryNames[size]);
+            } else {
+                this.checkLength(size);
+                start = this.position;
+                this.position += size;
+                found = size == encodedColumn.length && this.regionEquals(encodedColumn, start);
+            }
+            if (found) {
+                return this.readValueV1(this.data[this.position++]);
+            }
+            this.skipValueV1(this.data[this.position++]);
+        }
+        return null;
+    }
+    
+    private Object findValueV0(byte[] encodedColumn) throws AnalyticsException {
+        int size, start;
+        while (this.position < this.end) {
+            size = this.readInt();
+            this.checkLength(size);
+            start = this.position;
+            this.position += size;
+            if (size == encodedColumn.length && this.regionEquals(encodedColumn, start)) {
+                return this.readValueV0(this.data[this.position++]);
+            }
+            this.skipValueV0(this.data[this.position++]);
+        }
+        return null;
+    }
+    
+    /**
+     * Decodes the record values in the given range of the array.
+     * @param data The array containing the encoded record values
+     * @param offset The start of the encoded record values
+     * @param length The length of the encoded record values
+     * @return The values of the requested columns, in their encoded order
+     * @throws AnalyticsException
+     */
+    public Map<String, Object> decode(byte[] data, int offset, int length) throws AnalyticsException {
+        try {
+            this.data = data;
+            this.position = offset;
+            this.end = offset + length;
+            if (length > 0 && data[offset] == GenericUtils.COMPRESSED_RECORD_VALUES) {
+                this.decompress();
+            }
+            /* using LinkedHashMap to retain the column order */
+            Map<String, Object> result;
+            if (this.columns == null) {
+                result = new LinkedHashMap<String, Object>();
+            } else {
+                result = new LinkedHashMap<String, Object>(this.columns.length * 2);
+            }
+            if (this.position < this.end && this.data[this.position] == GenericUtils.ENCODING_VERSION_1) {
+                this.position++;
+                this.decodeV1(result);
+            } else {
+                this.decodeV0(result);
+            }
+            return result;
+        } catch (AnalyticsException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new AnalyticsException("Error in decoding record values: " + e.getMessage());
+        } finally {
+            this.data = null;
+        }
+    }
+    
+    /**
+     * Decompresses the given compressed record values.
+     */
+    byte[] decompress(byte[] data) throws AnalyticsException {
+        try {
+            this.data = data;
+            this.position = 0;
+            this.end = data.length;
+            this.decompress();
+            return this.end == this.data.length ? this.data : Arrays.copyOf(this.data, this.end);
+        } finally {
+            this.data = null;
+        }
+    }
+    
+    private void decompress() throws AnalyticsException {
+        try {
+            this.decompressValues();
+        } catch (IndexOutOfBoundsException e) {
+            throw new AnalyticsException("Error in decompressing record values: " + e.getMessage());
+        }
+    }
+    
+    private void decompressValues() throws AnalyticsException {
+        RecordCompression compression = RecordCompression.fromId(this.data[this.position + 1]);
+        this.position += 2;
+        int length = this.readVarInt();
+        if (this.buffer == null || this.buffer.length < length) {
+            this.buffer = new byte[Math.max(length, this.buffer == null ? 0 : this.buffer.length * 2)];
+        }
+        GenericUtils.decompress(compression, this.data, this.position, this.end - this.position, 
+                this.buffer, length);
+        this.data = this.buffer;
+        this.position = 0;
+        this.end = length;
+    }
+    
+    private void decodeV1(Map<String, Object> result) throws AnalyticsException {
+        int header, size, index;
+        String name;
+        while (this.position < this.end) {
+            header = this.readVarInt();
+            size = header >>> 1;
+            if ((header & 1) == 0) {
+                index = this.lookupDictionaryColumn(size);
+            } else {
+                this.checkLength(size);
+                index = this.lookupColumn(size);
+            }
+            if (index == NOT_REQUESTED) {
+                this.skipValueV1(this.data[this.position++]);
+            } else {
+                if (this.columns == null) {
+                    name = ((header & 1) == 0) ? this.dictionaryNames[size] : this.lookupName(size);
+                    this.position += (header & 1) * size;
+                } else {
+                    name = this.columns[index];
+                }
+                result.put(name, this.readValueV1(this.data[this.position++]));
+            }
+        }
+        if (this.position != this.end) {
+            throw new AnalyticsException("Encoded record values end in the middle of a value");
+        }
+    }
+    
+    private void decodeV0(Map<String, Object> result) throws AnalyticsException {
+        int size, index;
+        while (this.position < this.end) {
+            size = this.readInt();
+            this.checkLength(size);
+            index = this.lookupColumn(size);
+            if (index == NOT_REQUESTED) {
+                this.skipValueV0(this.data[this.position++]);
+            } else if (this.columns == null) {
+                String name = this.lookupName(size);
+                this.position += size;
+                result.put(name, this.readValueV0(this.data[this.position++]));
+            } else {
+                result.put(this.columns[index], this.readValueV0(this.data[this.position++]));
+            }
+        }
+    }
+    
+    /**
+     * Looks up the inline column name at the current position, the position is moved past the name, if the 
+     * column is not requested, or requested columns are given.
+     * @return The requested column index, or NOT_REQUESTED
+     */
+    private int lookupColumn(int length) {
+        if (this.columns == null) {
+            return 0;
+        }
+        int start = this.position;
+        this.position += length;
+        byte[] column;
+        for (int i = 0; i < this.encodedColumns.length; i++) {
+            column = this.encodedColumns[i];
+            if (column.length == length && this.regionEquals(column, start)) {
+                return i;
+            }
+        }
+        return NOT_REQUESTED;
+    }
+    
+    private int lookupDictionaryColumn(int id) throws AnalyticsException {
+        if (id >= this.dictionaryNames.length || this.dictionaryNames[id] == null) {
+            if (this.dictionary == null) {
+                throw new AnalyticsException("A column dictionary is required to decode the column: " + id);
+            }
+            if (id >= this.dictionaryNames.length) {
+                int length = Math.max(id + 1, this.dictionaryNames.length * 2);
+                this.dictionaryNames = Arrays.copyOf(this.dictionaryNames, length);
+                this.dictionaryIndices = Arrays.copyOf(this.dictionaryIndices, length);
+            }
+            String name = this.dictionary.getName(id);
+            this.dictionaryNames[id] = name;
+            if (this.columns == null) {
+                this.dictionaryIndices[id] = 1;
+            } else {
+                Integer index = this.columnIndices.get(name);
+                this.dictionaryIndices[id] = index == null ? NOT_REQUESTED : index + 1;
+            }
+        }
+        int index = this.dictionaryIndices[id];
+        return index == NOT_REQUESTED ? NOT_REQUESTED : index - 1;
+    }
+    
+    /**
+     * Returns the column name at the current position, reusing the strings of the recently seen names.
+     */
+    private String lookupName(int length) {
+        if (!this.cacheNames) {
+            return new String(this.data, this.position, length, GenericUtils.UTF8_CHARSET);
+        }
+        int hash = 1;
+        for (int i = this.position; i < this.position + length; i++) {
+            hash = 31 * hash + this.data[i];
+        }
+        if (this.nameCacheKeys == null) {
+            this.nameCacheKeys = new byte[NAME_CACHE_SIZE][];
+            this.nameCacheValues = new String[NAME_CACHE_SIZE];
+        }
+        int slot = hash & (NAME_CACHE_SIZE - 1);
+        byte[] key = this.nameCacheKeys[slot];
+        if (key != null && key.length == length && this.regionEquals(key, this.position)) {
+            return this.nameCacheValues[slot];
+        }
+        String name = new String(this.data, this.position, length, GenericUtils.UTF8_CHARSET);
+        this.nameCacheKeys[slot] = Arrays.copyOfRange(this.data, this.position, this.position + length);
+        this.nameCacheValues[slot] = name;
+        return name;
+    }
+    
+    private boolean regionEquals(byte[] value, int start) {
+        if (start + value.length > this.end) {
+            return false;
+        }
+        for (int i = 0; i < value.length; i++) {
+            if (value[i] != this.data[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private Object readValueV1(byte type) throws AnalyticsException {
+        int size;
+        switch (type) {
+        case GenericUtils.DATA_TYPE_STRING:
+            size = this.readVarInt();
+            return this.readString(size);
+        case GenericUtils.DATA_TYPE_LONG:
+            return GenericUtils.zigZagDecode(this.readVarLong());
+        case GenericUtils.DATA_TYPE_DOUBLE:
+            return Double.longBitsToDouble(this.readLong());
+        case GenericUtils.DATA_TYPE_BOOLEAN:
+            return this.readBoolean();
+        case GenericUtils.DATA_TYPE_INTEGER:
+            return GenericUtils.zigZagDecode(this.readVarInt());
+        case GenericUtils.DATA_TYPE_FLOAT:
+            return Float.intBitsToFloat(this.readInt());
+        case GenericUtils.DATA_TYPE_BINARY:
+            size = this.readVarInt();
+            return this.readBinary(size);
+        case GenericUtils.DATA_TYPE_NULL:
+            return null;
+        default:
+            throw new AnalyticsException("Unknown encoded data source type : " + type);
+        }
+    }
+    
+    private void skipValueV1(byte type) throws AnalyticsException {
+        switch (type) {
+        case GenericUtils.DATA_TYPE_STRING:
+        case GenericUtils.DATA_TYPE_BINARY:
+            this.skip(this.readVarInt());
+            break;
+        case GenericUtils.DATA_TYPE_LONG:
+            this.readVarLong();
+            break;
+        case GenericUtils.DATA_TYPE_INTEGER:
+            this.readVarInt();
+            break;
+        case GenericUtils.DATA_TYPE_DOUBLE:
+            this.skip(Double.SIZE / 8);
+            break;
+        case GenericUtils.DATA_TYPE_FLOAT:
+            this.skip(Float.SIZE / 8);
+            break;
+        case GenericUtils.DATA_TYPE_BOOLEAN:
+            this.skip(1);
+            break;
+        case GenericUtils.DATA_TYPE_NULL:
+            break;
+        default:
+            throw new AnalyticsException("Unknown encoded data source type : " + type);
+        }
+    }
+    
+    private Object readValueV0(byte type) throws AnalyticsException {
+        switch (type) {
+        case GenericUtils.DATA_TYPE_STRING:
+            return this.readString(this.readInt());
+        case GenericUtils.DATA_TYPE_LONG:
+            return this.readLong();
+        case GenericUtils.DATA_TYPE_DOUBLE:
+            return Double.longBitsToDouble(this.readLong());
+        case GenericUtils.DATA_TYPE_BOOLEAN:
+            return this.readBoolean();
+        case GenericUtils.DATA_TYPE_INTEGER:
+            return this.readInt();
+        case GenericUtils.DATA_TYPE_FLOAT:
+            return Float.intBitsToFloat(this.readInt());
+        case GenericUtils.DATA_TYPE_BINARY:
+            return this.readBinary(this.readInt());
+        case GenericUtils.DATA_TYPE_NULL:
+            return null;
+        default:
+            throw new AnalyticsException("Unknown encoded data source type : " + type);
+        }
+    }
+    
+    private void skipValueV0(byte type) throws AnalyticsException {
+        switch (type) {
+        case GenericUtils.DATA_TYPE_STRING:
+        case GenericUtils.DATA_TYPE_BINARY:
+            this.skip(this.readInt());
+            break;
+        case GenericUtils.DATA_TYPE_LONG:
+        case GenericUtils.DATA_TYPE_DOUBLE:
+            this.skip(Long.SIZE / 8);
+            break;
+        case GenericUtils.DATA_TYPE_INTEGER:
+        case GenericUtils.DATA_TYPE_FLOAT:
+            this.skip(Integer.SIZE / 8);
+            break;
+        case GenericUtils.DATA_TYPE_BOOLEAN:
+            this.skip(1);
+            break;
+        case GenericUtils.DATA_TYPE_NULL:
+            break;
+        default:
+            throw new AnalyticsException("Unknown encoded data source type : " + type);
+        }
+    }
+    
+    private void checkLength(int length) throws AnalyticsException {
+        if (length < 0 || this.position + length > this.end) {
+            throw new AnalyticsException("Encoded value length exceeds the data: " + length);
+        }
+    }
+    
+    private void skip(int length) throws AnalyticsException {
+        this.checkLength(length);
+        this.position += length;
+    }
+    
+    private String readString(int length) throws AnalyticsException {
+        this.checkLength(length);
+        String value = new String(this.data, this.position, length, GenericUtils.UTF8_CHARSET);
+        this.position += length;
+        return value;
+    }
+    
+    private byte[] readBinary(int length) throws AnalyticsException {
+        this.checkLength(length);
+        byte[] value = Arrays.copyOfRange(this.data, this.position, this.position + length);
+        this.position += length;
+        return value;
+    }
+    
+    private Boolean readBoolean() throws AnalyticsException {
+        byte value = this.data[this.position++];
+        if (value == GenericUtils.BOOLEAN_TRUE) {
+            return true;
+        } else if (value == GenericUtils.BOOLEAN_FALSE) {
+            return false;
+        } else {
+            throw new AnalyticsException("Invalid encoded boolean value: " + value);
+        }
+    }
+    
+    private int readInt() throws AnalyticsException {
+        this.checkLength(Integer.SIZE / 8);
+        int value = GenericUtils.readInt(this.data, this.position);
+        this.position += Integer.SIZE / 8;
+        return value;
+    }
+    
+    private long readLong() throws AnalyticsException {
+        this.checkLength(Long.SIZE / 8);
+        long value = GenericUtils.readLong(this.data, this.position);
+        this.position += Long.SIZE / 8;
+        return value;
+    }
+    
+    private int readVarInt() throws AnalyticsException {
+        int result = 0;
+        byte b;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            b = this.data[this.position++];
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new AnalyticsException("Invalid encoded variable length integer");
+    }
+    
+    private long readVarLong() throws AnalyticsException {
+        long result = 0;
+        byte b;
+        for (int shift = 0; shift < Long.SIZE; shift += 7) {
+            b = this.data[this.position++];
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw new AnalyticsException("Invalid encoded variable length long");
+    }
+    
+}
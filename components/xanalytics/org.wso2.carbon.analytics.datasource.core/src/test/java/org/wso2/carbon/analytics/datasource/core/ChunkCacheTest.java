@@ -0,0 +1,88 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * This class represents the test operations related to {@link ChunkCache}.
+ */
+public class ChunkCacheTest {
+    
+    @Test
+    public void testGetPut() {
+        this.testGetPut(false);
+        this.testGetPut(true);
+    }
+    
+    private void testGetPut(boolean offHeap) {
+        ChunkCache cache = new ChunkCache(1024, offHeap);
+        Assert.assertNull(cache.get("/a/b", 0));
+        byte[] data = new byte[] { 1, 2, 3 };
+        cache.put("/a/b", 0, data, cache.getGeneration("/a/b"));
+        Assert.assertEquals(cache.get("/a/b", 0), data);
+        Assert.assertNull(cache.get("/a/b", 1));
+        Assert.assertEquals(cache.getHitCount(), 1);
+        Assert.assertEquals(cache.getMissCount(), 2);
+        Assert.assertEquals(cache.getSize(), 3);
+    }
+    
+    @Test
+    public void testEviction() {
+        ChunkCache cache = new ChunkCache(300, false);
+        for (int i = 0; i < 3; i++) {
+            cache.put("/x", i, new byte[100], cache.getGeneration("/x"));
+        }
+        /* touch the first chunk, so the second one becomes the least recently used */
+        Assert.assertNotNull(cache.get("/x", 0));
+        cache.put("/x", 3, new byte[100], cache.getGeneration("/x"));
+        Assert.assertEquals(cache.getEvictionCount(), 1);
+        Assert.assertEquals(cache.getChunkCount(), 3);
+        Assert.assertNull(cache.get("/x", 1));
+        Assert.assertNotNull(cache.get("/x", 0));
+        Assert.assertTrue(cache.getSize() <= cache.getMaxSize());
+    }
+    
+    @Test
+    public void testInvalidate() {
+        ChunkCache cache = new ChunkCache(1024, false);
+        cache.put("/d/f1", 0, new byte[10], cache.getGeneration("/d/f1"));
+        cache.put("/d/f2", 0, new byte[10], cache.getGeneration("/d/f2"));
+        cache.put("/d2/f1", 0, new byte[10], cache.getGeneration("/d2/f1"));
+        cache.invalidate("/d/f1", false);
+        Assert.assertNull(cache.get("/d/f1", 0));
+        Assert.assertNotNull(cache.get("/d/f2", 0));
+        cache.invalidate("/d", true);
+        Assert.assertNull(cache.get("/d/f2", 0));
+        Assert.assertNotNull(cache.get("/d2/f1", 0));
+        Assert.assertEquals(cache.getSize(), 10);
+    }
+    
+    @Test
+    public void testStalePutAfterInvalidate() {
+        ChunkCache cache = new ChunkCache(1024, false);
+        long generation = cache.getGeneration("/f");
+        /* the file is changed while the chunk is being read */
+        cache.invalidate("/f", false);
+        cache.put("/f", 0, new byte[10], generation);
+        Assert.assertNull(cache.get("/f", 0));
+    }
+    
+}
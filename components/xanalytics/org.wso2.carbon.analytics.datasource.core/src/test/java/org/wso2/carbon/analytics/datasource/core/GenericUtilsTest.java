@@ -19,14 +19,19 @@
 package org.wso2.carbon.analytics.datasource.core;
 
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import org.testng.Assert;
 import org.testng.annotations.Test;
 import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+import org.wso2.carbon.analytics.datasource.core.util.RecordValuesDecoder;
 
 /**
  * This class represents the test operations related to {@link GenericUtils}.
@@ -129,6 +134,242 @@ public class GenericUtilsTest {
         Assert.assertEquals(columns, columnsIn);
     }
     
+    @Test
+    public void testEncodeDecodeNonASCII() throws AnalyticsException {
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("\u0DB1\u0DB8", "\u0DC1\u0DCA\u200D\u0DBB\u0DD3 \u0DBD\u0D82\u0D9A\u0DCF");
+        values.put("C2", "\uD83D\uDE00 - \u00E9\u00E8");
+        values.put("C3", Long.MIN_VALUE);
+        values.put("C4", Integer.MIN_VALUE);
+        values.put("C5", Long.MAX_VALUE);
+        values.put("C6", -1);
+        byte[] data = GenericUtils.encodeRecordValues(values);
+        Assert.assertEquals(GenericUtils.decodeRecordValues(data, null), values);
+    }
+    
+    @Test
+    public void testEncodeDecodeWithColumnDictionary() throws AnalyticsException {
+        final Map<Integer, String> storeEntries = new HashMap<Integer, String>();
+        ColumnDictionary dictionary = new ColumnDictionary(new ColumnDictionary.Store() {            
+            @Override
+            public Map<Integer, String> load() throws AnalyticsException {
+                return new HashMap<Integer, String>(storeEntries);
+            }
+            @Override
+            public boolean add(int id, String name) throws AnalyticsException {
+                if (storeEntries.containsKey(id)) {
+                    return false;
+                }
+                storeEntries.put(id, name);
+                return true;
+            }
+        });
+        /* an entry added by another node */
+        storeEntries.put(0, "C0");
+        /* the dictionary of another node, which has to reload to decode the new columns */
+        ColumnDictionary dictionary2 = new ColumnDictionary(new ColumnDictionary.Store() {
+            @Override
+            public Map<Integer, String> load() throws AnalyticsException {
+                return new HashMap<Integer, String>(storeEntries);
+            }
+            @Override
+            public boolean add(int id, String name) throws AnalyticsException {
+                return false;
+            }
+        });
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("Column One", "ABC");
+        values.put("Column Two", 5L);
+        values.put("C3", null);
+        byte[] inlineData = GenericUtils.encodeRecordValues(values, dictionary);
+        dictionary.register(values.keySet());
+        Assert.assertEquals(storeEntries.size(), 4);
+        byte[] data = GenericUtils.encodeRecordValues(values, dictionary);
+        Assert.assertTrue(data.length < inlineData.length);
+        Assert.assertEquals(GenericUtils.decodeRecordValues(inlineData, null, dictionary), values);
+        Assert.assertEquals(GenericUtils.decodeRecordValues(data, null, dictionary), values);
+        Assert.assertEquals(GenericUtils.decodeRecordValues(data, null, dictionary2), values);
+    }
+    
+    @Test (expectedExceptions = AnalyticsException.class)
+    public void testDecodeWithoutColumnDictionary() throws AnalyticsException {
+        ColumnDictionary dictionary = new ColumnDictionary(new ColumnDictionary.Store() {
+            @Override
+            public Map<Integer, String> load() throws AnalyticsException {
+                Map<Integer, String> result = new HashMap<Integer, String>();
+                result.put(0, "C1");
+                return result;
+            }
+            @Override
+            public boolean add(int id, String name) throws AnalyticsException {
+                return false;
+            }
+        });
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("C1", 1);
+        GenericUtils.decodeRecordValues(GenericUtils.encodeRecordValues(values, dictionary), null);
+    }
+    
+    @Test
+    public void testDecodeOriginalFormat() throws AnalyticsException {
+        ByteBuffer buffer = ByteBuffer.allocate(48);
+        buffer.putInt(2).put("C1".getBytes()).put((byte) 0x01).putInt(3).put("ABC".getBytes());
+        buffer.putInt(2).put("C2".getBytes()).put((byte) 0x03).putLong(-55L);
+        buffer.putInt(2).put("C3".getBytes()).put((byte) 0x00);
+        buffer.putInt(2).put("C4".getBytes()).put((byte) 0x06).put((byte) 1);
+        byte[] data = new byte[buffer.position()];
+        buffer.flip();
+        buffer.get(data);
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put("C1", "ABC");
+        values.put("C2", -55L);
+        values.put("C3", null);
+        values.put("C4", true);
+        Assert.assertEquals(GenericUtils.decodeRecordValues(data, null), values);
+    }
+    
+    @Test
+    public void testCompressDecompress() throws AnalyticsException {
+        Map<String, Object> values = new HashMap<String, Object>();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            builder.append("<m:symbol>IBM" + i + "</m:symbol>");
+        }
+        values.put("C1", builder.toString());
+        values.put("C2", 44L);
+        byte[] data = GenericUtils.encodeRecordValues(values);
+        for (RecordCompression compression : RecordCompression.values()) {
+            byte[] compressedData = GenericUtils.compressRecordValues(data, compression);
+            if (compression != RecordCompression.NONE) {
+                Assert.assertTrue(compressedData.length < data.length / 2);
+            }
+            Assert.assertEquals(GenericUtils.decompressRecordValues(compressedData), data);
+            Assert.assertEquals(GenericUtils.decodeRecordValues(compressedData, null), values);
+        }
+        /* incompressible data is kept as it is */
+        values.put("C1", this.generateBinaryData(20));
+        data = GenericUtils.encodeRecordValues(values);
+        Assert.assertSame(GenericUtils.compressRecordValues(data, RecordCompression.LZ4), data);
+    }
+    
+    @Test
+    public void testRecordValuesDecoderReuse() throws AnalyticsException {
+        final Map<Integer, String> storeEntries = new HashMap<Integer, String>();
+        storeEntries.put(0, "C1");
+        storeEntries.put(1, "C2");
+        ColumnDictionary dictionary = new ColumnDictionary(new ColumnDictionary.Store() {
+            @Override
+            public Map<Integer, String> load() throws AnalyticsException {
+                return new HashMap<Integer, String>(storeEntries);
+            }
+            @Override
+            public boolean add(int id, String name) throws AnalyticsException {
+                return false;
+            }
+        });
+        Map<String, Object> values = new HashMap<String, Object>();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            builder.append("<m:symbol>IBM" + i + "</m:symbol>");
+        }
+        values.put("C1", builder.toString());
+        values.put("C2", 44L);
+        values.put("C3", "X");
+        values.put("C4", 4.5);
+        byte[] data = GenericUtils.encodeRecordValues(values, dictionary);
+        ByteBuffer buffer = ByteBuffer.allocate(32);
+        buffer.putInt(2).put("C2".getBytes()).put((byte) 0x03).putLong(45L);
+        buffer.putInt(2).put("C3".getBytes()).put((byte) 0x01).putInt(1).put("Y".getBytes());
+        byte[] originalData = Arrays.copyOf(buffer.array(), buffer.position());
+        Map<String, Object> expected = new HashMap<String, Object>();
+        expected.put("C2", 44L);
+        expected.put("C3", "X");
+        Map<String, Object> originalExpected = new HashMap<String, Object>();
+        originalExpected.put("C2", 45L);
+        originalExpected.put("C3", "Y");
+        RecordValuesDecoder decoder = new RecordValuesDecoder(Arrays.asList("C3", "C2", "C5"), dictionary);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(decoder.decode(data), expected);
+            Assert.assertEquals(decoder.decode(GenericUtils.compressRecordValues(data, RecordCompression.LZ4)), 
+                    expected);
+            Assert.assertEquals(decoder.decode(originalData), originalExpected);
+        }
+        decoder = new RecordValuesDecoder(null, dictionary);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(decoder.decode(GenericUtils.compressRecordValues(data, RecordCompression.DEFLATE)), 
+                    values);
+        }
+    }
+    
+    @Test
+    public void testEncodedRecord() throws AnalyticsException {
+        Map<String, Object> values = new HashMap<String, Object>();
+        for (int i = 0; i < 10; i++) {
+            values.put("C" + i, "Value " + i);
+        }
+        values.put("C10", null);
+        byte[] data = GenericUtils.compressRecordValues(GenericUtils.encodeRecordValues(values), 
+                RecordCompression.DEFLATE);
+        Record record = new Record("ID1", 1, "T1", values, 100);
+        RecordValuesDecoder decoder = new RecordValuesDecoder(null, null);
+        Record encodedRecord = new EncodedRecord("ID1", 1, "T1", data, 100, decoder);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(encodedRecord.getValue("C" + i), "Value " + i);
+        }
+        Assert.assertNull(encodedRecord.getValue("C10"));
+        Assert.assertNull(encodedRecord.getValue("C11"));
+        Assert.assertEquals(encodedRecord, record);
+        Assert.assertEquals(encodedRecord.hashCode(), record.hashCode());
+        encodedRecord = new EncodedRecord("ID1", 1, "T1", data, 100, decoder);
+        Assert.assertEquals(encodedRecord.getValues(), values);
+        Assert.assertEquals(encodedRecord.getValue("C2"), "Value 2");
+        decoder = new RecordValuesDecoder(Arrays.asList("C1", "C2"), null);
+        encodedRecord = new EncodedRecord("ID1", 1, "T1", data, 100, decoder);
+        Assert.assertEquals(encodedRecord.getValue("C1"), "Value 1");
+        Assert.assertNull(encodedRecord.getValue("C3"));
+        Assert.assertEquals(encodedRecord.getValues().size(), 2);
+    }
+    
+    @Test
+    public void testDecodeToRecordBatch() throws AnalyticsException {
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+        for (int i = 0; i < 100; i++) {
+            Map<String, Object> values = new HashMap<String, Object>();
+            values.put("C1", "Value " + (i % 3));
+            values.put("C2", (long) i);
+            values.put("C3", i * 1.5);
+            values.put("C4", i % 10 == 0 ? null : i);
+            /* a column with values of different types */
+            values.put("C5", i < 50 ? (Object) i : (Object) ("S" + i));
+            values.put("C6", i % 2 == 0);
+            rows.add(values);
+        }
+        List<String> columns = Arrays.asList("C1", "C2", "C3", "C4", "C5", "C6", "C7");
+        RecordValuesDecoder decoder = new RecordValuesDecoder(columns, null);
+        RecordBatchBuilder builder = new RecordBatchBuilder(decoder.getColumns(), rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            builder.addRecord("ID" + i, i);
+            decoder.decode(GenericUtils.encodeRecordValues(rows.get(i)), builder);
+        }
+        Assert.assertTrue(builder.isFull());
+        RecordBatch batch = builder.build();
+        Assert.assertEquals(batch.size(), rows.size());
+        Assert.assertEquals(((ColumnVector.StringVector) batch.getColumnVector("C1")).getDictionary().size(), 3);
+        Assert.assertTrue(batch.getColumnVector("C2") instanceof ColumnVector.LongVector);
+        Assert.assertTrue(batch.getColumnVector("C3") instanceof ColumnVector.DoubleVector);
+        Assert.assertTrue(batch.getColumnVector("C4") instanceof ColumnVector.IntVector);
+        Assert.assertTrue(batch.getColumnVector("C5") instanceof ColumnVector.ObjectVector);
+        for (int i = 0; i < rows.size(); i++) {
+            Assert.assertEquals(batch.getIds()[i], "ID" + i);
+            for (String column : columns) {
+                Assert.assertEquals(batch.getColumnVector(column).getObject(i), rows.get(i).get(column));
+            }
+        }
+        Assert.assertTrue(batch.getColumnVector("C4").isNull(10));
+        Assert.assertFalse(batch.getColumnVector("C4").isNull(11));
+        Assert.assertEquals(builder.size(), 0);
+    }
+    
     @Test
     public void testEncodeDecodeDataPerf() throws AnalyticsException {
         Map<String, Object> cols = new HashMap<String, Object>();
@@ -0,0 +1,85 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * This class represents the test operations related to {@link TimeOrderedRecordIdGenerator}.
+ */
+public class RecordIdGeneratorTest {
+
+    @Test
+    public void testOrderedIds() {
+        TimeOrderedRecordIdGenerator generator = new TimeOrderedRecordIdGenerator(5);
+        String lastId = generator.generateId();
+        String id;
+        for (int i = 0; i < 200000; i++) {
+            id = generator.generateId();
+            Assert.assertEquals(id.length(), TimeOrderedRecordIdGenerator.ID_LENGTH);
+            Assert.assertTrue(id.compareTo(lastId) > 0);
+            Assert.assertEquals(id, id.toLowerCase());
+            lastId = id;
+        }
+    }
+    
+    @Test
+    public void testConcurrentUniqueIds() throws InterruptedException {
+        final TimeOrderedRecordIdGenerator generator = new TimeOrderedRecordIdGenerator();
+        final List<String> ids = Collections.synchronizedList(new ArrayList<String>());
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    List<String> localIds = new ArrayList<String>();
+                    for (int j = 0; j < 50000; j++) {
+                        localIds.add(generator.generateId());
+                    }
+                    ids.addAll(localIds);
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Set<String> uniqueIds = new HashSet<String>(ids);
+        Assert.assertEquals(uniqueIds.size(), 400000);
+    }
+    
+    @Test (expectedExceptions = AnalyticsException.class)
+    public void testInvalidNodeId() throws AnalyticsException {
+        Map<String, String> props = new HashMap<String, String>();
+        props.put(TimeOrderedRecordIdGenerator.NODE_ID_PROP, "70000");
+        new TimeOrderedRecordIdGenerator().init(props);
+    }
+    
+}
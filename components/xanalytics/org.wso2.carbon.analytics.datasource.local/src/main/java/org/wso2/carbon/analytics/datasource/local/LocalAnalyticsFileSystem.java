@@ -0,0 +1,260 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.local;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsFileSystem;
+import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+
+/**
+ * Local disk based {@link AnalyticsFileSystem} implementation, the paths are mapped onto a directory in the
+ * local file system, and the files are read using memory mapping.
+ */
+public class LocalAnalyticsFileSystem implements AnalyticsFileSystem {
+
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+    
+    /* the files are mapped in 1 GB segments, since a single mapping is limited to 2 GB */
+    private static final int MAPPED_SEGMENT_BITS = 30;
+    
+    private File root;
+    
+    public LocalAnalyticsFileSystem() { }
+    
+    public LocalAnalyticsFileSystem(File root) throws IOException {
+        this.setRoot(root);
+    }
+    
+    @Override
+    public void init(Map<String, String> properties) throws AnalyticsException {
+        if (this.root != null) {
+            return;
+        }
+        String path = properties.get(LocalAnalyticsDSConstants.PATH);
+        if (path == null) {
+            throw new AnalyticsException("The property '" + LocalAnalyticsDSConstants.PATH + "' is required");
+        }
+        try {
+            this.setRoot(new File(path));
+        } catch (IOException e) {
+            throw new AnalyticsException("Error in creating the local file system root: " + e.getMessage(), e);
+        }
+    }
+    
+    private void setRoot(File root) throws IOException {
+        Files.createDirectories(root.toPath());
+        this.root = root.getAbsoluteFile();
+    }
+    
+    public File getRoot() {
+        return root;
+    }
+    
+    private Path resolve(String path) {
+        path = GenericUtils.normalizePath(path);
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        return new File(this.root, path).toPath();
+    }
+    
+    @Override
+    public boolean exists(String path) throws IOException {
+        return Files.exists(this.resolve(path));
+    }
+
+    @Override
+    public List<String> list(String path) throws IOException {
+        String[] names = this.resolve(path).toFile().list();
+        if (names == null) {
+            return new ArrayList<String>(0);
+        }
+        return new ArrayList<String>(Arrays.asList(names));
+    }
+
+    @Override
+    public void delete(String path) throws IOException {
+        Path target = this.resolve(path);
+        if (!Files.exists(target)) {
+            return;
+        }
+        if (target.equals(this.root.toPath())) {
+            throw new IOException("The root directory cannot be deleted");
+        }
+        Files.walkFileTree(target, new SimpleFileVisitor<Path>() {
+            
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.deleteIfExists(file);
+                return FileVisitResult.CONTINUE;
+            }
+            
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                Files.deleteIfExists(dir);
+                return FileVisitResult.CONTINUE;
+            }
+            
+        });
+    }
+
+    @Override
+    public void mkdir(String path) throws IOException {
+        Files.createDirectories(this.resolve(path));
+    }
+
+    @Override
+    public DataInput createInput(String path) throws IOException {
+        FileChannel channel = FileChannel.open(this.resolve(path), StandardOpenOption.READ);
+        try {
+            long length = channel.size();
+            long segmentSize = 1L << MAPPED_SEGMENT_BITS;
+            int segmentCount = (int) ((length + segmentSize - 1) >>> MAPPED_SEGMENT_BITS);
+            ByteBuffer[] segments = new ByteBuffer[segmentCount];
+            for (int i = 0; i < segmentCount; i++) {
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, i * segmentSize, 
+                        Math.min(segmentSize, length - i * segmentSize));
+            }
+            return new MappedDataInput(segments, length);
+        } finally {
+            /* the mappings stay valid after the channel is closed */
+            channel.close();
+        }
+    }
+
+    @Override
+    public OutputStream createOutput(String path) throws IOException {
+        Path file = this.resolve(path);
+        Files.createDirectories(file.getParent());
+        /* an existing file is removed rather than truncated, so the inputs which have it mapped
+         * keep on reading the old content */
+        Files.deleteIfExists(file);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        return new BufferedOutputStream(Channels.newOutputStream(channel), OUTPUT_BUFFER_SIZE);
+    }
+
+    @Override
+    public void sync(String path) throws IOException {
+        Path target = this.resolve(path);
+        if (Files.isDirectory(target)) {
+            return;
+        }
+        FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE);
+        try {
+            channel.force(true);
+        } finally {
+            channel.close();
+        }
+    }
+
+    @Override
+    public long length(String path) throws IOException {
+        return Files.size(this.resolve(path));
+    }
+    
+    /**
+     * {@link DataInput} implementation using memory mapped buffers, the copies share the mapped buffers.
+     */
+    public static class MappedDataInput implements DataInput {
+        
+        private static final int SEGMENT_MASK = (1 << MAPPED_SEGMENT_BITS) - 1;
+        
+        private ByteBuffer[] segments;
+        
+        private long length;
+        
+        private long position;
+        
+        public MappedDataInput(ByteBuffer[] segments, long length) {
+            this.segments = segments;
+            this.length = length;
+        }
+        
+        @Override
+        public int read(byte[] buff, int offset, int len) throws IOException {
+            if (this.position >= this.length) {
+                return -1;
+            }
+            len = (int) Math.min(len, this.length - this.position);
+            int remaining = len, count, segmentPosition;
+            ByteBuffer segment;
+            while (remaining > 0) {
+                segment = this.segments[(int) (this.position >>> MAPPED_SEGMENT_BITS)];
+                segmentPosition = (int) (this.position & SEGMENT_MASK);
+                count = Math.min(remaining, segment.limit() - segmentPosition);
+                segment.position(segmentPosition);
+                segment.get(buff, offset, count);
+                this.position += count;
+                offset += count;
+                remaining -= count;
+            }
+            return len;
+        }
+
+        @Override
+        public void seek(long pos) throws IOException {
+            this.position = pos;
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public void close() throws IOException {
+            /* the mappings are released when the buffers are garbage collected */
+            this.segments = null;
+        }
+
+        @Override
+        public DataInput makeCopy() throws IOException {
+            ByteBuffer[] segmentCopies = new ByteBuffer[this.segments.length];
+            for (int i = 0; i < this.segments.length; i++) {
+                segmentCopies[i] = this.segments[i].duplicate();
+            }
+            MappedDataInput in = new MappedDataInput(segmentCopies, this.length);
+            in.seek(this.position);
+            return in;
+        }
+        
+    }
+
+}
@@ -0,0 +1,48 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.testng.annotations.BeforeSuite;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsFileSystem;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsFileSystemTest;
+
+/**
+ * Local file system implementation of analytics file system tests.
+ */
+public class LocalAnalyticsFileSystemTest extends AnalyticsFileSystemTest {
+
+    @BeforeSuite
+    public void setup() throws AnalyticsException, IOException {
+        String path = System.getProperty("java.io.tmpdir") + File.separator + "bam_test_local_fs";
+        AnalyticsFileSystem afs = new LocalAnalyticsFileSystem();
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("path", path);
+        afs.init(props);
+        afs.delete("/mydir");
+        afs.delete("/d1");
+        this.init("LocalAnalyticsFileSystem", afs);
+    }
+    
+}
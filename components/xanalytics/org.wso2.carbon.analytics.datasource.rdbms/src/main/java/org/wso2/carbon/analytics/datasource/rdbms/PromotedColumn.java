@@ -0,0 +1,113 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.rdbms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
+
+/**
+ * This class represents a record field, which is also kept in its own typed column in the record tables, 
+ * so it can be used in the SQL conditions of the record queries.
+ */
+public class PromotedColumn {
+    
+    private static final String COLUMN_NAME_PREFIX = "F_";
+    
+    private static final String INDEXED = "INDEXED";
+    
+    private static final Pattern FIELD_NAME_PATTERN = Pattern.compile("[A-Za-z0-9_]{1,64}");
+
+    private String field;
+    
+    private PromotedColumnType type;
+    
+    private boolean indexed;
+    
+    public PromotedColumn(String field, PromotedColumnType type, boolean indexed) {
+        this.field = field;
+        this.type = type;
+        this.indexed = indexed;
+    }
+    
+    public String getField() {
+        return field;
+    }
+    
+    public PromotedColumnType getType() {
+        return type;
+    }
+    
+    public boolean isIndexed() {
+        return indexed;
+    }
+    
+    /**
+     * Returns the name of the SQL column, which is prefixed, so it does not clash with the fixed columns 
+     * of the record tables, or SQL keywords.
+     */
+    public String getColumnName() {
+        return COLUMN_NAME_PREFIX + this.getField().toUpperCase();
+    }
+    
+    /**
+     * Parses a promoted column list of the form "[field] [type] [INDEXED]?, ...", 
+     * e.g. "status STRING INDEXED, amount DOUBLE".
+     * @param value The promoted column list
+     * @return The promoted columns
+     * @throws AnalyticsException If the list is invalid
+     */
+    public static List<PromotedColumn> parse(String value) throws AnalyticsException {
+        List<PromotedColumn> result = new ArrayList<PromotedColumn>();
+        List<String> columnNames = new ArrayList<String>();
+        String[] tokens;
+        PromotedColumn column;
+        for (String entry : value.split(",")) {
+            entry = entry.trim();
+            if (entry.length() == 0) {
+                continue;
+            }
+            tokens = entry.split("\\s+");
+            if (tokens.length < 2 || tokens.length > 3 || !FIELD_NAME_PATTERN.matcher(tokens[0]).matches() || 
+                    (tokens.length == 3 && !INDEXED.equalsIgnoreCase(tokens[2]))) {
+                throw new AnalyticsException("Invalid promoted column: " + entry);
+            }
+            try {
+                column = new PromotedColumn(tokens[0], PromotedColumnType.valueOf(tokens[1].toUpperCase()), 
+                        tokens.length == 3);
+            } catch (IllegalArgumentException e) {
+                throw new AnalyticsException("Invalid promoted column type: " + entry);
+            }
+            if (columnNames.contains(column.getColumnName())) {
+                throw new AnalyticsException("Duplicate promoted column: " + entry);
+            }
+            columnNames.add(column.getColumnName());
+            result.add(column);
+        }
+        return result;
+    }
+    
+    @Override
+    public String toString() {
+        return this.getField() + " " + this.getType() + (this.isIndexed() ? " " + INDEXED : "");
+    }
+    
+}
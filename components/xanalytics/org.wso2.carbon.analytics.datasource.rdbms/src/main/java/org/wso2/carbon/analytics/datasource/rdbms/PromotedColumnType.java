@@ -0,0 +1,293 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.rdbms;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.wso2.carbon.analytics.datasource.core.AggregateFunction;
+import org.wso2.carbon.analytics.datasource.core.RecordPredicate;
+
+/**
+ * This enum represents the SQL column types of the promoted record fields. A promoted column keeps the field 
+ * values which compare in the database the same way as in {@link RecordPredicate}, numbers are converted 
+ * to the column type if they can be kept exactly. The other values are kept as nulls, and are only found 
+ * in the encoded record, which is then marked to be evaluated in memory.
+ */
+public enum PromotedColumnType {
+    
+    STRING(Types.VARCHAR),
+    
+    INTEGER(Types.INTEGER),
+    
+    LONG(Types.BIGINT),
+    
+    DOUBLE(Types.DOUBLE),
+    
+    BOOLEAN(Types.BOOLEAN);
+    
+    /* the integers below this magnitude are kept exactly in a double, and compare the same way with 
+     * any other integer, either as longs or as doubles */
+    private static final double MAX_EXACT_DOUBLE_INTEGER = 1L << 53;
+    
+    private static final Pattern TYPE_LENGTH_PATTERN = Pattern.compile("\\(\\s*(\\d+)\\s*\\)");
+    
+    private int sqlType;
+    
+    private PromotedColumnType(int sqlType) {
+        this.sqlType = sqlType;
+    }
+    
+    /**
+     * Returns the database specific SQL type of this column type, from the query configuration.
+     */
+    public String getSQLType(RDBMSQueryConfigurationEntry conf) {
+        switch (this) {
+        case STRING:
+            return conf.getPromotedColumnStringType();
+        case INTEGER:
+            return conf.getPromotedColumnIntegerType();
+        case LONG:
+            return conf.getPromotedColumnLongType();
+        case DOUBLE:
+            return conf.getPromotedColumnDoubleType();
+        case BOOLEAN:
+            return conf.getPromotedColumnBooleanType();
+        default:
+            throw new IllegalArgumentException("Unknown promoted column type: " + this);
+        }
+    }
+    
+    /**
+     * Checks if an existing column of the given JDBC type, e.g. from {@link java.sql.DatabaseMetaData#getColumns}, 
+     * keeps the values of this column type exactly, and compares them the same way. Databases may report 
+     * the configured type as a wider or an equivalent type, e.g. a boolean as a bit.
+     * @param columnSQLType The JDBC type of the column, from {@link Types}
+     * @return true if the column can be used as a column of this type
+     */
+    public boolean isCompatibleSQLType(int columnSQLType) {
+        switch (this) {
+        case STRING:
+            return columnSQLType == Types.VARCHAR || columnSQLType == Types.NVARCHAR || 
+                    columnSQLType == Types.CHAR || columnSQLType == Types.NCHAR || 
+                    columnSQLType == Types.LONGVARCHAR || columnSQLType == Types.LONGNVARCHAR || 
+                    columnSQLType == Types.CLOB || columnSQLType == Types.NCLOB;
+        case INTEGER:
+            return columnSQLType == Types.INTEGER || columnSQLType == Types.BIGINT || 
+                    columnSQLType == Types.NUMERIC || columnSQLType == Types.DECIMAL;
+        case LONG:
+            return columnSQLType == Types.BIGINT || columnSQLType == Types.NUMERIC || 
+                    columnSQLType == Types.DECIMAL;
+        case DOUBLE:
+            /* a JDBC FLOAT is a double precision number, unlike a REAL */
+            return columnSQLType == Types.DOUBLE || columnSQLType == Types.FLOAT;
+        default:
+            return columnSQLType == Types.BOOLEAN || columnSQLType == Types.BIT || 
+                    columnSQLType == Types.TINYINT || columnSQLType == Types.SMALLINT || 
+                    columnSQLType == Types.INTEGER || columnSQLType == Types.NUMERIC || 
+                    columnSQLType == Types.DECIMAL;
+        }
+    }
+    
+    /**
+     * Returns the maximum length of the string values, which fit in to the configured string column type, 
+     * e.g. 1024 for "VARCHAR(1024)".
+     * @return The maximum length, or -1 if the type does not have a length
+     */
+    public static int getMaxStringLength(RDBMSQueryConfigurationEntry conf) {
+        Matcher matcher = TYPE_LENGTH_PATTERN.matcher(conf.getPromotedColumnStringType());
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+    
+    /**
+     * Converts a field value to the value kept in a column of this type.
+     * @param value The field value
+     * @param maxStringLength The maximum length of the string values, -1 if there is no limit
+     * @return The column value, or null if the field value cannot be kept exactly in a column of this type
+     */
+    public Object toColumnValue(Object value, int maxStringLength) {
+        if (value == null) {
+            return null;
+        }
+        switch (this) {
+        case STRING:
+            if (value instanceof String && (maxStringLength < 0 || ((String) value).length() <= maxStringLength)) {
+                return value;
+            }
+            return null;
+        case BOOLEAN:
+            return value instanceof Boolean ? value : null;
+        case DOUBLE:
+            if (isIntegral(value)) {
+                long longValue = ((Number) value).longValue();
+                return longValue > -MAX_EXACT_DOUBLE_INTEGER && longValue < MAX_EXACT_DOUBLE_INTEGER ? 
+                        (Object) (double) longValue : null;
+            }
+            if (isDecimal(value)) {
+                return ((Number) value).doubleValue();
+            }
+            return null;
+        default:
+            Long longValue = null;
+            if (isIntegral(value)) {
+                longValue = ((Number) value).longValue();
+            } else if (isDecimal(value)) {
+                double doubleValue = ((Number) value).doubleValue();
+                if (doubleValue == Math.rint(doubleValue) && Math.abs(doubleValue) < MAX_EXACT_DOUBLE_INTEGER) {
+                    longValue = (long) doubleValue;
+                }
+            }
+            if (longValue == null || this == LONG) {
+                return longValue;
+            }
+            return longValue == longValue.intValue() ? (Object) longValue.intValue() : null;
+        }
+    }
+    
+    /**
+     * Sets a field value as a statement parameter of this column type.
+     * @param stmt The statement
+     * @param index The parameter index
+     * @param value The field value, values which cannot be kept in this column type are set as nulls
+     * @param maxStringLength The maximum length of the string values, -1 if there is no limit
+     * @return true if the value is null, or it is kept exactly
+     * @throws SQLException
+     */
+    public boolean setParameter(PreparedStatement stmt, int index, Object value, 
+            int maxStringLength) throws SQLException {
+        Object columnValue = this.toColumnValue(value, maxStringLength);
+        if (columnValue == null) {
+            stmt.setNull(index, this.sqlType);
+            return value == null;
+        }
+        switch (this) {
+        case STRING:
+            stmt.setString(index, (String) columnValue);
+            break;
+        case INTEGER:
+            stmt.setInt(index, (Integer) columnValue);
+            break;
+        case LONG:
+            stmt.setLong(index, (Long) columnValue);
+            break;
+        case DOUBLE:
+            stmt.setDouble(index, (Double) columnValue);
+            break;
+        default:
+            stmt.setBoolean(index, (Boolean) columnValue);
+        }
+        return true;
+    }
+    
+    /**
+     * Checks if the given predicate can be evaluated on a column of this type, with the same result as 
+     * {@link RecordPredicate#matches(Object)}. Strings and booleans are only compared for equality, since 
+     * the database may order them differently.
+     */
+    public boolean canEvaluate(RecordPredicate predicate) {
+        Object value = predicate.getValue();
+        switch (this) {
+        case STRING:
+            return value instanceof String && predicate.getOperator() == RecordPredicate.Operator.EQUAL;
+        case BOOLEAN:
+            return value instanceof Boolean && predicate.getOperator() == RecordPredicate.Operator.EQUAL;
+        case DOUBLE:
+            return this.toColumnValue(value, -1) != null;
+        default:
+            return isIntegral(value);
+        }
+    }
+    
+    /**
+     * Sets the value of a predicate, which can be evaluated on a column of this type, as a statement parameter.
+     */
+    public void setPredicateParameter(PreparedStatement stmt, int index, Object value) throws SQLException {
+        if (value instanceof String) {
+            stmt.setString(index, (String) value);
+        } else if (value instanceof Boolean) {
+            stmt.setBoolean(index, (Boolean) value);
+        } else if (this == DOUBLE) {
+            stmt.setDouble(index, ((Number) value).doubleValue());
+        } else {
+            stmt.setLong(index, ((Number) value).longValue());
+        }
+    }
+    
+    /**
+     * Checks if an aggregate function of the given type can be computed on a column of this type, 
+     * with the same result as the {@link AggregateFunction} itself. Only the numeric columns can be summed 
+     * up, and also only they are ordered, since the database may order strings differently.
+     */
+    public boolean canAggregate(AggregateFunction.Type functionType) {
+        if (functionType == AggregateFunction.Type.COUNT) {
+            return true;
+        }
+        return this == INTEGER || this == LONG || this == DOUBLE;
+    }
+    
+    /**
+     * Reads a value of this column type from a result set.
+     * @param rs The result set
+     * @param index The column index
+     * @return The value, or null if it is an SQL null
+     * @throws SQLException
+     */
+    public Object getValue(ResultSet rs, int index) throws SQLException {
+        Object value;
+        switch (this) {
+        case STRING:
+            value = rs.getString(index);
+            break;
+        case INTEGER:
+            value = rs.getInt(index);
+            break;
+        case LONG:
+            value = rs.getLong(index);
+            break;
+        case DOUBLE:
+            value = rs.getDouble(index);
+            break;
+        default:
+            value = rs.getBoolean(index);
+        }
+        return rs.wasNull() ? null : value;
+    }
+    
+    private static boolean isIntegral(Object value) {
+        return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+    }
+    
+    /**
+     * Checks if the given value is a decimal number, which the database compares the same way as 
+     * {@link Double#compare(double, double)}, i.e. it is not NaN or negative zero.
+     */
+    private static boolean isDecimal(Object value) {
+        if (!(value instanceof Double || value instanceof Float)) {
+            return false;
+        }
+        double doubleValue = ((Number) value).doubleValue();
+        return !Double.isNaN(doubleValue) && Double.doubleToRawLongBits(doubleValue) != 
+                Double.doubleToRawLongBits(-0.0);
+    }
+    
+}
@@ -24,5 +24,21 @@ package org.wso2.carbon.analytics.datasource.rdbms;
 public class RDBMSAnalyticsDSConstants {
 
     public static final String DATASOURCE = "datasource";
+    
+    public static final String CHUNK_CACHE_SIZE = "chunkCacheSize";
+    
+    public static final String CHUNK_CACHE_OFF_HEAP = "chunkCacheOffHeap";
+    
+    public static final String RECORD_GROUP_SPLIT_COUNT = "recordGroupSplitCount";
+    
+    public static final String RECORD_GROUP_MIN_SPLIT_SIZE = "recordGroupMinSplitSize";
+    
+    public static final String RECORD_COMPRESSION = "recordCompression";
+    
+    public static final String RECORD_COMPRESSION_MIN_SIZE = "recordCompressionMinSize";
+    
+    public static final String RECORD_TABLE_PARTITIONING = "recordTablePartitioning";
+    
+    public static final String PROMOTED_COLUMNS = "promotedColumns";
         
 }
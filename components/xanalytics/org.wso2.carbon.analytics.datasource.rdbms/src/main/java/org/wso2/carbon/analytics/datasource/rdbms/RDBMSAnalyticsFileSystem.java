@@ -39,6 +39,7 @@ import javax.sql.DataSource;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.ChunkCache;
 import org.wso2.carbon.analytics.datasource.core.ChunkedDataInput;
 import org.wso2.carbon.analytics.datasource.core.ChunkedDataOutput;
 import org.wso2.carbon.analytics.datasource.core.ChunkedStream;
@@ -59,6 +60,8 @@ public class RDBMSAnalyticsFileSystem implements AnalyticsFileSystem {
     
     private DataSource dataSource;
     
+    private ChunkCache chunkCache;
+    
     private static final Log log = LogFactory.getLog(RDBMSAnalyticsFileSystem.class);
 
     @Override
@@ -78,10 +81,37 @@ public class RDBMSAnalyticsFileSystem implements AnalyticsFileSystem {
             this.rDBMSQueryConfigurationEntry = RDBMSUtils.lookupCurrentQueryConfigurationEntry(this.dataSource);
         }
         this.FS_EMPTY_DATA_CHUNK = new byte[this.getQueryConfiguration().getFsDataChunkSize()];
+        this.initChunkCache(properties);
         /* create the system tables */
         this.checkAndCreateSystemTables();
     }
     
+    private void initChunkCache(Map<String, String> properties) throws AnalyticsException {
+        String cacheSizeProp = properties.get(RDBMSAnalyticsDSConstants.CHUNK_CACHE_SIZE);
+        if (cacheSizeProp == null) {
+            return;
+        }
+        long cacheSize;
+        try {
+            cacheSize = Long.parseLong(cacheSizeProp.trim());
+        } catch (NumberFormatException e) {
+            throw new AnalyticsException("Invalid value for the property '" + 
+                    RDBMSAnalyticsDSConstants.CHUNK_CACHE_SIZE + "': " + cacheSizeProp);
+        }
+        if (cacheSize > 0) {
+            boolean offHeap = Boolean.parseBoolean(properties.get(RDBMSAnalyticsDSConstants.CHUNK_CACHE_OFF_HEAP));
+            this.chunkCache = new ChunkCache(cacheSize, offHeap);
+        }
+    }
+    
+    /**
+     * Returns the data chunk cache shared by the inputs of this file system.
+     * @return The chunk cache, or null, if chunk caching is not enabled
+     */
+    public ChunkCache getChunkCache() {
+        return chunkCache;
+    }
+    
     public RDBMSAnalyticsFileSystem() {
         this.rDBMSQueryConfigurationEntry = null;
     }
@@ -160,6 +190,10 @@ public class RDBMSAnalyticsFileSystem implements AnalyticsFileSystem {
             throw new IOException("Error in file delete: " + e.getMessage(), e);
         } finally {
             RDBMSUtils.cleanupConnection(null, null, conn);
+            if (this.chunkCache != null) {
+                /* the child paths are removed along with the given path */
+                this.chunkCache.invalidate(path, true);
+            }
         }
     }
     
@@ -388,6 +422,43 @@ public class RDBMSAnalyticsFileSystem implements AnalyticsFileSystem {
         return this.getQueryConfiguration().getFsReadDataChunkQuery();
     }
     
+    protected List<DataChunk> readChunks(RDBMSDataStream stream, long from, long to) throws IOException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = this.getConnection();
+            stmt = conn.prepareStatement(this.getReadDataChunkRangeQuery());
+            stmt.setString(1, stream.getPath());
+            stmt.setLong(2, from);
+            stmt.setLong(3, to);
+            rs = stmt.executeQuery();
+            List<DataChunk> result = new ArrayList<DataChunk>((int) (to - from + 1));
+            long n = from, sequence;
+            while (rs.next()) {
+                sequence = rs.getLong(1);
+                /* chunks which were never written are not there in the result */
+                for (; n < sequence; n++) {
+                    result.add(stream.new DataChunk(n, FS_EMPTY_DATA_CHUNK));
+                }
+                result.add(stream.new DataChunk(n, this.inputStreamToByteArray(rs.getBinaryStream(2))));
+                n++;
+            }
+            for (; n <= to; n++) {
+                result.add(stream.new DataChunk(n, FS_EMPTY_DATA_CHUNK));
+            }
+            return result;
+        } catch (SQLException e) {
+            throw new IOException("Error in file read chunks: " + e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(rs, stmt, conn);
+        }
+    }
+    
+    private String getReadDataChunkRangeQuery() {
+        return this.getQueryConfiguration().getFsReadDataChunkRangeQuery();
+    }
+    
     private void writeChunks(String path, List<DataChunk> chunks) throws IOException {
         Connection conn = null;
         PreparedStatement stmt = null;
@@ -480,7 +551,7 @@ public class RDBMSAnalyticsFileSystem implements AnalyticsFileSystem {
         private String path;
         
         public RDBMSDataStream(String path) throws IOException {
-            super(getQueryConfiguration().getFsDataChunkSize());
+            super(getQueryConfiguration().getFsDataChunkSize(), path, chunkCache);
             this.path = path;
         }
 
@@ -502,6 +573,22 @@ public class RDBMSAnalyticsFileSystem implements AnalyticsFileSystem {
             return new DataChunk(n, RDBMSAnalyticsFileSystem.this.readChunkData(this.getPath(), n));
         }
 
+        @Override
+        public List<DataChunk> readChunks(long from, long to) throws IOException {
+            if (getReadDataChunkRangeQuery() == null) {
+                return super.readChunks(from, to);
+            }
+            return RDBMSAnalyticsFileSystem.this.readChunks(this, from, to);
+        }
+        
+        @Override
+        public int getReadAheadChunkCount() {
+            if (getReadDataChunkRangeQuery() == null) {
+                return 1;
+            }
+            return Math.max(getQueryConfiguration().getFsDataChunkReadAheadCount(), 1);
+        }
+
         @Override
         public void setLength(long length) throws IOException {
             RDBMSAnalyticsFileSystem.this.setLength(this.getPath(), length);
@@ -526,7 +613,10 @@ public class RDBMSAnalyticsFileSystem implements AnalyticsFileSystem {
             throws IOException {
         path = GenericUtils.normalizePath(path);
         this.createFile(path);
-        return new ChunkedDataOutput(new RDBMSDataStream(path));
+        RDBMSDataStream stream = new RDBMSDataStream(path);
+        /* an existing file is overwritten */
+        stream.invalidateCachedChunks();
+        return new ChunkedDataOutput(stream);
     }
 
 }
\ No newline at end of file
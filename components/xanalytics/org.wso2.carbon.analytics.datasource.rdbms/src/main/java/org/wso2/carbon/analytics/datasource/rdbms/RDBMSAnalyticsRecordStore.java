@@ -19,6 +19,8 @@
 package org.wso2.carbon.analytics.datasource.rdbms;
 
 import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Blob;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -26,35 +28,127 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 
 import javax.naming.InitialContext;
 import javax.naming.NamingException;
 import javax.sql.DataSource;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.wso2.carbon.analytics.datasource.core.AggregateFunction;
+import org.wso2.carbon.analytics.datasource.core.AggregatingRecordStore;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsRecordStore;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsTableNotAvailableException;
+import org.wso2.carbon.analytics.datasource.core.CachedTableCatalog;
+import org.wso2.carbon.analytics.datasource.core.ColumnDictionary;
 import org.wso2.carbon.analytics.datasource.core.DirectAnalyticsRecordStore;
+import org.wso2.carbon.analytics.datasource.core.DirectRecordGroup;
+import org.wso2.carbon.analytics.datasource.core.EncodedRecord;
+import org.wso2.carbon.analytics.datasource.core.FilteringRecordStore;
 import org.wso2.carbon.analytics.datasource.core.Record;
+import org.wso2.carbon.analytics.datasource.core.RecordAggregate;
+import org.wso2.carbon.analytics.datasource.core.RecordAggregator;
+import org.wso2.carbon.analytics.datasource.core.RecordBatch;
+import org.wso2.carbon.analytics.datasource.core.RecordBatchBuilder;
+import org.wso2.carbon.analytics.datasource.core.RecordBatchIterator;
+import org.wso2.carbon.analytics.datasource.core.RecordBatchReader;
+import org.wso2.carbon.analytics.datasource.core.RecordCompression;
+import org.wso2.carbon.analytics.datasource.core.RecordContinuationToken;
+import org.wso2.carbon.analytics.datasource.core.RecordFilterIterator;
+import org.wso2.carbon.analytics.datasource.core.RecordGroup;
+import org.wso2.carbon.analytics.datasource.core.RecordPredicate;
 import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+import org.wso2.carbon.analytics.datasource.core.util.RecordValuesDecoder;
 
 /**
  * Abstract RDBMS database backed implementation of {@link AnalyticsRecordStore}.
  */
-public class RDBMSAnalyticsRecordStore extends DirectAnalyticsRecordStore {
+public class RDBMSAnalyticsRecordStore extends DirectAnalyticsRecordStore implements CachedTableCatalog, 
+        RecordBatchReader, FilteringRecordStore, AggregatingRecordStore {
+    
+    private static final Log log = LogFactory.getLog(RDBMSAnalyticsRecordStore.class);
     
     private static final String ANALYTICS_USER_TABLE_PREFIX = "ANX";
 
     private static final String RECORD_IDS_PLACEHOLDER = "{{RECORD_IDS}}";
 
     private static final String TABLE_NAME_PLACEHOLDER = "{{TABLE_NAME}}";
+    
+    private static final String TABLE_ID_PLACEHOLDER = "{{TABLE_ID}}";
+    
+    private static final String PROMOTED_COLUMNS_PLACEHOLDER = "{{PROMOTED_COLUMNS}}";
+    
+    private static final String PROMOTED_VALUES_PLACEHOLDER = "{{PROMOTED_VALUES}}";
+    
+    private static final String PROMOTED_UPDATES_PLACEHOLDER = "{{PROMOTED_UPDATES}}";
+    
+    private static final String PREDICATES_PLACEHOLDER = "{{PREDICATES}}";
+    
+    private static final String AGGREGATES_PLACEHOLDER = "{{AGGREGATES}}";
+    
+    private static final String GROUP_BY_PLACEHOLDER = "{{GROUP_BY}}";
+    
+    private static final String COLUMN_NAME_PLACEHOLDER = "{{COLUMN_NAME}}";
+    
+    private static final String COLUMN_TYPE_PLACEHOLDER = "{{COLUMN_TYPE}}";
+    
+    private static final int PROMOTED_COLUMN_BACKFILL_BATCH_SIZE = 1000;
+    
+    /* the column, which keeps the version of the promoted columns a record's promoted values are written with, 
+     * the records of the current version are filtered in the database, and the rest in memory */
+    private static final String PROMOTED_VERSION_COLUMN = "PROMOTED_VERSION";
+    
+    /* the promoted version of the records, which have values that cannot be kept exactly in their columns */
+    private static final int INEXACT_PROMOTED_VERSION = 0;
+    
+    /* the records, which are not written with the current promoted columns, and can be written again */
+    private static final String STALE_PROMOTED_VERSION_CONDITION = "(" + PROMOTED_VERSION_COLUMN + " IS NULL OR (" + 
+            PROMOTED_VERSION_COLUMN + " <> ? AND " + PROMOTED_VERSION_COLUMN + " <> " + INEXACT_PROMOTED_VERSION + 
+            "))";
+    
+    /* the shared physical tables of the consolidated layout are named in the form ANX_RECORDS_[index] */
+    private static final String CONSOLIDATED_TABLE_PREFIX = ANALYTICS_USER_TABLE_PREFIX + "_RECORDS_";
+    
+    private static final int MAX_TABLE_ID_ALLOCATION_ATTEMPTS = 10;
+    
+    /* the physical tables of a partitioned table are named in the form [targetTableName]__P[partitionSuffix] */
+    private static final String PARTITION_TABLE_SEPARATOR = "__P";
+    
+    /* the partition of the records of a non-partitioned table, which are kept in its target table */
+    private static final long NO_PARTITION = Long.MIN_VALUE;
+    
+    private static final long DEFAULT_RECORD_GROUP_MIN_SPLIT_SIZE = 10000;
+    
+    private static final int HISTOGRAM_BUCKETS_PER_SPLIT = 16;
+    
+    private static final int DEFAULT_RECORD_COMPRESSION_MIN_SIZE = 256;
+    
+    /* the sizes the record id lists of IN queries are padded to, so only a few distinct statements are used */
+    private static final int[] RECORD_ID_BATCH_SIZES = { 1, 8, 32, 128, 512 };
+    
+    private static final int MAX_RECORD_ID_BATCH_SIZE = RECORD_ID_BATCH_SIZES[RECORD_ID_BATCH_SIZES.length - 1];
 
     private DataSource dataSource;
     
@@ -62,6 +156,55 @@ public class RDBMSAnalyticsRecordStore extends DirectAnalyticsRecordStore {
     
     private RDBMSQueryConfigurationEntry rDBMSQueryConfigurationEntry;
     
+    private int recordGroupSplitCount = 1;
+    
+    private long recordGroupMinSplitSize = DEFAULT_RECORD_GROUP_MIN_SPLIT_SIZE;
+    
+    private RecordCompression recordCompression = RecordCompression.NONE;
+    
+    /* normalized table name -> record compression, overriding the default one */
+    private Map<String, RecordCompression> tableRecordCompressions = new HashMap<String, RecordCompression>();
+    
+    private int recordCompressionMinSize = DEFAULT_RECORD_COMPRESSION_MIN_SIZE;
+    
+    private RecordTablePartitioning recordTablePartitioning = RecordTablePartitioning.NONE;
+    
+    /* normalized table name -> record table partitioning, overriding the default one */
+    private Map<String, RecordTablePartitioning> tableRecordTablePartitionings = 
+            new HashMap<String, RecordTablePartitioning>();
+    
+    /* normalized table name -> the record fields kept in their own columns */
+    private Map<String, List<PromotedColumn>> tablePromotedColumns = new HashMap<String, List<PromotedColumn>>();
+    
+    /* the physical tables, which are checked to have all their promoted columns */
+    private Set<String> promotedColumnTables = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    
+    private int promotedStringMaxLength = -1;
+    
+    private ExecutorService promotedColumnBackfillExecutor;
+    
+    /* target table name -> table id, of the tables in the consolidated layout */
+    private Map<String, Integer> tableIds = new ConcurrentHashMap<String, Integer>();
+    
+    /* target table name -> the existing partitions of a partitioned table, loaded on first use */
+    private ConcurrentMap<String, NavigableSet<Long>> tablePartitions = 
+            new ConcurrentHashMap<String, NavigableSet<Long>>();
+    
+    private Map<QueryCacheKey, String> queryCache = new ConcurrentHashMap<QueryCacheKey, String>();
+    
+    /* tenant id -> normalized table names, loaded on first use */
+    private volatile Map<Integer, Set<String>> tableCatalog;
+    
+    /* incremented with each catalog change, tables looked up concurrently with a change are not cached */
+    private long tableCatalogModificationCount;
+    
+    private InvalidationPublisher tableCatalogInvalidationPublisher;
+    
+    /* target table name -> column dictionary, the dictionaries are kept even if their tables are deleted,
+     * so the column ids known to the other nodes remain valid */
+    private ConcurrentMap<String, ColumnDictionary> columnDictionaries = 
+            new ConcurrentHashMap<String, ColumnDictionary>();
+    
     public RDBMSAnalyticsRecordStore() throws AnalyticsException {
         this.rDBMSQueryConfigurationEntry = null;
     }
@@ -73,560 +216,3106 @@ public class RDBMSAnalyticsRecordStore extends DirectAnalyticsRecordStore {
     @Override
     public void init(Map<String, String> properties)
             throws AnalyticsException {
-        this.properties = properties;
         String dsName = properties.get(RDBMSAnalyticsDSConstants.DATASOURCE);
         if (dsName == null) {
             throw new AnalyticsException("The property '" + 
                     RDBMSAnalyticsDSConstants.DATASOURCE + "' is required");
         }
+        DataSource dataSource;
         try {
-            this.dataSource = (DataSource) InitialContext.doLookup(dsName);
+            dataSource = (DataSource) InitialContext.doLookup(dsName);
         } catch (NamingException e) {
             throw new AnalyticsException("Error in looking up data source: " + 
                     e.getMessage(), e);
         }
+        this.init(dataSource, properties);
+    }
+    
+    /**
+     * Initializes the record store with the given data source, instead of the one looked up with 
+     * the data source property, e.g. when the record store is used outside the server.
+     * @param dataSource The data source
+     * @param properties The record store properties
+     * @throws AnalyticsException
+     */
+    public void init(DataSource dataSource, Map<String, String> properties) throws AnalyticsException {
+        this.properties = properties;
+        this.dataSource = dataSource;
         if (this.rDBMSQueryConfigurationEntry == null) {
             this.rDBMSQueryConfigurationEntry = RDBMSUtils.lookupCurrentQueryConfigurationEntry(this.dataSource);
         }
+        this.initRecordGroupSplitting(properties);
+        this.initRecordCompression(properties);
+        this.initRecordTablePartitioning(properties);
+        this.initPromotedColumns(properties);
+        this.checkAndCreateColumnDictionaryTable();
+        if (this.isConsolidatedLayout()) {
+            this.checkAndCreateConsolidatedTables();
+        }
     }
     
-    public RDBMSQueryConfigurationEntry getQueryConfiguration() {
-        return rDBMSQueryConfigurationEntry;
+    private void initRecordGroupSplitting(Map<String, String> properties) throws AnalyticsException {
+        String splitCountProp = properties.get(RDBMSAnalyticsDSConstants.RECORD_GROUP_SPLIT_COUNT);
+        String minSplitSizeProp = properties.get(RDBMSAnalyticsDSConstants.RECORD_GROUP_MIN_SPLIT_SIZE);
+        try {
+            if (splitCountProp != null) {
+                this.recordGroupSplitCount = Integer.parseInt(splitCountProp.trim());
+            }
+            if (minSplitSizeProp != null) {
+                this.recordGroupMinSplitSize = Math.max(Long.parseLong(minSplitSizeProp.trim()), 1);
+            }
+        } catch (NumberFormatException e) {
+            throw new AnalyticsException("Invalid record group split configuration: " + e.getMessage(), e);
+        }
     }
     
-    private String[] getRecordTableInitQueries(int tenantId, String tableName) {
-        String[] queries = this.getQueryConfiguration().getRecordTableInitQueries();
-        String[] result = new String[queries.length];
-        for (int i = 0; i < queries.length; i++) {
-            result[i] = this.translateQueryWithTableInfo(queries[i], tenantId, tableName);
+    /**
+     * Reads the record compression configuration, the property "recordCompression" sets the compression of 
+     * all the tables, and "recordCompression.[tableName]" the compression of a specific table.
+     */
+    private void initRecordCompression(Map<String, String> properties) throws AnalyticsException {
+        String tablePrefix = RDBMSAnalyticsDSConstants.RECORD_COMPRESSION + ".";
+        String minSizeProp = properties.get(RDBMSAnalyticsDSConstants.RECORD_COMPRESSION_MIN_SIZE);
+        try {
+            for (Map.Entry<String, String> entry : properties.entrySet()) {
+                if (entry.getKey().equals(RDBMSAnalyticsDSConstants.RECORD_COMPRESSION)) {
+                    this.recordCompression = RecordCompression.valueOf(entry.getValue().trim().toUpperCase());
+                } else if (entry.getKey().startsWith(tablePrefix)) {
+                    this.tableRecordCompressions.put(this.normalizeTableName(entry.getKey().substring(
+                            tablePrefix.length())), RecordCompression.valueOf(entry.getValue().trim().toUpperCase()));
+                }
+            }
+            if (minSizeProp != null) {
+                this.recordCompressionMinSize = Integer.parseInt(minSizeProp.trim());
+            }
+        } catch (IllegalArgumentException e) {
+            throw new AnalyticsException("Invalid record compression configuration: " + e.getMessage(), e);
         }
-        return result;
     }
     
-    private String[] getRecordTableDeleteQueries(int tenantId, String tableName) {
-        String[] queries = this.getQueryConfiguration().getRecordTableDeleteQueries();
-        String[] result = new String[queries.length];
-        for (int i = 0; i < queries.length; i++) {
-            result[i] = this.translateQueryWithTableInfo(queries[i], tenantId, tableName);
+    private RecordCompression getRecordCompression(String tableName) {
+        RecordCompression compression = this.tableRecordCompressions.get(this.normalizeTableName(tableName));
+        if (compression == null) {
+            compression = this.recordCompression;
         }
-        return result;
+        return compression;
     }
     
-    public Map<String, String> getProperties() {
-        return properties;
+    /**
+     * Reads the record table partitioning configuration, the property "recordTablePartitioning" sets the 
+     * partitioning of all the tables, and "recordTablePartitioning.[tableName]" the partitioning of a specific 
+     * table. The partitioning of a table should not be changed after records are added to it, since the records 
+     * are only looked up in the physical tables of its current partitioning.
+     */
+    private void initRecordTablePartitioning(Map<String, String> properties) throws AnalyticsException {
+        String tablePrefix = RDBMSAnalyticsDSConstants.RECORD_TABLE_PARTITIONING + ".";
+        try {
+            for (Map.Entry<String, String> entry : properties.entrySet()) {
+                if (entry.getKey().equals(RDBMSAnalyticsDSConstants.RECORD_TABLE_PARTITIONING)) {
+                    this.recordTablePartitioning = RecordTablePartitioning.valueOf(
+                            entry.getValue().trim().toUpperCase());
+                } else if (entry.getKey().startsWith(tablePrefix)) {
+                    this.tableRecordTablePartitionings.put(this.normalizeTableName(entry.getKey().substring(
+                            tablePrefix.length())), RecordTablePartitioning.valueOf(
+                                    entry.getValue().trim().toUpperCase()));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new AnalyticsException("Invalid record table partitioning configuration: " + e.getMessage(), e);
+        }
     }
     
-    public DataSource getDataSource() {
-        return dataSource;
+    private RecordTablePartitioning getRecordTablePartitioning(String tableName) {
+        RecordTablePartitioning partitioning = this.tableRecordTablePartitionings.get(
+                this.normalizeTableName(tableName));
+        if (partitioning == null) {
+            partitioning = this.recordTablePartitioning;
+        }
+        return partitioning;
     }
     
-    private Connection getConnection() throws SQLException {
-        return this.getConnection(true);
+    private boolean isPartitioned(String tableName) {
+        return this.getRecordTablePartitioning(tableName) != RecordTablePartitioning.NONE;
     }
     
-    private Connection getConnection(boolean autoCommit) throws SQLException {
-        Connection conn = this.getDataSource().getConnection();
-        conn.setAutoCommit(autoCommit);
-        return conn;
+    /**
+     * Reads the promoted column configuration, the property "promotedColumns.[tableName]" sets the record 
+     * fields of a table, which are also kept in their own typed columns, in the form 
+     * "[field] [type] [INDEXED]?, ...". The columns are added to the existing record tables on their first use, 
+     * and the values of the existing records are filled in the background.
+     */
+    private void initPromotedColumns(Map<String, String> properties) throws AnalyticsException {
+        String tablePrefix = RDBMSAnalyticsDSConstants.PROMOTED_COLUMNS + ".";
+        List<PromotedColumn> columns;
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            if (entry.getKey().startsWith(tablePrefix)) {
+                columns = PromotedColumn.parse(entry.getValue());
+                if (columns.size() > 0) {
+                    this.tablePromotedColumns.put(this.normalizeTableName(entry.getKey().substring(
+                            tablePrefix.length())), columns);
+                }
+            }
+        }
+        if (this.tablePromotedColumns.isEmpty()) {
+            return;
+        }
+        RDBMSQueryConfigurationEntry conf = this.getQueryConfiguration();
+        if (this.isConsolidatedLayout()) {
+            throw new AnalyticsException("Promoted columns are not supported with the consolidated "
+                    + "record table layout");
+        }
+        if (conf.getPromotedColumnAddQuery() == null || conf.getRecordRetrievalWithContinuationQuery() == null || 
+                !conf.getRecordInsertQuery().contains(PROMOTED_VALUES_PLACEHOLDER)) {
+            throw new AnalyticsException("Promoted columns are not supported by the current query configuration");
+        }
+        this.promotedStringMaxLength = PromotedColumnType.getMaxStringLength(conf);
+        this.promotedColumnBackfillExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "analytics-promoted-column-backfill");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
     }
     
-    private String calculateRecordIdentity(Record record) {
-        return this.generateTargetTableName(record.getTenantId(), record.getTableName());
+    private List<PromotedColumn> getPromotedColumns(String tableName) {
+        List<PromotedColumn> columns = this.tablePromotedColumns.get(this.normalizeTableName(tableName));
+        if (columns == null) {
+            return Collections.emptyList();
+        }
+        return columns;
     }
-
-    @Override
-    public void update(List<Record> records) throws AnalyticsException, AnalyticsTableNotAvailableException {
-        Connection conn = null;
-        try {
-            conn = this.getConnection(false);
-            Map<String, List<Record>> recordBatches = this.generateRecordBatches(records);
-            for (List<Record> batch : recordBatches.values()) {
-                this.deleteRecordsSimilar(conn, batch);
-            }
-            for (List<Record> batch : recordBatches.values()) {
-                this.addRecordsSimilar(conn, batch);
-            }
-            conn.commit();
-        } catch (SQLException e) {
-            RDBMSUtils.rollbackConnection(conn);
-            throw new AnalyticsException("Error in updating records: " + e.getMessage(), e);
-        } finally {
-            RDBMSUtils.cleanupConnection(null, null, conn);
+    
+    /**
+     * Returns the version of the promoted columns of a table, which changes with the fields and the types of 
+     * the columns, and is never {@link #INEXACT_PROMOTED_VERSION}.
+     */
+    private int getPromotedVersion(String tableName) {
+        StringBuilder builder = new StringBuilder();
+        for (PromotedColumn column : this.getPromotedColumns(tableName)) {
+            builder.append(column.getField()).append(" ").append(column.getType()).append(",");
         }
+        int version = builder.toString().hashCode() & Integer.MAX_VALUE;
+        return version == INEXACT_PROMOTED_VERSION ? version + 1 : version;
     }
     
-    private Map<String, List<Record>> generateRecordBatches(List<Record> records) {
-        /* if the records have identities (unique table category and name) as the following
-         * "ABABABCCAACBDABCABCDBAC", the job of this method is to make it like the following,
-         * {"AAAAAAAA", "BBBBBBB", "CCCCCC", "DD" } */
-        Map<String, List<Record>> recordBatches = new HashMap<String, List<Record>>();
-        List<Record> recordBatch;
-        for (Record record : records) {
-            recordBatch = recordBatches.get(this.calculateRecordIdentity(record));
-            if (recordBatch == null) {
-                recordBatch = new ArrayList<Record>();
-                recordBatches.put(this.calculateRecordIdentity(record), recordBatch);
+    /**
+     * Returns the queries which add the given promoted columns of a table, the promoted version column if 
+     * requested, and their indices, to a physical table. The promoted version column is indexed along with 
+     * any indexed promoted column, since the records which are not of the current version are always read in.
+     */
+    private List<String> getPromotedColumnAddQueries(String tableName, String physicalTableName, 
+            List<PromotedColumn> columns, boolean addVersionColumn) {
+        List<String> result = new ArrayList<String>();
+        for (PromotedColumn column : columns) {
+            this.addPromotedColumnAddQueries(result, physicalTableName, column.getColumnName(), column.getType(), 
+                    column.isIndexed());
+        }
+        if (addVersionColumn) {
+            boolean indexed = false;
+            for (PromotedColumn column : this.getPromotedColumns(tableName)) {
+                indexed |= column.isIndexed();
             }
-            recordBatch.add(record);
+            this.addPromotedColumnAddQueries(result, physicalTableName, PROMOTED_VERSION_COLUMN, 
+                    PromotedColumnType.INTEGER, indexed);
         }
-        return recordBatches;
+        return result;
     }
     
-    @Override
-    public void insert(List<Record> records) throws AnalyticsException, AnalyticsTableNotAvailableException {        
-        if (records.size() == 0) {
-            return;
+    private void addPromotedColumnAddQueries(List<String> queries, String physicalTableName, String columnName, 
+            PromotedColumnType type, boolean indexed) {
+        RDBMSQueryConfigurationEntry conf = this.getQueryConfiguration();
+        queries.add(conf.getPromotedColumnAddQuery().replace(TABLE_NAME_PLACEHOLDER, physicalTableName).replace(
+                COLUMN_NAME_PLACEHOLDER, columnName).replace(COLUMN_TYPE_PLACEHOLDER, type.getSQLType(conf)));
+        if (indexed && conf.getPromotedColumnIndexQuery() != null) {
+            queries.add(conf.getPromotedColumnIndexQuery().replace(TABLE_NAME_PLACEHOLDER, 
+                    physicalTableName).replace(COLUMN_NAME_PLACEHOLDER, columnName));
         }
-        Connection conn = null;
-        try {
-            conn = this.getConnection(false);
-            Map<String, List<Record>> recordBatches = this.generateRecordBatches(records);
-            for (List<Record> batch : recordBatches.values()) {
-                this.addRecordsSimilar(conn, batch);
-            }
-            conn.commit();
-        } catch (SQLException e) {
-            RDBMSUtils.rollbackConnection(conn);
-            throw new AnalyticsException("Error in adding records: " + e.getMessage(), e);
-        } catch (AnalyticsException e) {
-            RDBMSUtils.rollbackConnection(conn);
-            throw e;
-        } finally {
-            RDBMSUtils.cleanupConnection(null, null, conn);
+    }
+    
+    private void checkPromotedColumns(Collection<List<Record>> recordBatches) 
+            throws AnalyticsException, AnalyticsTableNotAvailableException {
+        Record firstRecord;
+        for (List<Record> batch : recordBatches) {
+            firstRecord = batch.get(0);
+            this.checkPromotedColumns(firstRecord.getTenantId(), firstRecord.getTableName(), 
+                    this.getRecordPartition(firstRecord));
         }
     }
     
-    private void addRecordsSimilar(Connection conn, 
-            List<Record> records) throws SQLException, 
-            AnalyticsException, AnalyticsTableNotAvailableException {
-        Record firstRecord = records.get(0);
-        int tenantId = firstRecord.getTenantId();
-        String tableName = firstRecord.getTableName();
-        String query = this.getRecordInsertSQL(tenantId, tableName);
-        PreparedStatement stmt = null;
-        try {
-            stmt = conn.prepareStatement(query);
-            for (Record record : records) {
-                stmt.setString(1, record.getId());
-                stmt.setLong(2, record.getTimestamp());
-                stmt.setBlob(3, new ByteArrayInputStream(GenericUtils.encodeRecordValues(record.getValues())));
-                stmt.addBatch();
-            }
-            stmt.executeBatch();
-        } catch (SQLException e) {
-            if (!this.tableExists(tenantId, tableName)) {
-                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+    /**
+     * Adds the missing promoted columns to the physical table of a partition, which may have been created
+     * before the columns were configured, and fills in the values of its existing records in the background. 
+     * This is done once for each physical table. Until their values are filled in, the records are filtered 
+     * in memory, since their promoted version is not the current one.
+     */
+    private void checkPromotedColumns(int tenantId, String tableName, 
+            long partition) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        List<PromotedColumn> columns = this.getPromotedColumns(tableName);
+        if (columns.isEmpty()) {
+            return;
+        }
+        String physicalTableName = this.generatePartitionTableName(tenantId, tableName, partition);
+        if (this.promotedColumnTables.contains(physicalTableName)) {
+            return;
+        }
+        Map<String, Integer> existingColumns = this.lookupTableColumns(physicalTableName);
+        if (existingColumns.isEmpty()) {
+            /* the table is not there, the callers fail on their own queries */
+            return;
+        }
+        List<PromotedColumn> missingColumns = new ArrayList<PromotedColumn>();
+        Integer columnSQLType;
+        for (PromotedColumn column : columns) {
+            columnSQLType = existingColumns.get(column.getColumnName());
+            if (columnSQLType == null) {
+                missingColumns.add(column);
             } else {
-                throw e;
+                this.checkPromotedColumnType(physicalTableName, column.getColumnName(), column.getType(), 
+                        columnSQLType);
             }
-        } finally {
-            RDBMSUtils.cleanupConnection(null, stmt, null);
+        }
+        columnSQLType = existingColumns.get(PROMOTED_VERSION_COLUMN);
+        if (columnSQLType != null) {
+            this.checkPromotedColumnType(physicalTableName, PROMOTED_VERSION_COLUMN, PromotedColumnType.INTEGER, 
+                    columnSQLType);
+        }
+        boolean versionColumnMissing = columnSQLType == null;
+        if (missingColumns.size() > 0 || versionColumnMissing) {
+            Connection conn = null;
+            try {
+                conn = this.getConnection(false);
+                for (String query : this.getPromotedColumnAddQueries(tableName, physicalTableName, 
+                        missingColumns, versionColumnMissing)) {
+                    this.executeUpdate(conn, query);
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                RDBMSUtils.rollbackConnection(conn);
+                /* the columns may have been added by another node */
+                existingColumns = this.lookupTableColumns(physicalTableName);
+                for (PromotedColumn column : missingColumns) {
+                    if (!existingColumns.containsKey(column.getColumnName())) {
+                        throw new AnalyticsException("Error in adding promoted columns: " + e.getMessage(), e);
+                    }
+                }
+                if (!existingColumns.containsKey(PROMOTED_VERSION_COLUMN)) {
+                    throw new AnalyticsException("Error in adding promoted columns: " + e.getMessage(), e);
+                }
+            } finally {
+                RDBMSUtils.cleanupConnection(null, null, conn);
+            }
+        }
+        if (this.promotedColumnTables.add(physicalTableName)) {
+            this.schedulePromotedColumnBackfill(tenantId, tableName, partition);
         }
     }
     
-    private String getRecordInsertSQL(int tenantId, String tableName) {
-    	String query = this.getQueryConfiguration().getRecordInsertQuery();
-    	return translateQueryWithTableInfo(query, tenantId, tableName);
-    }
-
-    @Override
-    public Iterator<Record> getRecords(int tenantId, String tableName, List<String> columns,
-            long timeFrom, long timeTo, int recordsFrom, 
-            int recordsCount) throws AnalyticsException, AnalyticsTableNotAvailableException {
+    /**
+     * Checks if a partition has records, which are not written with the current promoted columns.
+     */
+    private boolean hasStalePromotedValues(int tenantId, String tableName, 
+            long partition) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        if (this.getQueryConfiguration().getRecordRetrievalWithPredicatesQuery() == null) {
+            /* the promoted columns are not used in the queries without it */
+            return false;
+        }
+        String query = this.getTranslatedQuery(QueryKind.RECORD_RETRIEVAL_WITH_PREDICATES, tenantId, tableName, 
+                partition, 0).replace(PREDICATES_PLACEHOLDER, " AND " + STALE_PROMOTED_VERSION_CONDITION);
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
         try {
             conn = this.getConnection();
-            stmt = conn.prepareStatement(this.getRecordRetrievalQuery(tenantId, tableName));
-            if (timeFrom == -1) {
-                timeFrom = Long.MIN_VALUE;
-            }
-            if (timeTo == -1) {
-                timeTo = Long.MAX_VALUE;
-            }
-            if (recordsFrom == -1) {
-                recordsFrom = 0;
-            }
-            if (recordsCount == -1) {
-                recordsCount = Integer.MAX_VALUE;
-            }
-            stmt.setLong(1, timeFrom);
-            stmt.setLong(2, timeTo);
-            stmt.setInt(3, this.adjustRecordsFromForProvider(recordsFrom));
-            stmt.setInt(4, this.adjustRecordsCountForProvider(recordsFrom, recordsCount));            
+            stmt = conn.prepareStatement(query);
+            stmt.setMaxRows(1);
+            stmt.setLong(1, Long.MIN_VALUE);
+            stmt.setLong(2, Long.MAX_VALUE);
+            stmt.setInt(3, this.getPromotedVersion(tableName));
             rs = stmt.executeQuery();
-            return new RDBMSResultSetIterator(tenantId, tableName, columns, conn, stmt, rs);
+            return rs.next();
         } catch (SQLException e) {
-            RDBMSUtils.cleanupConnection(rs, stmt, conn);
             if (!this.tableExists(tenantId, tableName)) {
                 throw new AnalyticsTableNotAvailableException(tenantId, tableName);
-            } else {
-                throw new AnalyticsException("Error in retrieving records: " + e.getMessage(), e);
-            }            
+            }
+            throw new AnalyticsException("Error in checking promoted column values: " + e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(rs, stmt, conn);
         }
     }
     
-    private int adjustRecordsFromForProvider(int recordsFrom) {
-        if (!this.getQueryConfiguration().isPaginationFirstZeroIndexed()) {
-            recordsFrom++;
-        }
-        if (!this.getQueryConfiguration().isPaginationFirstInclusive()) {
-            recordsFrom++;
-        }
-        return recordsFrom;
+    private void schedulePromotedColumnBackfill(final int tenantId, final String tableName, final long partition) {
+        this.promotedColumnBackfillExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                String physicalTableName = generatePartitionTableName(tenantId, tableName, partition);
+                try {
+                    if (hasStalePromotedValues(tenantId, tableName, partition)) {
+                        backfillPromotedColumns(tenantId, tableName, partition);
+                    }
+                } catch (AnalyticsTableNotAvailableException e) {
+                    /* the table is deleted, nothing to fill in */
+                } catch (Throwable e) {
+                    /* the table is checked again on its next use */
+                    promotedColumnTables.remove(physicalTableName);
+                    log.error("Error in filling in the promoted columns of '" + physicalTableName + "': " + 
+                            e.getMessage(), e);
+                }
+            }
+        });
     }
     
-    private int adjustRecordsCountForProvider(int recordsFrom, int recordsCount) {
-        if (!this.getQueryConfiguration().isPaginationSecondLength() && recordsCount != Integer.MAX_VALUE) {
-            if (!this.getQueryConfiguration().isPaginationSecondZeroIndexed()) {
-                recordsCount++;
+    /**
+     * Fills in the promoted column values of the records of a partition, page by page. Only the records, which 
+     * are not written again since they were read in, are updated, and the record data is not touched.
+     */
+    private void backfillPromotedColumns(int tenantId, String tableName, 
+            long partition) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        List<PromotedColumn> columns = this.getPromotedColumns(tableName);
+        int version = this.getPromotedVersion(tableName);
+        StringBuilder query = new StringBuilder("UPDATE ");
+        query.append(this.generatePartitionTableName(tenantId, tableName, partition)).append(" SET ");
+        for (PromotedColumn column : columns) {
+            query.append(column.getColumnName()).append(" = ?, ");
+        }
+        query.append(PROMOTED_VERSION_COLUMN).append(" = ? WHERE record_id = ? AND ").append(
+                STALE_PROMOTED_VERSION_CONDITION);
+        RecordContinuationToken token = null;
+        List<Record> page;
+        Iterator<Record> itr;
+        do {
+            page = new ArrayList<Record>(PROMOTED_COLUMN_BACKFILL_BATCH_SIZE);
+            itr = this.getPartitionRecordsPage(tenantId, tableName, null, partition, Long.MIN_VALUE, 
+                    Long.MAX_VALUE, token, PROMOTED_COLUMN_BACKFILL_BATCH_SIZE);
+            while (itr.hasNext()) {
+                page.add(itr.next());
             }
-            if (!this.getQueryConfiguration().isPaginationSecondInclusive()) {
-                recordsCount++;
+            if (page.size() > 0) {
+                this.updatePromotedValues(query.toString(), columns, version, page);
+                token = new RecordContinuationToken(page.get(page.size() - 1).getTimestamp(), 
+                        page.get(page.size() - 1).getId());
             }
-        }
-        return recordsCount;
+        } while (page.size() == PROMOTED_COLUMN_BACKFILL_BATCH_SIZE);
     }
-
-    @Override
-    public Iterator<Record> getRecords(int tenantId, String tableName, List<String> columns,
-            List<String> ids) throws AnalyticsException, AnalyticsTableNotAvailableException {
-        String recordGetSQL = this.generateGetRecordRetrievalWithIdQuery(tenantId, tableName, ids.size());
+    
+    private void updatePromotedValues(String query, List<PromotedColumn> columns, int version, 
+            List<Record> records) throws AnalyticsException {
         Connection conn = null;
         PreparedStatement stmt = null;
-        ResultSet rs = null;
+        int index;
         try {
-            conn = this.getConnection();
-            stmt = conn.prepareStatement(recordGetSQL);
-            for (int i = 0; i < ids.size(); i++) {
-                stmt.setString(i + 1, ids.get(i));
+            conn = this.getConnection(false);
+            stmt = conn.prepareStatement(query);
+            for (Record record : records) {
+                index = this.setPromotedParams(stmt, 1, columns, version, record);
+                stmt.setString(index++, record.getId());
+                stmt.setInt(index, version);
+                stmt.addBatch();
             }
-            rs = stmt.executeQuery();
-            return new RDBMSResultSetIterator(tenantId, tableName, columns, conn, stmt, rs);
+            stmt.executeBatch();
+            conn.commit();
         } catch (SQLException e) {
-            RDBMSUtils.cleanupConnection(rs, stmt, conn);
-            if (!this.tableExists(tenantId, tableName)) {
-                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
-            } else {
-                throw new AnalyticsException("Error in retrieving records: " + e.getMessage(), e);
-            }
+            RDBMSUtils.rollbackConnection(conn);
+            throw new AnalyticsException("Error in updating promoted column values: " + e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(null, stmt, conn);
         }
     }
     
-    @Override
-    public void delete(int tenantId, String tableName, long timeFrom, long timeTo)
-            throws AnalyticsException, AnalyticsTableNotAvailableException {
-        String sql = this.getRecordDeletionQuery(tenantId, tableName);
-        Connection conn = null;
-        PreparedStatement stmt = null;
-        try {
-            conn = this.getConnection();
-            stmt = conn.prepareStatement(sql);
-            if (timeFrom == -1) {
-                timeFrom = Long.MIN_VALUE;
-            }
-            if (timeTo == -1) {
-                timeTo = Long.MAX_VALUE;
-            }
-            stmt.setLong(1, timeFrom);
-            stmt.setLong(2, timeTo);
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            if (!this.tableExists(tenantId, tableName)) {
-                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
-            } else {
-                throw new AnalyticsException("Error in deleting records: " + e.getMessage(), e);
-            }
-        } finally {
-            RDBMSUtils.cleanupConnection(null, stmt, conn);
+    /**
+     * Sets the promoted column values of a record, followed by its promoted version, as statement parameters.
+     * @return The index of the next parameter
+     */
+    private int setPromotedParams(PreparedStatement stmt, int index, List<PromotedColumn> columns, int version, 
+            Record record) throws SQLException {
+        boolean exact = true;
+        for (PromotedColumn column : columns) {
+            exact &= column.getType().setParameter(stmt, index++, record.getValue(column.getField()), 
+                    this.promotedStringMaxLength);
         }
+        stmt.setInt(index++, exact ? version : INEXACT_PROMOTED_VERSION);
+        return index;
     }
-        
-    @Override
-    public void delete(int tenantId, String tableName, 
-            List<String> ids) throws AnalyticsException, AnalyticsTableNotAvailableException {
-        if (ids.size() == 0) {
-            return;
+    
+    /**
+     * Checks if an existing column of a physical table can be used as a promoted column of the given type. 
+     * A column of an incompatible type, e.g. one created earlier for a different type of the same field, 
+     * would silently change or lose the promoted values, so it has to be dropped by the administrator.
+     */
+    private void checkPromotedColumnType(String physicalTableName, String columnName, PromotedColumnType type, 
+            int columnSQLType) throws AnalyticsException {
+        if (!type.isCompatibleSQLType(columnSQLType)) {
+            throw new AnalyticsException("Error in checking promoted columns: the existing column '" + columnName + 
+                    "' of table '" + physicalTableName + "' has the JDBC type " + columnSQLType + 
+                    ", which is not compatible with the promoted column type " + type + 
+                    ", the column must be dropped, or the promoted column configuration changed back");
         }
+    }
+    
+    /**
+     * Looks up the columns of a physical table, with the column names in upper case.
+     * @return The column name -> JDBC type map, or an empty map if the table is not there
+     */
+    private Map<String, Integer> lookupTableColumns(String physicalTableName) throws AnalyticsException {
+        Map<String, Integer> result = new HashMap<String, Integer>();
         Connection conn = null;
         try {
             conn = this.getConnection();
-            this.delete(conn, tenantId, tableName, ids);
+            DatabaseMetaData dbm = conn.getMetaData();
+            /* databases may keep unquoted names in lower case */
+            this.lookupTableColumns(dbm, physicalTableName, result);
+            if (result.isEmpty()) {
+                this.lookupTableColumns(dbm, physicalTableName.toLowerCase(), result);
+            }
+            return result;
         } catch (SQLException e) {
-            throw new AnalyticsException("Error in deleting records: " + e.getMessage(), e);
+            throw new AnalyticsException("Error in looking up table columns: " + e.getMessage(), e);
         } finally {
             RDBMSUtils.cleanupConnection(null, null, conn);
         }
     }
     
-    private void deleteRecordsSimilar(Connection conn, List<Record> records) 
-            throws AnalyticsException, AnalyticsTableNotAvailableException {
-        if (records.size() == 0) {
-            return;
-        }
-        Record firstRecord = records.get(0);
-        int tenantId = firstRecord.getTenantId();
-        String tableName = firstRecord.getTableName();
-        List<String> ids = new ArrayList<String>(records.size());
-        for (Record record : records) {
-            ids.add(record.getId());
-        }
-        this.delete(conn, tenantId, tableName, ids);
-    }
-    
-    private void delete(Connection conn, int tenantId, String tableName, 
-            List<String> ids) throws AnalyticsException, AnalyticsTableNotAvailableException {
-        String sql = this.generateRecordDeletionRecordsWithIdsQuery(tenantId, tableName, ids.size());
-        PreparedStatement stmt = null;
+    private void lookupTableColumns(DatabaseMetaData dbm, String physicalTableName, 
+            Map<String, Integer> result) throws SQLException {
+        ResultSet rs = null;
         try {
-            conn = this.getConnection();
-            stmt = conn.prepareStatement(sql);
-            for (int i = 0; i < ids.size(); i++) {
-                stmt.setString(i + 1, ids.get(i));
-            }
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            if (!this.tableExists(tenantId, tableName)) {
-                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
-            } else {
-                throw new AnalyticsException("Error in deleting records: " + e.getMessage(), e);
+            rs = dbm.getColumns(null, null, physicalTableName, null);
+            while (rs.next()) {
+                /* '_' in the name is a pattern character, so the matches are checked again */
+                if (physicalTableName.equalsIgnoreCase(rs.getString("TABLE_NAME"))) {
+                    result.put(rs.getString("COLUMN_NAME").toUpperCase(), rs.getInt("DATA_TYPE"));
+                }
             }
         } finally {
-            RDBMSUtils.cleanupConnection(null, stmt, null);
+            RDBMSUtils.cleanupConnection(rs, null, null);
         }
     }
     
-    private String generateTablePrefix(int tenantId) {
-        if (tenantId < 0) {
-            return RDBMSAnalyticsRecordStore.ANALYTICS_USER_TABLE_PREFIX + "_X" + Math.abs(tenantId) + "_";
-        } else {
-            return RDBMSAnalyticsRecordStore.ANALYTICS_USER_TABLE_PREFIX + "_" + tenantId + "_";
+    private void invalidatePromotedColumnTables(int tenantId, String tableName) {
+        String targetTableName = this.generateTargetTableName(tenantId, tableName);
+        Iterator<String> itr = this.promotedColumnTables.iterator();
+        String name;
+        while (itr.hasNext()) {
+            name = itr.next();
+            if (name.equals(targetTableName) || name.startsWith(targetTableName + PARTITION_TABLE_SEPARATOR)) {
+                itr.remove();
+            }
         }
     }
     
-    private String generateTargetTableName(int tenantId, String tableName) {
-        return this.normalizeTableName(this.generateTablePrefix(tenantId) + tableName);
-    }
-    
-    private String translateQueryWithTableInfo(String query, int tenantId, String tableName) {
-        return query.replace(TABLE_NAME_PLACEHOLDER, this.generateTargetTableName(tenantId, tableName));
+    private boolean isConsolidatedLayout() {
+        return this.getQueryConfiguration().getRecordTableLayout() == RecordTableLayout.CONSOLIDATED;
     }
     
-    private String translateQueryWithRecordIdsInfo(String query, int recordCount) {
-        return query.replace(RECORD_IDS_PLACEHOLDER, this.getDynamicSQLParams(recordCount));
-    }
-    
-    private String getRecordRetrievalQuery(int tenantId, String tableName) {
-        String query = this.getQueryConfiguration().getRecordRetrievalQuery();
-        return this.translateQueryWithTableInfo(query, tenantId, tableName);
+    private int getConsolidatedRecordTableCount() {
+        return Math.max(this.getQueryConfiguration().getConsolidatedRecordTableCount(), 1);
     }
     
-    private String generateGetRecordRetrievalWithIdQuery(int tenantId, String tableName, int recordCount) {
-        String query = this.getQueryConfiguration().getRecordRetrievalWithIdsQuery();
-        query = this.translateQueryWithTableInfo(query, tenantId, tableName);
-        query = this.translateQueryWithRecordIdsInfo(query, recordCount);
-        return query;
+    /**
+     * Creates the table catalog, and the shared record tables of the consolidated layout, if they are not 
+     * already there. The record tables are created with the record table init queries.
+     */
+    private void checkAndCreateConsolidatedTables() throws AnalyticsException {
+        if (this.recordTablePartitioning != RecordTablePartitioning.NONE || 
+                !this.tableRecordTablePartitionings.isEmpty()) {
+            throw new AnalyticsException("Record table partitioning is not supported with the "
+                    + "consolidated record table layout");
+        }
+        RDBMSQueryConfigurationEntry conf = this.getQueryConfiguration();
+        Connection conn = null;
+        String targetTableName;
+        try {
+            conn = this.getConnection(false);
+            if (!this.checkTable(conn, conf.getRecordTableCatalogCheckQuery())) {
+                for (String query : conf.getRecordTableCatalogInitQueries()) {
+                    this.executeUpdate(conn, query);
+                }
+                conn.commit();
+            }
+            for (int i = 0; i < this.getConsolidatedRecordTableCount(); i++) {
+                targetTableName = this.generateConsolidatedTableName(i);
+                if (!this.lookupTargetTable(targetTableName)) {
+                    for (String query : conf.getRecordTableInitQueries()) {
+                        this.executeUpdate(conn, query.replace(TABLE_NAME_PLACEHOLDER, targetTableName));
+                    }
+                    conn.commit();
+                }
+            }
+        } catch (SQLException e) {
+            RDBMSUtils.rollbackConnection(conn);
+            throw new AnalyticsException("Error in creating the consolidated record tables: " + 
+                    e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(null, null, conn);
+        }
     }
     
-    private String generateRecordDeletionRecordsWithIdsQuery(int tenantId, String tableName, int recordCount) {
-        String query = this.getQueryConfiguration().getRecordDeletionWithIdsQuery();
-        query = this.translateQueryWithTableInfo(query, tenantId, tableName);
-        query = this.translateQueryWithRecordIdsInfo(query, recordCount);
-        return query;
+    private String generateConsolidatedTableName(int tableId) {
+        return this.normalizeTableName(CONSOLIDATED_TABLE_PREFIX + (tableId % this.getConsolidatedRecordTableCount()));
     }
     
-    private String getDynamicSQLParams(int count) {
-        StringBuilder builder = new StringBuilder();
-        for (int i = 0; i < count; i++) {
-            if (i == 0) {
-                builder.append("?");
-            } else {
-                builder.append(",?");
+    /**
+     * Returns the id of a table in the consolidated layout, which is used to find its records in the shared 
+     * record tables.
+     */
+    private int getTableId(int tenantId, String tableName) 
+            throws AnalyticsException, AnalyticsTableNotAvailableException {
+        String targetTableName = this.generateTargetTableName(tenantId, tableName);
+        Integer tableId = this.tableIds.get(targetTableName);
+        if (tableId == null) {
+            tableId = this.lookupTableId(tenantId, tableName);
+            if (tableId == null) {
+                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
             }
+            this.tableIds.put(targetTableName, tableId);
         }
-        return builder.toString();
+        return tableId;
     }
     
-    private String getRecordDeletionQuery(int tenantId, String tableName) {
-        String query = this.getQueryConfiguration().getRecordDeletionQuery();
-        return this.translateQueryWithTableInfo(query, tenantId, tableName);
-    }
-
-    @Override
-    public void deleteTable(int tenantId, String tableName) throws AnalyticsException {
+    private Integer lookupTableId(int tenantId, String tableName) throws AnalyticsException {
         Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
         try {
-            conn = this.getConnection(false);
-            String[] tableInitQueries = this.getRecordTableDeleteQueries(tenantId, tableName);
-            for (String query : tableInitQueries) {
-                query = this.translateQueryWithTableInfo(query, tenantId, tableName);
-                this.executeUpdate(conn, query);
+            conn = this.getConnection();
+            stmt = conn.prepareStatement(this.getQueryConfiguration().getRecordTableCatalogLookupQuery());
+            stmt.setInt(1, tenantId);
+            stmt.setString(2, this.normalizeTableName(tableName));
+            rs = stmt.executeQuery();
+            if (rs.next()) {
+                return rs.getInt(1);
+            } else {
+                return null;
             }
-            conn.commit();
         } catch (SQLException e) {
-            RDBMSUtils.rollbackConnection(conn);
-            if (this.tableExists(tenantId, tableName)) {
-                throw new AnalyticsException("Error in deleting table: " + e.getMessage(), e);
-            }
+            throw new AnalyticsException("Error in looking up table id: " + e.getMessage(), e);
         } finally {
-            RDBMSUtils.cleanupConnection(null, null, conn);
+            RDBMSUtils.cleanupConnection(rs, stmt, conn);
         }
     }
     
-    @Override
-    public void createTable(int tenantId, String tableName) throws AnalyticsException {
+    private void createConsolidatedTable(int tenantId, String tableName) throws AnalyticsException {
+        long modCount = this.getTableCatalogModificationCount();
         Connection conn = null;
         try {
-            conn = this.getConnection(false);
-            String[] tableInitQueries = this.getRecordTableInitQueries(tenantId, tableName);
-            for (String query : tableInitQueries) {
-                this.executeUpdate(conn, query);
+            conn = this.getConnection();
+            /* the ids are allocated sequentially, an id taken by another node fails the insert */
+            for (int i = 0; this.lookupTableId(tenantId, tableName) == null; i++) {
+                if (i >= MAX_TABLE_ID_ALLOCATION_ATTEMPTS) {
+                    throw new AnalyticsException("Error in creating table: cannot allocate a table id for " + 
+                            this.printableTableName(tenantId, tableName));
+                }
+                this.insertTableCatalogEntry(conn, this.lookupMaxTableId(conn) + 1, tenantId, tableName);
             }
-            conn.commit();
         } catch (SQLException e) {
-            RDBMSUtils.rollbackConnection(conn);
-            if (!this.tableExists(tenantId, tableName)) {
-                throw new AnalyticsException("Error in creating table: " + e.getMessage(), e);
-            }
+            throw new AnalyticsException("Error in creating table: " + e.getMessage(), e);
         } finally {
             RDBMSUtils.cleanupConnection(null, null, conn);
         }
+        this.addToTableCatalog(tenantId, tableName, modCount);
+        this.publishTableChange(tenantId, tableName);
     }
     
-    private void executeUpdate(Connection conn, String query) throws SQLException {
+    private int lookupMaxTableId(Connection conn) throws SQLException {
         Statement stmt = null;
+        ResultSet rs = null;
         try {
             stmt = conn.createStatement();
-            stmt.executeUpdate(query);
+            rs = stmt.executeQuery(this.getQueryConfiguration().getRecordTableCatalogMaxIdQuery());
+            /* the maximum of an empty catalog is null, which is read in as 0 */
+            return rs.next() ? rs.getInt(1) : 0;
+        } finally {
+            RDBMSUtils.cleanupConnection(rs, stmt, null);
+        }
+    }
+    
+    private void insertTableCatalogEntry(Connection conn, int tableId, int tenantId, 
+            String tableName) throws SQLException {
+        PreparedStatement stmt = null;
+        try {
+            stmt = conn.prepareStatement(this.getQueryConfiguration().getRecordTableCatalogInsertQuery());
+            stmt.setInt(1, tableId);
+            stmt.setInt(2, tenantId);
+            stmt.setString(3, this.normalizeTableName(tableName));
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            /* the id, or the table was taken by another node, which is checked by looking up the table again */
+            if (!RDBMSUtils.isUniqueKeyViolation(e)) {
+                throw e;
+            }
         } finally {
             RDBMSUtils.cleanupConnection(null, stmt, null);
         }
     }
     
-    @SuppressWarnings("resource")
-    @Override
-    public boolean tableExists(int tenantId, String tableName) throws AnalyticsException {
-        tableName = this.normalizeTableName(tableName);
+    private void deleteConsolidatedTable(int tenantId, String tableName) throws AnalyticsException {
+        Integer tableId = this.lookupTableId(tenantId, tableName);
+        if (tableId == null) {
+            return;
+        }
         Connection conn = null;
-        ResultSet rs = null;
+        PreparedStatement stmt = null;
         try {
-            conn = this.getConnection();
-            DatabaseMetaData dbm = conn.getMetaData();
-            String prefix = this.normalizeTableName(this.generateTablePrefix(tenantId));
-            String srcTable;
-            rs = dbm.getTables(null, null, "%", null);
-            while (rs.next()) {
-                srcTable = rs.getString("TABLE_NAME");
-                if (srcTable.startsWith(prefix)) {
-                    srcTable = srcTable.substring(prefix.length());
-                    srcTable = this.normalizeTableName(srcTable);
-                }
-                if (tableName.equals(srcTable)) {
-                    return true;
-                }
+            conn = this.getConnection(false);
+            for (String query : this.getQueryConfiguration().getRecordTableDeleteQueries()) {
+                this.executeUpdate(conn, this.translateQueryWithTableId(query, tableId));
             }
-            return false;
+            stmt = conn.prepareStatement(this.getQueryConfiguration().getRecordTableCatalogDeleteQuery());
+            stmt.setInt(1, tenantId);
+            stmt.setString(2, this.normalizeTableName(tableName));
+            stmt.executeUpdate();
+            conn.commit();
         } catch (SQLException e) {
-            throw new AnalyticsException("Error in checking table existence: " + e.getMessage(), e);
+            RDBMSUtils.rollbackConnection(conn);
+            throw new AnalyticsException("Error in deleting table: " + e.getMessage(), e);
         } finally {
-            RDBMSUtils.cleanupConnection(rs, null, conn);
+            RDBMSUtils.cleanupConnection(null, stmt, conn);
         }
     }
-
-    private String normalizeTableName(String tableName) {
-        return tableName.toUpperCase();
-    }
     
-    @Override
-    public List<String> listTables(int tenantId) throws AnalyticsException {
-        List<String> result = new ArrayList<String>();
+    private Map<Integer, Set<String>> loadConsolidatedTableCatalog() throws AnalyticsException {
+        Map<Integer, Set<String>> result = new ConcurrentHashMap<Integer, Set<String>>();
         Connection conn = null;
+        Statement stmt = null;
         ResultSet rs = null;
+        int tenantId;
         String tableName;
-        String prefix = this.normalizeTableName(this.generateTablePrefix(tenantId));
         try {
             conn = this.getConnection();
-            DatabaseMetaData dbm = conn.getMetaData();
-            rs = dbm.getTables(null, null, "%", null);
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery(this.getQueryConfiguration().getRecordTableCatalogRetrievalQuery());
             while (rs.next()) {
-                tableName = rs.getString("TABLE_NAME");
-                if (tableName.startsWith(prefix)) {
-                    tableName = tableName.substring(prefix.length());
-                    tableName = this.normalizeTableName(tableName);
-                    result.add(tableName);
-                }
+                tenantId = rs.getInt(2);
+                tableName = this.normalizeTableName(rs.getString(3));
+                this.getCatalogTables(result, tenantId).add(tableName);
+                this.tableIds.put(this.generateTargetTableName(tenantId, tableName), rs.getInt(1));
             }
             return result;
         } catch (SQLException e) {
-            throw new AnalyticsException("Error in listing tables: " + e.getMessage(), e);
+            throw new AnalyticsException("Error in loading the table catalog: " + e.getMessage(), e);
         } finally {
-            RDBMSUtils.cleanupConnection(rs, null, conn);
+            RDBMSUtils.cleanupConnection(rs, stmt, conn);
         }
     }
-
-    private String getRecordCountQuery(int tenantId, String tableName) {
-        String query = this.getQueryConfiguration().getRecordCountQuery();
-        return this.translateQueryWithTableInfo(query, tenantId, tableName);
-    }
     
-    private String printableTableName(int tenantId, String tableName) {
-        return "[" + tenantId + ":" + tableName + "]";
+    private boolean isColumnDictionaryEnabled() {
+        RDBMSQueryConfigurationEntry conf = this.getQueryConfiguration();
+        return conf.getRecordColumnDictionaryRetrievalQuery() != null && 
+                conf.getRecordColumnDictionaryInsertQuery() != null;
     }
     
-    @Override
-    public long getRecordCount(int tenantId, String tableName) 
-            throws AnalyticsException, AnalyticsTableNotAvailableException {
-        String recordCountQuery = this.getRecordCountQuery(tenantId, tableName);
+    private void checkAndCreateColumnDictionaryTable() throws AnalyticsException {
+        String[] initQueries = this.getQueryConfiguration().getRecordColumnDictionaryInitQueries();
+        String checkQuery = this.getQueryConfiguration().getRecordColumnDictionaryCheckQuery();
+        if (!this.isColumnDictionaryEnabled() || initQueries == null || checkQuery == null) {
+            return;
+        }
         Connection conn = null;
-        Statement stmt = null;
-        ResultSet rs = null;
         try {
-            conn = this.getConnection();
-            stmt = conn.createStatement();
-            rs = stmt.executeQuery(recordCountQuery);
-            if (rs.next()) {
-                return rs.getLong(1);
-            } else {
-                throw new AnalyticsException("Record count not available for " + 
-                        printableTableName(tenantId, tableName));
+            conn = this.getConnection(false);
+            if (!this.checkTable(conn, checkQuery)) {
+                for (String query : initQueries) {
+                    this.executeUpdate(conn, query);
+                }
             }
+            conn.commit();
         } catch (SQLException e) {
-            if (!this.tableExists(tenantId, tableName)) {
-                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
-            }
-            throw new AnalyticsException("Error in retrieving record count: " + e.getMessage(), e);
+            RDBMSUtils.rollbackConnection(conn);
+            throw new AnalyticsException("Error in creating the column dictionary table: " + e.getMessage(), e);
         } finally {
-            RDBMSUtils.cleanupConnection(rs, stmt, conn);
+            RDBMSUtils.cleanupConnection(null, null, conn);
+        }
+    }
+    
+    private boolean checkTable(Connection conn, String checkQuery) {
+        Statement stmt = null;
+        try {
+            stmt = conn.createStatement();
+            stmt.execute(checkQuery);
+            return true;
+        } catch (SQLException ignore) {
+            return false;
+        } finally {
+            RDBMSUtils.cleanupConnection(null, stmt, null);
         }
     }
     
     /**
-     * This class represents the RDBMS result set iterator, which will stream the result records out.
+     * Returns the column dictionary of the given table.
+     * @return The column dictionary, or null if column dictionaries are not configured
      */
-    private class RDBMSResultSetIterator implements Iterator<Record> {
-
-        private int tenantId;
-        
-        private String tableName;
-        
-        private List<String> columns;
-        
-        private Connection conn;
-        
-        private Statement stmt;
-        
-        private ResultSet rs;
-        
+    private ColumnDictionary getColumnDictionary(int tenantId, String tableName) throws AnalyticsException {
+        if (!this.isColumnDictionaryEnabled()) {
+            return null;
+        }
+        String targetTableName = this.generateTargetTableName(tenantId, tableName);
+        ColumnDictionary dictionary = this.columnDictionaries.get(targetTableName);
+        if (dictionary == null) {
+            dictionary = new ColumnDictionary(new RDBMSColumnDictionaryStore(targetTableName));
+            /* concurrent callers must share a single dictionary, so the column ids they assign do not conflict */
+            ColumnDictionary existingDictionary = this.columnDictionaries.putIfAbsent(targetTableName, dictionary);
+            if (existingDictionary != null) {
+                dictionary = existingDictionary;
+            }
+        }
+        return dictionary;
+    }
+    
+    public RDBMSQueryConfigurationEntry getQueryConfiguration() {
+        return rDBMSQueryConfigurationEntry;
+    }
+    
+    private String[] getRecordTableInitQueries(int tenantId, String tableName, 
+            long partition) throws AnalyticsException {
+        String[] queries = this.getQueryConfiguration().getRecordTableInitQueries();
+        List<String> result = new ArrayList<String>(queries.length);
+        for (int i = 0; i < queries.length; i++) {
+            result.add(this.translateQueryWithTableInfo(queries[i], tenantId, tableName, partition));
+        }
+        List<PromotedColumn> columns = this.getPromotedColumns(tableName);
+        if (columns.size() > 0) {
+            result.addAll(this.getPromotedColumnAddQueries(tableName, this.generatePartitionTableName(tenantId, 
+                    tableName, partition), columns, true));
+        }
+        return result.toArray(new String[result.size()]);
+    }
+    
+    private String[] getRecordTableDeleteQueries(int tenantId, String tableName, 
+            long partition) throws AnalyticsException {
+        String[] queries = this.getQueryConfiguration().getRecordTableDeleteQueries();
+        String[] result = new String[queries.length];
+        for (int i = 0; i < queries.length; i++) {
+            result[i] = this.translateQueryWithTableInfo(queries[i], tenantId, tableName, partition);
+        }
+        return result;
+    }
+    
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+    
+    public DataSource getDataSource() {
+        return dataSource;
+    }
+    
+    private Connection getConnection() throws SQLException {
+        return this.getConnection(true);
+    }
+    
+    private Connection getConnection(boolean autoCommit) throws SQLException {
+        Connection conn = this.getDataSource().getConnection();
+        conn.setAutoCommit(autoCommit);
+        return conn;
+    }
+    
+    private String calculateRecordIdentity(Record record) {
+        String identity = this.generateTargetTableName(record.getTenantId(), record.getTableName());
+        if (this.isPartitioned(record.getTableName())) {
+            identity += "@" + this.getRecordPartition(record);
+        }
+        return identity;
+    }
+    
+    private long getRecordPartition(Record record) {
+        RecordTablePartitioning partitioning = this.getRecordTablePartitioning(record.getTableName());
+        if (partitioning == RecordTablePartitioning.NONE) {
+            return NO_PARTITION;
+        }
+        return partitioning.getPartition(record.getTimestamp());
+    }
+
+    @Override
+    public void update(List<Record> records) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        if (records.size() == 0) {
+            return;
+        }
+        Map<String, List<Record>> recordBatches = this.generateRecordBatches(records);
+        this.checkAndCreatePartitions(recordBatches.values());
+        this.checkPromotedColumns(recordBatches.values());
+        Connection conn = null;
+        try {
+            conn = this.getConnection(false);
+            /* without a native upsert, or if the existing records may be in another partition, 
+             * the existing records are deleted and inserted again */
+            for (List<Record> batch : recordBatches.values()) {
+                if (!this.isMergeSupported(batch.get(0).getTableName())) {
+                    this.deleteRecordsSimilar(conn, batch);
+                }
+            }
+            for (List<Record> batch : recordBatches.values()) {
+                if (this.isMergeSupported(batch.get(0).getTableName())) {
+                    this.addRecordsSimilar(conn, batch, QueryKind.RECORD_MERGE);
+                } else {
+                    this.addRecordsSimilar(conn, batch, QueryKind.RECORD_INSERT);
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            RDBMSUtils.rollbackConnection(conn);
+            throw new AnalyticsException("Error in updating records: " + e.getMessage(), e);
+        } catch (AnalyticsException e) {
+            RDBMSUtils.rollbackConnection(conn);
+            throw e;
+        } finally {
+            RDBMSUtils.cleanupConnection(null, null, conn);
+        }
+    }
+    
+    private boolean isMergeSupported(String tableName) {
+        String mergeQuery = this.getQueryConfiguration().getRecordMergeQuery();
+        if (mergeQuery == null || this.isPartitioned(tableName)) {
+            return false;
+        }
+        return this.getPromotedColumns(tableName).isEmpty() || mergeQuery.contains(PROMOTED_VALUES_PLACEHOLDER);
+    }
+    
+    private Map<String, List<Record>> generateRecordBatches(List<Record> records) {
+        /* if the records have identities (unique table category and name) as the following
+         * "ABABABCCAACBDABCABCDBAC", the job of this method is to make it like the following,
+         * {"AAAAAAAA", "BBBBBBB", "CCCCCC", "DD" } */
+        Map<String, List<Record>> recordBatches = new HashMap<String, List<Record>>();
+        List<Record> recordBatch;
+        for (Record record : records) {
+            recordBatch = recordBatches.get(this.calculateRecordIdentity(record));
+            if (recordBatch == null) {
+                recordBatch = new ArrayList<Record>();
+                recordBatches.put(this.calculateRecordIdentity(record), recordBatch);
+            }
+            recordBatch.add(record);
+        }
+        return recordBatches;
+    }
+    
+    @Override
+    public void insert(List<Record> records) throws AnalyticsException, AnalyticsTableNotAvailableException {        
+        if (records.size() == 0) {
+            return;
+        }
+        Map<String, List<Record>> recordBatches = this.generateRecordBatches(records);
+        this.checkAndCreatePartitions(recordBatches.values());
+        this.checkPromotedColumns(recordBatches.values());
+        Connection conn = null;
+        try {
+            conn = this.getConnection(false);
+            for (List<Record> batch : recordBatches.values()) {
+                this.addRecordsSimilar(conn, batch, QueryKind.RECORD_INSERT);
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            RDBMSUtils.rollbackConnection(conn);
+            throw new AnalyticsException("Error in adding records: " + e.getMessage(), e);
+        } catch (AnalyticsException e) {
+            RDBMSUtils.rollbackConnection(conn);
+            throw e;
+        } finally {
+            RDBMSUtils.cleanupConnection(null, null, conn);
+        }
+    }
+    
+    private void addRecordsSimilar(Connection conn, List<Record> records, QueryKind kind) throws SQLException, 
+            AnalyticsException, AnalyticsTableNotAvailableException {
+        Record firstRecord = records.get(0);
+        int tenantId = firstRecord.getTenantId();
+        String tableName = firstRecord.getTableName();
+        String query = this.getTranslatedQuery(kind, tenantId, tableName, this.getRecordPartition(firstRecord), 
+                0);
+        ColumnDictionary dictionary = this.getColumnDictionary(tenantId, tableName);
+        if (dictionary != null) {
+            for (Record record : records) {
+                dictionary.register(record.getValues().keySet());
+            }
+        }
+        RecordCompression compression = this.getRecordCompression(tableName);
+        List<PromotedColumn> promotedColumns = this.getPromotedColumns(tableName);
+        int promotedVersion = this.getPromotedVersion(tableName);
+        PreparedStatement stmt = null;
+        byte[] data;
+        try {
+            stmt = conn.prepareStatement(query);
+            for (Record record : records) {
+                stmt.setString(1, record.getId());
+                stmt.setLong(2, record.getTimestamp());
+                data = GenericUtils.encodeRecordValues(record.getValues(), dictionary);
+                if (data.length >= this.recordCompressionMinSize) {
+                    data = GenericUtils.compressRecordValues(data, compression);
+                }
+                stmt.setBlob(3, new ByteArrayInputStream(data));
+                if (promotedColumns.size() > 0) {
+                    this.setPromotedParams(stmt, 4, promotedColumns, promotedVersion, record);
+                }
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } catch (SQLException e) {
+            if (!this.tableExists(tenantId, tableName)) {
+                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+            } else {
+                throw e;
+            }
+        } finally {
+            RDBMSUtils.cleanupConnection(null, stmt, null);
+        }
+    }
+    
+
+    @Override
+    public Iterator<Record> getRecords(int tenantId, String tableName, List<String> columns,
+            long timeFrom, long timeTo, int recordsFrom, 
+            int recordsCount) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        if (timeFrom == -1) {
+            timeFrom = Long.MIN_VALUE;
+        }
+        if (timeTo == -1) {
+            timeTo = Long.MAX_VALUE;
+        }
+        if (recordsFrom == -1) {
+            recordsFrom = 0;
+        }
+        if (recordsCount == -1) {
+            recordsCount = Integer.MAX_VALUE;
+        }
+        List<Long> partitions = this.getPartitions(tenantId, tableName, timeFrom, timeTo);
+        if (partitions.size() == 1) {
+            return this.getPartitionRecords(tenantId, tableName, columns, partitions.get(0), timeFrom, timeTo, 
+                    recordsFrom, recordsCount);
+        }
+        return new RDBMSPartitionedRangeRecordIterator(tenantId, tableName, columns, partitions, timeFrom, 
+                timeTo, recordsFrom, recordsCount);
+    }
+    
+    private Iterator<Record> getPartitionRecords(int tenantId, String tableName, List<String> columns, 
+            long partition, long timeFrom, long timeTo, int recordsFrom, 
+            int recordsCount) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        ColumnDictionary dictionary = this.getColumnDictionary(tenantId, tableName);
+        String query = this.getRecordRetrievalQuery(tenantId, tableName, partition);
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = this.getConnection();
+            stmt = conn.prepareStatement(query);
+            stmt.setLong(1, timeFrom);
+            stmt.setLong(2, timeTo);
+            stmt.setInt(3, this.adjustRecordsFromForProvider(recordsFrom));
+            stmt.setInt(4, this.adjustRecordsCountForProvider(recordsFrom, recordsCount));            
+            rs = stmt.executeQuery();
+            return new RDBMSResultSetIterator(tenantId, tableName, columns, dictionary, conn, stmt, rs);
+        } catch (SQLException e) {
+            RDBMSUtils.cleanupConnection(rs, stmt, conn);
+            if (!this.tableExists(tenantId, tableName)) {
+                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+            } else {
+                throw new AnalyticsException("Error in retrieving records: " + e.getMessage(), e);
+            }            
+        }
+    }
+    
+    /**
+     * Full range scans are split into multiple record groups with roughly the same number of records, 
+     * by their timestamps, so they can be read in parallel, each with its own connection. 
+     */
+    @Override
+    public RecordGroup[] get(int tenantId, String tableName, List<String> columns, long timeFrom, long timeTo, 
+            String continuationToken, int recordsCount) throws AnalyticsException {
+        if (continuationToken != null || recordsCount != -1 || this.recordGroupSplitCount <= 1 || 
+                this.getQueryConfiguration().getRecordTimeRangeStatsQuery() == null) {
+            return super.get(tenantId, tableName, columns, timeFrom, timeTo, continuationToken, recordsCount);
+        }
+        List<Long> boundaries = this.calculateSplitBoundaries(tenantId, tableName, timeFrom, timeTo);
+        RecordGroup[] result = new RecordGroup[boundaries.size() + 1];
+        long start = timeFrom;
+        for (int i = 0; i < boundaries.size(); i++) {
+            result[i] = new DirectRecordGroup(tenantId, tableName, columns, start, boundaries.get(i), null, -1);
+            start = boundaries.get(i);
+        }
+        result[boundaries.size()] = new DirectRecordGroup(tenantId, tableName, columns, start, timeTo, null, -1);
+        return result;
+    }
+    
+    private List<Long> calculateSplitBoundaries(int tenantId, String tableName, long timeFrom, 
+            long timeTo) throws AnalyticsException {
+        long[] stats = this.lookupTimeRangeStats(tenantId, tableName, timeFrom, timeTo);
+        long min = stats[0], max = stats[1], count = stats[2];
+        List<Long> result = new ArrayList<Long>();
+        int splitCount = (int) Math.min(this.recordGroupSplitCount, count / this.recordGroupMinSplitSize);
+        if (splitCount <= 1 || min >= max) {
+            return result;
+        }
+        double span = (double) max - min + 1;
+        if (this.getQueryConfiguration().getRecordTimeHistogramQuery() == null) {
+            /* without a histogram, the records are assumed to be evenly distributed in time */
+            for (int i = 1; i < splitCount; i++) {
+                this.addSplitBoundary(result, min + (long) (span * i / splitCount), min, max);
+            }
+        } else {
+            long bucketWidth = Math.max((long) Math.ceil(span / (splitCount * HISTOGRAM_BUCKETS_PER_SPLIT)), 1);
+            SortedMap<Long, Long> histogram = this.lookupTimeHistogram(tenantId, tableName, min, max, bucketWidth);
+            long total = 0;
+            int i = 1;
+            for (Map.Entry<Long, Long> entry : histogram.entrySet()) {
+                total += entry.getValue();
+                while (i < splitCount && total >= count * i / splitCount) {
+                    this.addSplitBoundary(result, min + (entry.getKey() + 1) * bucketWidth, min, max);
+                    i++;
+                }
+            }
+        }
+        return result;
+    }
+    
+    private void addSplitBoundary(List<Long> boundaries, long boundary, long min, long max) {
+        /* boundaries must be strictly increasing, and not create empty groups at the ends,
+         * -1 is skipped, since it means an open ended range */
+        if (boundary <= min || boundary > max || boundary == -1) {
+            return;
+        }
+        if (boundaries.isEmpty() || boundary > boundaries.get(boundaries.size() - 1)) {
+            boundaries.add(boundary);
+        }
+    }
+    
+    private long[] lookupTimeRangeStats(int tenantId, String tableName, long timeFrom, 
+            long timeTo) throws AnalyticsException {
+        if (timeFrom == -1) {
+            timeFrom = Long.MIN_VALUE;
+        }
+        if (timeTo == -1) {
+            timeTo = Long.MAX_VALUE;
+        }
+        long[] result = new long[] { 0, 0, 0 };
+        long[] stats;
+        for (long partition : this.getPartitions(tenantId, tableName, timeFrom, timeTo)) {
+            stats = this.lookupTimeRangeStats(tenantId, tableName, partition, timeFrom, timeTo);
+            if (stats[2] == 0) {
+                continue;
+            }
+            if (result[2] == 0) {
+                result = stats;
+            } else {
+                result[0] = Math.min(result[0], stats[0]);
+                result[1] = Math.max(result[1], stats[1]);
+                result[2] += stats[2];
+            }
+        }
+        return result;
+    }
+    
+    private long[] lookupTimeRangeStats(int tenantId, String tableName, long partition, long timeFrom, 
+            long timeTo) throws AnalyticsException {
+        String query = this.getTranslatedQuery(QueryKind.RECORD_TIME_RANGE_STATS, tenantId, tableName, 
+                partition, 0);
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = this.getConnection();
+            stmt = conn.prepareStatement(query);
+            stmt.setLong(1, timeFrom);
+            stmt.setLong(2, timeTo);
+            rs = stmt.executeQuery();
+            if (rs.next() && rs.getLong(3) > 0) {
+                return new long[] { rs.getLong(1), rs.getLong(2), rs.getLong(3) };
+            } else {
+                return new long[] { 0, 0, 0 };
+            }
+        } catch (SQLException e) {
+            if (!this.tableExists(tenantId, tableName)) {
+                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+            }
+            throw new AnalyticsException("Error in retrieving record time range statistics: " + 
+                    e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(rs, stmt, conn);
+        }
+    }
+    
+    private SortedMap<Long, Long> lookupTimeHistogram(int tenantId, String tableName, long min, long max, 
+            long bucketWidth) throws AnalyticsException {
+        SortedMap<Long, Long> result = new TreeMap<Long, Long>();
+        Long count;
+        /* the histogram buckets are aligned to "min" in all the partitions, so their counts are just added up */
+        for (long partition : this.getPartitions(tenantId, tableName, min, 
+                max == Long.MAX_VALUE ? max : max + 1)) {
+            for (Map.Entry<Long, Long> entry : this.lookupTimeHistogram(tenantId, tableName, partition, min, 
+                    max, bucketWidth).entrySet()) {
+                count = result.get(entry.getKey());
+                result.put(entry.getKey(), count == null ? entry.getValue() : count + entry.getValue());
+            }
+        }
+        return result;
+    }
+    
+    private SortedMap<Long, Long> lookupTimeHistogram(int tenantId, String tableName, long partition, long min, 
+            long max, long bucketWidth) throws AnalyticsException {
+        String query = this.getTranslatedQuery(QueryKind.RECORD_TIME_HISTOGRAM, tenantId, tableName, 
+                partition, 0);
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = this.getConnection();
+            stmt = conn.prepareStatement(query);
+            stmt.setLong(1, min);
+            stmt.setLong(2, bucketWidth);
+            stmt.setLong(3, min);
+            stmt.setLong(4, max);
+            rs = stmt.executeQuery();
+            SortedMap<Long, Long> result = new TreeMap<Long, Long>();
+            while (rs.next()) {
+                result.put(rs.getLong(1), rs.getLong(2));
+            }
+            return result;
+        } catch (SQLException e) {
+            throw new AnalyticsException("Error in retrieving record time histogram: " + e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(rs, stmt, conn);
+        }
+    }
+    
+    @Override
+    public Iterator<Record> getRecords(int tenantId, String tableName, List<String> columns,
+            long timeFrom, long timeTo, String continuationToken, 
+            int recordsCount) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        if (this.getQueryConfiguration().getRecordRetrievalWithContinuationQuery() == null) {
+            throw new AnalyticsException("Record retrieval with continuation tokens is not " +
+                    "supported by the current query configuration");
+        }
+        if (timeFrom == -1) {
+            timeFrom = Long.MIN_VALUE;
+        }
+        if (timeTo == -1) {
+            timeTo = Long.MAX_VALUE;
+        }
+        if (recordsCount == -1) {
+            recordsCount = Integer.MAX_VALUE;
+        }
+        RecordContinuationToken token = null;
+        if (continuationToken != null) {
+            token = RecordContinuationToken.parse(continuationToken);
+        }
+        int pageSize = this.getQueryConfiguration().getRecordRetrievalPageSize();
+        if (pageSize > 0 && recordsCount > pageSize) {
+            return new RDBMSPagedRecordIterator(tenantId, tableName, columns, timeFrom, timeTo, 
+                    token, recordsCount, pageSize);
+        } else {
+            return this.getRecordsPage(tenantId, tableName, columns, timeFrom, timeTo, token, recordsCount);
+        }
+    }
+    
+    private Iterator<Record> getRecordsPage(final int tenantId, final String tableName, final List<String> columns,
+            final long timeFrom, final long timeTo, final RecordContinuationToken token, 
+            int recordsCount) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        /* the partitions are in time order, so a page continues over the partitions after the token's one */
+        List<Long> partitions = this.getPartitions(tenantId, tableName, 
+                token == null ? timeFrom : Math.max(timeFrom, token.getTimestamp()), timeTo);
+        if (partitions.size() == 1) {
+            return this.getPartitionRecordsPage(tenantId, tableName, columns, partitions.get(0), timeFrom, timeTo, 
+                    token, recordsCount);
+        }
+        return new RDBMSPartitionedRecordIterator(partitions, recordsCount) {
+            @Override
+            protected Iterator<Record> readPartition(long partition, int recordsCount) throws AnalyticsException {
+                return getPartitionRecordsPage(tenantId, tableName, columns, partition, timeFrom, timeTo, 
+                        token, recordsCount);
+            }
+        };
+    }
+    
+    private Iterator<Record> getPartitionRecordsPage(int tenantId, String tableName, List<String> columns,
+            long partition, long timeFrom, long timeTo, RecordContinuationToken token, 
+            int recordsCount) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        long lastTimestamp;
+        String lastId;
+        if (token == null) {
+            /* record ids are never empty, so this includes all the records at "timeFrom" */
+            lastTimestamp = timeFrom;
+            lastId = "";
+        } else {
+            lastTimestamp = token.getTimestamp();
+            lastId = token.getId();
+        }
+        ColumnDictionary dictionary = this.getColumnDictionary(tenantId, tableName);
+        String query = this.getRecordRetrievalWithContinuationQuery(tenantId, tableName, partition);
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = this.getConnection();
+            stmt = conn.prepareStatement(query);
+            stmt.setLong(1, timeFrom);
+            stmt.setLong(2, timeTo);
+            stmt.setLong(3, lastTimestamp);
+            stmt.setLong(4, lastTimestamp);
+            stmt.setString(5, lastId);
+            stmt.setInt(6, recordsCount);
+            rs = stmt.executeQuery();
+            return new RDBMSResultSetIterator(tenantId, tableName, columns, dictionary, conn, stmt, rs);
+        } catch (SQLException e) {
+            RDBMSUtils.cleanupConnection(rs, stmt, conn);
+            if (!this.tableExists(tenantId, tableName)) {
+                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+            } else {
+                throw new AnalyticsException("Error in retrieving records: " + e.getMessage(), e);
+            }            
+        }
+    }
+    
+    private int adjustRecordsFromForProvider(int recordsFrom) {
+        if (!this.getQueryConfiguration().isPaginationFirstZeroIndexed()) {
+            recordsFrom++;
+        }
+        if (!this.getQueryConfiguration().isPaginationFirstInclusive()) {
+            recordsFrom++;
+        }
+        return recordsFrom;
+    }
+    
+    private int adjustRecordsCountForProvider(int recordsFrom, int recordsCount) {
+        if (!this.getQueryConfiguration().isPaginationSecondLength() && recordsCount != Integer.MAX_VALUE) {
+            if (!this.getQueryConfiguration().isPaginationSecondZeroIndexed()) {
+                recordsCount++;
+            }
+            if (!this.getQueryConfiguration().isPaginationSecondInclusive()) {
+                recordsCount++;
+            }
+        }
+        return recordsCount;
+    }
+
+    @Override
+    public Iterator<Record> getRecords(int tenantId, String tableName, List<String> columns,
+            List<String> ids) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        if (ids.size() > MAX_RECORD_ID_BATCH_SIZE) {
+            return new RDBMSRecordIdBatchIterator(tenantId, tableName, columns, ids);
+        }
+        return this.getRecordsBatch(tenantId, tableName, columns, ids);
+    }
+    
+    private Iterator<Record> getRecordsBatch(final int tenantId, final String tableName, 
+            final List<String> columns, final List<String> ids) 
+                    throws AnalyticsException, AnalyticsTableNotAvailableException {
+        /* the record ids do not tell the partitions of the records, so all the partitions are looked up */
+        List<Long> partitions = this.getPartitions(tenantId, tableName, Long.MIN_VALUE, Long.MAX_VALUE);
+        if (partitions.size() == 1) {
+            return this.getPartitionRecordsBatch(tenantId, tableName, columns, partitions.get(0), ids);
+        }
+        return new RDBMSPartitionedRecordIterator(partitions, Integer.MAX_VALUE) {
+            @Override
+            protected Iterator<Record> readPartition(long partition, int recordsCount) throws AnalyticsException {
+                return getPartitionRecordsBatch(tenantId, tableName, columns, partition, ids);
+            }
+        };
+    }
+    
+    private Iterator<Record> getPartitionRecordsBatch(int tenantId, String tableName, List<String> columns,
+            long partition, List<String> ids) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        int batchSize = this.getRecordIdBatchSize(ids.size());
+        ColumnDictionary dictionary = this.getColumnDictionary(tenantId, tableName);
+        String recordGetSQL = this.getTranslatedQuery(QueryKind.RECORD_RETRIEVAL_WITH_IDS, tenantId, 
+                tableName, partition, batchSize);
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = this.getConnection();
+            stmt = conn.prepareStatement(recordGetSQL);
+            this.setRecordIdParams(stmt, ids, batchSize);
+            rs = stmt.executeQuery();
+            return new RDBMSResultSetIterator(tenantId, tableName, columns, dictionary, conn, stmt, rs);
+        } catch (SQLException e) {
+            RDBMSUtils.cleanupConnection(rs, stmt, conn);
+            if (!this.tableExists(tenantId, tableName)) {
+                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+            } else {
+                throw new AnalyticsException("Error in retrieving records: " + e.getMessage(), e);
+            }
+        }
+    }
+    
+    /**
+     * The predicates on the promoted columns of the table are evaluated in the database, and the rest on the 
+     * records that are read in. The records, whose promoted values are not all kept exactly with the current 
+     * promoted columns, are read in separately, and all the predicates are evaluated on them.
+     */
+    @Override
+    public Iterator<Record> getRecords(final int tenantId, final String tableName, final List<String> columns, 
+            long timeFrom, long timeTo, List<RecordPredicate> predicates, 
+            int recordsCount) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        if (timeFrom == -1) {
+            timeFrom = Long.MIN_VALUE;
+        }
+        if (timeTo == -1) {
+            timeTo = Long.MAX_VALUE;
+        }
+        if (recordsCount == -1) {
+            recordsCount = Integer.MAX_VALUE;
+        }
+        final Map<RecordPredicate, PromotedColumn> sqlPredicates = new LinkedHashMap<RecordPredicate, PromotedColumn>();
+        final List<RecordPredicate> otherPredicates = new ArrayList<RecordPredicate>();
+        for (RecordPredicate predicate : predicates) {
+            PromotedColumn column = this.lookupPromotedColumn(tableName, predicate);
+            if (column != null) {
+                sqlPredicates.put(predicate, column);
+            } else {
+                otherPredicates.add(predicate);
+            }
+        }
+        if (sqlPredicates.isEmpty() || this.getQueryConfiguration().getRecordRetrievalWithPredicatesQuery() == null) {
+            final Iterator<Record> itr = this.getRecords(tenantId, tableName, 
+                    this.getPredicateColumns(columns, predicates), timeFrom, timeTo, 0, -1);
+            return new RecordFilterIterator(itr, predicates, columns, 
+                    recordsCount == Integer.MAX_VALUE ? -1 : recordsCount) {
+                @Override
+                protected void close() {
+                    closeRecords(itr);
+                }
+            };
+        }
+        final long from = timeFrom, to = timeTo;
+        final List<RecordPredicate> allPredicates = predicates;
+        List<Long> partitions = this.getPartitions(tenantId, tableName, timeFrom, timeTo);
+        return new RDBMSPartitionedRecordIterator(partitions, recordsCount) {
+            @Override
+            protected Iterator<Record> readPartition(long partition, int recordsCount) throws AnalyticsException {
+                return new RDBMSPredicateRecordIterator(tenantId, tableName, columns, partition, from, to, 
+                        sqlPredicates, otherPredicates, allPredicates, recordsCount);
+            }
+        };
+    }
+    
+    /**
+     * Returns the promoted column of a table, which can evaluate the given predicate, or null if there is none.
+     * The predicate values, which cannot be kept in the column, e.g. too long strings, are not in any of 
+     * the records of the current promoted version, so they are only evaluated in memory.
+     */
+    private PromotedColumn lookupPromotedColumn(String tableName, RecordPredicate predicate) {
+        PromotedColumn column = this.lookupPromotedColumn(tableName, predicate.getField());
+        if (column == null || !column.getType().canEvaluate(predicate) || 
+                column.getType().toColumnValue(predicate.getValue(), this.promotedStringMaxLength) == null) {
+            return null;
+        }
+        return column;
+    }
+    
+    /**
+     * Returns the promoted column of a table for the given field, or null if the field is not promoted.
+     */
+    private PromotedColumn lookupPromotedColumn(String tableName, String field) {
+        for (PromotedColumn column : this.getPromotedColumns(tableName)) {
+            if (column.getField().equals(field)) {
+                return column;
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Returns the columns to be read in, for the given predicates to be evaluated on the records.
+     */
+    private List<String> getPredicateColumns(List<String> columns, List<RecordPredicate> predicates) {
+        if (columns == null || columns.isEmpty()) {
+            return columns;
+        }
+        List<String> result = new ArrayList<String>(columns);
+        for (RecordPredicate predicate : predicates) {
+            if (!result.contains(predicate.getField())) {
+                result.add(predicate.getField());
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Releases the database resources of a record iterator of this record store, which is not read to its end.
+     */
+    private void closeRecords(Iterator<Record> itr) {
+        if (itr instanceof RDBMSResultSetIterator) {
+            ((RDBMSResultSetIterator) itr).close();
+        } else if (itr instanceof RDBMSPartitionedRecordIterator) {
+            ((RDBMSPartitionedRecordIterator) itr).close();
+        } else if (itr instanceof RDBMSPredicateRecordIterator) {
+            ((RDBMSPredicateRecordIterator) itr).close();
+        }
+    }
+    
+    /**
+     * Returns the conditions of the given predicates, to be appended to the WHERE clause of a query, along with 
+     * the condition on the promoted version of the records. The predicates are only evaluated in the database 
+     * on the records of the current promoted version, and the rest of the records are to be evaluated in memory.
+     * @param sqlPredicates The predicates on the promoted columns
+     * @param exactRecords true for the records of the current promoted version, false for the rest of the records
+     */
+    private String getSQLPredicates(Map<RecordPredicate, PromotedColumn> sqlPredicates, boolean exactRecords) {
+        StringBuilder conditions = new StringBuilder();
+        for (Map.Entry<RecordPredicate, PromotedColumn> entry : sqlPredicates.entrySet()) {
+            conditions.append(" AND ").append(entry.getValue().getColumnName()).append(" ").append(
+                    this.getSQLOperator(entry.getKey().getOperator())).append(" ?");
+        }
+        if (exactRecords) {
+            conditions.append(" AND ").append(PROMOTED_VERSION_COLUMN).append(" = ?");
+        } else {
+            /* written as ranges, so an index on the column can be used */
+            conditions.append(" AND (").append(PROMOTED_VERSION_COLUMN).append(" IS NULL OR ").append(
+                    PROMOTED_VERSION_COLUMN).append(" < ? OR ").append(PROMOTED_VERSION_COLUMN).append(" > ?)");
+        }
+        return conditions.toString();
+    }
+    
+    private void setPredicateParams(PreparedStatement stmt, long timeFrom, long timeTo, 
+            Map<RecordPredicate, PromotedColumn> sqlPredicates, boolean exactRecords, 
+            int promotedVersion) throws SQLException {
+        stmt.setLong(1, timeFrom);
+        stmt.setLong(2, timeTo);
+        int index = 3;
+        for (Map.Entry<RecordPredicate, PromotedColumn> entry : sqlPredicates.entrySet()) {
+            entry.getValue().getType().setPredicateParameter(stmt, index++, entry.getKey().getValue());
+        }
+        stmt.setInt(index++, promotedVersion);
+        if (!exactRecords) {
+            stmt.setInt(index, promotedVersion);
+        }
+    }
+    
+    private String getSQLOperator(RecordPredicate.Operator operator) {
+        switch (operator) {
+        case EQUAL:
+            return "=";
+        case LESS_THAN:
+            return "<";
+        case LESS_THAN_OR_EQUAL:
+            return "<=";
+        case GREATER_THAN:
+            return ">";
+        case GREATER_THAN_OR_EQUAL:
+            return ">=";
+        default:
+            throw new IllegalArgumentException("Unknown record predicate operator: " + operator);
+        }
+    }
+    
+    /**
+     * Reads the records of a partition, which match the given predicates.
+     * @param sqlPredicates The predicates to be evaluated in the database
+     * @param otherPredicates The predicates to be evaluated in memory
+     * @param exactRecords true to read the records of the current promoted version, false to read the rest of 
+     * the records, where all the predicates should be evaluated in memory
+     */
+    private Iterator<Record> getPartitionRecordsWithPredicates(int tenantId, String tableName, List<String> columns,
+            long partition, long timeFrom, long timeTo, Map<RecordPredicate, PromotedColumn> sqlPredicates, 
+            List<RecordPredicate> otherPredicates, boolean exactRecords,
+            int recordsCount) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        this.checkPromotedColumns(tenantId, tableName, partition);
+        ColumnDictionary dictionary = this.getColumnDictionary(tenantId, tableName);
+        String query = this.getTranslatedQuery(QueryKind.RECORD_RETRIEVAL_WITH_PREDICATES, tenantId, tableName, 
+                partition, 0).replace(PREDICATES_PLACEHOLDER, this.getSQLPredicates(sqlPredicates, exactRecords));
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = this.getConnection();
+            stmt = conn.prepareStatement(query);
+            this.setPredicateParams(stmt, timeFrom, timeTo, sqlPredicates, exactRecords, 
+                    this.getPromotedVersion(tableName));
+            if (otherPredicates.isEmpty() && recordsCount != Integer.MAX_VALUE) {
+                stmt.setMaxRows(recordsCount);
+            }
+            rs = stmt.executeQuery();
+            if (otherPredicates.isEmpty()) {
+                return new RDBMSResultSetIterator(tenantId, tableName, columns, dictionary, conn, stmt, rs);
+            }
+            final RDBMSResultSetIterator itr = new RDBMSResultSetIterator(tenantId, tableName, 
+                    this.getPredicateColumns(columns, otherPredicates), dictionary, conn, stmt, rs);
+            return new RecordFilterIterator(itr, otherPredicates, columns, 
+                    recordsCount == Integer.MAX_VALUE ? -1 : recordsCount) {
+                @Override
+                protected void close() {
+                    closeRecords(itr);
+                }
+            };
+        } catch (SQLException e) {
+            RDBMSUtils.cleanupConnection(rs, stmt, conn);
+            if (!this.tableExists(tenantId, tableName)) {
+                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+            } else {
+                throw new AnalyticsException("Error in retrieving records: " + e.getMessage(), e);
+            }
+        }
+    }
+    
+    /**
+     * The aggregates are computed in the database, when all the predicates, the group by fields and 
+     * the aggregated fields are on the promoted columns of the table, or else on the records that are read in.
+     * The records, whose promoted values are not all kept exactly with the current promoted columns, are 
+     * always aggregated in memory. The group by values, and the MIN and MAX values, are converted to 
+     * the promoted column types where possible, the same way as they come from the database.
+     */
+    @Override
+    public List<RecordAggregate> getAggregates(int tenantId, String tableName, long timeFrom, long timeTo, 
+            List<RecordPredicate> predicates, List<String> groupByFields, 
+            List<AggregateFunction> functions) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        if (timeFrom == -1) {
+            timeFrom = Long.MIN_VALUE;
+        }
+        if (timeTo == -1) {
+            timeTo = Long.MAX_VALUE;
+        }
+        boolean sqlAggregation = this.getQueryConfiguration().getRecordAggregationQuery() != null && 
+                this.getQueryConfiguration().getRecordRetrievalWithPredicatesQuery() != null;
+        Map<RecordPredicate, PromotedColumn> sqlPredicates = new LinkedHashMap<RecordPredicate, PromotedColumn>();
+        List<PromotedColumn> groupByColumns = new ArrayList<PromotedColumn>(groupByFields.size());
+        List<PromotedColumn> functionColumns = new ArrayList<PromotedColumn>(functions.size());
+        PromotedColumn column;
+        for (RecordPredicate predicate : predicates) {
+            column = this.lookupPromotedColumn(tableName, predicate);
+            sqlAggregation &= column != null;
+            sqlPredicates.put(predicate, column);
+        }
+        for (String field : groupByFields) {
+            column = this.lookupPromotedColumn(tableName, field);
+            sqlAggregation &= column != null;
+            groupByColumns.add(column);
+        }
+        for (AggregateFunction function : functions) {
+            column = function.getField() == null ? null : this.lookupPromotedColumn(tableName, function.getField());
+            sqlAggregation &= function.getField() == null || 
+                    (column != null && column.getType().canAggregate(function.getType()));
+            functionColumns.add(column);
+        }
+        if (!sqlAggregation) {
+            List<String> columns = new ArrayList<String>(groupByFields);
+            for (AggregateFunction function : functions) {
+                if (function.getField() != null) {
+                    columns.add(function.getField());
+                }
+            }
+            return RecordAggregator.aggregate(this.getRecords(tenantId, tableName, columns, timeFrom, timeTo, 
+                    predicates, -1), groupByFields, functions);
+        }
+        RecordAggregator aggregator = new RecordAggregator(groupByFields, functions);
+        Map<RecordPredicate, PromotedColumn> noPredicates = Collections.emptyMap();
+        List<String> columns = new ArrayList<String>(groupByFields);
+        for (AggregateFunction function : functions) {
+            if (function.getField() != null) {
+                columns.add(function.getField());
+            }
+        }
+        Iterator<Record> itr;
+        for (long partition : this.getPartitions(tenantId, tableName, timeFrom, timeTo)) {
+            this.aggregatePartitionRecords(aggregator, tenantId, tableName, partition, timeFrom, timeTo, 
+                    sqlPredicates, groupByColumns, functions, functionColumns);
+            itr = this.getPartitionRecordsWithPredicates(tenantId, tableName, columns, partition, timeFrom, 
+                    timeTo, noPredicates, predicates, false, Integer.MAX_VALUE);
+            while (itr.hasNext()) {
+                aggregator.add(this.toPromotedColumnValues(itr.next()));
+            }
+        }
+        return aggregator.getAggregates();
+    }
+    
+    /**
+     * Converts the promoted field values of a record to their promoted column types, where possible, 
+     * so they are aggregated along with the values which come from the database.
+     */
+    private Record toPromotedColumnValues(Record record) {
+        Map<String, Object> values = new HashMap<String, Object>(record.getValues());
+        Object value;
+        for (PromotedColumn column : this.getPromotedColumns(record.getTableName())) {
+            value = column.getType().toColumnValue(values.get(column.getField()), -1);
+            if (value != null) {
+                values.put(column.getField(), value);
+            }
+        }
+        return new Record(record.getId(), record.getTenantId(), record.getTableName(), values, 
+                record.getTimestamp());
+    }
+    
+    /**
+     * Adds the partial aggregates of the groups of a partition, of the records of the current promoted version, 
+     * to the given aggregator, where the first column of the query is the record count of the group, followed 
+     * by the group by columns, and the count and the partial value of each aggregate function.
+     */
+    private void aggregatePartitionRecords(RecordAggregator aggregator, int tenantId, String tableName, 
+            long partition, long timeFrom, long timeTo, Map<RecordPredicate, PromotedColumn> sqlPredicates, 
+            List<PromotedColumn> groupByColumns, List<AggregateFunction> functions, 
+            List<PromotedColumn> functionColumns) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        this.checkPromotedColumns(tenantId, tableName, partition);
+        StringBuilder aggregates = new StringBuilder("COUNT(*)");
+        StringBuilder groupBy = new StringBuilder();
+        for (PromotedColumn column : groupByColumns) {
+            aggregates.append(", ").append(column.getColumnName());
+            groupBy.append(groupBy.length() == 0 ? " GROUP BY " : ", ").append(column.getColumnName());
+        }
+        AggregateFunction function;
+        String columnName;
+        for (int i = 0; i < functions.size(); i++) {
+            function = functions.get(i);
+            columnName = function.getField() == null ? "*" : functionColumns.get(i).getColumnName();
+            aggregates.append(", COUNT(").append(columnName).append(")");
+            if (function.getType() != AggregateFunction.Type.COUNT) {
+                aggregates.append(", ").append(function.getType() == AggregateFunction.Type.AVG ? 
+                        "SUM" : function.getType().toString()).append("(").append(columnName).append(")");
+            }
+        }
+        String query = this.getTranslatedQuery(QueryKind.RECORD_AGGREGATION, tenantId, tableName, partition, 
+                0).replace(AGGREGATES_PLACEHOLDER, aggregates.toString()).replace(PREDICATES_PLACEHOLDER, 
+                        this.getSQLPredicates(sqlPredicates, true)).replace(GROUP_BY_PLACEHOLDER, 
+                                groupBy.toString());
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = this.getConnection();
+            stmt = conn.prepareStatement(query);
+            this.setPredicateParams(stmt, timeFrom, timeTo, sqlPredicates, true, 
+                    this.getPromotedVersion(tableName));
+            rs = stmt.executeQuery();
+            List<Object> groupValues;
+            long[] counts;
+            Object[] values;
+            int index;
+            while (rs.next()) {
+                /* without a GROUP BY clause, there is a single row, even if no records match */
+                if (rs.getLong(1) == 0) {
+                    continue;
+                }
+                index = 2;
+                groupValues = new ArrayList<Object>(groupByColumns.size());
+                for (PromotedColumn column : groupByColumns) {
+                    groupValues.add(column.getType().getValue(rs, index++));
+                }
+                counts = new long[functions.size()];
+                values = new Object[functions.size()];
+                for (int i = 0; i < functions.size(); i++) {
+                    counts[i] = rs.getLong(index++);
+                    if (functions.get(i).getType() != AggregateFunction.Type.COUNT) {
+                        values[i] = this.getPartialAggregateValue(rs, index++, functions.get(i), 
+                                functionColumns.get(i));
+                    }
+                }
+                aggregator.addPartialAggregates(groupValues, counts, values);
+            }
+        } catch (SQLException e) {
+            if (!this.tableExists(tenantId, tableName)) {
+                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+            }
+            throw new AnalyticsException("Error in computing record aggregates: " + e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(rs, stmt, conn);
+        }
+    }
+    
+    private Object getPartialAggregateValue(ResultSet rs, int index, AggregateFunction function, 
+            PromotedColumn column) throws SQLException {
+        if (function.getType() == AggregateFunction.Type.MIN || function.getType() == AggregateFunction.Type.MAX) {
+            return column.getType().getValue(rs, index);
+        }
+        if (column.getType() == PromotedColumnType.DOUBLE) {
+            double value = rs.getDouble(index);
+            return rs.wasNull() ? null : (Object) value;
+        }
+        /* the sums of the integral columns may be returned as decimals, and may not fit in to a long */
+        BigDecimal value = rs.getBigDecimal(index);
+        if (value == null) {
+            return null;
+        }
+        BigInteger sum = value.toBigInteger();
+        return sum.bitLength() < Long.SIZE ? (Object) sum.longValue() : (Object) sum;
+    }
+    
+    @Override
+    public Iterator<RecordBatch> readRecordBatches(RecordGroup recordGroup, List<String> columns, 
+            int batchSize) throws AnalyticsException {
+        if (!(recordGroup instanceof DirectRecordGroup)) {
+            throw new AnalyticsException("Invalid RecordGroup implementation in RDBMSAnalyticsRecordStore: " + 
+                    recordGroup.getClass());
+        }
+        DirectRecordGroup drg = (DirectRecordGroup) recordGroup;
+        List<String> batchColumns = new ArrayList<String>(columns);
+        if (drg.getColumns() != null && drg.getColumns().size() > 0) {
+            batchColumns.retainAll(drg.getColumns());
+        }
+        RecordValuesDecoder decoder = new RecordValuesDecoder(batchColumns, 
+                this.getColumnDictionary(drg.getTenantId(), drg.getTableName()));
+        return new RDBMSRecordBatchIterator(this.readRecords(recordGroup), decoder, batchSize);
+    }
+    
+    /**
+     * The partitions of a partitioned table which are fully in the given time range are dropped as a whole, 
+     * rather than deleting their records one by one.
+     */
+    @Override
+    public void delete(int tenantId, String tableName, long timeFrom, long timeTo)
+            throws AnalyticsException, AnalyticsTableNotAvailableException {
+        if (timeFrom == -1) {
+            timeFrom = Long.MIN_VALUE;
+        }
+        if (timeTo == -1) {
+            timeTo = Long.MAX_VALUE;
+        }
+        RecordTablePartitioning partitioning = this.getRecordTablePartitioning(tableName);
+        boolean dropped = false;
+        for (long partition : this.getPartitions(tenantId, tableName, timeFrom, timeTo)) {
+            if (partition != NO_PARTITION && partition >= timeFrom && 
+                    partitioning.getNextPartition(partition) <= timeTo) {
+                this.dropPartition(tenantId, tableName, partition);
+                dropped = true;
+            } else {
+                this.deletePartitionRecords(tenantId, tableName, partition, timeFrom, timeTo);
+            }
+        }
+        if (dropped) {
+            this.invalidateTranslatedQueries(tenantId, tableName);
+            this.publishTableChange(tenantId, tableName);
+        }
+    }
+    
+    private void deletePartitionRecords(int tenantId, String tableName, long partition, long timeFrom, 
+            long timeTo) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        String sql = this.getRecordDeletionQuery(tenantId, tableName, partition);
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        try {
+            conn = this.getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setLong(1, timeFrom);
+            stmt.setLong(2, timeTo);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            if (!this.tableExists(tenantId, tableName)) {
+                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+            } else {
+                throw new AnalyticsException("Error in deleting records: " + e.getMessage(), e);
+            }
+        } finally {
+            RDBMSUtils.cleanupConnection(null, stmt, conn);
+        }
+    }
+        
+    @Override
+    public void delete(int tenantId, String tableName, 
+            List<String> ids) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        if (ids.size() == 0) {
+            return;
+        }
+        Connection conn = null;
+        try {
+            conn = this.getConnection();
+            this.delete(conn, tenantId, tableName, ids);
+        } catch (SQLException e) {
+            throw new AnalyticsException("Error in deleting records: " + e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(null, null, conn);
+        }
+    }
+    
+    private void deleteRecordsSimilar(Connection conn, List<Record> records) 
+            throws AnalyticsException, AnalyticsTableNotAvailableException {
+        if (records.size() == 0) {
+            return;
+        }
+        Record firstRecord = records.get(0);
+        int tenantId = firstRecord.getTenantId();
+        String tableName = firstRecord.getTableName();
+        List<String> ids = new ArrayList<String>(records.size());
+        for (Record record : records) {
+            ids.add(record.getId());
+        }
+        this.delete(conn, tenantId, tableName, ids);
+    }
+    
+    private void delete(Connection conn, int tenantId, String tableName, 
+            List<String> ids) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        for (long partition : this.getPartitions(tenantId, tableName, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            for (int i = 0; i < ids.size(); i += MAX_RECORD_ID_BATCH_SIZE) {
+                this.deleteBatch(conn, tenantId, tableName, partition, ids.subList(i, 
+                        Math.min(i + MAX_RECORD_ID_BATCH_SIZE, ids.size())));
+            }
+        }
+    }
+    
+    private void deleteBatch(Connection conn, int tenantId, String tableName, long partition,
+            List<String> ids) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        int batchSize = this.getRecordIdBatchSize(ids.size());
+        String sql = this.getTranslatedQuery(QueryKind.RECORD_DELETION_WITH_IDS, tenantId, tableName, 
+                partition, batchSize);
+        PreparedStatement stmt = null;
+        try {
+            stmt = conn.prepareStatement(sql);
+            this.setRecordIdParams(stmt, ids, batchSize);
+            stmt.executeUpdate();
+        } catch (SQLException e) {
+            if (!this.tableExists(tenantId, tableName)) {
+                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+            } else {
+                throw new AnalyticsException("Error in deleting records: " + e.getMessage(), e);
+            }
+        } finally {
+            RDBMSUtils.cleanupConnection(null, stmt, null);
+        }
+    }
+    
+    private String generateTablePrefix(int tenantId) {
+        if (tenantId < 0) {
+            return RDBMSAnalyticsRecordStore.ANALYTICS_USER_TABLE_PREFIX + "_X" + Math.abs(tenantId) + "_";
+        } else {
+            return RDBMSAnalyticsRecordStore.ANALYTICS_USER_TABLE_PREFIX + "_" + tenantId + "_";
+        }
+    }
+    
+    private String generateTargetTableName(int tenantId, String tableName) {
+        return this.normalizeTableName(this.generateTablePrefix(tenantId) + tableName);
+    }
+    
+    /**
+     * Returns the name of the physical table which keeps the records of the given partition of a table.
+     */
+    private String generatePartitionTableName(int tenantId, String tableName, long partition) {
+        String targetTableName = this.generateTargetTableName(tenantId, tableName);
+        if (partition == NO_PARTITION) {
+            return targetTableName;
+        }
+        return targetTableName + PARTITION_TABLE_SEPARATOR + 
+                this.getRecordTablePartitioning(tableName).toSuffix(partition);
+    }
+    
+    private boolean isPartitionTableName(String name) {
+        int index = name.lastIndexOf(PARTITION_TABLE_SEPARATOR);
+        if (index == -1) {
+            return false;
+        }
+        String suffix = name.substring(index + PARTITION_TABLE_SEPARATOR.length());
+        for (RecordTablePartitioning partitioning : RecordTablePartitioning.values()) {
+            if (partitioning.parseSuffix(suffix) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private String translateQueryWithTableInfo(String query, int tenantId, String tableName, 
+            long partition) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        if (this.isConsolidatedLayout()) {
+            return this.translateQueryWithTableId(query, this.getTableId(tenantId, tableName));
+        }
+        return query.replace(TABLE_NAME_PLACEHOLDER, this.generatePartitionTableName(tenantId, tableName, 
+                partition));
+    }
+    
+    /**
+     * Translates a query of the consolidated layout, the table id is put in to the query itself, so the 
+     * positions of the query parameters are the same in both the layouts.
+     */
+    private String translateQueryWithTableId(String query, int tableId) {
+        return query.replace(TABLE_NAME_PLACEHOLDER, this.generateConsolidatedTableName(tableId)).replace(
+                TABLE_ID_PLACEHOLDER, Integer.toString(tableId));
+    }
+    
+    /**
+     * Fills in the promoted columns of a table, followed by the promoted version column, and their parameters, 
+     * which follow the fixed parameters of the insert and the merge queries. The updates of the same columns 
+     * in a merge query, in the form ", column = VALUES(column)", are filled in for {{PROMOTED_UPDATES}}.
+     */
+    private String translateQueryWithPromotedColumns(String query, String tableName) {
+        if (!query.contains(PROMOTED_COLUMNS_PLACEHOLDER) && !query.contains(PROMOTED_VALUES_PLACEHOLDER) && 
+                !query.contains(PROMOTED_UPDATES_PLACEHOLDER)) {
+            return query;
+        }
+        List<String> columnNames = new ArrayList<String>();
+        for (PromotedColumn column : this.getPromotedColumns(tableName)) {
+            columnNames.add(column.getColumnName());
+        }
+        if (columnNames.size() > 0) {
+            columnNames.add(PROMOTED_VERSION_COLUMN);
+        }
+        StringBuilder columns = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        StringBuilder updates = new StringBuilder();
+        for (String columnName : columnNames) {
+            columns.append(", ").append(columnName);
+            values.append(", ?");
+            updates.append(", ").append(columnName).append(" = VALUES(").append(columnName).append(")");
+        }
+        return query.replace(PROMOTED_COLUMNS_PLACEHOLDER, columns.toString()).replace(
+                PROMOTED_VALUES_PLACEHOLDER, values.toString()).replace(
+                        PROMOTED_UPDATES_PLACEHOLDER, updates.toString());
+    }
+    
+    private String translateQueryWithRecordIdsInfo(String query, int recordCount) {
+        return query.replace(RECORD_IDS_PLACEHOLDER, this.getDynamicSQLParams(recordCount));
+    }
+    
+    private String getRecordRetrievalQuery(int tenantId, String tableName, 
+            long partition) throws AnalyticsException {
+        return this.getTranslatedQuery(QueryKind.RECORD_RETRIEVAL, tenantId, tableName, partition, 0);
+    }
+    
+    private String getRecordRetrievalWithContinuationQuery(int tenantId, String tableName, 
+            long partition) throws AnalyticsException {
+        return this.getTranslatedQuery(QueryKind.RECORD_RETRIEVAL_WITH_CONTINUATION, tenantId, tableName, 
+                partition, 0);
+    }
+    
+    /**
+     * Returns the query of the given kind for a partition of a table, with the table name, and the given 
+     * number of record id parameters filled in. The translated queries are cached, so the same SQL string is 
+     * given to the driver for the same table, which also lets JDBC statement caches work.
+     */
+    private String getTranslatedQuery(QueryKind kind, int tenantId, String tableName, long partition, 
+            int recordIdCount) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        QueryCacheKey key = new QueryCacheKey(kind, tenantId, tableName, partition, recordIdCount);
+        String query = this.queryCache.get(key);
+        if (query == null) {
+            query = this.translateQueryWithTableInfo(this.getQueryTemplate(kind), tenantId, tableName, 
+                    partition);
+            query = this.translateQueryWithPromotedColumns(query, tableName);
+            if (recordIdCount > 0) {
+                query = this.translateQueryWithRecordIdsInfo(query, recordIdCount);
+            }
+            this.queryCache.put(key, query);
+        }
+        return query;
+    }
+    
+    private String getQueryTemplate(QueryKind kind) {
+        RDBMSQueryConfigurationEntry conf = this.getQueryConfiguration();
+        switch (kind) {
+        case RECORD_INSERT:
+            return conf.getRecordInsertQuery();
+        case RECORD_MERGE:
+            return conf.getRecordMergeQuery();
+        case RECORD_RETRIEVAL:
+            return conf.getRecordRetrievalQuery();
+        case RECORD_RETRIEVAL_WITH_CONTINUATION:
+            return conf.getRecordRetrievalWithContinuationQuery();
+        case RECORD_RETRIEVAL_WITH_IDS:
+            return conf.getRecordRetrievalWithIdsQuery();
+        case RECORD_RETRIEVAL_WITH_PREDICATES:
+            return conf.getRecordRetrievalWithPredicatesQuery();
+        case RECORD_AGGREGATION:
+            return conf.getRecordAggregationQuery();
+        case RECORD_DELETION:
+            return conf.getRecordDeletionQuery();
+        case RECORD_DELETION_WITH_IDS:
+            return conf.getRecordDeletionWithIdsQuery();
+        case RECORD_COUNT:
+            return conf.getRecordCountQuery();
+        case RECORD_TIME_RANGE_STATS:
+            return conf.getRecordTimeRangeStatsQuery();
+        case RECORD_TIME_HISTOGRAM:
+            return conf.getRecordTimeHistogramQuery();
+        default:
+            throw new IllegalArgumentException("Unknown query kind: " + kind);
+        }
+    }
+    
+    private void invalidateTranslatedQueries(int tenantId, String tableName) {
+        tableName = this.normalizeTableName(tableName);
+        Iterator<QueryCacheKey> itr = this.queryCache.keySet().iterator();
+        QueryCacheKey key;
+        while (itr.hasNext()) {
+            key = itr.next();
+            if (key.tenantId == tenantId && this.normalizeTableName(key.tableName).equals(tableName)) {
+                itr.remove();
+            }
+        }
+    }
+    
+    private int getRecordIdBatchSize(int count) {
+        for (int size : RECORD_ID_BATCH_SIZES) {
+            if (count <= size) {
+                return size;
+            }
+        }
+        throw new IllegalArgumentException("The record id count exceeds the maximum batch size: " + count);
+    }
+    
+    private void setRecordIdParams(PreparedStatement stmt, List<String> ids, int batchSize) throws SQLException {
+        int count = ids.size();
+        for (int i = 0; i < count; i++) {
+            stmt.setString(i + 1, ids.get(i));
+        }
+        /* a null never matches in an IN list */
+        for (int i = count; i < batchSize; i++) {
+            stmt.setNull(i + 1, Types.VARCHAR);
+        }
+    }
+    
+    private String getDynamicSQLParams(int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                builder.append("?");
+            } else {
+                builder.append(",?");
+            }
+        }
+        return builder.toString();
+    }
+    
+    private String getRecordDeletionQuery(int tenantId, String tableName, 
+            long partition) throws AnalyticsException {
+        return this.getTranslatedQuery(QueryKind.RECORD_DELETION, tenantId, tableName, partition, 0);
+    }
+
+    @Override
+    public void deleteTable(int tenantId, String tableName) throws AnalyticsException {
+        this.invalidateTranslatedQueries(tenantId, tableName);
+        this.invalidatePromotedColumnTables(tenantId, tableName);
+        this.removeFromTableCatalog(tenantId, tableName);
+        if (this.isConsolidatedLayout()) {
+            this.deleteConsolidatedTable(tenantId, tableName);
+            this.tableIds.remove(this.generateTargetTableName(tenantId, tableName));
+            this.removeFromTableCatalog(tenantId, tableName);
+            this.publishTableChange(tenantId, tableName);
+            return;
+        }
+        if (this.isPartitioned(tableName)) {
+            /* the partitions are looked up in the database, since the table may not be in the catalog anymore */
+            for (long partition : this.loadTablePartitions(tenantId, tableName)) {
+                this.dropPartition(tenantId, tableName, partition);
+            }
+            this.tablePartitions.remove(this.generateTargetTableName(tenantId, tableName));
+        }
+        Connection conn = null;
+        try {
+            conn = this.getConnection(false);
+            String[] tableDeleteQueries = this.getRecordTableDeleteQueries(tenantId, tableName, NO_PARTITION);
+            for (String query : tableDeleteQueries) {
+                this.executeUpdate(conn, query);
+            }
+            conn.commit();
+            /* again, in case the table was looked up while being deleted */
+            this.removeFromTableCatalog(tenantId, tableName);
+            this.publishTableChange(tenantId, tableName);
+        } catch (SQLException e) {
+            RDBMSUtils.rollbackConnection(conn);
+            if (this.tableExists(tenantId, tableName)) {
+                throw new AnalyticsException("Error in deleting table: " + e.getMessage(), e);
+            }
+        } finally {
+            RDBMSUtils.cleanupConnection(null, null, conn);
+        }
+    }
+    
+    @Override
+    public void createTable(int tenantId, String tableName) throws AnalyticsException {
+        if (this.isConsolidatedLayout()) {
+            this.createConsolidatedTable(tenantId, tableName);
+            return;
+        }
+        Connection conn = null;
+        try {
+            conn = this.getConnection(false);
+            String[] tableInitQueries = this.getRecordTableInitQueries(tenantId, tableName, NO_PARTITION);
+            for (String query : tableInitQueries) {
+                this.executeUpdate(conn, query);
+            }
+            conn.commit();
+            if (this.getPromotedColumns(tableName).size() > 0) {
+                this.promotedColumnTables.add(this.generatePartitionTableName(tenantId, tableName, NO_PARTITION));
+            }
+            this.addToTableCatalog(tenantId, tableName, this.getTableCatalogModificationCount());
+            this.publishTableChange(tenantId, tableName);
+        } catch (SQLException e) {
+            RDBMSUtils.rollbackConnection(conn);
+            if (!this.tableExists(tenantId, tableName)) {
+                throw new AnalyticsException("Error in creating table: " + e.getMessage(), e);
+            }
+        } finally {
+            RDBMSUtils.cleanupConnection(null, null, conn);
+        }
+    }
+    
+    private void executeUpdate(Connection conn, String query) throws SQLException {
+        Statement stmt = null;
+        try {
+            stmt = conn.createStatement();
+            stmt.executeUpdate(query);
+        } finally {
+            RDBMSUtils.cleanupConnection(null, stmt, null);
+        }
+    }
+    
+    @Override
+    public boolean tableExists(int tenantId, String tableName) throws AnalyticsException {
+        tableName = this.normalizeTableName(tableName);
+        Set<String> tables = this.getTableCatalog().get(tenantId);
+        if (tables != null && tables.contains(tableName)) {
+            return true;
+        }
+        /* the table may have been created by another node */
+        long modCount = this.getTableCatalogModificationCount();
+        boolean exists = this.lookupTable(tenantId, tableName);
+        if (exists) {
+            this.addToTableCatalog(tenantId, tableName, modCount);
+        }
+        return exists;
+    }
+
+    private String normalizeTableName(String tableName) {
+        return tableName.toUpperCase();
+    }
+    
+    @Override
+    public List<String> listTables(int tenantId) throws AnalyticsException {
+        Set<String> tables = this.getTableCatalog().get(tenantId);
+        if (tables == null) {
+            return new ArrayList<String>();
+        }
+        return new ArrayList<String>(tables);
+    }
+    
+    /**
+     * Lists the tenants which have tables in this record store.
+     * @return The list of tenant ids
+     * @throws AnalyticsException
+     */
+    public List<Integer> listTenantIds() throws AnalyticsException {
+        List<Integer> result = new ArrayList<Integer>();
+        for (Map.Entry<Integer, Set<String>> entry : this.getTableCatalog().entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                result.add(entry.getKey());
+            }
+        }
+        return result;
+    }
+    
+    private boolean lookupTable(int tenantId, String tableName) throws AnalyticsException {
+        if (this.isConsolidatedLayout()) {
+            return this.lookupTableId(tenantId, tableName) != null;
+        }
+        return this.lookupTargetTable(this.generateTargetTableName(tenantId, tableName));
+    }
+    
+    /**
+     * Looks up a physical table in the database, by its exact name.
+     */
+    private boolean lookupTargetTable(String targetTableName) throws AnalyticsException {
+        Connection conn = null;
+        try {
+            conn = this.getConnection();
+            DatabaseMetaData dbm = conn.getMetaData();
+            /* databases may keep unquoted names in lower case */
+            return this.lookupTable(dbm, targetTableName) || 
+                    this.lookupTable(dbm, targetTableName.toLowerCase());
+        } catch (SQLException e) {
+            throw new AnalyticsException("Error in checking table existence: " + e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(null, null, conn);
+        }
+    }
+    
+    private boolean lookupTable(DatabaseMetaData dbm, String targetTableName) throws SQLException {
+        ResultSet rs = null;
+        try {
+            rs = dbm.getTables(null, null, targetTableName, null);
+            while (rs.next()) {
+                /* '_' in the name is a pattern character, so the matches are checked again */
+                if (targetTableName.equalsIgnoreCase(rs.getString("TABLE_NAME"))) {
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            RDBMSUtils.cleanupConnection(rs, null, null);
+        }
+    }
+    
+    /**
+     * Returns the partitions of a table which may have records in the given time range, in time order. 
+     * A non-partitioned table has the single partition {@link #NO_PARTITION}.
+     */
+    private List<Long> getPartitions(int tenantId, String tableName, long timeFrom, 
+            long timeTo) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        RecordTablePartitioning partitioning = this.getRecordTablePartitioning(tableName);
+        if (partitioning == RecordTablePartitioning.NONE) {
+            return Collections.singletonList(NO_PARTITION);
+        }
+        NavigableSet<Long> partitions = this.getTablePartitions(tenantId, tableName);
+        if (timeFrom >= timeTo) {
+            return new ArrayList<Long>();
+        }
+        /* the partitions overlapping the range start from the partition of "timeFrom" */
+        long start = partitioning.getPartition(timeFrom);
+        if (start > timeFrom) {
+            /* overflowed, for the timestamps close to Long.MIN_VALUE */
+            start = Long.MIN_VALUE;
+        }
+        return new ArrayList<Long>(partitions.subSet(start, true, timeTo, false));
+    }
+    
+    private NavigableSet<Long> getTablePartitions(int tenantId, 
+            String tableName) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        String targetTableName = this.generateTargetTableName(tenantId, tableName);
+        NavigableSet<Long> partitions = this.tablePartitions.get(targetTableName);
+        if (partitions == null) {
+            if (!this.tableExists(tenantId, tableName)) {
+                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+            }
+            partitions = new ConcurrentSkipListSet<Long>(this.loadTablePartitions(tenantId, tableName));
+            NavigableSet<Long> existingPartitions = this.tablePartitions.putIfAbsent(targetTableName, partitions);
+            if (existingPartitions != null) {
+                partitions = existingPartitions;
+            }
+        }
+        return partitions;
+    }
+    
+    /**
+     * Looks up the partitions of a table in the database, by the names of their physical tables.
+     */
+    private Set<Long> loadTablePartitions(int tenantId, String tableName) throws AnalyticsException {
+        RecordTablePartitioning partitioning = this.getRecordTablePartitioning(tableName);
+        String prefix = this.generateTargetTableName(tenantId, tableName) + PARTITION_TABLE_SEPARATOR;
+        Set<Long> result = new TreeSet<Long>();
+        Connection conn = null;
+        try {
+            conn = this.getConnection();
+            DatabaseMetaData dbm = conn.getMetaData();
+            /* databases may keep unquoted names in lower case */
+            this.loadTablePartitions(dbm, prefix, prefix, partitioning, result);
+            this.loadTablePartitions(dbm, prefix.toLowerCase(), prefix, partitioning, result);
+            return result;
+        } catch (SQLException e) {
+            throw new AnalyticsException("Error in loading table partitions: " + e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(null, null, conn);
+        }
+    }
+    
+    private void loadTablePartitions(DatabaseMetaData dbm, String namePattern, String prefix, 
+            RecordTablePartitioning partitioning, Set<Long> result) throws SQLException {
+        ResultSet rs = null;
+        String name;
+        Long partition;
+        try {
+            rs = dbm.getTables(null, null, namePattern + "%", null);
+            while (rs.next()) {
+                name = this.normalizeTableName(rs.getString("TABLE_NAME"));
+                /* '_' in the name is a pattern character, so the matches are checked again */
+                if (!name.startsWith(prefix)) {
+                    continue;
+                }
+                partition = partitioning.parseSuffix(name.substring(prefix.length()));
+                if (partition != null) {
+                    result.add(partition);
+                }
+            }
+        } finally {
+            RDBMSUtils.cleanupConnection(rs, null, null);
+        }
+    }
+    
+    private void checkAndCreatePartitions(Collection<List<Record>> recordBatches) 
+            throws AnalyticsException, AnalyticsTableNotAvailableException {
+        Record firstRecord;
+        for (List<Record> batch : recordBatches) {
+            firstRecord = batch.get(0);
+            if (this.isPartitioned(firstRecord.getTableName())) {
+                this.checkAndCreatePartition(firstRecord.getTenantId(), firstRecord.getTableName(), 
+                        this.getRecordPartition(firstRecord));
+            }
+        }
+    }
+    
+    /**
+     * Creates the physical table of a partition, if it is not already there. This is done in its own 
+     * transaction, since some databases commit the current transaction with DDL statements.
+     */
+    private void checkAndCreatePartition(int tenantId, String tableName, 
+            long partition) throws AnalyticsException, AnalyticsTableNotAvailableException {
+        NavigableSet<Long> partitions = this.getTablePartitions(tenantId, tableName);
+        if (partitions.contains(partition)) {
+            return;
+        }
+        Connection conn = null;
+        try {
+            conn = this.getConnection(false);
+            for (String query : this.getRecordTableInitQueries(tenantId, tableName, partition)) {
+                this.executeUpdate(conn, query);
+            }
+            conn.commit();
+            if (this.getPromotedColumns(tableName).size() > 0) {
+                this.promotedColumnTables.add(this.generatePartitionTableName(tenantId, tableName, partition));
+            }
+        } catch (SQLException e) {
+            RDBMSUtils.rollbackConnection(conn);
+            /* the partition may have been created by another node */
+            if (!this.lookupTargetTable(this.generatePartitionTableName(tenantId, tableName, partition))) {
+                throw new AnalyticsException("Error in creating table partition: " + e.getMessage(), e);
+            }
+        } finally {
+            RDBMSUtils.cleanupConnection(null, null, conn);
+        }
+        partitions.add(partition);
+        /* lets the other nodes reload the partitions of the table */
+        this.publishTableChange(tenantId, tableName);
+    }
+    
+    private void dropPartition(int tenantId, String tableName, long partition) throws AnalyticsException {
+        NavigableSet<Long> partitions = this.tablePartitions.get(this.generateTargetTableName(tenantId, tableName));
+        if (partitions != null) {
+            partitions.remove(partition);
+        }
+        this.promotedColumnTables.remove(this.generatePartitionTableName(tenantId, tableName, partition));
+        Connection conn = null;
+        try {
+            conn = this.getConnection(false);
+            for (String query : this.getRecordTableDeleteQueries(tenantId, tableName, partition)) {
+                this.executeUpdate(conn, query);
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            RDBMSUtils.rollbackConnection(conn);
+            if (this.lookupTargetTable(this.generatePartitionTableName(tenantId, tableName, partition))) {
+                if (partitions != null) {
+                    partitions.add(partition);
+                }
+                throw new AnalyticsException("Error in dropping table partition: " + e.getMessage(), e);
+            }
+        } finally {
+            RDBMSUtils.cleanupConnection(null, null, conn);
+        }
+    }
+    
+    private Map<Integer, Set<String>> getTableCatalog() throws AnalyticsException {
+        Map<Integer, Set<String>> catalog = this.tableCatalog;
+        if (catalog == null) {
+            synchronized (this) {
+                catalog = this.tableCatalog;
+                if (catalog == null) {
+                    catalog = this.loadTableCatalog();
+                    this.tableCatalog = catalog;
+                }
+            }
+        }
+        return catalog;
+    }
+    
+    private Map<Integer, Set<String>> loadTableCatalog() throws AnalyticsException {
+        if (this.isConsolidatedLayout()) {
+            return this.loadConsolidatedTableCatalog();
+        }
+        Map<Integer, Set<String>> result = new ConcurrentHashMap<Integer, Set<String>>();
+        String prefix = this.normalizeTableName(ANALYTICS_USER_TABLE_PREFIX + "_");
+        Connection conn = null;
+        ResultSet rs = null;
+        String name;
+        int index;
+        try {
+            conn = this.getConnection();
+            DatabaseMetaData dbm = conn.getMetaData();
+            rs = dbm.getTables(null, null, "%", null);
+            while (rs.next()) {
+                name = this.normalizeTableName(rs.getString("TABLE_NAME"));
+                if (!name.startsWith(prefix) || this.isPartitionTableName(name)) {
+                    continue;
+                }
+                /* the table names are in the form ANX_[tenantId]_[tableName], or ANX_X[-tenantId]_[tableName] */
+                index = name.indexOf('_', prefix.length());
+                if (index == -1) {
+                    continue;
+                }
+                String tenantPart = name.substring(prefix.length(), index);
+                int tenantId;
+                try {
+                    if (tenantPart.startsWith("X")) {
+                        tenantId = -Integer.parseInt(tenantPart.substring(1));
+                    } else {
+                        tenantId = Integer.parseInt(tenantPart);
+                    }
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                this.getCatalogTables(result, tenantId).add(name.substring(index + 1));
+            }
+            return result;
+        } catch (SQLException e) {
+            throw new AnalyticsException("Error in loading the table catalog: " + e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(rs, null, conn);
+        }
+    }
+    
+    private Set<String> getCatalogTables(Map<Integer, Set<String>> catalog, int tenantId) {
+        Set<String> tables = catalog.get(tenantId);
+        if (tables == null) {
+            tables = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+            catalog.put(tenantId, tables);
+        }
+        return tables;
+    }
+    
+    private synchronized long getTableCatalogModificationCount() {
+        return tableCatalogModificationCount;
+    }
+    
+    private synchronized void addToTableCatalog(int tenantId, String tableName, long modCount) {
+        if (this.tableCatalog == null || modCount != this.tableCatalogModificationCount) {
+            return;
+        }
+        this.getCatalogTables(this.tableCatalog, tenantId).add(this.normalizeTableName(tableName));
+    }
+    
+    private synchronized void removeFromTableCatalog(int tenantId, String tableName) {
+        this.tableCatalogModificationCount++;
+        if (this.tableCatalog == null) {
+            return;
+        }
+        Set<String> tables = this.tableCatalog.get(tenantId);
+        if (tables != null) {
+            tables.remove(this.normalizeTableName(tableName));
+        }
+    }
+    
+    private void publishTableChange(int tenantId, String tableName) {
+        InvalidationPublisher publisher = this.tableCatalogInvalidationPublisher;
+        if (publisher != null) {
+            publisher.publish(tenantId, tableName);
+        }
+    }
+    
+    @Override
+    public void invalidateTable(int tenantId, String tableName) {
+        this.invalidateTranslatedQueries(tenantId, tableName);
+        this.removeFromTableCatalog(tenantId, tableName);
+        this.tablePartitions.remove(this.generateTargetTableName(tenantId, tableName));
+        this.tableIds.remove(this.generateTargetTableName(tenantId, tableName));
+        this.invalidatePromotedColumnTables(tenantId, tableName);
+        try {
+            /* brings the table back to the catalog, if it was created */
+            this.tableExists(tenantId, tableName);
+        } catch (AnalyticsException e) {
+            /* the table will be looked up again on its next use */
+        }
+    }
+    
+    @Override
+    public synchronized void invalidateTableCatalog() {
+        this.tableCatalogModificationCount++;
+        this.tableCatalog = null;
+        this.tablePartitions.clear();
+        this.tableIds.clear();
+        this.promotedColumnTables.clear();
+    }
+    
+    @Override
+    public void setTableCatalogInvalidationPublisher(InvalidationPublisher invalidationPublisher) {
+        this.tableCatalogInvalidationPublisher = invalidationPublisher;
+    }
+
+    private String getRecordCountQuery(int tenantId, String tableName, 
+            long partition) throws AnalyticsException {
+        return this.getTranslatedQuery(QueryKind.RECORD_COUNT, tenantId, tableName, partition, 0);
+    }
+    
+    private String printableTableName(int tenantId, String tableName) {
+        return "[" + tenantId + ":" + tableName + "]";
+    }
+    
+    @Override
+    public long getRecordCount(int tenantId, String tableName) 
+            throws AnalyticsException, AnalyticsTableNotAvailableException {
+        long count = 0;
+        for (long partition : this.getPartitions(tenantId, tableName, Long.MIN_VALUE, Long.MAX_VALUE)) {
+            count += this.getPartitionRecordCount(tenantId, tableName, partition);
+        }
+        return count;
+    }
+    
+    private long getPartitionRecordCount(int tenantId, String tableName, long partition) 
+            throws AnalyticsException, AnalyticsTableNotAvailableException {
+        String recordCountQuery = this.getRecordCountQuery(tenantId, tableName, partition);
+        Connection conn = null;
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = this.getConnection();
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery(recordCountQuery);
+            if (rs.next()) {
+                return rs.getLong(1);
+            } else {
+                throw new AnalyticsException("Record count not available for " + 
+                        printableTableName(tenantId, tableName));
+            }
+        } catch (SQLException e) {
+            if (!this.tableExists(tenantId, tableName)) {
+                throw new AnalyticsTableNotAvailableException(tenantId, tableName);
+            }
+            throw new AnalyticsException("Error in retrieving record count: " + e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(rs, stmt, conn);
+        }
+    }
+    
+    /**
+     * The kinds of the queries done on the record tables.
+     */
+    private static enum QueryKind {
+        RECORD_INSERT,
+        RECORD_MERGE,
+        RECORD_RETRIEVAL,
+        RECORD_RETRIEVAL_WITH_CONTINUATION,
+        RECORD_RETRIEVAL_WITH_IDS,
+        RECORD_RETRIEVAL_WITH_PREDICATES,
+        RECORD_AGGREGATION,
+        RECORD_DELETION,
+        RECORD_DELETION_WITH_IDS,
+        RECORD_COUNT,
+        RECORD_TIME_RANGE_STATS,
+        RECORD_TIME_HISTOGRAM
+    }
+    
+    /**
+     * This class represents the key of a translated query in the query cache.
+     */
+    private static class QueryCacheKey {
+        
+        private QueryKind kind;
+        
+        private int tenantId;
+        
+        private String tableName;
+        
+        private long partition;
+        
+        private int recordIdCount;
+        
+        public QueryCacheKey(QueryKind kind, int tenantId, String tableName, long partition, int recordIdCount) {
+            this.kind = kind;
+            this.tenantId = tenantId;
+            this.tableName = tableName;
+            this.partition = partition;
+            this.recordIdCount = recordIdCount;
+        }
+        
+        @Override
+        public int hashCode() {
+            return (((this.kind.hashCode() * 31 + this.tenantId) * 31 + this.tableName.hashCode()) * 31 + 
+                    (int) (this.partition ^ (this.partition >>> 32))) * 31 + this.recordIdCount;
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof QueryCacheKey)) {
+                return false;
+            }
+            QueryCacheKey rhs = (QueryCacheKey) obj;
+            return this.kind == rhs.kind && this.tenantId == rhs.tenantId && this.partition == rhs.partition && 
+                    this.recordIdCount == rhs.recordIdCount && this.tableName.equals(rhs.tableName);
+        }
+        
+    }
+    
+    /**
+     * This class represents a record iterator over the partitions of a partitioned table, which reads the 
+     * partitions one after the other, so only a single database cursor is open at a time.
+     */
+    private abstract class RDBMSPartitionedRecordIterator implements Iterator<Record> {
+        
+        private Iterator<Long> partitionItr;
+        
+        private Iterator<Record> currentPartition;
+        
+        private int remainingCount;
+        
+        public RDBMSPartitionedRecordIterator(List<Long> partitions, int recordsCount) {
+            this.partitionItr = partitions.iterator();
+            this.remainingCount = recordsCount;
+        }
+        
+        /**
+         * Reads the records of a partition.
+         * @param partition The partition
+         * @param recordsCount The maximum number of records to be read from the partition
+         * @return The records of the partition
+         * @throws AnalyticsException
+         */
+        protected abstract Iterator<Record> readPartition(long partition, 
+                int recordsCount) throws AnalyticsException;
+        
+        @Override
+        public boolean hasNext() {
+            if (this.remainingCount <= 0) {
+                return false;
+            }
+            while (this.currentPartition == null || !this.currentPartition.hasNext()) {
+                if (!this.partitionItr.hasNext()) {
+                    return false;
+                }
+                try {
+                    this.currentPartition = this.readPartition(this.partitionItr.next(), this.remainingCount);
+                } catch (AnalyticsException e) {
+                    throw new RuntimeException(e.getMessage(), e);
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Record next() {
+            if (!this.hasNext()) {
+                return null;
+            }
+            Record record = this.currentPartition.next();
+            this.remainingCount--;
+            if (this.remainingCount == 0) {
+                /* the partition's records are limited to the remaining count, so this reaches the end of its
+                 * result set, and lets it be cleaned up */
+                this.currentPartition.hasNext();
+            }
+            return record;
+        }
+        
+        /**
+         * Releases the database resources of the current partition, before its end is reached.
+         */
+        public void close() {
+            if (this.currentPartition != null) {
+                closeRecords(this.currentPartition);
+            }
+        }
+
+        @Override
+        public void remove() {
+            /* this is a read-only iterator, nothing will be removed */
+        }
+        
+    }
+    
+    /**
+     * This class reads the records of a partition, which match a set of predicates, in two parts. The records 
+     * of the current promoted version are filtered on the promoted columns in the database, and then the rest 
+     * of the records, e.g. the ones whose values are not filled in yet, are filtered in memory.
+     */
+    private class RDBMSPredicateRecordIterator implements Iterator<Record> {
+        
+        private int tenantId;
+        
+        private String tableName;
+        
+        private List<String> columns;
+        
+        private long partition;
+        
+        private long timeFrom;
+        
+        private long timeTo;
+        
+        private Map<RecordPredicate, PromotedColumn> sqlPredicates;
+        
+        private List<RecordPredicate> otherPredicates;
+        
+        private List<RecordPredicate> predicates;
+        
+        private int remainingCount;
+        
+        private Iterator<Record> currentPart;
+        
+        private boolean inexactPart;
+        
+        public RDBMSPredicateRecordIterator(int tenantId, String tableName, List<String> columns, long partition, 
+                long timeFrom, long timeTo, Map<RecordPredicate, PromotedColumn> sqlPredicates, 
+                List<RecordPredicate> otherPredicates, List<RecordPredicate> predicates, int recordsCount) {
+            this.tenantId = tenantId;
+            this.tableName = tableName;
+            this.columns = columns;
+            this.partition = partition;
+            this.timeFrom = timeFrom;
+            this.timeTo = timeTo;
+            this.sqlPredicates = sqlPredicates;
+            this.otherPredicates = otherPredicates;
+            this.predicates = predicates;
+            this.remainingCount = recordsCount;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            if (this.remainingCount <= 0) {
+                return false;
+            }
+            while (this.currentPart == null || !this.currentPart.hasNext()) {
+                if (this.inexactPart) {
+                    return false;
+                }
+                try {
+                    if (this.currentPart == null) {
+                        this.currentPart = getPartitionRecordsWithPredicates(this.tenantId, this.tableName, 
+                                this.columns, this.partition, this.timeFrom, this.timeTo, this.sqlPredicates, 
+                                this.otherPredicates, true, this.remainingCount);
+                    } else {
+                        Map<RecordPredicate, PromotedColumn> noPredicates = Collections.emptyMap();
+                        this.currentPart = getPartitionRecordsWithPredicates(this.tenantId, this.tableName, 
+                                this.columns, this.partition, this.timeFrom, this.timeTo, noPredicates, 
+                                this.predicates, false, this.remainingCount);
+                        this.inexactPart = true;
+                    }
+                } catch (AnalyticsException e) {
+                    throw new RuntimeException(e.getMessage(), e);
+                }
+            }
+            return true;
+        }
+        
+        @Override
+        public Record next() {
+            if (!this.hasNext()) {
+                return null;
+            }
+            Record record = this.currentPart.next();
+            this.remainingCount--;
+            if (this.remainingCount == 0) {
+                /* lets the result set of the current part be cleaned up, as with the partitions */
+                this.currentPart.hasNext();
+            }
+            return record;
+        }
+        
+        public void close() {
+            if (this.currentPart != null) {
+                closeRecords(this.currentPart);
+            }
+        }
+        
+        @Override
+        public void remove() {
+            /* this is a read-only iterator, nothing will be removed */
+        }
+        
+    }
+    
+    /**
+     * This class represents a paginated record iterator over the time range of a partitioned table. The
+     * partitions before the first requested record are skipped by their record counts where possible, 
+     * rather than reading in their records.
+     */
+    private class RDBMSPartitionedRangeRecordIterator extends RDBMSPartitionedRecordIterator {
+        
+        private int tenantId;
+        
+        private String tableName;
+        
+        private List<String> columns;
+        
+        private long timeFrom;
+        
+        private long timeTo;
+        
+        private int skipCount;
+        
+        public RDBMSPartitionedRangeRecordIterator(int tenantId, String tableName, List<String> columns, 
+                List<Long> partitions, long timeFrom, long timeTo, int recordsFrom, int recordsCount) {
+            super(partitions, recordsCount);
+            this.tenantId = tenantId;
+            this.tableName = tableName;
+            this.columns = columns;
+            this.timeFrom = timeFrom;
+            this.timeTo = timeTo;
+            this.skipCount = recordsFrom;
+        }
+        
+        @Override
+        protected Iterator<Record> readPartition(long partition, int recordsCount) throws AnalyticsException {
+            if (this.skipCount > 0 && getQueryConfiguration().getRecordTimeRangeStatsQuery() != null) {
+                long count = lookupTimeRangeStats(this.tenantId, this.tableName, partition, this.timeFrom, 
+                        this.timeTo)[2];
+                if (count <= this.skipCount) {
+                    this.skipCount -= count;
+                    return Collections.<Record>emptyIterator();
+                }
+                Iterator<Record> result = getPartitionRecords(this.tenantId, this.tableName, this.columns, 
+                        partition, this.timeFrom, this.timeTo, this.skipCount, recordsCount);
+                this.skipCount = 0;
+                return result;
+            }
+            Iterator<Record> result = getPartitionRecords(this.tenantId, this.tableName, this.columns, partition, 
+                    this.timeFrom, this.timeTo, 0, (int) Math.min((long) recordsCount + this.skipCount, 
+                            Integer.MAX_VALUE));
+            while (this.skipCount > 0 && result.hasNext()) {
+                result.next();
+                this.skipCount--;
+            }
+            return result;
+        }
+        
+    }
+    
+    /**
+     * This class represents a record iterator, which reads the records with the given ids in batches, 
+     * since the size of a single IN query is bounded.
+     */
+    private class RDBMSRecordIdBatchIterator implements Iterator<Record> {
+        
+        private int tenantId;
+        
+        private String tableName;
+        
+        private List<String> columns;
+        
+        private List<String> ids;
+        
+        private int index;
+        
+        private Iterator<Record> currentBatch;
+        
+        public RDBMSRecordIdBatchIterator(int tenantId, String tableName, List<String> columns, 
+                List<String> ids) {
+            this.tenantId = tenantId;
+            this.tableName = tableName;
+            this.columns = columns;
+            this.ids = ids;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            while (this.currentBatch == null || !this.currentBatch.hasNext()) {
+                if (this.index >= this.ids.size()) {
+                    return false;
+                }
+                int end = Math.min(this.index + MAX_RECORD_ID_BATCH_SIZE, this.ids.size());
+                try {
+                    this.currentBatch = getRecordsBatch(this.tenantId, this.tableName, this.columns, 
+                            this.ids.subList(this.index, end));
+                } catch (AnalyticsException e) {
+                    throw new RuntimeException(e.getMessage(), e);
+                }
+                this.index = end;
+            }
+            return true;
+        }
+
+        @Override
+        public Record next() {
+            if (!this.hasNext()) {
+                return null;
+            }
+            return this.currentBatch.next();
+        }
+
+        @Override
+        public void remove() {
+            /* this is a read-only iterator, nothing will be removed */
+        }
+        
+    }
+    
+    /**
+     * This class represents a record iterator, which reads the records in fixed size pages, each page 
+     * continuing from the last record of the previous one. This keeps the database cursors short lived, 
+     * while the cost of each page stays the same.
+     */
+    private class RDBMSPagedRecordIterator implements Iterator<Record> {
+        
+        private int tenantId;
+        
+        private String tableName;
+        
+        private List<String> columns;
+        
+        private long timeFrom;
+        
+        private long timeTo;
+        
+        private RecordContinuationToken token;
+        
+        private int remainingCount;
+        
+        private int pageSize;
+        
+        private Iterator<Record> currentPage;
+        
+        private int currentPageCount;
+        
+        private int currentPageSize;
+        
+        private boolean finished;
+        
+        public RDBMSPagedRecordIterator(int tenantId, String tableName, List<String> columns, long timeFrom, 
+                long timeTo, RecordContinuationToken token, int recordsCount, int pageSize) {
+            this.tenantId = tenantId;
+            this.tableName = tableName;
+            this.columns = columns;
+            this.timeFrom = timeFrom;
+            this.timeTo = timeTo;
+            this.token = token;
+            this.remainingCount = recordsCount;
+            this.pageSize = pageSize;
+        }
+        
+        @Override
+        public boolean hasNext() {
+            while (!this.finished) {
+                if (this.currentPage == null) {
+                    if (this.remainingCount <= 0) {
+                        this.finished = true;
+                        break;
+                    }
+                    this.currentPageSize = Math.min(this.pageSize, this.remainingCount);
+                    this.currentPageCount = 0;
+                    try {
+                        this.currentPage = getRecordsPage(this.tenantId, this.tableName, this.columns, 
+                                this.timeFrom, this.timeTo, this.token, this.currentPageSize);
+                    } catch (AnalyticsException e) {
+                        throw new RuntimeException(e.getMessage(), e);
+                    }
+                }
+                if (this.currentPage.hasNext()) {
+                    return true;
+                }
+                /* a partially filled page is the last one */
+                if (this.currentPageCount < this.currentPageSize) {
+                    this.finished = true;
+                }
+                this.currentPage = null;
+            }
+            return false;
+        }
+
+        @Override
+        public Record next() {
+            if (!this.hasNext()) {
+                return null;
+            }
+            Record record = this.currentPage.next();
+            this.currentPageCount++;
+            this.remainingCount--;
+            this.token = new RecordContinuationToken(record.getTimestamp(), record.getId());
+            return record;
+        }
+
+        @Override
+        public void remove() {
+            /* this is a read-only iterator, nothing will be removed */
+        }
+        
+    }
+    
+    /**
+     * This class represents the {@link ColumnDictionary.Store} of a record table, the dictionaries of all the 
+     * tables are kept in a single shared table.
+     */
+    private class RDBMSColumnDictionaryStore implements ColumnDictionary.Store {
+        
+        private String targetTableName;
+        
+        public RDBMSColumnDictionaryStore(String targetTableName) {
+            this.targetTableName = targetTableName;
+        }
+
+        @Override
+        public Map<Integer, String> load() throws AnalyticsException {
+            Map<Integer, String> result = new HashMap<Integer, String>();
+            Connection conn = null;
+            PreparedStatement stmt = null;
+            ResultSet rs = null;
+            try {
+                conn = getConnection();
+                stmt = conn.prepareStatement(getQueryConfiguration().getRecordColumnDictionaryRetrievalQuery());
+                stmt.setString(1, this.targetTableName);
+                rs = stmt.executeQuery();
+                while (rs.next()) {
+                    result.put(rs.getInt(1), rs.getString(2));
+                }
+                return result;
+            } catch (SQLException e) {
+                throw new AnalyticsException("Error in loading the column dictionary of " + 
+                        this.targetTableName + ": " + e.getMessage(), e);
+            } finally {
+                RDBMSUtils.cleanupConnection(rs, stmt, conn);
+            }
+        }
+
+        @Override
+        public boolean add(int id, String name) throws AnalyticsException {
+            Connection conn = null;
+            PreparedStatement stmt = null;
+            try {
+                conn = getConnection();
+                stmt = conn.prepareStatement(getQueryConfiguration().getRecordColumnDictionaryInsertQuery());
+                stmt.setString(1, this.targetTableName);
+                stmt.setInt(2, id);
+                stmt.setString(3, name);
+                stmt.executeUpdate();
+                return true;
+            } catch (SQLException e) {
+                /* the id was taken by another node, which the dictionary checks by reloading */
+                if (RDBMSUtils.isUniqueKeyViolation(e)) {
+                    return false;
+                }
+                throw new AnalyticsException("Error in adding column: " + e.getMessage(), e);
+            } finally {
+                RDBMSUtils.cleanupConnection(null, stmt, conn);
+            }
+        }
+        
+    }
+    
+    /**
+     * This class creates record batches from the encoded records of the RDBMS result set iterators, by decoding 
+     * their values straight into the column vectors.
+     */
+    private class RDBMSRecordBatchIterator extends RecordBatchIterator {
+        
+        private RecordValuesDecoder decoder;
+        
+        public RDBMSRecordBatchIterator(Iterator<Record> recordItr, RecordValuesDecoder decoder, int batchSize) {
+            super(recordItr, decoder.getColumns(), batchSize);
+            this.decoder = decoder;
+        }
+        
+        @Override
+        protected void add(RecordBatchBuilder builder, Record record) {
+            byte[] data = null;
+            if (record instanceof EncodedRecord) {
+                data = ((EncodedRecord) record).getEncodedValues();
+            }
+            if (data == null) {
+                builder.add(record);
+                return;
+            }
+            builder.addRecord(record.getId(), record.getTimestamp());
+            try {
+                this.decoder.decode(data, builder);
+            } catch (AnalyticsException e) {
+                throw new RuntimeException(e.getMessage(), e);
+            }
+        }
+        
+    }
+    
+    /**
+     * This class represents the RDBMS result set iterator, which will stream the result records out.
+     */
+    private class RDBMSResultSetIterator implements Iterator<Record> {
+
+        private int tenantId;
+        
+        private String tableName;
+        
+        private RecordValuesDecoder decoder;
+        
+        private Connection conn;
+        
+        private Statement stmt;
+        
+        private ResultSet rs;
+        
         private Record nextValue;
         
         private boolean prefetched;
         
         public RDBMSResultSetIterator(int tenantId, String tableName, List<String> columns, 
-                Connection conn, Statement stmt, ResultSet rs) {
+                ColumnDictionary dictionary, Connection conn, Statement stmt, ResultSet rs) {
             this.tenantId = tenantId;
             this.tableName = tableName;
-            this.columns = columns;
+            /* the decoder is shared by all the records, so it resolves the columns once */
+            if (columns != null && columns.size() > 0) {
+                this.decoder = new RecordValuesDecoder(columns, dictionary);
+            } else {
+                this.decoder = new RecordValuesDecoder(null, dictionary);
+            }
             this.conn = conn;
             this.stmt = stmt;
             this.rs = rs;
@@ -649,15 +3338,12 @@ public class RDBMSAnalyticsRecordStore extends DirectAnalyticsRecordStore {
                 this.nextValue = null;
                 return result;
             }
-            Set<String> colSet = null;
-            if (this.columns != null && this.columns.size() > 0) {
-                colSet = new HashSet<String>(this.columns);
-            }
             try {
                 if (this.rs.next()) {
                     Blob blob = this.rs.getBlob(3);
-                    Map<String, Object> values = GenericUtils.decodeRecordValues(blob.getBytes(1, (int) blob.length()), colSet);
-                    return new Record(this.rs.getString(1), this.tenantId, this.tableName, values, this.rs.getLong(2));                
+                    /* the values are decoded only when they are looked up */
+                    return new EncodedRecord(this.rs.getString(1), this.tenantId, this.tableName, 
+                            blob.getBytes(1, (int) blob.length()), this.rs.getLong(2), this.decoder);
                 } else {
                     /* end of the result set, time to clean up.. */
                     RDBMSUtils.cleanupConnection(this.rs, this.stmt, this.conn);
@@ -667,6 +3353,13 @@ public class RDBMSAnalyticsRecordStore extends DirectAnalyticsRecordStore {
                 throw new RuntimeException(e.getMessage(), e);
             }
         }
+        
+        /**
+         * Releases the database resources before the end of the result set is reached.
+         */
+        public void close() {
+            RDBMSUtils.cleanupConnection(this.rs, this.stmt, this.conn);
+        }
 
         @Override
         public void remove() {
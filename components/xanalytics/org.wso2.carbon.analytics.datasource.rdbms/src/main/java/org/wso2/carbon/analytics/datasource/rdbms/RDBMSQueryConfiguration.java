@@ -28,6 +28,8 @@ import javax.xml.bind.annotation.XmlRootElement;
 public class RDBMSQueryConfiguration {
 
     private RDBMSQueryConfigurationEntry[] databases;
+    
+    private RecordTableLayout recordTableLayout;
         
     @XmlElement (name = "database")
     public RDBMSQueryConfigurationEntry[] getDatabases() {
@@ -37,5 +39,16 @@ public class RDBMSQueryConfiguration {
     public void setDatabases(RDBMSQueryConfigurationEntry[] databases) {
         this.databases = databases;
     }
+    
+    /**
+     * Returns the record table layout of the deployment, the database sections of this layout are used.
+     */
+    public RecordTableLayout getRecordTableLayout() {
+        return recordTableLayout;
+    }
+    
+    public void setRecordTableLayout(RecordTableLayout recordTableLayout) {
+        this.recordTableLayout = recordTableLayout;
+    }
 
 }
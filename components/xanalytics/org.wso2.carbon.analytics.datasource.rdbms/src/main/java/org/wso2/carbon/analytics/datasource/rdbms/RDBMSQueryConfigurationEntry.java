@@ -31,6 +31,24 @@ public class RDBMSQueryConfigurationEntry {
 
     private String databaseName;
     
+    private RecordTableLayout recordTableLayout;
+    
+    private int consolidatedRecordTableCount;
+    
+    private String[] recordTableCatalogInitQueries;
+    
+    private String recordTableCatalogCheckQuery;
+    
+    private String recordTableCatalogRetrievalQuery;
+    
+    private String recordTableCatalogLookupQuery;
+    
+    private String recordTableCatalogMaxIdQuery;
+    
+    private String recordTableCatalogInsertQuery;
+    
+    private String recordTableCatalogDeleteQuery;
+    
     private String[] recordTableInitQueries;
     
     private String[] recordTableDeleteQueries;
@@ -43,6 +61,8 @@ public class RDBMSQueryConfigurationEntry {
     
     private String recordInsertQuery;
     
+    private String recordMergeQuery;
+    
     private String recordRetrievalQuery;
     
     private String recordDeletionQuery;
@@ -50,6 +70,40 @@ public class RDBMSQueryConfigurationEntry {
     private String recordRetrievalWithIdsQuery;
     
     private String recordDeletionWithIdsQuery;
+    
+    private String recordRetrievalWithContinuationQuery;
+    
+    private int recordRetrievalPageSize;
+    
+    private String recordTimeRangeStatsQuery;
+    
+    private String recordTimeHistogramQuery;
+    
+    private String[] recordColumnDictionaryInitQueries;
+    
+    private String recordColumnDictionaryCheckQuery;
+    
+    private String recordColumnDictionaryRetrievalQuery;
+    
+    private String recordColumnDictionaryInsertQuery;
+    
+    private String recordRetrievalWithPredicatesQuery;
+    
+    private String recordAggregationQuery;
+    
+    private String promotedColumnAddQuery;
+    
+    private String promotedColumnIndexQuery;
+    
+    private String promotedColumnStringType;
+    
+    private String promotedColumnIntegerType;
+    
+    private String promotedColumnLongType;
+    
+    private String promotedColumnDoubleType;
+    
+    private String promotedColumnBooleanType;
         
     private boolean paginationFirstZeroIndexed;
     
@@ -80,6 +134,10 @@ public class RDBMSQueryConfigurationEntry {
     private String fsDeletePathQuery;
     
     private int fsDataChunkSize;
+    
+    private String fsReadDataChunkRangeQuery;
+    
+    private int fsDataChunkReadAheadCount;
 
     public void setDatabaseName(String databaseName) {
         this.databaseName = databaseName;
@@ -90,6 +148,88 @@ public class RDBMSQueryConfigurationEntry {
         return databaseName;
     }
     
+    public void setRecordTableLayout(RecordTableLayout recordTableLayout) {
+        this.recordTableLayout = recordTableLayout;
+    }
+    
+    /**
+     * Returns the record table layout the queries of this entry are written for, the default is 
+     * {@link RecordTableLayout#SEPARATE}.
+     */
+    @XmlAttribute (name = "recordTableLayout")
+    public RecordTableLayout getRecordTableLayout() {
+        if (recordTableLayout == null) {
+            return RecordTableLayout.SEPARATE;
+        }
+        return recordTableLayout;
+    }
+    
+    public int getConsolidatedRecordTableCount() {
+        return consolidatedRecordTableCount;
+    }
+    
+    public void setConsolidatedRecordTableCount(int consolidatedRecordTableCount) {
+        this.consolidatedRecordTableCount = consolidatedRecordTableCount;
+    }
+    
+    @XmlElementWrapper (name = "recordTableCatalogInitQueries")
+    @XmlElement (name = "query")
+    public String[] getRecordTableCatalogInitQueries() {
+        return recordTableCatalogInitQueries;
+    }
+    
+    public void setRecordTableCatalogInitQueries(String[] recordTableCatalogInitQueries) {
+        this.recordTableCatalogInitQueries = recordTableCatalogInitQueries;
+    }
+    
+    public String getRecordTableCatalogCheckQuery() {
+        return recordTableCatalogCheckQuery;
+    }
+    
+    public void setRecordTableCatalogCheckQuery(String recordTableCatalogCheckQuery) {
+        this.recordTableCatalogCheckQuery = recordTableCatalogCheckQuery;
+    }
+    
+    public String getRecordTableCatalogRetrievalQuery() {
+        return recordTableCatalogRetrievalQuery;
+    }
+    
+    public void setRecordTableCatalogRetrievalQuery(String recordTableCatalogRetrievalQuery) {
+        this.recordTableCatalogRetrievalQuery = recordTableCatalogRetrievalQuery;
+    }
+    
+    public String getRecordTableCatalogLookupQuery() {
+        return recordTableCatalogLookupQuery;
+    }
+    
+    public void setRecordTableCatalogLookupQuery(String recordTableCatalogLookupQuery) {
+        this.recordTableCatalogLookupQuery = recordTableCatalogLookupQuery;
+    }
+    
+    public String getRecordTableCatalogMaxIdQuery() {
+        return recordTableCatalogMaxIdQuery;
+    }
+    
+    public void setRecordTableCatalogMaxIdQuery(String recordTableCatalogMaxIdQuery) {
+        this.recordTableCatalogMaxIdQuery = recordTableCatalogMaxIdQuery;
+    }
+    
+    public String getRecordTableCatalogInsertQuery() {
+        return recordTableCatalogInsertQuery;
+    }
+    
+    public void setRecordTableCatalogInsertQuery(String recordTableCatalogInsertQuery) {
+        this.recordTableCatalogInsertQuery = recordTableCatalogInsertQuery;
+    }
+    
+    public String getRecordTableCatalogDeleteQuery() {
+        return recordTableCatalogDeleteQuery;
+    }
+    
+    public void setRecordTableCatalogDeleteQuery(String recordTableCatalogDeleteQuery) {
+        this.recordTableCatalogDeleteQuery = recordTableCatalogDeleteQuery;
+    }
+    
     @XmlElementWrapper (name = "recordTableInitQueries")
     @XmlElement (name = "query")
     public String[] getRecordTableInitQueries() {
@@ -136,6 +276,14 @@ public class RDBMSQueryConfigurationEntry {
         this.recordInsertQuery = recordInsertQuery;
     }
     
+    public String getRecordMergeQuery() {
+        return recordMergeQuery;
+    }
+    
+    public void setRecordMergeQuery(String recordMergeQuery) {
+        this.recordMergeQuery = recordMergeQuery;
+    }
+    
     public String getRecordRetrievalQuery() {
         return recordRetrievalQuery;
     }
@@ -168,6 +316,38 @@ public class RDBMSQueryConfigurationEntry {
         this.recordDeletionWithIdsQuery = recordDeletionWithIdsQuery;
     }
 
+    public String getRecordRetrievalWithContinuationQuery() {
+        return recordRetrievalWithContinuationQuery;
+    }
+
+    public void setRecordRetrievalWithContinuationQuery(String recordRetrievalWithContinuationQuery) {
+        this.recordRetrievalWithContinuationQuery = recordRetrievalWithContinuationQuery;
+    }
+
+    public int getRecordRetrievalPageSize() {
+        return recordRetrievalPageSize;
+    }
+
+    public void setRecordRetrievalPageSize(int recordRetrievalPageSize) {
+        this.recordRetrievalPageSize = recordRetrievalPageSize;
+    }
+
+    public String getRecordTimeRangeStatsQuery() {
+        return recordTimeRangeStatsQuery;
+    }
+
+    public void setRecordTimeRangeStatsQuery(String recordTimeRangeStatsQuery) {
+        this.recordTimeRangeStatsQuery = recordTimeRangeStatsQuery;
+    }
+
+    public String getRecordTimeHistogramQuery() {
+        return recordTimeHistogramQuery;
+    }
+
+    public void setRecordTimeHistogramQuery(String recordTimeHistogramQuery) {
+        this.recordTimeHistogramQuery = recordTimeHistogramQuery;
+    }
+
     public boolean isPaginationFirstZeroIndexed() {
         return paginationFirstZeroIndexed;
     }
@@ -280,6 +460,22 @@ public class RDBMSQueryConfigurationEntry {
         this.fsDataChunkSize = fsDataChunkSize;
     }
     
+    public String getFsReadDataChunkRangeQuery() {
+        return fsReadDataChunkRangeQuery;
+    }
+
+    public void setFsReadDataChunkRangeQuery(String fsReadDataChunkRangeQuery) {
+        this.fsReadDataChunkRangeQuery = fsReadDataChunkRangeQuery;
+    }
+
+    public int getFsDataChunkReadAheadCount() {
+        return fsDataChunkReadAheadCount;
+    }
+
+    public void setFsDataChunkReadAheadCount(int fsDataChunkReadAheadCount) {
+        this.fsDataChunkReadAheadCount = fsDataChunkReadAheadCount;
+    }
+    
     public String getFsUpdateDataChunkQuery() {
         return fsUpdateDataChunkQuery;
     }
@@ -296,4 +492,110 @@ public class RDBMSQueryConfigurationEntry {
         this.recordCountQuery = recordCountQuery;
     }
     
+    @XmlElementWrapper (name = "recordColumnDictionaryInitQueries")
+    @XmlElement (name = "query")
+    public String[] getRecordColumnDictionaryInitQueries() {
+        return recordColumnDictionaryInitQueries;
+    }
+    
+    public void setRecordColumnDictionaryInitQueries(String[] recordColumnDictionaryInitQueries) {
+        this.recordColumnDictionaryInitQueries = recordColumnDictionaryInitQueries;
+    }
+    
+    public String getRecordColumnDictionaryCheckQuery() {
+        return recordColumnDictionaryCheckQuery;
+    }
+    
+    public void setRecordColumnDictionaryCheckQuery(String recordColumnDictionaryCheckQuery) {
+        this.recordColumnDictionaryCheckQuery = recordColumnDictionaryCheckQuery;
+    }
+    
+    public String getRecordColumnDictionaryRetrievalQuery() {
+        return recordColumnDictionaryRetrievalQuery;
+    }
+    
+    public void setRecordColumnDictionaryRetrievalQuery(String recordColumnDictionaryRetrievalQuery) {
+        this.recordColumnDictionaryRetrievalQuery = recordColumnDictionaryRetrievalQuery;
+    }
+    
+    public String getRecordColumnDictionaryInsertQuery() {
+        return recordColumnDictionaryInsertQuery;
+    }
+    
+    public void setRecordColumnDictionaryInsertQuery(String recordColumnDictionaryInsertQuery) {
+        this.recordColumnDictionaryInsertQuery = recordColumnDictionaryInsertQuery;
+    }
+    
+    public String getRecordRetrievalWithPredicatesQuery() {
+        return recordRetrievalWithPredicatesQuery;
+    }
+    
+    public void setRecordRetrievalWithPredicatesQuery(String recordRetrievalWithPredicatesQuery) {
+        this.recordRetrievalWithPredicatesQuery = recordRetrievalWithPredicatesQuery;
+    }
+    
+    public String getRecordAggregationQuery() {
+        return recordAggregationQuery;
+    }
+    
+    public void setRecordAggregationQuery(String recordAggregationQuery) {
+        this.recordAggregationQuery = recordAggregationQuery;
+    }
+    
+    public String getPromotedColumnAddQuery() {
+        return promotedColumnAddQuery;
+    }
+    
+    public void setPromotedColumnAddQuery(String promotedColumnAddQuery) {
+        this.promotedColumnAddQuery = promotedColumnAddQuery;
+    }
+    
+    public String getPromotedColumnIndexQuery() {
+        return promotedColumnIndexQuery;
+    }
+    
+    public void setPromotedColumnIndexQuery(String promotedColumnIndexQuery) {
+        this.promotedColumnIndexQuery = promotedColumnIndexQuery;
+    }
+    
+    public String getPromotedColumnStringType() {
+        return promotedColumnStringType;
+    }
+    
+    public void setPromotedColumnStringType(String promotedColumnStringType) {
+        this.promotedColumnStringType = promotedColumnStringType;
+    }
+    
+    public String getPromotedColumnIntegerType() {
+        return promotedColumnIntegerType;
+    }
+    
+    public void setPromotedColumnIntegerType(String promotedColumnIntegerType) {
+        this.promotedColumnIntegerType = promotedColumnIntegerType;
+    }
+    
+    public String getPromotedColumnLongType() {
+        return promotedColumnLongType;
+    }
+    
+    public void setPromotedColumnLongType(String promotedColumnLongType) {
+        this.promotedColumnLongType = promotedColumnLongType;
+    }
+    
+    public String getPromotedColumnDoubleType() {
+        return promotedColumnDoubleType;
+    }
+    
+    public void setPromotedColumnDoubleType(String promotedColumnDoubleType) {
+        this.promotedColumnDoubleType = promotedColumnDoubleType;
+    }
+    
+    public String getPromotedColumnBooleanType() {
+        return promotedColumnBooleanType;
+    }
+    
+    public void setPromotedColumnBooleanType(String promotedColumnBooleanType) {
+        this.promotedColumnBooleanType = promotedColumnBooleanType;
+    }
+    
 }
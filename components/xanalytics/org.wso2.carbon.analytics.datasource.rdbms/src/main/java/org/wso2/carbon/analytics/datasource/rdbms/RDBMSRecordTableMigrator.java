@@ -0,0 +1,229 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.rdbms;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+import javax.sql.DataSource;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.Record;
+
+/**
+ * This class migrates the tables of an RDBMS record store from one record table layout to another,
+ * i.e. between the per table physical tables and the consolidated shared tables. The records are
+ * written with updates, so an interrupted migration can be simply run again.
+ */
+public class RDBMSRecordTableMigrator {
+    
+    private static final Log log = LogFactory.getLog(RDBMSRecordTableMigrator.class);
+    
+    private static final int DEFAULT_BATCH_SIZE = 1000;
+    
+    private RDBMSAnalyticsRecordStore source;
+    
+    private RDBMSAnalyticsRecordStore target;
+    
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    
+    public RDBMSRecordTableMigrator(RDBMSAnalyticsRecordStore source, RDBMSAnalyticsRecordStore target) {
+        this.source = source;
+        this.target = target;
+    }
+    
+    /**
+     * Creates a migrator between two layouts of the record store configured with the given properties.
+     * @param properties The record store properties, as given in the analytics data service configuration
+     * @param sourceLayout The current record table layout
+     * @param targetLayout The record table layout to migrate to
+     * @return The record table migrator
+     * @throws AnalyticsException
+     */
+    public static RDBMSRecordTableMigrator create(Map<String, String> properties, 
+            RecordTableLayout sourceLayout, RecordTableLayout targetLayout) throws AnalyticsException {
+        if (sourceLayout == targetLayout) {
+            throw new AnalyticsException("The source and the target record table layouts are the same: " + 
+                    sourceLayout);
+        }
+        return new RDBMSRecordTableMigrator(createRecordStore(properties, sourceLayout), 
+                createRecordStore(properties, targetLayout));
+    }
+    
+    /**
+     * Creates a migrator between two layouts of the record store on the given data source.
+     * @param dataSource The data source
+     * @param properties The record store properties, as given in the analytics data service configuration
+     * @param sourceLayout The current record table layout
+     * @param targetLayout The record table layout to migrate to
+     * @return The record table migrator
+     * @throws AnalyticsException
+     */
+    public static RDBMSRecordTableMigrator create(DataSource dataSource, Map<String, String> properties, 
+            RecordTableLayout sourceLayout, RecordTableLayout targetLayout) throws AnalyticsException {
+        if (sourceLayout == targetLayout) {
+            throw new AnalyticsException("The source and the target record table layouts are the same: " + 
+                    sourceLayout);
+        }
+        return new RDBMSRecordTableMigrator(createRecordStore(dataSource, properties, sourceLayout), 
+                createRecordStore(dataSource, properties, targetLayout));
+    }
+    
+    private static RDBMSAnalyticsRecordStore createRecordStore(Map<String, String> properties, 
+            RecordTableLayout layout) throws AnalyticsException {
+        String dsName = properties.get(RDBMSAnalyticsDSConstants.DATASOURCE);
+        if (dsName == null) {
+            throw new AnalyticsException("The property '" + 
+                    RDBMSAnalyticsDSConstants.DATASOURCE + "' is required");
+        }
+        DataSource ds;
+        try {
+            ds = (DataSource) InitialContext.doLookup(dsName);
+        } catch (NamingException e) {
+            throw new AnalyticsException("Error in looking up data source: " + 
+                    e.getMessage(), e);
+        }
+        return createRecordStore(ds, properties, layout);
+    }
+    
+    private static RDBMSAnalyticsRecordStore createRecordStore(DataSource ds, Map<String, String> properties, 
+            RecordTableLayout layout) throws AnalyticsException {
+        RDBMSAnalyticsRecordStore store = new RDBMSAnalyticsRecordStore(
+                RDBMSUtils.lookupQueryConfigurationEntry(ds, layout));
+        store.init(ds, properties);
+        return store;
+    }
+    
+    public int getBatchSize() {
+        return batchSize;
+    }
+    
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(batchSize, 1);
+    }
+    
+    /**
+     * Copies all the tables of all the tenants from the source record store to the target record store.
+     * @param deleteSource Whether to delete each source table after it is copied
+     * @return The number of records copied
+     * @throws AnalyticsException
+     */
+    public long migrate(boolean deleteSource) throws AnalyticsException {
+        long count = 0;
+        for (int tenantId : this.source.listTenantIds()) {
+            for (String tableName : this.source.listTables(tenantId)) {
+                count += this.migrateTable(tenantId, tableName, deleteSource);
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Copies a single table from the source record store to the target record store.
+     * @param tenantId The tenant id
+     * @param tableName The table name
+     * @param deleteSource Whether to delete the source table after it is copied
+     * @return The number of records copied
+     * @throws AnalyticsException
+     */
+    public long migrateTable(int tenantId, String tableName, boolean deleteSource) throws AnalyticsException {
+        this.target.createTable(tenantId, tableName);
+        Iterator<Record> itr = this.source.getRecords(tenantId, tableName, null, -1, -1, 0, -1);
+        List<Record> batch = new ArrayList<Record>(this.getBatchSize());
+        long count = 0;
+        while (itr.hasNext()) {
+            batch.add(itr.next());
+            if (batch.size() >= this.getBatchSize()) {
+                this.target.update(batch);
+                count += batch.size();
+                batch.clear();
+            }
+        }
+        if (batch.size() > 0) {
+            this.target.update(batch);
+            count += batch.size();
+        }
+        if (deleteSource) {
+            this.source.deleteTable(tenantId, tableName);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Migrated table: " + tableName + " of tenant: " + tenantId + " with " + count + " records");
+        }
+        return count;
+    }
+    
+    /**
+     * Migrates the record tables of a database from the command line, while the servers using it are 
+     * stopped. The RDBMS query configuration is read from the server given with the "carbon.home" 
+     * system property, and the JDBC driver must be in the class path.
+     * <p>
+     * Arguments: source-layout target-layout jdbc-url username password [delete-source] [properties-file], 
+     * where the optional properties file has the record store properties of the analytics data service 
+     * configuration, e.g. the record table partitioning, which must match the server's.
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 5) {
+            System.out.println("Usage: RDBMSRecordTableMigrator <source layout> <target layout> <JDBC URL> " + 
+                    "<username> <password> [delete source: true|false] [record store properties file]");
+            System.out.println("The record table layouts are: " + Arrays.toString(RecordTableLayout.values()));
+            System.exit(1);
+        }
+        RecordTableLayout sourceLayout = RecordTableLayout.valueOf(args[0].trim().toUpperCase());
+        RecordTableLayout targetLayout = RecordTableLayout.valueOf(args[1].trim().toUpperCase());
+        boolean deleteSource = args.length > 5 && Boolean.parseBoolean(args[5].trim());
+        Map<String, String> properties = new HashMap<String, String>();
+        if (args.length > 6) {
+            Properties props = new Properties();
+            InputStream in = new FileInputStream(args[6]);
+            try {
+                props.load(in);
+            } finally {
+                in.close();
+            }
+            for (String name : props.stringPropertyNames()) {
+                properties.put(name, props.getProperty(name));
+            }
+        }
+        PoolProperties pps = new PoolProperties();
+        pps.setUrl(args[2]);
+        pps.setUsername(args[3]);
+        pps.setPassword(args[4]);
+        org.apache.tomcat.jdbc.pool.DataSource ds = new org.apache.tomcat.jdbc.pool.DataSource(pps);
+        try {
+            long count = create(ds, properties, sourceLayout, targetLayout).migrate(deleteSource);
+            System.out.println("Migrated " + count + " records from the " + sourceLayout + " to the " + 
+                    targetLayout + " record table layout");
+        } finally {
+            ds.close();
+        }
+    }
+    
+}
@@ -41,6 +41,14 @@ public class RDBMSUtils {
     
     private static final String RDBMS_QUERY_CONFIG_FILE = "rdbms-query-config.xml";
     
+    private static final String UNIQUE_VIOLATION_SQL_STATE = "23505";
+    
+    private static final String INTEGRITY_CONSTRAINT_VIOLATION_SQL_STATE = "23000";
+    
+    /* the vendor codes of unique key violations, of MySQL, Oracle and SQL Server, which use the 
+     * generic integrity constraint violation SQL state */
+    private static final int[] UNIQUE_VIOLATION_ERROR_CODES = { 1062, 1, 2627, 2601 };
+    
     public static String lookupDatabaseType(DataSource ds) throws AnalyticsException {
         Connection conn = null;
         try {
@@ -56,15 +64,34 @@ public class RDBMSUtils {
     
     public static RDBMSQueryConfigurationEntry lookupCurrentQueryConfigurationEntry(
             DataSource ds) throws AnalyticsException {
+        return lookupQueryConfigurationEntry(ds, null);
+    }
+    
+    /**
+     * Looks up the query configuration entry of the given data source's database, for the given record 
+     * table layout.
+     * @param ds The data source
+     * @param layout The record table layout, or null for the layout set in the query configuration
+     * @return The query configuration entry
+     * @throws AnalyticsException
+     */
+    public static RDBMSQueryConfigurationEntry lookupQueryConfigurationEntry(DataSource ds, 
+            RecordTableLayout layout) throws AnalyticsException {
         String dbType = lookupDatabaseType(ds);
         RDBMSQueryConfiguration qcon = loadQueryConfiguration();
+        if (layout == null) {
+            layout = qcon.getRecordTableLayout();
+        }
+        if (layout == null) {
+            layout = RecordTableLayout.SEPARATE;
+        }
         for (RDBMSQueryConfigurationEntry entry : qcon.getDatabases()) {
-            if (entry.getDatabaseName().equalsIgnoreCase(dbType)) {
+            if (entry.getDatabaseName().equalsIgnoreCase(dbType) && entry.getRecordTableLayout() == layout) {
                 return entry;
             }
         }
         throw new AnalyticsException("Cannot find a database section in the RDBMS "
-                + "query configuration for the database: " + dbType);
+                + "query configuration for the database: " + dbType + ", with the record table layout: " + layout);
     }
     
     public static RDBMSQueryConfiguration loadQueryConfiguration() throws AnalyticsException {
@@ -102,6 +129,26 @@ public class RDBMSUtils {
         }
     }
     
+    /**
+     * Checks if the given exception is caused by a unique or a primary key violation.
+     * @param e The exception
+     * @return true if it is a unique key violation
+     */
+    public static boolean isUniqueKeyViolation(SQLException e) {
+        String state = e.getSQLState();
+        if (UNIQUE_VIOLATION_SQL_STATE.equals(state)) {
+            return true;
+        }
+        if (INTEGRITY_CONSTRAINT_VIOLATION_SQL_STATE.equals(state)) {
+            for (int code : UNIQUE_VIOLATION_ERROR_CODES) {
+                if (e.getErrorCode() == code) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
     public static void rollbackConnection(Connection conn) {
         if (conn != null) {
             try {
@@ -0,0 +1,137 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.rdbms;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * This enum represents the time based partitioning of the physical record tables, where the records of a 
+ * table are kept in a separate physical table for each time bucket. A partition is identified by the start 
+ * time of its bucket in UTC.
+ */
+public enum RecordTablePartitioning {
+    
+    NONE(null, 0),
+    
+    HOURLY("yyyyMMddHH", 3600000L),
+    
+    DAILY("yyyyMMdd", 86400000L),
+    
+    /** months do not have a fixed length, so their boundaries are calculated with a calendar */
+    MONTHLY("yyyyMM", 0);
+    
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+    
+    private String suffixPattern;
+    
+    private long length;
+    
+    private RecordTablePartitioning(String suffixPattern, long length) {
+        this.suffixPattern = suffixPattern;
+        this.length = length;
+    }
+    
+    /**
+     * Returns the partition, i.e. the start time of the bucket, the given timestamp belongs to.
+     */
+    public long getPartition(long timestamp) {
+        if (this == MONTHLY) {
+            Calendar calendar = this.createCalendar(timestamp);
+            calendar.set(Calendar.DAY_OF_MONTH, 1);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            return calendar.getTimeInMillis();
+        }
+        this.checkPartitioned();
+        long partition = timestamp - timestamp % this.length;
+        if (partition > timestamp) {
+            /* the remainder is negative for the timestamps before the epoch */
+            partition -= this.length;
+        }
+        return partition;
+    }
+    
+    /**
+     * Returns the partition following the given one, which is also the end time of the given partition.
+     */
+    public long getNextPartition(long partition) {
+        if (this == MONTHLY) {
+            Calendar calendar = this.createCalendar(partition);
+            calendar.add(Calendar.MONTH, 1);
+            return calendar.getTimeInMillis();
+        }
+        this.checkPartitioned();
+        return partition + this.length;
+    }
+    
+    /**
+     * Returns the physical table name suffix of the given partition, e.g. "20150301" for a daily partition.
+     */
+    public String toSuffix(long partition) {
+        this.checkPartitioned();
+        return this.createSuffixFormat().format(partition);
+    }
+    
+    /**
+     * Parses a physical table name suffix of this partitioning.
+     * @param suffix The table name suffix
+     * @return The partition, or null if the suffix is not of this partitioning
+     */
+    public Long parseSuffix(String suffix) {
+        if (this == NONE || suffix.length() != this.suffixPattern.length()) {
+            return null;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (!Character.isDigit(suffix.charAt(i))) {
+                return null;
+            }
+        }
+        try {
+            return this.createSuffixFormat().parse(suffix).getTime();
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+    
+    private void checkPartitioned() {
+        if (this == NONE) {
+            throw new IllegalStateException("The record tables are not partitioned");
+        }
+    }
+    
+    private Calendar createCalendar(long timestamp) {
+        Calendar calendar = Calendar.getInstance(UTC);
+        calendar.setTimeInMillis(timestamp);
+        return calendar;
+    }
+    
+    private SimpleDateFormat createSuffixFormat() {
+        /* the date formats are not thread-safe, so they are not shared */
+        SimpleDateFormat format = new SimpleDateFormat(this.suffixPattern);
+        format.setTimeZone(UTC);
+        format.setLenient(false);
+        return format;
+    }
+    
+}
@@ -0,0 +1,461 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.rdbms;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import javax.naming.NamingException;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.dataservice.AnalyticsIndexException;
+import org.wso2.carbon.analytics.dataservice.indexing.AnalyticsDataIndexer;
+import org.wso2.carbon.analytics.dataservice.indexing.AnalyticsIndexConstants;
+import org.wso2.carbon.analytics.dataservice.indexing.AnalyticsIndexWriterPool;
+import org.wso2.carbon.analytics.dataservice.indexing.IndexType;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsFileSystem;
+import org.wso2.carbon.analytics.datasource.core.Record;
+
+/**
+ * This class contains tests related to {@link AnalyticsDataIndexer}, backed by a H2 in-memory database.
+ */
+public class AnalyticsDataIndexerTest {
+    
+    private static final String INDEX_QUEUE_FAILED_PATH = "/_data/index_queue_failed";
+    
+    private FaultyAnalyticsFileSystem analyticsFileSystem;
+    
+    @BeforeClass
+    public void setup() throws NamingException, AnalyticsException, IOException {
+        H2MemDBAnalyticsFileSystemTest.initDS("DSIDX", "jdbc:h2:mem:bam_test_idx_db", "wso2carbon", "wso2carbon");
+        this.analyticsFileSystem = new FaultyAnalyticsFileSystem(new RDBMSAnalyticsFileSystem(
+                H2MemDBAnalyticsFileSystemTest.generateQueryConfiguration()));
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("datasource", "DSIDX");
+        this.analyticsFileSystem.init(props);
+    }
+    
+    private Map<String, String> generateCommitProperties(int maxPendingDocs, long commitInterval, 
+            long writerMaxIdleTime) {
+        Map<String, String> props = new HashMap<String, String>();
+        props.put(AnalyticsIndexConstants.INDEX_COMMIT_MAX_PENDING_DOCS, Integer.toString(maxPendingDocs));
+        props.put(AnalyticsIndexConstants.INDEX_COMMIT_INTERVAL, Long.toString(commitInterval));
+        props.put(AnalyticsIndexConstants.INDEX_WRITER_MAX_IDLE, Long.toString(writerMaxIdleTime));
+        /* a single shard, so the pending documents of a table are all in the same writer */
+        props.put(AnalyticsIndexConstants.INDEX_SHARD_ROUTING, AnalyticsIndexConstants.INDEX_SHARD_ROUTING_ID_HASH);
+        props.put(AnalyticsIndexConstants.INDEX_SHARD_COUNT, "1");
+        return props;
+    }
+    
+    private Map<String, String> generateAsyncProperties(int workerCount, int queueCapacity, int maxRetries) {
+        Map<String, String> props = new HashMap<String, String>();
+        props.put(AnalyticsIndexConstants.INDEX_ASYNC, "true");
+        props.put(AnalyticsIndexConstants.INDEX_ASYNC_WORKER_COUNT, Integer.toString(workerCount));
+        props.put(AnalyticsIndexConstants.INDEX_ASYNC_QUEUE_CAPACITY, Integer.toString(queueCapacity));
+        props.put(AnalyticsIndexConstants.INDEX_ASYNC_MAX_RETRIES, Integer.toString(maxRetries));
+        props.put(AnalyticsIndexConstants.INDEX_ASYNC_RETRY_INTERVAL, "100");
+        return props;
+    }
+    
+    private void setIndices(AnalyticsDataIndexer indexer, int tenantId, String tableName) 
+            throws AnalyticsException {
+        indexer.clearIndices(tenantId, tableName);
+        Map<String, IndexType> columns = new HashMap<String, IndexType>();
+        columns.put("INT1", IndexType.INTEGER);
+        columns.put("STR1", IndexType.STRING);
+        indexer.setIndices(tenantId, tableName, columns);
+    }
+    
+    private List<Record> generateRecords(int tenantId, String tableName, int n) {
+        List<Record> result = new ArrayList<Record>();
+        Map<String, Object> values;
+        for (int i = 0; i < n; i++) {
+            values = new HashMap<String, Object>();
+            values.put("INT1", i);
+            values.put("STR1", "STRING" + i);
+            result.add(new Record(tenantId, tableName, values, i * 10));
+        }
+        return result;
+    }
+    
+    private String generateIndexDataPath(int tenantId, String tableName) {
+        return "/_data/index/" + tenantId + "_" + tableName.toLowerCase() + "/";
+    }
+    
+    private int countFailedBatches() throws IOException {
+        if (!this.analyticsFileSystem.exists(INDEX_QUEUE_FAILED_PATH)) {
+            return 0;
+        }
+        int count = 0;
+        for (String nodeDir : this.analyticsFileSystem.list(INDEX_QUEUE_FAILED_PATH)) {
+            count += this.analyticsFileSystem.list(INDEX_QUEUE_FAILED_PATH + "/" + nodeDir).size();
+        }
+        return count;
+    }
+    
+    @Test
+    public void testIndexCommitMaxPendingDocs() throws AnalyticsException {
+        int tenantId = 8;
+        AnalyticsDataIndexer indexer = new AnalyticsDataIndexer(this.analyticsFileSystem, 
+                this.generateCommitProperties(10, 0, 0));
+        try {
+            this.setIndices(indexer, tenantId, "PendingDocs");
+            AnalyticsIndexWriterPool writerPool = indexer.getWriterPool();
+            long commitCount = writerPool.getCommitCount();
+            indexer.insert(this.generateRecords(tenantId, "PendingDocs", 6));
+            Assert.assertEquals(writerPool.getPendingDocCount(), 6);
+            Assert.assertEquals(writerPool.getCommitCount(), commitCount);
+            Assert.assertEquals(indexer.searchCount(tenantId, "PendingDocs", "lucene", "STR1:S*"), 0);
+            indexer.insert(this.generateRecords(tenantId, "PendingDocs", 4));
+            Assert.assertEquals(writerPool.getPendingDocCount(), 0);
+            Assert.assertEquals(writerPool.getCommitCount(), commitCount + 1);
+            Assert.assertEquals(indexer.searchCount(tenantId, "PendingDocs", "lucene", "STR1:S*"), 10);
+            indexer.clearIndices(tenantId, "PendingDocs");
+        } finally {
+            indexer.close();
+        }
+    }
+    
+    @Test
+    public void testIndexCommitInterval() throws AnalyticsException, InterruptedException {
+        int tenantId = 8;
+        AnalyticsDataIndexer indexer = new AnalyticsDataIndexer(this.analyticsFileSystem, 
+                this.generateCommitProperties(0, 200, 0));
+        try {
+            this.setIndices(indexer, tenantId, "CommitInterval");
+            AnalyticsIndexWriterPool writerPool = indexer.getWriterPool();
+            indexer.insert(this.generateRecords(tenantId, "CommitInterval", 5));
+            Thread.sleep(1000);
+            Assert.assertEquals(writerPool.getPendingDocCount(), 0);
+            Assert.assertTrue(writerPool.getCommitCount() > 0);
+            Assert.assertEquals(indexer.searchCount(tenantId, "CommitInterval", "lucene", "STR1:S*"), 5);
+            /* the writer stays open, since it is not idle closed */
+            Assert.assertEquals(writerPool.getPooledShardedTableIds().size(), 1);
+            indexer.clearIndices(tenantId, "CommitInterval");
+        } finally {
+            indexer.close();
+        }
+    }
+    
+    @Test
+    public void testIndexWriterIdleClose() throws AnalyticsException, InterruptedException {
+        int tenantId = 8;
+        AnalyticsDataIndexer indexer = new AnalyticsDataIndexer(this.analyticsFileSystem, 
+                this.generateCommitProperties(0, 0, 500));
+        try {
+            this.setIndices(indexer, tenantId, "IdleClose");
+            AnalyticsIndexWriterPool writerPool = indexer.getWriterPool();
+            indexer.insert(this.generateRecords(tenantId, "IdleClose", 5));
+            Assert.assertEquals(writerPool.getPooledShardedTableIds().size(), 1);
+            Assert.assertEquals(writerPool.getPendingDocCount(), 5);
+            Thread.sleep(2000);
+            /* the idle writer is committed when it is closed */
+            Assert.assertEquals(writerPool.getPooledShardedTableIds().size(), 0);
+            Assert.assertEquals(indexer.searchCount(tenantId, "IdleClose", "lucene", "STR1:S*"), 5);
+            /* a new writer is opened for the later changes */
+            indexer.insert(this.generateRecords(tenantId, "IdleClose", 5));
+            indexer.flush();
+            Assert.assertEquals(indexer.searchCount(tenantId, "IdleClose", "lucene", "STR1:S*"), 10);
+            indexer.clearIndices(tenantId, "IdleClose");
+        } finally {
+            indexer.close();
+        }
+    }
+    
+    @Test
+    public void testIndexSearcherMaxStaleness() throws AnalyticsException, InterruptedException {
+        int tenantId = 9;
+        AnalyticsDataIndexer writer = new AnalyticsDataIndexer(this.analyticsFileSystem, 
+                this.generateCommitProperties(1, 0, 0));
+        /* the other indexers on the same file system see the commits as done by another node */
+        Map<String, String> props = this.generateCommitProperties(1, 0, 0);
+        props.put(AnalyticsIndexConstants.INDEX_SEARCHER_MAX_STALENESS, "0");
+        AnalyticsDataIndexer staticReader = new AnalyticsDataIndexer(this.analyticsFileSystem, props);
+        props.put(AnalyticsIndexConstants.INDEX_SEARCHER_MAX_STALENESS, "300");
+        AnalyticsDataIndexer reader = new AnalyticsDataIndexer(this.analyticsFileSystem, props);
+        try {
+            this.setIndices(writer, tenantId, "Staleness");
+            this.setIndices(writer, tenantId, "Missing");
+            writer.insert(this.generateRecords(tenantId, "Staleness", 1));
+            Assert.assertEquals(staticReader.searchCount(tenantId, "Staleness", "lucene", "STR1:S*"), 1);
+            Assert.assertEquals(reader.searchCount(tenantId, "Staleness", "lucene", "STR1:S*"), 1);
+            Assert.assertEquals(reader.searchCount(tenantId, "Missing", "lucene", "STR1:S*"), 0);
+            writer.insert(this.generateRecords(tenantId, "Staleness", 9));
+            writer.insert(this.generateRecords(tenantId, "Missing", 3));
+            /* the local searchers are refreshed with the commits */
+            Assert.assertEquals(writer.searchCount(tenantId, "Staleness", "lucene", "STR1:S*"), 10);
+            Assert.assertEquals(writer.searchCount(tenantId, "Missing", "lucene", "STR1:S*"), 3);
+            Thread.sleep(1000);
+            Assert.assertEquals(reader.searchCount(tenantId, "Staleness", "lucene", "STR1:S*"), 10);
+            Assert.assertEquals(reader.searchCount(tenantId, "Missing", "lucene", "STR1:S*"), 3);
+            /* without a maximum staleness, the searchers only see the commits of the other nodes 
+             * they were opened after */
+            Assert.assertEquals(staticReader.searchCount(tenantId, "Staleness", "lucene", "STR1:S*"), 1);
+            writer.clearIndices(tenantId, "Staleness");
+            writer.clearIndices(tenantId, "Missing");
+        } finally {
+            reader.close();
+            staticReader.close();
+            writer.close();
+        }
+    }
+    
+    @Test
+    public void testIdHashRoutingMigration() throws AnalyticsException, IOException {
+        int tenantId = 10;
+        AnalyticsDataIndexer indexer = new AnalyticsDataIndexer(this.analyticsFileSystem);
+        List<Record> records = this.generateRecords(tenantId, "Migration", 20);
+        try {
+            this.setIndices(indexer, tenantId, "Migration");
+            indexer.insert(records.subList(0, 10));
+            indexer.insert(records.subList(10, 20));
+        } finally {
+            indexer.close();
+        }
+        Map<String, String> props = new HashMap<String, String>();
+        props.put(AnalyticsIndexConstants.INDEX_SHARD_ROUTING, AnalyticsIndexConstants.INDEX_SHARD_ROUTING_ID_HASH);
+        props.put(AnalyticsIndexConstants.INDEX_SHARD_COUNT, "4");
+        indexer = new AnalyticsDataIndexer(this.analyticsFileSystem, props);
+        try {
+            Assert.assertEquals(indexer.searchCount(tenantId, "Migration", "lucene", "STR1:S*"), 20);
+            /* deletes reach the records still in the round-robin shards */
+            indexer.delete(tenantId, "Migration", Arrays.asList(records.get(19).getId()));
+            records = new ArrayList<Record>(records.subList(0, 19));
+            Assert.assertEquals(indexer.searchCount(tenantId, "Migration", "lucene", "STR1:S*"), 19);
+            indexer.migrateToIdHashRouting(tenantId, "Migration", Arrays.asList(records.iterator()));
+            Assert.assertEquals(indexer.searchCount(tenantId, "Migration", "lucene", "STR1:S*"), 19);
+            List<String> shardDirs = this.analyticsFileSystem.list(this.generateIndexDataPath(tenantId, "Migration"));
+            Assert.assertTrue(shardDirs.size() > 0 && shardDirs.size() <= 4);
+            for (String shardDir : shardDirs) {
+                Assert.assertTrue(shardDir.contains("_ID_HASH_"), "Round-robin shard not removed: " + shardDir);
+            }
+            /* a migrated table is not migrated again */
+            indexer.migrateToIdHashRouting(tenantId, "Migration", new ArrayList<Iterator<Record>>());
+            Assert.assertEquals(indexer.searchCount(tenantId, "Migration", "lucene", "STR1:S*"), 19);
+            /* an update replaces the record's document in its id-hash shard */
+            Record record = records.get(0);
+            Map<String, Object> values = new HashMap<String, Object>(record.getValues());
+            values.put("STR1", "UPDATED");
+            indexer.update(Arrays.asList(new Record(record.getId(), tenantId, "Migration", values, 
+                    record.getTimestamp())));
+            Assert.assertEquals(indexer.searchCount(tenantId, "Migration", "lucene", "STR1:S*"), 18);
+            Assert.assertEquals(indexer.searchCount(tenantId, "Migration", "lucene", "STR1:UPDATED"), 1);
+            List<String> ids = new ArrayList<String>();
+            for (int i = 0; i < 5; i++) {
+                ids.add(records.get(i).getId());
+            }
+            indexer.delete(tenantId, "Migration", ids);
+            Assert.assertEquals(indexer.searchCount(tenantId, "Migration", "lucene", "STR1:S*"), 14);
+            Assert.assertEquals(indexer.searchCount(tenantId, "Migration", "lucene", "STR1:UPDATED"), 0);
+            indexer.clearIndices(tenantId, "Migration");
+        } finally {
+            indexer.close();
+        }
+    }
+    
+    @Test
+    public void testAsyncIndexingFailedBatch() throws AnalyticsException, IOException {
+        int tenantId = 7;
+        if (this.analyticsFileSystem.exists(INDEX_QUEUE_FAILED_PATH)) {
+            this.analyticsFileSystem.delete(INDEX_QUEUE_FAILED_PATH);
+        }
+        AnalyticsDataIndexer indexer = new AnalyticsDataIndexer(this.analyticsFileSystem, 
+                this.generateAsyncProperties(1, 10, 2));
+        try {
+            this.setIndices(indexer, tenantId, "Failing");
+            this.setIndices(indexer, tenantId, "Working");
+            /* every batch of the table fails, until the file system is fixed */
+            this.analyticsFileSystem.setFailingPathPrefix(this.generateIndexDataPath(tenantId, "Failing"));
+            indexer.insert(this.generateRecords(tenantId, "Failing", 10));
+            indexer.insert(this.generateRecords(tenantId, "Working", 15));
+            /* the failed batch is set aside after its retries, so waiting for the table completes */
+            indexer.waitForIndexing(tenantId, "Failing", -1);
+            indexer.waitForIndexing(tenantId, "Working", -1);
+            Assert.assertEquals(indexer.getIndexingQueue().getPendingRecordCount(tenantId, "Failing"), 0);
+            Assert.assertEquals(this.countFailedBatches(), 1);
+            Assert.assertEquals(indexer.searchCount(tenantId, "Working", "lucene", "STR1:S*"), 15);
+            /* the later batches of the table are indexed once the failure is gone */
+            this.analyticsFileSystem.setFailingPathPrefix(null);
+            indexer.insert(this.generateRecords(tenantId, "Failing", 5));
+            indexer.waitForIndexing(tenantId, "Failing", -1);
+            Assert.assertEquals(indexer.searchCount(tenantId, "Failing", "lucene", "STR1:S*"), 5);
+            Assert.assertEquals(this.countFailedBatches(), 1);
+            indexer.clearIndices(tenantId, "Failing");
+            indexer.clearIndices(tenantId, "Working");
+        } finally {
+            this.analyticsFileSystem.setFailingPathPrefix(null);
+            indexer.close();
+        }
+    }
+    
+    @Test
+    public void testAsyncIndexingReplay() throws AnalyticsException, IOException {
+        int tenantId = 11;
+        AnalyticsDataIndexer indexer = new AnalyticsDataIndexer(this.analyticsFileSystem, 
+                this.generateAsyncProperties(1, 10, 1000));
+        try {
+            this.setIndices(indexer, tenantId, "Replay");
+            this.analyticsFileSystem.setFailingPathPrefix(this.generateIndexDataPath(tenantId, "Replay"));
+            indexer.insert(this.generateRecords(tenantId, "Replay", 10));
+            try {
+                indexer.waitForIndexing(tenantId, "Replay", 300);
+                Assert.fail("Waiting for the failing batch did not time out");
+            } catch (AnalyticsIndexException ignore) {
+                /* expected */
+            }
+            Assert.assertEquals(indexer.getIndexingQueue().getPendingRecordCount(tenantId, "Replay"), 10);
+        } finally {
+            /* the batch, which is still being retried, remains persisted */
+            indexer.close();
+            this.analyticsFileSystem.setFailingPathPrefix(null);
+        }
+        indexer = new AnalyticsDataIndexer(this.analyticsFileSystem, this.generateAsyncProperties(1, 10, 2));
+        try {
+            indexer.waitForIndexing(tenantId, "Replay", -1);
+            Assert.assertEquals(indexer.getIndexingQueue().getPendingRecordCount(tenantId, "Replay"), 0);
+            Assert.assertEquals(indexer.searchCount(tenantId, "Replay", "lucene", "STR1:S*"), 10);
+            indexer.clearIndices(tenantId, "Replay");
+        } finally {
+            indexer.close();
+        }
+    }
+    
+    @Test
+    public void testAsyncIndexingBackpressure() throws AnalyticsException, InterruptedException {
+        final int tenantId = 11;
+        final AnalyticsDataIndexer indexer = new AnalyticsDataIndexer(this.analyticsFileSystem, 
+                this.generateAsyncProperties(1, 1, 1000));
+        try {
+            this.setIndices(indexer, tenantId, "Backpressure");
+            this.analyticsFileSystem.setFailingPathPrefix(this.generateIndexDataPath(tenantId, "Backpressure"));
+            /* the worker keeps retrying the first batch, and the second one fills the queue */
+            indexer.insert(this.generateRecords(tenantId, "Backpressure", 5));
+            indexer.insert(this.generateRecords(tenantId, "Backpressure", 5));
+            final List<Exception> errors = new ArrayList<Exception>();
+            Thread producer = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        indexer.insert(generateRecords(tenantId, "Backpressure", 5));
+                    } catch (Exception e) {
+                        errors.add(e);
+                    }
+                }
+            };
+            producer.start();
+            producer.join(1000);
+            Assert.assertTrue(producer.isAlive(), "The insert to a full queue is not blocked");
+            this.analyticsFileSystem.setFailingPathPrefix(null);
+            producer.join(10000);
+            Assert.assertFalse(producer.isAlive(), "The insert is not unblocked after the queue is drained");
+            Assert.assertEquals(errors.size(), 0);
+            indexer.waitForIndexing(tenantId, "Backpressure", -1);
+            Assert.assertEquals(indexer.searchCount(tenantId, "Backpressure", "lucene", "STR1:S*"), 15);
+            indexer.clearIndices(tenantId, "Backpressure");
+        } finally {
+            this.analyticsFileSystem.setFailingPathPrefix(null);
+            indexer.close();
+        }
+    }
+    
+    /**
+     * An analytics file system, which fails the reads and writes of the paths with a given prefix.
+     */
+    private static class FaultyAnalyticsFileSystem implements AnalyticsFileSystem {
+        
+        private AnalyticsFileSystem analyticsFileSystem;
+        
+        private volatile String failingPathPrefix;
+        
+        public FaultyAnalyticsFileSystem(AnalyticsFileSystem analyticsFileSystem) {
+            this.analyticsFileSystem = analyticsFileSystem;
+        }
+        
+        public void setFailingPathPrefix(String failingPathPrefix) {
+            this.failingPathPrefix = failingPathPrefix;
+        }
+        
+        private void checkPath(String path) throws IOException {
+            String prefix = this.failingPathPrefix;
+            if (prefix != null && path.startsWith(prefix)) {
+                throw new IOException("Simulated file system failure: " + path);
+            }
+        }
+
+        @Override
+        public void init(Map<String, String> properties) throws AnalyticsException {
+            this.analyticsFileSystem.init(properties);
+        }
+
+        @Override
+        public boolean exists(String path) throws IOException {
+            return this.analyticsFileSystem.exists(path);
+        }
+
+        @Override
+        public List<String> list(String path) throws IOException {
+            this.checkPath(path);
+            return this.analyticsFileSystem.list(path);
+        }
+
+        @Override
+        public void delete(String path) throws IOException {
+            this.analyticsFileSystem.delete(path);
+        }
+
+        @Override
+        public void mkdir(String path) throws IOException {
+            this.checkPath(path);
+            this.analyticsFileSystem.mkdir(path);
+        }
+
+        @Override
+        public DataInput createInput(String path) throws IOException {
+            this.checkPath(path);
+            return this.analyticsFileSystem.createInput(path);
+        }
+
+        @Override
+        public OutputStream createOutput(String path) throws IOException {
+            this.checkPath(path);
+            return this.analyticsFileSystem.createOutput(path);
+        }
+
+        @Override
+        public void sync(String path) throws IOException {
+            this.analyticsFileSystem.sync(path);
+        }
+
+        @Override
+        public long length(String path) throws IOException {
+            return this.analyticsFileSystem.length(path);
+        }
+        
+    }
+
+}
@@ -21,8 +21,10 @@ package org.wso2.carbon.analytics.datasource.rdbms;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -198,7 +200,70 @@ public class AnalyticsDataServiceTest implements GroupEventListener {
         Assert.assertEquals(count, 100);
         this.cleanupTable(tenantId, tableName);
     }
-    
+
+    private List<Record> generateScoredIndexRecords(int tenantId, String tableName, int n, int offset) {
+        List<Record> result = new ArrayList<Record>();
+        Map<String, Object> values;
+        StringBuilder text;
+        int matches;
+        for (int i = 0; i < n; i++) {
+            /* the number of matching terms changes with the same text length, so the scores differ */
+            matches = (offset + i) % 10 + 1;
+            text = new StringBuilder();
+            for (int j = 0; j < 10; j++) {
+                text.append(j < matches ? "name " : "other ");
+            }
+            values = new HashMap<String, Object>();
+            values.put("TXT1", text.toString());
+            result.add(new Record(tenantId, tableName, values, offset + i));
+        }
+        return result;
+    }
+
+    private void checkSearchPage(List<SearchResultEntry> page, List<SearchResultEntry> all, int start,
+            int count) {
+        Assert.assertEquals(page.size(), Math.max(0, Math.min(count, all.size() - start)));
+        for (int i = 0; i < page.size(); i++) {
+            /* entries with the same score can be in any order, so the scores are compared */
+            Assert.assertEquals(page.get(i).getScore(), all.get(start + i).getScore());
+            if (i > 0) {
+                Assert.assertTrue(page.get(i - 1).getScore() >= page.get(i).getScore());
+            }
+        }
+    }
+
+    @Test
+    public void testMultiShardSearchPagination() throws AnalyticsException {
+        int tenantId = 4;
+        String tableName = "Pages";
+        int batches = 10, batch = 15, n = batches * batch;
+        this.cleanupTable(tenantId, tableName);
+        Map<String, IndexType> columns = new HashMap<String, IndexType>();
+        columns.put("TXT1", IndexType.STRING);
+        this.service.createTable(tenantId, tableName);
+        this.service.setIndices(tenantId, tableName, columns);
+        /* each batch is indexed in a separate shard */
+        for (int i = 0; i < batches; i++) {
+            this.service.insert(this.generateScoredIndexRecords(tenantId, tableName, batch, i * batch));
+        }
+        List<SearchResultEntry> all = this.service.search(tenantId, tableName, "lucene", "TXT1:name", 0, n + 10);
+        this.checkSearchPage(all, all, 0, n + 10);
+        Assert.assertEquals(all.size(), n);
+        Assert.assertTrue(all.get(0).getScore() > all.get(n - 1).getScore());
+        Set<String> ids = new HashSet<String>();
+        for (SearchResultEntry entry : all) {
+            ids.add(entry.getId());
+        }
+        Assert.assertEquals(ids.size(), n);
+        int count = 20;
+        for (int start = 0; start < n + count; start += count) {
+            this.checkSearchPage(this.service.search(tenantId, tableName, "lucene", "TXT1:name", start, count),
+                    all, start, count);
+        }
+        this.checkSearchPage(this.service.search(tenantId, tableName, "lucene", "TXT1:name", 7, 33), all, 7, 33);
+        this.cleanupTable(tenantId, tableName);
+    }
+
     @Test
     public void testIndexedDataUpdate() throws Exception {
         int tenantId = 1;
@@ -0,0 +1,165 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.rdbms;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.dataservice.AnalyticsDirectory;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsFileSystem;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsFileSystem.DataInput;
+
+/**
+ * This class contains tests related to {@link AnalyticsDirectory}.
+ */
+public class AnalyticsDirectoryTest {
+
+    private static final String DIR_PATH = "/_test/dir";
+    
+    private AnalyticsFileSystem analyticsFileSystem;
+    
+    private AnalyticsDirectory directory;
+    
+    @BeforeClass
+    public void setup() throws NamingException, AnalyticsException, IOException {
+        PoolProperties pps = new PoolProperties();
+        pps.setDriverClassName("org.h2.Driver");
+        pps.setUrl("jdbc:h2:mem:bam_test_dir_db");
+        pps.setUsername("wso2carbon");
+        pps.setPassword("wso2carbon");
+        new InitialContext().bind("DSDIR", new DataSource(pps));
+        this.analyticsFileSystem = new RDBMSAnalyticsFileSystem(this.generateQueryConfiguration());
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("datasource", "DSDIR");
+        this.analyticsFileSystem.init(props);
+        this.directory = new AnalyticsDirectory(this.analyticsFileSystem, 
+                new AnalyticsDirectory.InMemoryLockFactory(DIR_PATH), DIR_PATH);
+    }
+    
+    private RDBMSQueryConfigurationEntry generateQueryConfiguration() {
+        RDBMSQueryConfigurationEntry conf = new RDBMSQueryConfigurationEntry();
+        String[] fsTableInitQueries = new String[2];
+        fsTableInitQueries[0] = "CREATE TABLE AN_FS_PATH (path VARCHAR(256), is_directory BOOLEAN, length BIGINT, parent_path VARCHAR(256), PRIMARY KEY(path), FOREIGN KEY (parent_path) REFERENCES AN_FS_PATH(path) ON DELETE CASCADE)";
+        fsTableInitQueries[1] = "CREATE TABLE AN_FS_DATA (path VARCHAR(256), sequence BIGINT, data BLOB, PRIMARY KEY (path,sequence), FOREIGN KEY (path) REFERENCES AN_FS_PATH(path) ON DELETE CASCADE)";
+        conf.setFsTableInitQueries(fsTableInitQueries);        
+        conf.setFsTablesCheckQuery("SELECT path FROM AN_FS_PATH WHERE path = '/'");
+        conf.setFsPathRetrievalQuery("SELECT * FROM AN_FS_PATH WHERE path = ?");
+        conf.setFsListFilesQuery("SELECT path FROM AN_FS_PATH WHERE parent_path = ?");
+        conf.setFsInsertPathQuery("INSERT INTO AN_FS_PATH (path,is_directory,length,parent_path) VALUES (?,?,?,?)");
+        conf.setFsFileLengthRetrievalQuery("SELECT length FROM AN_FS_PATH WHERE path = ?");
+        conf.setFsSetFileLengthQuery("UPDATE AN_FS_PATH SET length = ? WHERE path = ?");
+        conf.setFsReadDataChunkQuery("SELECT data FROM AN_FS_DATA WHERE path = ? AND sequence = ?");
+        conf.setFsReadDataChunkRangeQuery("SELECT sequence, data FROM AN_FS_DATA WHERE path = ? AND sequence BETWEEN ? AND ? ORDER BY sequence");
+        conf.setFsWriteDataChunkQuery("INSERT INTO AN_FS_DATA (path,sequence,data) VALUES (?,?,?)");
+        conf.setFsUpdateDataChunkQuery("UPDATE AN_FS_DATA SET data = ? WHERE path = ? AND sequence = ?");
+        conf.setFsDeletePathQuery("DELETE FROM AN_FS_PATH WHERE path = ?");
+        conf.setFsDataChunkSize(10240);
+        conf.setFsDataChunkReadAheadCount(10);
+        return conf;
+    }
+    
+    private byte[] writeFile(String name, int size) throws IOException {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        IndexOutput out = this.directory.createOutput(name, IOContext.DEFAULT);
+        out.writeBytes(data, 0, data.length);
+        out.close();
+        return data;
+    }
+    
+    @Test
+    public void testIndexInputReadSeekCloneSlice() throws IOException {
+        byte[] data = this.writeFile("file1", 100000);
+        IndexInput in = this.directory.openInput("file1", IOContext.DEFAULT);
+        Assert.assertEquals(in.length(), data.length);
+        for (int i = 0; i < data.length; i++) {
+            Assert.assertEquals(in.readByte(), data[i]);
+        }
+        in.seek(25000);
+        byte[] buff = new byte[30000];
+        in.readBytes(buff, 0, buff.length);
+        Assert.assertEquals(buff, Arrays.copyOfRange(data, 25000, 55000));
+        in.seek(5000);
+        IndexInput clone = in.clone();
+        Assert.assertEquals(clone.getFilePointer(), 5000);
+        Assert.assertEquals(clone.readByte(), data[5000]);
+        Assert.assertEquals(in.readByte(), data[5000]);
+        IndexInput slice = in.slice("slice1", 40000, 20000);
+        Assert.assertEquals(slice.length(), 20000);
+        Assert.assertEquals(slice.getFilePointer(), 0);
+        slice.seek(10000);
+        Assert.assertEquals(slice.readByte(), data[50000]);
+        buff = new byte[9999];
+        slice.readBytes(buff, 0, buff.length);
+        Assert.assertEquals(buff, Arrays.copyOfRange(data, 50001, 60000));
+        try {
+            slice.readByte();
+            Assert.fail("Reading past the end of a slice must fail");
+        } catch (IOException ignore) {
+            /* expected */
+        }
+        in.close();
+        this.directory.deleteFile("file1");
+    }
+    
+    @Test
+    public void testIndexInputReadPerformance() throws IOException {
+        System.out.println("\n************** START INDEX INPUT PERF TEST **************");
+        int size = 1024 * 1024;
+        byte[] data = this.writeFile("file2", size);
+        /* unbuffered per byte reads, the way the previous index input adaptor read data */
+        DataInput dataInput = this.analyticsFileSystem.createInput(DIR_PATH + "/file2");
+        byte[] singleByte;
+        long start = System.currentTimeMillis();
+        for (int i = 0; i < size; i++) {
+            singleByte = new byte[1];
+            dataInput.read(singleByte, 0, 1);
+            Assert.assertEquals(singleByte[0], data[i]);
+        }
+        long end = System.currentTimeMillis();
+        dataInput.close();
+        System.out.println("* Unbuffered: " + size + " bytes read in: " + (end - start) + " ms.");
+        IndexInput in = this.directory.openInput("file2", IOContext.DEFAULT);
+        start = System.currentTimeMillis();
+        for (int i = 0; i < size; i++) {
+            Assert.assertEquals(in.readByte(), data[i]);
+        }
+        end = System.currentTimeMillis();
+        in.close();
+        System.out.println("* Buffered: " + size + " bytes read in: " + (end - start) + " ms.");
+        this.directory.deleteFile("file2");
+        System.out.println("\n************** END INDEX INPUT PERF TEST **************");
+    }
+    
+}
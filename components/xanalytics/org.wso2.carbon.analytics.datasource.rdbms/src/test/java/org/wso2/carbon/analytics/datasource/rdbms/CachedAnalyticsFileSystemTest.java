@@ -0,0 +1,49 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.rdbms;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.naming.NamingException;
+
+import org.testng.annotations.BeforeSuite;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsFileSystem;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsFileSystemTest;
+import org.wso2.carbon.analytics.datasource.core.CachedAnalyticsFileSystem;
+
+/**
+ * Analytics file system tests for {@link CachedAnalyticsFileSystem}, backed by a H2 in-memory database.
+ */
+public class CachedAnalyticsFileSystemTest extends AnalyticsFileSystemTest {
+
+    @BeforeSuite
+    public void setup() throws NamingException, AnalyticsException, IOException {
+        H2MemDBAnalyticsFileSystemTest.initDS("DSCFS", "jdbc:h2:mem:bam_test_cfs_db", "wso2carbon", "wso2carbon");
+        AnalyticsFileSystem afs = new CachedAnalyticsFileSystem(new RDBMSAnalyticsFileSystem(
+                H2MemDBAnalyticsFileSystemTest.generateQueryConfiguration()));
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("datasource", "DSCFS");
+        afs.init(props);
+        this.init("CachedH2MemDBAnalyticsFileSystem", afs);
+    }
+    
+}
@@ -53,10 +53,29 @@ public class H2FileDBAnalyticsRecordStoreTest extends AnalyticsRecordStoreTest {
         AnalyticsRecordStore ars = new RDBMSAnalyticsRecordStore(generateQueryConfiguration());
         Map<String, String> props = new HashMap<String, String>();
         props.put("datasource", "DSRS");
+        props.put("recordGroupSplitCount", "4");
+        props.put("recordGroupMinSplitSize", "20");
+        props.put("recordCompression.T1_LZ4", "LZ4");
+        props.put("recordCompression.T1_DEFLATE", "DEFLATE");
         ars.init(props);
         return ars;
     }
     
+    @Override
+    protected int getRecordGroupSplitCount() {
+        return 4;
+    }
+    
+    @Override
+    protected boolean isRecordCompressionSupported() {
+        return true;
+    }
+    
+    @Override
+    protected long getStoredRecordValuesSize(int tenantId, String tableName) throws AnalyticsException {
+        return H2MemDBAnalyticsRecordStoreTest.getStoredRecordValuesSize("DSRS", tenantId, tableName);
+    }
+    
     private static void deleteFile(String path) {
         new File(path).delete();
     }
@@ -76,7 +95,7 @@ public class H2FileDBAnalyticsRecordStoreTest extends AnalyticsRecordStoreTest {
         RDBMSQueryConfigurationEntry conf = new RDBMSQueryConfigurationEntry();
         String[] recordTableInitQueries = new String[2];
         recordTableInitQueries[0] = "CREATE TABLE {{TABLE_NAME}} (record_id VARCHAR(50), timestamp BIGINT, data BLOB, PRIMARY KEY(record_id))";
-        recordTableInitQueries[1] = "CREATE INDEX {{TABLE_NAME}}_TIMESTAMP ON {{TABLE_NAME}} (timestamp)";
+        recordTableInitQueries[1] = "CREATE INDEX {{TABLE_NAME}}_TIMESTAMP ON {{TABLE_NAME}} (timestamp, record_id)";
         String[] recordTableDeleteQueries = new String[2];
         recordTableDeleteQueries[0] = "DROP TABLE IF EXISTS {{TABLE_NAME}}";
         recordTableDeleteQueries[1] = "DROP INDEX IF EXISTS {{TABLE_NAME}}_TIMESTAMP";        
@@ -84,6 +103,8 @@ public class H2FileDBAnalyticsRecordStoreTest extends AnalyticsRecordStoreTest {
         conf.setRecordTableDeleteQueries(recordTableDeleteQueries);
         conf.setRecordInsertQuery("INSERT INTO {{TABLE_NAME}} (record_id, timestamp, data) VALUES (?, ?, ?)");
         conf.setRecordRetrievalQuery("SELECT record_id, timestamp, data FROM {{TABLE_NAME}} WHERE timestamp >= ? AND timestamp < ? LIMIT ?,?");
+        conf.setRecordRetrievalWithContinuationQuery("SELECT record_id, timestamp, data FROM {{TABLE_NAME}} WHERE timestamp >= ? AND timestamp < ? AND (timestamp > ? OR (timestamp = ? AND record_id > ?)) ORDER BY timestamp, record_id LIMIT ?");
+        conf.setRecordTimeRangeStatsQuery("SELECT MIN(timestamp), MAX(timestamp), COUNT(*) FROM {{TABLE_NAME}} WHERE timestamp >= ? AND timestamp < ?");
         conf.setRecordRetrievalWithIdsQuery("SELECT record_id, timestamp, data FROM {{TABLE_NAME}} WHERE record_id IN ({{RECORD_IDS}})");
         conf.setRecordDeletionWithIdsQuery("DELETE FROM {{TABLE_NAME}} WHERE record_id IN ({{RECORD_IDS}})");
         conf.setRecordDeletionQuery("DELETE FROM {{TABLE_NAME}} WHERE timestamp >= ? AND timestamp < ?");
@@ -40,25 +40,26 @@ public class H2MemDBAnalyticsFileSystemTest extends AnalyticsFileSystemTest {
 
     @BeforeSuite
     public void setup() throws NamingException, AnalyticsException, IOException {
-        this.initDS("jdbc:h2:mem:bam_test_db", "wso2carbon", "wso2carbon");
-        AnalyticsFileSystem afs = new RDBMSAnalyticsFileSystem(this.generateQueryConfiguration());
+        initDS("DS", "jdbc:h2:mem:bam_test_db", "wso2carbon", "wso2carbon");
+        AnalyticsFileSystem afs = new RDBMSAnalyticsFileSystem(generateQueryConfiguration());
         Map<String, String> props = new HashMap<String, String>();
         props.put("datasource", "DS");
+        props.put("chunkCacheSize", "1048576");
         afs.init(props);
         this.init("H2MemDBAnalyticsDataSource", afs);
     }
     
-    private void initDS(String url, String username, String password) throws NamingException {
+    static void initDS(String dsName, String url, String username, String password) throws NamingException {
         PoolProperties pps = new PoolProperties();
         pps.setDriverClassName("org.h2.Driver");
         pps.setUrl(url);
         pps.setUsername(username);
         pps.setPassword(password);
         DataSource dsx = new DataSource(pps);
-        new InitialContext().bind("DS", dsx);
+        new InitialContext().bind(dsName, dsx);
     }
     
-    private RDBMSQueryConfigurationEntry generateQueryConfiguration() {
+    static RDBMSQueryConfigurationEntry generateQueryConfiguration() {
         RDBMSQueryConfigurationEntry conf = new RDBMSQueryConfigurationEntry();
         String[] fsTableInitQueries = new String[3];
         fsTableInitQueries[0] = "CREATE TABLE AN_FS_PATH (path VARCHAR(256), is_directory BOOLEAN, length BIGINT, parent_path VARCHAR(256), PRIMARY KEY(path), FOREIGN KEY (parent_path) REFERENCES AN_FS_PATH(path) ON DELETE CASCADE)";
@@ -73,10 +74,12 @@ public class H2MemDBAnalyticsFileSystemTest extends AnalyticsFileSystemTest {
         conf.setFsFileLengthRetrievalQuery("SELECT length FROM AN_FS_PATH WHERE path = ?");
         conf.setFsSetFileLengthQuery("UPDATE AN_FS_PATH SET length = ? WHERE path = ?");
         conf.setFsReadDataChunkQuery("SELECT data FROM AN_FS_DATA WHERE path = ? AND sequence = ?");
+        conf.setFsReadDataChunkRangeQuery("SELECT sequence, data FROM AN_FS_DATA WHERE path = ? AND sequence BETWEEN ? AND ? ORDER BY sequence");
         conf.setFsWriteDataChunkQuery("INSERT INTO AN_FS_DATA (path,sequence,data) VALUES (?,?,?)");
         conf.setFsUpdateDataChunkQuery("UPDATE AN_FS_DATA SET data = ? WHERE path = ? AND sequence = ?");
         conf.setFsDeletePathQuery("DELETE FROM AN_FS_PATH WHERE path = ?");
         conf.setFsDataChunkSize(10240);
+        conf.setFsDataChunkReadAheadCount(10);
         return conf;
     }
     
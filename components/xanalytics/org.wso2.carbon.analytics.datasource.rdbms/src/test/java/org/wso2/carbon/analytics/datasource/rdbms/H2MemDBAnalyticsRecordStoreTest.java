@@ -18,6 +18,9 @@
  */
 package org.wso2.carbon.analytics.datasource.rdbms;
 
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -26,7 +29,9 @@ import javax.naming.NamingException;
 
 import org.apache.tomcat.jdbc.pool.DataSource;
 import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.testng.Assert;
 import org.testng.annotations.BeforeSuite;
+import org.testng.annotations.Test;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsRecordStoreTest;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
 import org.wso2.carbon.analytics.datasource.rdbms.RDBMSQueryConfigurationEntry;
@@ -40,13 +45,97 @@ public class H2MemDBAnalyticsRecordStoreTest extends AnalyticsRecordStoreTest {
     @BeforeSuite
     public void setup() throws NamingException, AnalyticsException {
         this.initDS("jdbc:h2:mem:bam_test_db", "wso2carbon", "wso2carbon");
-        RDBMSAnalyticsRecordStore ars = new RDBMSAnalyticsRecordStore(this.generateQueryConfiguration());
+        RDBMSAnalyticsRecordStore ars = new RDBMSAnalyticsRecordStore(generateQueryConfiguration());
         Map<String, String> props = new HashMap<String, String>();
         props.put("datasource", "DS");
+        props.put("recordGroupSplitCount", "4");
+        props.put("recordGroupMinSplitSize", "20");
+        props.put("recordCompression.T1_LZ4", "LZ4");
+        props.put("recordCompression.T1_DEFLATE", "DEFLATE");
+        props.put("promotedColumns.T1_FILTER", "server_name STRING INDEXED, sequence LONG");
         ars.init(props);
         this.init("H2MemDBAnalyticsDataSource", ars);
     }
     
+    @Test
+    public void testPromotedColumnTypeMismatch() throws AnalyticsException {
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("datasource", "DS");
+        props.put("promotedColumns.T1_RETYPED", "sequence STRING");
+        RDBMSAnalyticsRecordStore store = new RDBMSAnalyticsRecordStore(generateQueryConfiguration());
+        store.init(props);
+        store.deleteTable(7, "T1_RETYPED");
+        store.createTable(7, "T1_RETYPED");
+        try {
+            store.insert(generateRecords(7, "T1_RETYPED", 1, 10, -1, 0));
+            /* the existing string column cannot keep the values of the field as longs */
+            props.put("promotedColumns.T1_RETYPED", "sequence LONG");
+            RDBMSAnalyticsRecordStore retypedStore = new RDBMSAnalyticsRecordStore(generateQueryConfiguration());
+            retypedStore.init(props);
+            try {
+                retypedStore.insert(generateRecords(7, "T1_RETYPED", 2, 10, -1, 0));
+                Assert.fail("A promoted column of an incompatible type is used");
+            } catch (AnalyticsException ignore) {
+                /* expected */
+            }
+            Assert.assertEquals(store.getRecordCount(7, "T1_RETYPED"), 10);
+        } finally {
+            store.deleteTable(7, "T1_RETYPED");
+        }
+    }
+    
+    @Test
+    public void testRecordGroupSplittingWithoutHistogram() throws AnalyticsException {
+        RDBMSQueryConfigurationEntry conf = generateQueryConfiguration();
+        /* the split boundaries are then calculated assuming the records are evenly spread in time */
+        conf.setRecordTimeHistogramQuery(null);
+        RDBMSAnalyticsRecordStore store = new RDBMSAnalyticsRecordStore(conf);
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("datasource", "DS");
+        props.put("recordGroupSplitCount", "4");
+        props.put("recordGroupMinSplitSize", "20");
+        store.init(props);
+        checkRecordGroupSplitting(store, 7, "T1_SPLIT", 4);
+    }
+    
+    @Override
+    protected int getRecordGroupSplitCount() {
+        return 4;
+    }
+    
+    @Override
+    protected boolean isRecordCompressionSupported() {
+        return true;
+    }
+    
+    @Override
+    protected long getStoredRecordValuesSize(int tenantId, String tableName) throws AnalyticsException {
+        return getStoredRecordValuesSize("DS", tenantId, tableName);
+    }
+    
+    /**
+     * Sums the lengths of the stored record values of a table in the separate record table layout, 
+     * which is the size after the column dictionary and the record compression are applied.
+     */
+    public static long getStoredRecordValuesSize(String dsName, int tenantId, 
+            String tableName) throws AnalyticsException {
+        Connection conn = null;
+        Statement stmt = null;
+        ResultSet rs = null;
+        try {
+            conn = ((javax.sql.DataSource) new InitialContext().lookup(dsName)).getConnection();
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery("SELECT SUM(LENGTH(data)) FROM ANX_" + tenantId + "_" + 
+                    tableName.toUpperCase());
+            rs.next();
+            return rs.getLong(1);
+        } catch (Exception e) {
+            throw new AnalyticsException("Error in measuring the stored record values: " + e.getMessage(), e);
+        } finally {
+            RDBMSUtils.cleanupConnection(rs, stmt, conn);
+        }
+    }
+    
     private void initDS(String url, String username, String password) throws NamingException {
         PoolProperties pps = new PoolProperties();
         pps.setDriverClassName("org.h2.Driver");
@@ -57,18 +146,36 @@ public class H2MemDBAnalyticsRecordStoreTest extends AnalyticsRecordStoreTest {
         new InitialContext().bind("DS", dsx);
     }
     
-    private RDBMSQueryConfigurationEntry generateQueryConfiguration() {
+    static RDBMSQueryConfigurationEntry generateQueryConfiguration() {
         RDBMSQueryConfigurationEntry conf = new RDBMSQueryConfigurationEntry();
         String[] recordTableInitQueries = new String[2];
         recordTableInitQueries[0] = "CREATE TABLE {{TABLE_NAME}} (record_id VARCHAR(50), timestamp BIGINT, data BLOB, PRIMARY KEY(record_id))";
-        recordTableInitQueries[1] = "CREATE INDEX {{TABLE_NAME}}_TIMESTAMP ON {{TABLE_NAME}} (timestamp)";
+        recordTableInitQueries[1] = "CREATE INDEX {{TABLE_NAME}}_TIMESTAMP ON {{TABLE_NAME}} (timestamp, record_id)";
         String[] recordTableDeleteQueries = new String[2];
         recordTableDeleteQueries[0] = "DROP TABLE IF EXISTS {{TABLE_NAME}}";
         recordTableDeleteQueries[1] = "DROP INDEX IF EXISTS {{TABLE_NAME}}_TIMESTAMP";        
         conf.setRecordTableInitQueries(recordTableInitQueries);
         conf.setRecordTableDeleteQueries(recordTableDeleteQueries);
-        conf.setRecordInsertQuery("INSERT INTO {{TABLE_NAME}} (record_id, timestamp, data) VALUES (?, ?, ?)");
+        conf.setRecordInsertQuery("INSERT INTO {{TABLE_NAME}} (record_id, timestamp, data{{PROMOTED_COLUMNS}}) VALUES (?, ?, ?{{PROMOTED_VALUES}})");
+        conf.setRecordMergeQuery("MERGE INTO {{TABLE_NAME}} (record_id, timestamp, data{{PROMOTED_COLUMNS}}) KEY (record_id) VALUES (?, ?, ?{{PROMOTED_VALUES}})");
+        conf.setRecordRetrievalWithPredicatesQuery("SELECT record_id, timestamp, data FROM {{TABLE_NAME}} WHERE timestamp >= ? AND timestamp < ?{{PREDICATES}}");
+        conf.setRecordAggregationQuery("SELECT {{AGGREGATES}} FROM {{TABLE_NAME}} WHERE timestamp >= ? AND timestamp < ?{{PREDICATES}}{{GROUP_BY}}");
+        conf.setPromotedColumnAddQuery("ALTER TABLE {{TABLE_NAME}} ADD COLUMN {{COLUMN_NAME}} {{COLUMN_TYPE}}");
+        conf.setPromotedColumnIndexQuery("CREATE INDEX {{TABLE_NAME}}_{{COLUMN_NAME}} ON {{TABLE_NAME}} ({{COLUMN_NAME}})");
+        conf.setPromotedColumnStringType("VARCHAR(1024)");
+        conf.setPromotedColumnIntegerType("INT");
+        conf.setPromotedColumnLongType("BIGINT");
+        conf.setPromotedColumnDoubleType("DOUBLE");
+        conf.setPromotedColumnBooleanType("BOOLEAN");
         conf.setRecordRetrievalQuery("SELECT record_id, timestamp, data FROM {{TABLE_NAME}} WHERE timestamp >= ? AND timestamp < ? LIMIT ?,?");
+        conf.setRecordRetrievalWithContinuationQuery("SELECT record_id, timestamp, data FROM {{TABLE_NAME}} WHERE timestamp >= ? AND timestamp < ? AND (timestamp > ? OR (timestamp = ? AND record_id > ?)) ORDER BY timestamp, record_id LIMIT ?");
+        conf.setRecordTimeRangeStatsQuery("SELECT MIN(timestamp), MAX(timestamp), COUNT(*) FROM {{TABLE_NAME}} WHERE timestamp >= ? AND timestamp < ?");
+        conf.setRecordTimeHistogramQuery("SELECT FLOOR((timestamp - ?) / ?) AS bucket, COUNT(*) FROM {{TABLE_NAME}} WHERE timestamp >= ? AND timestamp <= ? GROUP BY bucket");
+        conf.setRecordColumnDictionaryInitQueries(new String[] { "CREATE TABLE AN_RECORD_COLUMNS (table_name VARCHAR(128), column_id INT, column_name VARCHAR(256), PRIMARY KEY(table_name, column_id))" });
+        conf.setRecordColumnDictionaryCheckQuery("SELECT column_id FROM AN_RECORD_COLUMNS WHERE table_name = ''");
+        conf.setRecordColumnDictionaryRetrievalQuery("SELECT column_id, column_name FROM AN_RECORD_COLUMNS WHERE table_name = ?");
+        conf.setRecordColumnDictionaryInsertQuery("INSERT INTO AN_RECORD_COLUMNS (table_name, column_id, column_name) VALUES (?, ?, ?)");
+        conf.setRecordRetrievalPageSize(50);
         conf.setRecordRetrievalWithIdsQuery("SELECT record_id, timestamp, data FROM {{TABLE_NAME}} WHERE record_id IN ({{RECORD_IDS}})");
         conf.setRecordDeletionWithIdsQuery("DELETE FROM {{TABLE_NAME}} WHERE record_id IN ({{RECORD_IDS}})");
         conf.setRecordDeletionQuery("DELETE FROM {{TABLE_NAME}} WHERE timestamp >= ? AND timestamp < ?");
@@ -0,0 +1,104 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.rdbms;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.naming.InitialContext;
+import javax.naming.NamingException;
+
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.testng.annotations.BeforeSuite;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsRecordStoreTest;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.rdbms.RDBMSQueryConfigurationEntry;
+import org.wso2.carbon.analytics.datasource.rdbms.RDBMSAnalyticsRecordStore;
+
+/**
+ * H2 implementation of analytics data source tests, with the consolidated record table layout.
+ */
+public class H2MemDBConsolidatedAnalyticsRecordStoreTest extends AnalyticsRecordStoreTest {
+
+    @BeforeSuite
+    public void setup() throws NamingException, AnalyticsException {
+        this.initDS("jdbc:h2:mem:bam_consolidated_test_db", "wso2carbon", "wso2carbon");
+        RDBMSAnalyticsRecordStore ars = new RDBMSAnalyticsRecordStore(generateQueryConfiguration());
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("datasource", "DSC");
+        props.put("recordGroupSplitCount", "4");
+        props.put("recordGroupMinSplitSize", "20");
+        ars.init(props);
+        this.init("H2MemDBConsolidatedAnalyticsDataSource", ars);
+    }
+    
+    @Override
+    protected int getRecordGroupSplitCount() {
+        return 4;
+    }
+    
+    private void initDS(String url, String username, String password) throws NamingException {
+        PoolProperties pps = new PoolProperties();
+        pps.setDriverClassName("org.h2.Driver");
+        pps.setUrl(url);
+        pps.setUsername(username);
+        pps.setPassword(password);
+        DataSource dsx = new DataSource(pps);
+        new InitialContext().bind("DSC", dsx);
+    }
+    
+    static RDBMSQueryConfigurationEntry generateQueryConfiguration() {
+        RDBMSQueryConfigurationEntry conf = new RDBMSQueryConfigurationEntry();
+        conf.setRecordTableLayout(RecordTableLayout.CONSOLIDATED);
+        conf.setConsolidatedRecordTableCount(4);
+        conf.setRecordTableCatalogInitQueries(new String[] { "CREATE TABLE AN_RECORD_TABLES (table_id INT, tenant_id INT, table_name VARCHAR(256), PRIMARY KEY(table_id), UNIQUE(tenant_id, table_name))" });
+        conf.setRecordTableCatalogCheckQuery("SELECT table_id FROM AN_RECORD_TABLES WHERE table_id = -1");
+        conf.setRecordTableCatalogRetrievalQuery("SELECT table_id, tenant_id, table_name FROM AN_RECORD_TABLES");
+        conf.setRecordTableCatalogLookupQuery("SELECT table_id FROM AN_RECORD_TABLES WHERE tenant_id = ? AND table_name = ?");
+        conf.setRecordTableCatalogMaxIdQuery("SELECT MAX(table_id) FROM AN_RECORD_TABLES");
+        conf.setRecordTableCatalogInsertQuery("INSERT INTO AN_RECORD_TABLES (table_id, tenant_id, table_name) VALUES (?, ?, ?)");
+        conf.setRecordTableCatalogDeleteQuery("DELETE FROM AN_RECORD_TABLES WHERE tenant_id = ? AND table_name = ?");
+        String[] recordTableInitQueries = new String[2];
+        recordTableInitQueries[0] = "CREATE TABLE {{TABLE_NAME}} (table_id INT, record_id VARCHAR(50), timestamp BIGINT, data BLOB, PRIMARY KEY(table_id, record_id))";
+        recordTableInitQueries[1] = "CREATE INDEX {{TABLE_NAME}}_TIMESTAMP ON {{TABLE_NAME}} (table_id, timestamp, record_id)";
+        conf.setRecordTableInitQueries(recordTableInitQueries);
+        conf.setRecordTableDeleteQueries(new String[] { "DELETE FROM {{TABLE_NAME}} WHERE table_id = {{TABLE_ID}}" });
+        conf.setRecordInsertQuery("INSERT INTO {{TABLE_NAME}} (table_id, record_id, timestamp, data) VALUES ({{TABLE_ID}}, ?, ?, ?)");
+        conf.setRecordMergeQuery("MERGE INTO {{TABLE_NAME}} (table_id, record_id, timestamp, data) KEY (table_id, record_id) VALUES ({{TABLE_ID}}, ?, ?, ?)");
+        conf.setRecordRetrievalQuery("SELECT record_id, timestamp, data FROM {{TABLE_NAME}} WHERE table_id = {{TABLE_ID}} AND timestamp >= ? AND timestamp < ? LIMIT ?,?");
+        conf.setRecordRetrievalWithContinuationQuery("SELECT record_id, timestamp, data FROM {{TABLE_NAME}} WHERE table_id = {{TABLE_ID}} AND timestamp >= ? AND timestamp < ? AND (timestamp > ? OR (timestamp = ? AND record_id > ?)) ORDER BY timestamp, record_id LIMIT ?");
+        conf.setRecordTimeRangeStatsQuery("SELECT MIN(timestamp), MAX(timestamp), COUNT(*) FROM {{TABLE_NAME}} WHERE table_id = {{TABLE_ID}} AND timestamp >= ? AND timestamp < ?");
+        conf.setRecordTimeHistogramQuery("SELECT FLOOR((timestamp - ?) / ?) AS bucket, COUNT(*) FROM {{TABLE_NAME}} WHERE table_id = {{TABLE_ID}} AND timestamp >= ? AND timestamp <= ? GROUP BY bucket");
+        conf.setRecordColumnDictionaryInitQueries(new String[] { "CREATE TABLE AN_RECORD_COLUMNS (table_name VARCHAR(128), column_id INT, column_name VARCHAR(256), PRIMARY KEY(table_name, column_id))" });
+        conf.setRecordColumnDictionaryCheckQuery("SELECT column_id FROM AN_RECORD_COLUMNS WHERE table_name = ''");
+        conf.setRecordColumnDictionaryRetrievalQuery("SELECT column_id, column_name FROM AN_RECORD_COLUMNS WHERE table_name = ?");
+        conf.setRecordColumnDictionaryInsertQuery("INSERT INTO AN_RECORD_COLUMNS (table_name, column_id, column_name) VALUES (?, ?, ?)");
+        conf.setRecordRetrievalPageSize(50);
+        conf.setRecordRetrievalWithIdsQuery("SELECT record_id, timestamp, data FROM {{TABLE_NAME}} WHERE table_id = {{TABLE_ID}} AND record_id IN ({{RECORD_IDS}})");
+        conf.setRecordDeletionWithIdsQuery("DELETE FROM {{TABLE_NAME}} WHERE table_id = {{TABLE_ID}} AND record_id IN ({{RECORD_IDS}})");
+        conf.setRecordDeletionQuery("DELETE FROM {{TABLE_NAME}} WHERE table_id = {{TABLE_ID}} AND timestamp >= ? AND timestamp < ?");
+        conf.setRecordCountQuery("SELECT COUNT(*) FROM {{TABLE_NAME}} WHERE table_id = {{TABLE_ID}}");
+        conf.setPaginationFirstZeroIndexed(true);
+        conf.setPaginationFirstInclusive(true);
+        conf.setPaginationSecondLength(true);
+        return conf;
+    }
+    
+}
@@ -94,10 +94,12 @@ public class MySQLInnoDBAnalyticsFileSystemTest extends AnalyticsRecordStoreTest
         conf.setFsFileLengthRetrievalQuery("SELECT length FROM AN_FS_PATH WHERE path = ?");
         conf.setFsSetFileLengthQuery("UPDATE AN_FS_PATH SET length = ? WHERE path = ?");
         conf.setFsReadDataChunkQuery("SELECT data FROM AN_FS_DATA WHERE path = ? AND sequence = ?");
+        conf.setFsReadDataChunkRangeQuery("SELECT sequence, data FROM AN_FS_DATA WHERE path = ? AND sequence BETWEEN ? AND ? ORDER BY sequence");
         conf.setFsWriteDataChunkQuery("INSERT INTO AN_FS_DATA (path,sequence,data) VALUES (?,?,?)");
         conf.setFsUpdateDataChunkQuery("UPDATE AN_FS_DATA SET data = ? WHERE path = ? AND sequence = ?");
         conf.setFsDeletePathQuery("DELETE FROM AN_FS_PATH WHERE path = ?");
         conf.setFsDataChunkSize(10240);
+        conf.setFsDataChunkReadAheadCount(10);
         return conf;
     }
     
@@ -48,10 +48,22 @@ public class MySQLInnoDBAnalyticsRecordStoreTest extends AnalyticsRecordStoreTes
         AnalyticsRecordStore ars = new RDBMSAnalyticsRecordStore(this.generateQueryConfiguration());
         Map<String, String> props = new HashMap<String, String>();
         props.put("datasource", "DS");
+        props.put("recordCompression.T1_LZ4", "LZ4");
+        props.put("recordCompression.T1_DEFLATE", "DEFLATE");
         ars.init(props);
         this.init("MySQLInnoDBAnalyticsDataSource", ars);
     }
     
+    @Override
+    protected boolean isRecordCompressionSupported() {
+        return true;
+    }
+    
+    @Override
+    protected long getStoredRecordValuesSize(int tenantId, String tableName) throws AnalyticsException {
+        return H2MemDBAnalyticsRecordStoreTest.getStoredRecordValuesSize("DS", tenantId, tableName);
+    }
+    
     private void initDS(String url, String username, String password) throws NamingException, SQLException {
         PoolProperties pps = new PoolProperties();
         pps.setDriverClassName("com.mysql.jdbc.Driver");
@@ -68,8 +80,17 @@ public class MySQLInnoDBAnalyticsRecordStoreTest extends AnalyticsRecordStoreTes
         recordTableInitQueries[0] = "CREATE TABLE {{TABLE_NAME}} (record_id VARCHAR(50), timestamp BIGINT, data BLOB, PRIMARY KEY(record_id))";
         recordTableInitQueries[1] = "CREATE INDEX {{TABLE_NAME}}_TIMESTAMP ON {{TABLE_NAME}}(timestamp)";        
         conf.setRecordTableInitQueries(recordTableInitQueries);
-        conf.setRecordInsertQuery("INSERT INTO {{TABLE_NAME}} (record_id, timestamp, data) VALUES (?, ?, ?)");
+        conf.setRecordInsertQuery("INSERT INTO {{TABLE_NAME}} (record_id, timestamp, data{{PROMOTED_COLUMNS}}) VALUES (?, ?, ?{{PROMOTED_VALUES}})");
+        conf.setRecordMergeQuery("INSERT INTO {{TABLE_NAME}} (record_id, timestamp, data{{PROMOTED_COLUMNS}}) VALUES (?, ?, ?{{PROMOTED_VALUES}}) ON DUPLICATE KEY UPDATE timestamp = VALUES(timestamp), data = VALUES(data){{PROMOTED_UPDATES}}");
         conf.setRecordRetrievalQuery("SELECT record_id, timestamp, data FROM {{TABLE_NAME}} WHERE timestamp >= ? AND timestamp < ? LIMIT ?,?");
+        conf.setRecordRetrievalWithContinuationQuery("SELECT record_id, timestamp, data FROM {{TABLE_NAME}} WHERE timestamp >= ? AND timestamp < ? AND (timestamp > ? OR (timestamp = ? AND record_id > ?)) ORDER BY timestamp, record_id LIMIT ?");
+        conf.setRecordTimeRangeStatsQuery("SELECT MIN(timestamp), MAX(timestamp), COUNT(*) FROM {{TABLE_NAME}} WHERE timestamp >= ? AND timestamp < ?");
+        conf.setRecordTimeHistogramQuery("SELECT FLOOR((timestamp - ?) / ?) AS bucket, COUNT(*) FROM {{TABLE_NAME}} WHERE timestamp >= ? AND timestamp <= ? GROUP BY bucket");
+        conf.setRecordColumnDictionaryInitQueries(new String[] { "CREATE TABLE AN_RECORD_COLUMNS (table_name VARCHAR(128), column_id INT, column_name VARCHAR(256), PRIMARY KEY(table_name, column_id))" });
+        conf.setRecordColumnDictionaryCheckQuery("SELECT column_id FROM AN_RECORD_COLUMNS WHERE table_name = ''");
+        conf.setRecordColumnDictionaryRetrievalQuery("SELECT column_id, column_name FROM AN_RECORD_COLUMNS WHERE table_name = ?");
+        conf.setRecordColumnDictionaryInsertQuery("INSERT INTO AN_RECORD_COLUMNS (table_name, column_id, column_name) VALUES (?, ?, ?)");
+        conf.setRecordRetrievalPageSize(1000);
         conf.setRecordRetrievalWithIdsQuery("SELECT record_id, timestamp, data FROM {{TABLE_NAME}} WHERE AND record_id IN (:record_ids)");
         conf.setRecordDeletionWithIdsQuery("DELETE FROM {{TABLE_NAME}} WHERE record_id IN (:record_ids)");
         conf.setRecordDeletionQuery("DELETE FROM {{TABLE_NAME}} WHERE timestamp >= ? AND timestamp < ? AND record_id != ?");
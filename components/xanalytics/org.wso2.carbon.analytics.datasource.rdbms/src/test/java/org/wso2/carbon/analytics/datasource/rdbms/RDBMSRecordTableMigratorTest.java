@@ -0,0 +1,119 @@
+/*
+ *  Copyright (c) 2014, WSO2 Inc. (http://www.wso2.org) All Rights Reserved.
+ *
+ *  WSO2 Inc. licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except
+ *  in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing,
+ *  software distributed under the License is distributed on an
+ *  "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ *  KIND, either express or implied.  See the License for the
+ *  specific language governing permissions and limitations
+ *  under the License.
+ *
+ */
+package org.wso2.carbon.analytics.datasource.rdbms;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import javax.naming.NamingException;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
+import org.wso2.carbon.analytics.datasource.core.AnalyticsRecordStoreTest;
+import org.wso2.carbon.analytics.datasource.core.Record;
+import org.wso2.carbon.analytics.datasource.core.util.GenericUtils;
+
+/**
+ * This class contains tests related to {@link RDBMSRecordTableMigrator}, with both the record table layouts 
+ * of a H2 in-memory database.
+ */
+public class RDBMSRecordTableMigratorTest {
+    
+    private RDBMSAnalyticsRecordStore separateStore;
+    
+    private RDBMSAnalyticsRecordStore consolidatedStore;
+    
+    @BeforeClass
+    public void setup() throws NamingException, AnalyticsException {
+        H2MemDBAnalyticsFileSystemTest.initDS("DSMIG", "jdbc:h2:mem:bam_test_migration_db", 
+                "wso2carbon", "wso2carbon");
+        Map<String, String> props = new HashMap<String, String>();
+        props.put("datasource", "DSMIG");
+        this.separateStore = new RDBMSAnalyticsRecordStore(
+                H2MemDBAnalyticsRecordStoreTest.generateQueryConfiguration());
+        this.separateStore.init(props);
+        this.consolidatedStore = new RDBMSAnalyticsRecordStore(
+                H2MemDBConsolidatedAnalyticsRecordStoreTest.generateQueryConfiguration());
+        this.consolidatedStore.init(props);
+    }
+    
+    private List<Record> readRecords(RDBMSAnalyticsRecordStore store, int tenantId, 
+            String tableName) throws AnalyticsException {
+        return GenericUtils.listRecords(store, store.get(tenantId, tableName, null, -1, -1, 0, -1));
+    }
+    
+    private void checkTables(RDBMSAnalyticsRecordStore store, Map<Integer, Map<String, List<Record>>> tables) 
+            throws AnalyticsException {
+        Assert.assertEquals(new HashSet<Integer>(store.listTenantIds()), tables.keySet());
+        for (Map.Entry<Integer, Map<String, List<Record>>> tenantTables : tables.entrySet()) {
+            int tenantId = tenantTables.getKey();
+            Assert.assertEquals(new HashSet<String>(store.listTables(tenantId)), 
+                    tenantTables.getValue().keySet());
+            for (Map.Entry<String, List<Record>> table : tenantTables.getValue().entrySet()) {
+                Assert.assertEquals(store.getRecordCount(tenantId, table.getKey()), table.getValue().size());
+                Assert.assertEquals(new HashSet<Record>(this.readRecords(store, tenantId, table.getKey())), 
+                        new HashSet<Record>(table.getValue()));
+            }
+        }
+    }
+    
+    private void checkEmpty(RDBMSAnalyticsRecordStore store) throws AnalyticsException {
+        Assert.assertEquals(store.listTenantIds().size(), 0);
+    }
+    
+    @Test
+    public void testMigrationRoundTrip() throws AnalyticsException {
+        Map<Integer, Map<String, List<Record>>> tables = new HashMap<Integer, Map<String, List<Record>>>();
+        tables.put(1, new HashMap<String, List<Record>>());
+        tables.put(-1234, new HashMap<String, List<Record>>());
+        tables.get(1).put("T1", AnalyticsRecordStoreTest.generateRecords(1, "T1", 1, 120, 1000, 10));
+        tables.get(1).put("T2", AnalyticsRecordStoreTest.generateRecords(1, "T2", 2, 15, 5000, 1));
+        tables.get(-1234).put("T1", AnalyticsRecordStoreTest.generateRecords(-1234, "T1", 3, 40, 1000, 10));
+        for (Map.Entry<Integer, Map<String, List<Record>>> tenantTables : tables.entrySet()) {
+            for (Map.Entry<String, List<Record>> table : tenantTables.getValue().entrySet()) {
+                this.separateStore.createTable(tenantTables.getKey(), table.getKey());
+                this.separateStore.insert(table.getValue());
+            }
+        }
+        this.checkTables(this.separateStore, tables);
+        RDBMSRecordTableMigrator migrator = new RDBMSRecordTableMigrator(this.separateStore, 
+                this.consolidatedStore);
+        /* a small batch size, so the tables are written in several batches */
+        migrator.setBatchSize(50);
+        Assert.assertEquals(migrator.migrate(true), 175);
+        this.checkTables(this.consolidatedStore, tables);
+        this.checkEmpty(this.separateStore);
+        migrator = new RDBMSRecordTableMigrator(this.consolidatedStore, this.separateStore);
+        migrator.setBatchSize(50);
+        Assert.assertEquals(migrator.migrate(true), 175);
+        this.checkTables(this.separateStore, tables);
+        this.checkEmpty(this.consolidatedStore);
+        for (Map.Entry<Integer, Map<String, List<Record>>> tenantTables : tables.entrySet()) {
+            for (String tableName : tenantTables.getValue().keySet()) {
+                this.separateStore.deleteTable(tenantTables.getKey(), tableName);
+            }
+        }
+        this.checkEmpty(this.separateStore);
+    }
+    
+}
@@ -26,7 +26,8 @@ import org.apache.spark.TaskContext;
 import org.apache.spark.rdd.RDD;
 import org.apache.spark.sql.catalyst.expressions.Row;
 import org.wso2.carbon.analytics.datasource.core.AnalyticsException;
-import org.wso2.carbon.analytics.datasource.core.Record;
+import org.wso2.carbon.analytics.datasource.core.ColumnVector;
+import org.wso2.carbon.analytics.datasource.core.RecordBatch;
 import org.wso2.carbon.analytics.datasource.core.RecordGroup;
 
 import scala.collection.Seq;
@@ -35,7 +36,7 @@ import scala.reflect.ClassTag;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Iterator;
-import java.util.Map;
+import java.util.NoSuchElementException;
 
 import static scala.collection.JavaConversions.asScalaIterator;
 
@@ -46,6 +47,8 @@ public class AnalyticsRDD extends RDD<Row> implements Serializable {
 
     private static final long serialVersionUID = 1L;
     
+    private static final int RECORD_BATCH_SIZE = 1000;
+    
     private List<String> columns;
     
     private int tenantId;
@@ -65,47 +68,67 @@ public class AnalyticsRDD extends RDD<Row> implements Serializable {
     public scala.collection.Iterator<Row> compute(Partition split, TaskContext context) {
         AnalyticsPartition partition = (AnalyticsPartition) split;
         try {
-            Iterator<Record> recordsItr = AnalyticsServiceHolder.getAnalyticsDataService().readRecords(partition.getRecordGroup());            
-            return new InterruptibleIterator(context, asScalaIterator(new RowRecordIteratorAdaptor(recordsItr)));
+            Iterator<RecordBatch> batchItr = AnalyticsServiceHolder.getAnalyticsDataService().readRecordBatches(
+                    partition.getRecordGroup(), this.columns, RECORD_BATCH_SIZE);            
+            return new InterruptibleIterator(context, asScalaIterator(new RowRecordBatchIteratorAdaptor(batchItr)));
         } catch (AnalyticsException e) {
             throw new RuntimeException(e.getMessage(), e);
         }
         
     }
     
-    private class RowRecordIteratorAdaptor implements Iterator<Row> {
+    /**
+     * This class creates the rows from the column vectors of the record batches.
+     */
+    private class RowRecordBatchIteratorAdaptor implements Iterator<Row> {
 
-        private Iterator<Record> recordItr;
+        private Iterator<RecordBatch> batchItr;
+        
+        private RecordBatch batch;
+        
+        private ColumnVector[] vectors;
+        
+        private int row;
         
-        public RowRecordIteratorAdaptor(Iterator<Record> recordItr) {
-            this.recordItr = recordItr;
+        public RowRecordBatchIteratorAdaptor(Iterator<RecordBatch> batchItr) {
+            this.batchItr = batchItr;
         }
         
         @Override
         public boolean hasNext() {
-            return this.recordItr.hasNext();
+            while (this.batch == null || this.row >= this.batch.size()) {
+                if (!this.batchItr.hasNext()) {
+                    return false;
+                }
+                this.batch = this.batchItr.next();
+                this.row = 0;
+                /* the column vectors in the order of the row fields */
+                this.vectors = new ColumnVector[columns.size()];
+                for (int i = 0; i < this.vectors.length; i++) {
+                    this.vectors[i] = this.batch.getColumnVector(columns.get(i));
+                }
+            }
+            return true;
         }
 
         @Override
         public Row next() {
-            return this.recordToRow(this.recordItr.next());           
-        }
-        
-        private Row recordToRow(Record record) {
-            if (record == null) {
-                return null;
+            if (!this.hasNext()) {
+                throw new NoSuchElementException();
             }
-            Map<String, Object> recordVals = record.getValues();
-            Object[] rowVals = new Object[columns.size()];
-            for (int i = 0; i < columns.size(); i++) {
-                rowVals[i] = recordVals.get(columns.get(i));
+            Object[] rowVals = new Object[this.vectors.length];
+            for (int i = 0; i < this.vectors.length; i++) {
+                if (this.vectors[i] != null) {
+                    rowVals[i] = this.vectors[i].getObject(this.row);
+                }
             }
+            this.row++;
             return org.apache.spark.sql.api.java.Row.create(rowVals).row();
         }
 
         @Override
         public void remove() {
-            this.recordItr.remove();
+            /* this is a read-only iterator, nothing will be removed */
         }
         
     }
@@ -115,7 +138,7 @@ public class AnalyticsRDD extends RDD<Row> implements Serializable {
         RecordGroup[] rgs;
         try {
             rgs = AnalyticsServiceHolder.getAnalyticsDataService().get(this.tenantId, this.tableName, 
-                    this.columns, -1, -1, 0, Integer.MAX_VALUE);
+                    this.columns, -1, -1, null, -1);
         } catch (AnalyticsException e) {
             throw new RuntimeException(e.getMessage(), e);
         } 